@@ -0,0 +1,60 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.catify.processengine.core.services.ActorReferenceService;
+
+/**
+ * Benchmarks the conversion of unique flow node ids to actor names.
+ * 
+ * @author christopher köster
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ActorReferenceServiceBenchmark {
+
+	/** A typical unique flow node id (client, process name, process id, version, sub processes, node id, node name). */
+	public String uniqueFlowNodeId = "benchmarkClientBenchmark ProcessbenchmarkProcess1.0subProcesstask42Task 42 (review order)";
+	
+	@Benchmark
+	public String getAkkaComplientString() {
+		return ActorReferenceService.getAkkaComplientString(uniqueFlowNodeId);
+	}
+	
+	@Benchmark
+	public String getActorReferenceString() {
+		return ActorReferenceService.getActorReferenceString(uniqueFlowNodeId);
+	}
+}
@@ -0,0 +1,117 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+import com.catify.processengine.core.data.model.entities.ClientNode;
+import com.catify.processengine.core.data.model.entities.FlowNode;
+import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
+import com.catify.processengine.core.data.model.entities.ProcessNode;
+import com.catify.processengine.core.data.model.entities.RootNode;
+import com.catify.processengine.core.data.model.entities.RunningNode;
+
+/**
+ * Builds a running process with a sequence of flow nodes and its process instances 
+ * in the graph, the same way the engine does on deployment and execution.
+ * 
+ * @author christopher köster
+ * 
+ */
+class BenchmarkGraph {
+
+	static final String CLIENT_ID = "benchmarkClient";
+	
+	private final Neo4jTemplate neo4jTemplate;
+	
+	private final String uniqueProcessId;
+	
+	private final List<FlowNode> flowNodes = new ArrayList<FlowNode>();
+	
+	/**
+	 * Creates the client, the running process and its flow nodes. Should be called 
+	 * within a transaction.
+	 *
+	 * @param neo4jTemplate the neo4j template
+	 * @param processId the process id
+	 * @param flowNodeCount the number of flow nodes
+	 */
+	BenchmarkGraph(Neo4jTemplate neo4jTemplate, String processId, int flowNodeCount) {
+		this.neo4jTemplate = neo4jTemplate;
+		this.uniqueProcessId = CLIENT_ID + processId;
+		
+		RootNode rootNode = neo4jTemplate.save(new RootNode());
+		ClientNode clientNode = neo4jTemplate.save(new ClientNode(CLIENT_ID));
+		RunningNode runningNode = neo4jTemplate.save(new RunningNode(CLIENT_ID));
+		rootNode.addRelationshipToClientNode(clientNode);
+		clientNode.addRelationshipToRunningProcessNode(runningNode);
+		neo4jTemplate.save(rootNode);
+		neo4jTemplate.save(clientNode);
+		
+		ProcessNode processNode = neo4jTemplate.save(new ProcessNode(uniqueProcessId, processId, processId, "1.0"));
+		runningNode.addRelationshipToProcessNode(processNode);
+		neo4jTemplate.save(runningNode);
+		
+		for (int i = 0; i < flowNodeCount; i++) {
+			FlowNode flowNode = neo4jTemplate.save(new FlowNode(
+					uniqueProcessId + "node" + i, "node" + i, "task", "node" + i));
+			processNode.addRelationshipToFlowNode(flowNode);
+			flowNodes.add(flowNode);
+		}
+		neo4jTemplate.save(processNode);
+	}
+	
+	/**
+	 * Creates the flow node instances of a process instance, one per flow node, connected 
+	 * by 'following instance' relationships. Should be called within a transaction.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @param passedNodes the number of flow node instances in passed state, 
+	 * the next one is active and the rest inactive
+	 * @return the flow node instances
+	 */
+	List<FlowNodeInstance> addProcessInstance(String processInstanceId, int passedNodes) {
+		List<FlowNodeInstance> flowNodeInstances = new ArrayList<FlowNodeInstance>();
+		FlowNodeInstance previous = null;
+		for (int i = 0; i < flowNodes.size(); i++) {
+			String state = i < passedNodes ? NodeInstaceStates.PASSED_STATE : i == passedNodes ? NodeInstaceStates.ACTIVE_STATE : NodeInstaceStates.INACTIVE_STATE;
+			FlowNodeInstance flowNodeInstance = new FlowNodeInstance(state, 0, 0);
+			flowNodeInstance.addAsInstanceOf(flowNodes.get(i), processInstanceId);
+			flowNodeInstance = neo4jTemplate.save(flowNodeInstance);
+			if (previous != null) {
+				previous.addFollowingInstance(flowNodeInstance);
+				neo4jTemplate.save(previous);
+			}
+			flowNodeInstances.add(flowNodeInstance);
+			previous = flowNodeInstance;
+		}
+		return flowNodeInstances;
+	}
+	
+	String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+	
+	List<FlowNode> getFlowNodes() {
+		return flowNodes;
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.test.ImpermanentGraphDatabase;
+
+/**
+ * Creates the graph database of the benchmarks (see 'neo4j-context.xml' of the benchmark module). 
+ * The database is an impermanent in memory database, unless a store directory is set with the 
+ * {@value #STORE_DIRECTORY_PROPERTY} system property (or {@link EngineContext#setStoreDirectory(java.io.File)}), 
+ * which long runs need to see the effects of a growing store on disk.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class BenchmarkGraphDatabase {
+
+	/** The system property of the store directory of a persistent database. */
+	public static final String STORE_DIRECTORY_PROPERTY = "benchmarks.storeDirectory";
+	
+	private BenchmarkGraphDatabase() {
+	}
+	
+	/**
+	 * Creates the graph database.
+	 *
+	 * @return the graph database
+	 */
+	public static GraphDatabaseService create() {
+		String storeDirectory = System.getProperty(STORE_DIRECTORY_PROPERTY);
+		if (storeDirectory == null || storeDirectory.length() == 0) {
+			return new ImpermanentGraphDatabase();
+		}
+		return new GraphDatabaseFactory().newEmbeddedDatabase(storeDirectory);
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.catify.processengine.core.data.services.IdService;
+
+/**
+ * Runs the engine benchmarks. Takes the usual JMH command line options, but writes the 
+ * results as JSON to 'jmh-result-&lt;version&gt;.json' unless another result format or file is 
+ * given. Comparing these files shows regressions between releases.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+		if (commandLineOptions.shouldHelp()) {
+			commandLineOptions.showHelp();
+			return;
+		}
+		
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLineOptions);
+		if (!commandLineOptions.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!commandLineOptions.getResult().hasValue()) {
+			options.result(String.format("jmh-result-%s.json", getEngineVersion()));
+		}
+		new Runner(options.build()).run();
+	}
+	
+	/** The maven descriptor of the engine, which is kept in the shaded benchmarks jar. */
+	private static final String ENGINE_POM_PROPERTIES = "META-INF/maven/com.catify.bpmn/bpmn-engine-core/pom.properties";
+	
+	/**
+	 * Gets the version of the engine jar under test, from the manifest of the engine jar or 
+	 * (in the shaded benchmarks jar, whose manifest is not the engine's) from its maven descriptor.
+	 *
+	 * @return the engine version or 'unknown'
+	 */
+	public static String getEngineVersion() {
+		String version = IdService.class.getPackage().getImplementationVersion();
+		if (version != null) {
+			return version;
+		}
+		
+		InputStream pomProperties = IdService.class.getClassLoader().getResourceAsStream(ENGINE_POM_PROPERTIES);
+		if (pomProperties != null) {
+			try {
+				Properties properties = new Properties();
+				properties.load(pomProperties);
+				version = properties.getProperty("version");
+			} catch (IOException e) {
+				// the version is only used in file names
+			} finally {
+				IOUtils.closeQuietly(pomProperties);
+			}
+		}
+		return version == null ? "unknown" : version;
+	}
+}
@@ -0,0 +1,88 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.io.File;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+
+/**
+ * Holds the spring context of the engine for the benchmarks that need the database. The 
+ * benchmark module replaces the 'neo4j-context.xml' of the engine with an impermanent in 
+ * memory database, so every forked benchmark jvm (and every load run) starts with an 
+ * empty graph. Long runs can use a database on disk instead (see {@link #setStoreDirectory(File)}).
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class EngineContext {
+
+	private static ClassPathXmlApplicationContext context;
+	
+	private EngineContext() {
+	}
+	
+	/**
+	 * Gets a bean of the engine context, starting the context on first use.
+	 *
+	 * @param type the bean type
+	 * @return the bean
+	 */
+	public static synchronized <T> T getBean(Class<T> type) {
+		if (context == null) {
+			context = new ClassPathXmlApplicationContext("classpath:META-INF/spring/spring-context.xml");
+			context.registerShutdownHook();
+		}
+		return context.getBean(type);
+	}
+	
+	/**
+	 * Sets the store directory of an embedded database on disk, instead of the in memory 
+	 * database (see {@link BenchmarkGraphDatabase}). Must be called before the context is started.
+	 *
+	 * @param storeDirectory the store directory
+	 */
+	public static synchronized void setStoreDirectory(File storeDirectory) {
+		if (context != null) {
+			throw new IllegalStateException("The store directory has to be set before the engine context is started.");
+		}
+		System.setProperty(BenchmarkGraphDatabase.STORE_DIRECTORY_PROPERTY, storeDirectory.getAbsolutePath());
+	}
+	
+	/**
+	 * Begins a transaction on the graph database, used to set up the benchmark graphs 
+	 * in one commit.
+	 *
+	 * @return the transaction
+	 */
+	static Transaction beginTx() {
+		return getBean(GraphDatabaseService.class).beginTx();
+	}
+	
+	/**
+	 * Closes the engine context, shutting down the actor system and the database.
+	 */
+	public static synchronized void close() {
+		if (context != null) {
+			context.close();
+			context = null;
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.jexl2.Expression;
+import org.apache.commons.jexl2.JexlContext;
+import org.apache.commons.jexl2.MapContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.catify.processengine.core.services.ExpressionService;
+
+/**
+ * Benchmarks the creation (parsing) and evaluation of the JEXL expressions used by 
+ * exclusive gateways and loop conditions.
+ * 
+ * @author christopher köster
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpressionServiceBenchmark {
+
+	static final String EXPRESSION = "order.amount > 1000 && customer.rating == 'A'";
+	
+	private Expression expression;
+	
+	private JexlContext context;
+	
+	@Setup
+	public void setup() {
+		expression = ExpressionService.createJexlExpression(EXPRESSION);
+		
+		Map<String, Object> order = new HashMap<String, Object>();
+		order.put("amount", 1500);
+		Map<String, Object> customer = new HashMap<String, Object>();
+		customer.put("rating", "A");
+		
+		context = new MapContext();
+		context.set("order", order);
+		context.set("customer", customer);
+	}
+	
+	@Benchmark
+	public Expression createExpression() {
+		return ExpressionService.createJexlExpression(EXPRESSION);
+	}
+	
+	@Benchmark
+	public boolean evaluateToBoolean() {
+		return ExpressionService.evaluateToBoolean(expression, context);
+	}
+}
@@ -0,0 +1,162 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+import com.catify.processengine.core.data.model.entities.FlowNode;
+import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
+import com.catify.processengine.core.data.repositories.FlowNodeInstanceRepository;
+
+/**
+ * Benchmarks the read queries of the {@link FlowNodeInstanceRepository} against graphs with 
+ * different numbers of process instances. The delete queries are not covered, because they 
+ * would change the graph between invocations.
+ * 
+ * @author christopher köster
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowNodeInstanceRepositoryBenchmark {
+
+	static final int FLOW_NODES = 10;
+	
+	/** The number of process instances in the graph. */
+	@Param({ "10", "100", "1000" })
+	public int instances;
+	
+	private FlowNodeInstanceRepository repository;
+	
+	private String uniqueProcessId;
+	
+	private String uniqueFlowNodeId;
+	
+	private Long flowNodeGraphId;
+	
+	private Long lastFlowNodeInstanceGraphId;
+	
+	private String processInstanceId;
+	
+	@Setup
+	public void setup() {
+		repository = EngineContext.getBean(FlowNodeInstanceRepository.class);
+		
+		Transaction tx = EngineContext.beginTx();
+		try {
+			BenchmarkGraph graph = new BenchmarkGraph(EngineContext.getBean(Neo4jTemplate.class), 
+					"repositoryBenchmark", FLOW_NODES);
+			List<FlowNodeInstance> probe = null;
+			for (int i = 0; i < instances; i++) {
+				// instances are spread over all positions of the sequence
+				List<FlowNodeInstance> flowNodeInstances = graph.addProcessInstance("pi" + i, i % FLOW_NODES);
+				if (i == instances / 2) {
+					probe = flowNodeInstances;
+				}
+			}
+			tx.success();
+			
+			FlowNode flowNode = graph.getFlowNodes().get(FLOW_NODES / 2);
+			uniqueProcessId = graph.getUniqueProcessId();
+			uniqueFlowNodeId = flowNode.getUniqueFlowNodeId();
+			flowNodeGraphId = flowNode.getGraphId();
+			lastFlowNodeInstanceGraphId = probe.get(FLOW_NODES - 1).getGraphId();
+			processInstanceId = "pi" + instances / 2;
+		} finally {
+			tx.finish();
+		}
+	}
+	
+	@Benchmark
+	public FlowNodeInstance findFlowNodeInstanceByFlowNodeGraphId() {
+		return repository.findFlowNodeInstance(flowNodeGraphId, processInstanceId, 0);
+	}
+	
+	@Benchmark
+	public FlowNodeInstance findFlowNodeInstance() {
+		return repository.findFlowNodeInstance(uniqueProcessId, uniqueFlowNodeId, processInstanceId, 0);
+	}
+	
+	@Benchmark
+	public Integer getFlowNodeInstanceMaxLoopCount() {
+		return repository.getFlowNodeInstanceMaxLoopCount(uniqueProcessId, uniqueFlowNodeId, processInstanceId);
+	}
+	
+	@Benchmark
+	public Set<FlowNodeInstance> findFlowNodeInstances() {
+		return repository.findFlowNodeInstances(Collections.singleton(flowNodeGraphId), processInstanceId);
+	}
+	
+	@Benchmark
+	public Set<String> findAllFlowNodeInstancesOfProcess() {
+		return repository.findAllFlowNodeInstances(uniqueProcessId);
+	}
+	
+	@Benchmark
+	public Set<FlowNodeInstance> findAllFlowNodeInstancesOfProcessInstance() {
+		return repository.findAllFlowNodeInstances(uniqueProcessId, processInstanceId);
+	}
+	
+	@Benchmark
+	public Set<String> findAllFlowNodeInstancesAtState() {
+		return repository.findAllFlowNodeInstancesAtState(uniqueProcessId, uniqueFlowNodeId, NodeInstaceStates.ACTIVE_STATE);
+	}
+	
+	@Benchmark
+	public void findAllFlowNodeInstancesAndFlowNodeIds(Blackhole blackhole) {
+		// the result is lazy, so it has to be consumed
+		for (Map<String, Object> row : repository.findAllFlowNodeInstancesAndFlowNodeIds(uniqueProcessId, processInstanceId)) {
+			blackhole.consume(row);
+		}
+	}
+	
+	@Benchmark
+	public Set<FlowNodeInstance> findFlowNodeInstancesAtCurrentLevelByState() {
+		return repository.findFlowNodeInstancesAtCurrentLevelByState(uniqueFlowNodeId, processInstanceId, NodeInstaceStates.PASSED_STATE);
+	}
+	
+	@Benchmark
+	public Set<String> findPreviousFlowNodeIdsNotInGivenStates() {
+		return repository.findPreviousFlowNodeIdsNotInGivenStates(lastFlowNodeInstanceGraphId, 
+				NodeInstaceStates.PASSED_STATE, NodeInstaceStates.DEACTIVATED_STATE);
+	}
+}
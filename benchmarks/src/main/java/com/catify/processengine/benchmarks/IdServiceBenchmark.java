@@ -0,0 +1,142 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.catify.processengine.core.data.services.IdParams;
+import com.catify.processengine.core.data.services.IdService;
+import com.catify.processengine.core.processdefinition.jaxb.ObjectFactory;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
+import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
+import com.catify.processengine.core.processdefinition.jaxb.TTask;
+
+/**
+ * Benchmarks the creation of unique and compact ids and the lookup of jaxb flow nodes by 
+ * their id, which are done for every node during process initialization.
+ * 
+ * @author christopher köster
+ * 
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdServiceBenchmark {
+
+	static final String CLIENT_ID = "benchmarkClient";
+	
+	/** The number of flow nodes of the process (half of them in a sub process). */
+	@Param({ "10", "100", "1000" })
+	public int nodes;
+	
+	private TProcess processJaxb;
+	
+	private TSubProcess subProcessJaxb;
+	
+	private TFlowNode lastFlowNodeJaxb;
+	
+	private String lastNodeId;
+	
+	private String uniqueFlowNodeId;
+	
+	private String compactId;
+	
+	@Setup
+	public void setup() {
+		ObjectFactory objectFactory = new ObjectFactory();
+		processJaxb = new TProcess();
+		processJaxb.setId("benchmarkProcess");
+		processJaxb.setName("Benchmark Process");
+		
+		subProcessJaxb = new TSubProcess();
+		subProcessJaxb.setId("subProcess");
+		
+		for (int i = 0; i < nodes; i++) {
+			TTask taskJaxb = new TTask();
+			taskJaxb.setId("task" + i);
+			taskJaxb.setName("Task " + i);
+			if (i < nodes / 2) {
+				processJaxb.getFlowElement().add(objectFactory.createTask(taskJaxb));
+			} else {
+				subProcessJaxb.getFlowElement().add(objectFactory.createTask(taskJaxb));
+			}
+			lastFlowNodeJaxb = taskJaxb;
+		}
+		processJaxb.getFlowElement().add(objectFactory.createSubProcess(subProcessJaxb));
+		
+		lastNodeId = lastFlowNodeJaxb.getId();
+		uniqueFlowNodeId = IdService.getUniqueFlowNodeId(CLIENT_ID, processJaxb, 
+				Collections.singletonList(subProcessJaxb), lastFlowNodeJaxb);
+		compactId = IdService.getCompactId(uniqueFlowNodeId);
+	}
+	
+	@Benchmark
+	public String buildUniqueProcessId() {
+		return new IdParams(CLIENT_ID, "Benchmark Process", "1.0", "benchmarkProcess").getUniqueProcessId();
+	}
+	
+	@Benchmark
+	public String buildUniqueFlowNodeId() {
+		return new IdParams(CLIENT_ID, "Benchmark Process", "1.0", "benchmarkProcess", 
+				"subProcess", lastNodeId, "Task").getUniqueFlowNodeId();
+	}
+	
+	@Benchmark
+	public String getUniqueFlowNodeIdFromJaxb() {
+		return IdService.getUniqueFlowNodeId(CLIENT_ID, processJaxb, 
+				Collections.singletonList(subProcessJaxb), lastFlowNodeJaxb);
+	}
+	
+	@Benchmark
+	public String getCompactId() {
+		return IdService.getCompactId(uniqueFlowNodeId);
+	}
+	
+	@Benchmark
+	public String getUniqueIdOfCompactId() {
+		return IdService.getUniqueId(compactId);
+	}
+	
+	@Benchmark
+	public TFlowNode getTFlowNodeById() {
+		return IdService.getTFlowNodeById(processJaxb, lastNodeId);
+	}
+	
+	@Benchmark
+	public List<TSubProcess> getTSubprocessesById() {
+		return IdService.getTSubprocessesById(processJaxb, lastNodeId);
+	}
+}
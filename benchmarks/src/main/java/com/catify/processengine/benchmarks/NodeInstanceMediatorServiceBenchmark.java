@@ -0,0 +1,112 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Transaction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+import com.catify.processengine.core.data.model.entities.FlowNode;
+import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
+import com.catify.processengine.core.services.NodeInstanceMediatorService;
+
+/**
+ * Benchmarks the {@link NodeInstanceMediatorService} as used by a flow node actor: creating 
+ * a node instance, walking it through its states with a persist after each change, and 
+ * loading a node instance from the database.
+ * 
+ * @author christopher köster
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeInstanceMediatorServiceBenchmark {
+
+	static final String SEED_INSTANCE_ID = "seed";
+	
+	private NodeInstanceMediatorService nodeInstanceMediatorService;
+	
+	private String uniqueProcessId;
+	
+	private String uniqueFlowNodeId;
+	
+	private long processInstanceCounter;
+	
+	@Setup
+	public void setup() {
+		Neo4jTemplate neo4jTemplate = EngineContext.getBean(Neo4jTemplate.class);
+		
+		Transaction tx = EngineContext.beginTx();
+		try {
+			BenchmarkGraph graph = new BenchmarkGraph(neo4jTemplate, "mediatorBenchmark", 1);
+			FlowNode flowNode = graph.getFlowNodes().get(0);
+			
+			FlowNodeInstance seed = new FlowNodeInstance(NodeInstaceStates.PASSED_STATE, 0, 0);
+			seed.addAsInstanceOf(flowNode, SEED_INSTANCE_ID);
+			neo4jTemplate.save(seed);
+			tx.success();
+			
+			uniqueProcessId = graph.getUniqueProcessId();
+			uniqueFlowNodeId = flowNode.getUniqueFlowNodeId();
+		} finally {
+			tx.finish();
+		}
+		
+		// the service is @Configurable, so its dependencies are injected on construction
+		nodeInstanceMediatorService = new NodeInstanceMediatorService(uniqueProcessId, uniqueFlowNodeId);
+		nodeInstanceMediatorService.refreshFlowNodeInstance(uniqueProcessId, uniqueFlowNodeId, SEED_INSTANCE_ID);
+	}
+	
+	/**
+	 * A node instance from creation to passed state, as an activity without loops would do it.
+	 */
+	@Benchmark
+	public String createActivatePass() {
+		String processInstanceId = "pi" + processInstanceCounter++;
+		nodeInstanceMediatorService.createNewNodeInstance(processInstanceId, 0);
+		nodeInstanceMediatorService.setState(processInstanceId, NodeInstaceStates.ACTIVE_STATE);
+		nodeInstanceMediatorService.persistChanges();
+		nodeInstanceMediatorService.setState(processInstanceId, NodeInstaceStates.PASSED_STATE);
+		nodeInstanceMediatorService.persistChanges();
+		return processInstanceId;
+	}
+	
+	/**
+	 * Loading a node instance that is not cached.
+	 */
+	@Benchmark
+	public FlowNodeInstance refreshFlowNodeInstance() {
+		return nodeInstanceMediatorService.refreshFlowNodeInstance(uniqueProcessId, uniqueFlowNodeId, SEED_INSTANCE_ID);
+	}
+}
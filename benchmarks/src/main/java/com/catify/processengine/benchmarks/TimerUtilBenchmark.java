@@ -0,0 +1,73 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.catify.processengine.core.util.TimerUtil;
+
+/**
+ * Benchmarks the time to fire calculation of timer events.
+ * 
+ * @author christopher köster
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerUtilBenchmark {
+
+	static final long NOW = 1000000000000L;
+	
+	@State(Scope.Benchmark)
+	public static class Cycle {
+		
+		/** Bounded and unbounded cycles, with and without start date. */
+		@Param({ "R5/PT1M", "R100/PT1M", "R/PT1M", "R/2013-01-30T00:00:00Z/PT1H" })
+		public String isoDate;
+	}
+	
+	@Benchmark
+	public List<Long> calculateTimeToFireForCycle(Cycle cycle) {
+		return TimerUtil.calculateTimeToFireForCycle(NOW, cycle.isoDate);
+	}
+	
+	@Benchmark
+	public boolean isUnboundedCycle(Cycle cycle) {
+		return TimerUtil.isUnboundedCycle(cycle.isoDate);
+	}
+	
+	@Benchmark
+	public long calculateTimeToFireForDuration() {
+		return TimerUtil.calculateTimeToFireForDuration(NOW, "PT2H1M10S");
+	}
+}
@@ -0,0 +1,189 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBException;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.benchmarks.load.CompletionListener;
+import com.catify.processengine.benchmarks.load.LoadRun;
+import com.catify.processengine.benchmarks.workload.BpmnWorkloadGenerator;
+import com.catify.processengine.benchmarks.workload.WorkloadShape;
+import com.catify.processengine.core.data.services.IdService;
+import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.management.ProcessManagementService;
+import com.catify.processengine.management.ProcessManagementServiceImpl;
+import com.catify.processengine.management.XmlJaxbTransformer;
+
+/**
+ * Runs the deployment and the execution of generated processes across a matrix of 
+ * {@link WorkloadShape} presets and sizes. Deploying measures one process definition 
+ * (a new process id each time), executing measures one process instance from its start 
+ * until its end event. Shapes with timers wait for the timer interval of the engine.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Fork(1)
+public class WorkloadBenchmark {
+
+	static final String CLIENT_ID = "workloadClient";
+	
+	static final long INSTANCE_TIMEOUT_SECONDS = 60;
+	
+	/**
+	 * The shape and size of the generated processes.
+	 */
+	@State(Scope.Benchmark)
+	public static class Shape {
+		
+		@Param({"sequence", "exclusive", "parallel", "complex", "eventBased", "loop", "timer", "nested", "mixed"})
+		public String shape;
+		
+		@Param({"20", "200"})
+		public int flowNodes;
+		
+		private File directory;
+		
+		private int processCounter;
+		
+		@Setup
+		public void setup() throws IOException {
+			directory = File.createTempFile("workload", "");
+			directory.delete();
+			directory.mkdirs();
+		}
+		
+		/**
+		 * Generates a process definition with a new process id.
+		 *
+		 * @return the process definition file
+		 * @throws IOException Signals that an I/O exception has occurred.
+		 */
+		File generate() throws IOException {
+			String processId = String.format("workload_%s_%s_%s", shape, flowNodes, processCounter++);
+			File file = new File(directory, processId + ".bpmn");
+			new BpmnWorkloadGenerator(WorkloadShape.preset(shape, flowNodes)).write(processId, file);
+			file.deleteOnExit();
+			return file;
+		}
+	}
+	
+	/**
+	 * A generated process definition, not yet deployed.
+	 */
+	@State(Scope.Thread)
+	public static class Definition {
+		
+		File file;
+		
+		@Setup(Level.Invocation)
+		public void setup(Shape shape) throws IOException {
+			file = shape.generate();
+		}
+	}
+	
+	/**
+	 * A deployed process with a listener for its ended instances.
+	 */
+	@State(Scope.Benchmark)
+	public static class DeployedProcess {
+		
+		ProcessManagementService processManagementService;
+		
+		TProcess process;
+		
+		String startEventId;
+		
+		LoadRun loadRun;
+		
+		ActorRef listener;
+		
+		private int instanceCounter;
+		
+		@Setup
+		public void setup(Shape shape) throws IOException, JAXBException {
+			ActorSystem actorSystem = EngineContext.getBean(ActorSystem.class);
+			processManagementService = new ProcessManagementServiceImpl();
+			
+			File file = shape.generate();
+			processManagementService.startProcessFromDefinitionFile(CLIENT_ID, file);
+			process = new XmlJaxbTransformer().getTProcessesFromBpmnXml(file).get(0);
+			startEventId = BpmnWorkloadGenerator.START_EVENT_ID;
+			
+			loadRun = new LoadRun("workload." + shape.shape, 0);
+			listener = CompletionListener.subscribe(actorSystem, IdService.getUniqueProcessId(CLIENT_ID, process), loadRun);
+		}
+		
+		@TearDown
+		public void tearDown() {
+			EngineContext.getBean(ActorSystem.class).stop(listener);
+		}
+		
+		String nextInstanceId() {
+			return "workload-" + instanceCounter++;
+		}
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 5)
+	@Measurement(iterations = 20)
+	public void deploy(Definition definition) throws IOException, JAXBException {
+		new ProcessManagementServiceImpl().startProcessFromDefinitionFile(CLIENT_ID, definition.file);
+	}
+	
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 3, time = 2)
+	@Measurement(iterations = 5, time = 2)
+	public String execute(DeployedProcess deployedProcess) throws InterruptedException {
+		String processInstanceId = deployedProcess.nextInstanceId();
+		deployedProcess.loadRun.started(processInstanceId, System.nanoTime());
+		deployedProcess.processManagementService.createProcessInstance(CLIENT_ID, deployedProcess.process, 
+				deployedProcess.startEventId, new TriggerMessage(processInstanceId, null));
+		if (!deployedProcess.loadRun.awaitOutstanding(INSTANCE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new IllegalStateException(String.format("Process instance %s did not end within %s seconds.", 
+					processInstanceId, INSTANCE_TIMEOUT_SECONDS));
+		}
+		return processInstanceId;
+	}
+}
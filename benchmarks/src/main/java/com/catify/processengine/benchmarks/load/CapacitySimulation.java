@@ -0,0 +1,333 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import scala.concurrent.Await;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Futures;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+
+import com.catify.processengine.benchmarks.BenchmarkRunner;
+import com.catify.processengine.benchmarks.EngineContext;
+import com.catify.processengine.core.messages.FlushMessage;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+import com.catify.processengine.core.util.Clock;
+import com.catify.processengine.core.util.TimerUtil;
+import com.catify.processengine.core.util.VirtualClock;
+
+/**
+ * Runs a process on a {@link VirtualClock} to plan capacity: a month of timer and message 
+ * traffic takes minutes instead of a month. The engine runs with the in-memory service 
+ * providers of the load generator; timers are polled on the virtual time line and all time 
+ * stamps of the engine are virtual. Time advances in steps, after each step the simulation 
+ * waits until the engine is quiescent before the next step begins, so node time stamps are 
+ * accurate to one step. The engine is quiescent once a round of {@link FlushMessage}s to all 
+ * flow nodes of the process has been answered without any node handling another message 
+ * meanwhile. The run fails if the engine does not settle in time.
+ * <p>
+ * The CSV report has one line per sample interval with the started, ended and running 
+ * instances (and the peak of running instances in the interval), the fired and pending timers 
+ * (and the most timers fired in one step, the timer storms), the messages sent by the process 
+ * and the size of the graph. Ended instances are neither archived nor deleted, so the graph size is the 
+ * upper bound of the storage growth.
+ * <p>
+ * Options (all optional, except '--process'):
+ * <ul>
+ * <li>--process, --dir, --startEvent, --client as for the {@link LoadGenerator}</li>
+ * <li>--days &lt;days&gt; the simulated time (default: 30)</li>
+ * <li>--rate &lt;instances per hour&gt; instances started at the start event, with exponentially 
+ * distributed arrivals (default: 0, for processes started by timers)</li>
+ * <li>--messageNode &lt;flow node id&gt; a catching node each started instance gets a message at</li>
+ * <li>--messageDelay &lt;ISO 8601 duration&gt; the time between start and message (default: PT1H)</li>
+ * <li>--step &lt;seconds&gt; the virtual time of one step (default: 60)</li>
+ * <li>--settle &lt;millis&gt; the longest wall clock time the engine may take to settle after a step (default: 10000)</li>
+ * <li>--sample &lt;minutes&gt; the virtual time between two report lines (default: 60)</li>
+ * <li>--seed &lt;number&gt; the seed of the arrivals (default: 47)</li>
+ * <li>--report &lt;file&gt; the report file (default: simulation-&lt;version&gt;-&lt;process&gt;-&lt;timestamp&gt;.csv)</li>
+ * </ul>
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class CapacitySimulation {
+
+	static final String COLUMNS = "virtualTime,wallSeconds,started,ended,running,peakRunning,"
+			+ "timersFired,maxTimersPerStep,pendingTimers,messagesSent,storeNodes,storeRelationships";
+	
+	private CapacitySimulation() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = LoadGenerator.parseOptions(args);
+		if (!options.containsKey("process")) {
+			System.err.println("usage: CapacitySimulation --process <file> [--dir <directory>] [--startEvent <id>] "
+					+ "[--days <days>] [--rate <instances per hour>] [--messageNode <id>] [--messageDelay <duration>] "
+					+ "[--step <seconds>] [--settle <millis>] [--sample <minutes>] [--seed <number>] "
+					+ "[--report <file>] [--client <id>]");
+			System.exit(1);
+		}
+		
+		// the clock has to be set before the engine starts
+		VirtualClock clock = new VirtualClock(System.currentTimeMillis());
+		Clock.setClock(clock);
+		try {
+			run(options, clock);
+		} finally {
+			EngineContext.close();
+			Clock.setClock(Clock.SYSTEM);
+		}
+		System.exit(0);
+	}
+	
+	/**
+	 * Deploys the process and runs it on the virtual clock.
+	 *
+	 * @param options the command line options
+	 * @param clock the virtual clock of the engine
+	 * @throws Exception the exception
+	 */
+	static void run(Map<String, String> options, VirtualClock clock) throws Exception {
+		long days = Long.parseLong(LoadGenerator.getOption(options, "days", "30"));
+		double ratePerHour = Double.parseDouble(LoadGenerator.getOption(options, "rate", "0"));
+		String messageNode = options.get("messageNode");
+		String messageDelay = LoadGenerator.getOption(options, "messageDelay", "PT1H");
+		long stepMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(LoadGenerator.getOption(options, "step", "60")));
+		long settleMillis = Long.parseLong(LoadGenerator.getOption(options, "settle", "10000"));
+		long sampleMillis = TimeUnit.MINUTES.toMillis(Long.parseLong(LoadGenerator.getOption(options, "sample", "60")));
+		long seed = Long.parseLong(LoadGenerator.getOption(options, "seed", "47"));
+		
+		ActorSystem actorSystem = EngineContext.getBean(ActorSystem.class);
+		GraphDatabaseService graphDatabase = EngineContext.getBean(GraphDatabaseService.class);
+		
+		DeployedProcess process = DeployedProcess.deploy(options, "simulationClient");
+		String processName = process.getProcessDefinition().getName();
+		
+		List<ActorRef> nodeActors = process.getNodeActors();
+		
+		InstanceCounter.Counts counts = new InstanceCounter.Counts();
+		ActorRef counter = InstanceCounter.subscribe(actorSystem, process.getUniqueProcessId(), counts);
+		
+		if (ratePerHour > 0) {
+			Arrivals arrivals = new Arrivals(clock, process, ratePerHour, seed, messageNode, messageDelay);
+			arrivals.scheduleNext();
+		}
+		
+		File reportFile = new File(LoadGenerator.getOption(options, "report", String.format("simulation-%s-%s-%s.csv", 
+				BenchmarkRunner.getEngineVersion(), processName.replaceAll("\\.[^.]*$", ""), 
+				new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()))));
+		PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+		report.println(String.format("# engineVersion=%s process=%s days=%s rate=%s/h messageNode=%s messageDelay=%s step=%ss", 
+				BenchmarkRunner.getEngineVersion(), processName, days, ratePerHour, messageNode, messageDelay, 
+				TimeUnit.MILLISECONDS.toSeconds(stepMillis)));
+		report.println(COLUMNS);
+		
+		SimpleDateFormat virtualTimeFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+		virtualTimeFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		
+		long wallStart = System.nanoTime();
+		long start = clock.currentTimeMillis();
+		long end = start + TimeUnit.DAYS.toMillis(days);
+		long nextSample = start + sampleMillis;
+		long lastFired = InMemoryTimerSPI.getFiredTimers();
+		long sampleFired = lastFired;
+		long sampleSent = InMemoryMessageIntegrationSPI.getSentMessages();
+		long maxFiredPerStep = 0;
+		long stormSize = 0;
+		long stormTime = 0;
+		long firstNodes = LoadGenerator.countNodes(graphDatabase);
+		long lastNodes = firstNodes;
+		try {
+			while (clock.currentTimeMillis() < end) {
+				clock.advanceTo(Math.min(clock.currentTimeMillis() + stepMillis, end));
+				if (!awaitQuiescence(actorSystem, nodeActors, settleMillis)) {
+					throw new IllegalStateException(String.format("The engine did not settle within %s ms after the step to %s. "
+							+ "Raise '--settle' or shorten '--step'.", settleMillis, virtualTimeFormat.format(Clock.now())));
+				}
+				
+				long fired = InMemoryTimerSPI.getFiredTimers();
+				maxFiredPerStep = Math.max(maxFiredPerStep, fired - lastFired);
+				if (fired - lastFired > stormSize) {
+					stormSize = fired - lastFired;
+					stormTime = clock.currentTimeMillis();
+				}
+				lastFired = fired;
+				
+				if (clock.currentTimeMillis() >= nextSample || clock.currentTimeMillis() >= end) {
+					long sent = InMemoryMessageIntegrationSPI.getSentMessages();
+					lastNodes = LoadGenerator.countNodes(graphDatabase);
+					report.println(String.format(Locale.ENGLISH, "%s,%.0f,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s", 
+							virtualTimeFormat.format(Clock.now()), LoadGenerator.toSeconds(System.nanoTime() - wallStart), 
+							counts.getStarted(), counts.getEnded(), counts.getRunning(), counts.takeIntervalPeakRunning(), 
+							fired - sampleFired, maxFiredPerStep, InMemoryTimerSPI.getPendingTimers(), 
+							sent - sampleSent, lastNodes, 
+							LoadGenerator.countRelationships(graphDatabase)));
+					report.flush();
+					sampleFired = fired;
+					sampleSent = sent;
+					maxFiredPerStep = 0;
+					nextSample += sampleMillis;
+				}
+			}
+		} finally {
+			report.close();
+			actorSystem.stop(counter);
+		}
+		
+		System.out.println(String.format(Locale.ENGLISH, "Simulated %s days of %s in %.0f seconds: %s instances started, %s ended, "
+				+ "peak of %s running instances at %s, largest timer storm %s timers within %s seconds at %s, "
+				+ "graph growth %.0f nodes per day. Report written to %s.", 
+				days, processName, LoadGenerator.toSeconds(System.nanoTime() - wallStart), counts.getStarted(), counts.getEnded(), 
+				counts.getPeakRunning(), virtualTimeFormat.format(new Date(counts.getPeakTime())), 
+				stormSize, TimeUnit.MILLISECONDS.toSeconds(stepMillis), virtualTimeFormat.format(new Date(stormTime)), 
+				(double) (lastNodes - firstNodes) / days, reportFile.getAbsolutePath()));
+	}
+	
+	/**
+	 * Waits until the engine has handled all messages of the process. Each round sends a 
+	 * {@link FlushMessage} to all node actors and waits for their answers; a node answers once 
+	 * it has handled the messages it received before. Messages sent on by a node may reach 
+	 * another node after its answer, so the rounds are repeated until no node handled a 
+	 * message during a round.
+	 *
+	 * @param actorSystem the actor system
+	 * @param nodeActors the node actors of the process
+	 * @param timeoutMillis the longest time to wait
+	 * @return true, if the engine is quiescent, false if the timeout expired
+	 * @throws Exception if waiting for the answers failed
+	 */
+	static boolean awaitQuiescence(ActorSystem actorSystem, List<ActorRef> nodeActors, long timeoutMillis) throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		long handled = getHandledMessages();
+		while (true) {
+			long remaining = deadline - System.nanoTime();
+			if (remaining <= 0) {
+				return false;
+			}
+			Timeout timeout = new Timeout(Duration.create(remaining, TimeUnit.NANOSECONDS));
+			List<Future<Object>> answers = new ArrayList<Future<Object>>();
+			for (ActorRef nodeActor : nodeActors) {
+				answers.add(Patterns.ask(nodeActor, new FlushMessage(), timeout));
+			}
+			try {
+				Await.result(Futures.sequence(answers, actorSystem.dispatcher()), timeout.duration());
+			} catch (TimeoutException e) {
+				return false;
+			}
+			
+			long handledAfterRound = getHandledMessages();
+			if (handledAfterRound == handled) {
+				return true;
+			}
+			handled = handledAfterRound;
+		}
+	}
+	
+	/**
+	 * Gets the number of messages handled by all flow nodes so far, taken from the node 
+	 * histograms aggregated by node type (see {@link MetricsRegistry}).
+	 *
+	 * @return the number of handled messages
+	 */
+	private static long getHandledMessages() {
+		long handled = 0;
+		for (Histogram histogram : MetricsRegistry.getHistograms().values()) {
+			if (histogram.getName().startsWith(MetricsRegistry.NODE_TYPE_PREFIX)) {
+				handled += histogram.getCount();
+			}
+		}
+		return handled;
+	}
+	
+	/**
+	 * Starts instances at exponentially distributed (virtual) times and schedules their 
+	 * messages. Each arrival schedules the next one, so the arrivals are always one step 
+	 * ahead of the clock.
+	 */
+	static class Arrivals implements Runnable {
+		
+		private final VirtualClock clock;
+		
+		private final DeployedProcess process;
+		
+		private final double meanGapMillis;
+		
+		private final Random random;
+		
+		private final String messageNode;
+		
+		private final String messageDelay;
+		
+		private long next;
+		
+		private long instances;
+		
+		Arrivals(VirtualClock clock, DeployedProcess process, double ratePerHour, long seed, 
+				String messageNode, String messageDelay) {
+			this.clock = clock;
+			this.process = process;
+			this.meanGapMillis = TimeUnit.HOURS.toMillis(1) / ratePerHour;
+			this.random = new Random(seed);
+			this.messageNode = messageNode;
+			this.messageDelay = messageDelay;
+			this.next = clock.currentTimeMillis();
+		}
+		
+		void scheduleNext() {
+			next += (long) (-Math.log(1 - random.nextDouble()) * meanGapMillis);
+			clock.scheduleOnce(next, this);
+		}
+
+		@Override
+		public void run() {
+			final String processInstanceId = "sim-" + instances++;
+			process.start(processInstanceId);
+			if (messageNode != null) {
+				long now = clock.currentTimeMillis();
+				clock.scheduleOnce(TimerUtil.calculateTimeToFireForDuration(now, messageDelay), new Runnable() {
+					@Override
+					public void run() {
+						process.trigger(messageNode, processInstanceId);
+					}
+				});
+			}
+			this.scheduleNext();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.util.Collections;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+
+import com.catify.processengine.core.messages.ArchiveMessage;
+import com.catify.processengine.core.messages.DeletionMessage;
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
+
+/**
+ * Subscribed to the event stream of the actor system, the completion listener reports 
+ * the ended instances of the process under load to the {@link LoadRun}. Nothing in the 
+ * engine archives or deletes ended instances on its own, so the listener can hand them to the 
+ * process instance cleansing actor the way an application would.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class CompletionListener extends UntypedActor {
+
+	private final String uniqueProcessId;
+	
+	private final LoadRun loadRun;
+	
+	private final Cleansing cleansing;
+	
+	private final ActorRef cleansingActor;
+	
+	/**
+	 * Instantiates a new completion listener.
+	 *
+	 * @param uniqueProcessId the unique process id of the process under load
+	 * @param loadRun the load run to report to
+	 */
+	CompletionListener(String uniqueProcessId, LoadRun loadRun) {
+		this(uniqueProcessId, loadRun, Cleansing.NONE, null);
+	}
+	
+	/**
+	 * Instantiates a new completion listener that hands the ended instances of the run 
+	 * to the process instance cleansing actor.
+	 *
+	 * @param uniqueProcessId the unique process id of the process under load
+	 * @param loadRun the load run to report to
+	 * @param cleansing what to do with ended instances
+	 * @param cleansingActor the process instance cleansing actor
+	 */
+	CompletionListener(String uniqueProcessId, LoadRun loadRun, Cleansing cleansing, ActorRef cleansingActor) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.loadRun = loadRun;
+		this.cleansing = cleansing;
+		this.cleansingActor = cleansingActor;
+	}
+	
+	/**
+	 * Creates a completion listener and subscribes it to the process instance end messages.
+	 *
+	 * @param actorSystem the actor system
+	 * @param uniqueProcessId the unique process id of the process under load
+	 * @param loadRun the load run to report to
+	 * @return the listener, to be stopped at the end of the run
+	 */
+	public static ActorRef subscribe(ActorSystem actorSystem, String uniqueProcessId, LoadRun loadRun) {
+		return subscribe(actorSystem, uniqueProcessId, loadRun, Cleansing.NONE, null);
+	}
+	
+	/**
+	 * Creates a completion listener that archives or deletes the ended instances of the run 
+	 * and subscribes it to the process instance end messages.
+	 *
+	 * @param actorSystem the actor system
+	 * @param uniqueProcessId the unique process id of the process under load
+	 * @param loadRun the load run to report to
+	 * @param cleansing what to do with ended instances
+	 * @param cleansingActor the process instance cleansing actor
+	 * @return the listener, to be stopped at the end of the run
+	 */
+	public static ActorRef subscribe(ActorSystem actorSystem, final String uniqueProcessId, final LoadRun loadRun, 
+			final Cleansing cleansing, final ActorRef cleansingActor) {
+		ActorRef listener = actorSystem.actorOf(new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new CompletionListener(uniqueProcessId, loadRun, cleansing, cleansingActor);
+			}
+		}));
+		actorSystem.eventStream().subscribe(listener, ProcessInstanceEndMessage.class);
+		return listener;
+	}
+	
+	@Override
+	public void onReceive(Object message) throws Exception {
+		if (message instanceof ProcessInstanceEndMessage) {
+			ProcessInstanceEndMessage endMessage = (ProcessInstanceEndMessage) message;
+			if (uniqueProcessId.equals(endMessage.getUniqueProcessId()) 
+					&& loadRun.completed(endMessage.getProcessInstanceId(), System.nanoTime())) {
+				this.cleanse(endMessage);
+			}
+		} else {
+			unhandled(message);
+		}
+	}
+	
+	private void cleanse(ProcessInstanceEndMessage endMessage) {
+		if (cleansing == Cleansing.ARCHIVE) {
+			cleansingActor.tell(new ArchiveMessage(uniqueProcessId, endMessage.getProcessInstanceId(), 
+					endMessage.getEndTime()), this.getSelf());
+		} else if (cleansing == Cleansing.DELETE) {
+			cleansingActor.tell(new DeletionMessage(uniqueProcessId, endMessage.getProcessInstanceId(), 
+					Collections.<String>emptySet()), this.getSelf());
+		}
+	}
+	
+	/**
+	 * What happens to the ended process instances of a run.
+	 */
+	public enum Cleansing {
+		/** The instances stay in the database. */
+		NONE, 
+		/** The instances are archived. */
+		ARCHIVE, 
+		/** The instances are deleted. */
+		DELETE
+	}
+}
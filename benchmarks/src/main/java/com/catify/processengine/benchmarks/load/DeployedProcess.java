@@ -0,0 +1,204 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.core.data.services.IdService;
+import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowElement;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
+import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.core.processdefinition.jaxb.TStartEvent;
+import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
+import com.catify.processengine.core.services.ActorReferenceService;
+import com.catify.processengine.management.ProcessManagementService;
+import com.catify.processengine.management.ProcessManagementServiceImpl;
+import com.catify.processengine.management.XmlJaxbTransformer;
+
+/**
+ * A process deployed for a load run, taken from the '--process', '--dir', '--startEvent' 
+ * and '--client' options.
+ * 
+ * @author christopher köster
+ * 
+ */
+class DeployedProcess {
+
+	static final String WARM_UP_INSTANCE_ID = "load-warm-up";
+	
+	private final String clientId;
+	
+	private final File processDefinition;
+	
+	private final TProcess process;
+	
+	private final String startEventId;
+	
+	private final String uniqueProcessId;
+	
+	private final ProcessManagementService processManagementService;
+	
+	private DeployedProcess(String clientId, File processDefinition, TProcess process, String startEventId) {
+		this.clientId = clientId;
+		this.processDefinition = processDefinition;
+		this.process = process;
+		this.startEventId = startEventId;
+		this.uniqueProcessId = IdService.getUniqueProcessId(clientId, process);
+		// the management service is @Configurable, so it needs the started context
+		this.processManagementService = new ProcessManagementServiceImpl();
+	}
+	
+	/**
+	 * Deploys the process given by the command line options. Relative process file names 
+	 * that do not exist are resolved in '--dir' (default: src/test/resources/data).
+	 *
+	 * @param options the command line options
+	 * @param defaultClientId the client id if no '--client' is given
+	 * @return the deployed process
+	 * @throws FileNotFoundException the file not found exception
+	 * @throws JAXBException the JAXB exception
+	 */
+	static DeployedProcess deploy(Map<String, String> options, String defaultClientId) throws FileNotFoundException, JAXBException {
+		File processDefinition = new File(options.get("process"));
+		if (!processDefinition.isAbsolute() && !processDefinition.exists()) {
+			processDefinition = new File(LoadGenerator.getOption(options, "dir", "src/test/resources/data"), options.get("process"));
+		}
+		TProcess process = new XmlJaxbTransformer().getTProcessesFromBpmnXml(processDefinition).get(0);
+		
+		DeployedProcess deployedProcess = new DeployedProcess(
+				LoadGenerator.getOption(options, "client", defaultClientId), processDefinition, process, 
+				LoadGenerator.getOption(options, "startEvent", getFirstStartEventId(process)));
+		deployedProcess.processManagementService.startProcessFromDefinitionFile(deployedProcess.clientId, processDefinition);
+		return deployedProcess;
+	}
+	
+	/**
+	 * Starts a process instance.
+	 *
+	 * @param processInstanceId the process instance id
+	 */
+	void start(String processInstanceId) {
+		processManagementService.createProcessInstance(clientId, process, startEventId, 
+				new TriggerMessage(processInstanceId, null));
+	}
+	
+	/**
+	 * Sends a trigger message to a (catching) flow node of a process instance, like an 
+	 * incoming message would.
+	 *
+	 * @param flowNodeId the id of the flow node in the process definition
+	 * @param processInstanceId the process instance id
+	 */
+	void trigger(String flowNodeId, String processInstanceId) {
+		processManagementService.sendTriggerMessage(clientId, process, flowNodeId, 
+				new TriggerMessage(processInstanceId, null));
+	}
+	
+	/**
+	 * Readiness check: one instance has to run to its end before any load is applied.
+	 *
+	 * @param actorSystem the actor system
+	 * @param timeoutSeconds the time to wait for the instance
+	 * @return true, if the instance has ended
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	boolean awaitReady(ActorSystem actorSystem, long timeoutSeconds) throws InterruptedException {
+		LoadRun warmUp = new LoadRun("load.warmUp", 1);
+		ActorRef warmUpListener = CompletionListener.subscribe(actorSystem, uniqueProcessId, warmUp);
+		try {
+			warmUp.started(WARM_UP_INSTANCE_ID, System.nanoTime());
+			this.start(WARM_UP_INSTANCE_ID);
+			if (warmUp.awaitOutstanding(timeoutSeconds, TimeUnit.SECONDS)) {
+				return true;
+			}
+		} finally {
+			actorSystem.stop(warmUpListener);
+		}
+		System.err.println(String.format("Process instance '%s' of %s did not end within %s seconds. "
+				+ "Only processes that run to their end without external input can be put under load.", 
+				WARM_UP_INSTANCE_ID, processDefinition.getName(), timeoutSeconds));
+		return false;
+	}
+	
+	/**
+	 * Gets the actors of all flow nodes of the process, including those of its sub processes.
+	 *
+	 * @return the node actors
+	 */
+	List<ActorRef> getNodeActors() {
+		List<ActorRef> nodeActors = new ArrayList<ActorRef>();
+		this.addNodeActors(nodeActors, new ArrayList<TSubProcess>(), process.getFlowElement());
+		return nodeActors;
+	}
+	
+	private void addNodeActors(List<ActorRef> nodeActors, List<TSubProcess> subProcesses, 
+			List<JAXBElement<? extends TFlowElement>> flowElements) {
+		ActorReferenceService actorReferenceService = new ActorReferenceService();
+		for (JAXBElement<? extends TFlowElement> flowElement : flowElements) {
+			if (flowElement.getValue() instanceof TFlowNode) {
+				TFlowNode flowNode = (TFlowNode) flowElement.getValue();
+				nodeActors.add(actorReferenceService.getActorReference(
+						IdService.getUniqueFlowNodeId(clientId, process, subProcesses, flowNode)));
+				if (flowNode instanceof TSubProcess) {
+					List<TSubProcess> nestedSubProcesses = new ArrayList<TSubProcess>(subProcesses);
+					nestedSubProcesses.add((TSubProcess) flowNode);
+					this.addNodeActors(nodeActors, nestedSubProcesses, ((TSubProcess) flowNode).getFlowElement());
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the id of the first start event of a process.
+	 *
+	 * @param process the process
+	 * @return the start event id
+	 */
+	private static String getFirstStartEventId(TProcess process) {
+		for (JAXBElement<? extends TFlowElement> flowElement : process.getFlowElement()) {
+			if (flowElement.getValue() instanceof TStartEvent) {
+				return flowElement.getValue().getId();
+			}
+		}
+		throw new IllegalArgumentException(String.format("Process %s has no start event.", process.getId()));
+	}
+	
+	File getProcessDefinition() {
+		return processDefinition;
+	}
+
+	String getStartEventId() {
+		return startEventId;
+	}
+
+	String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+}
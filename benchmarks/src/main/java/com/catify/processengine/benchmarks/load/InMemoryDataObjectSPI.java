@@ -0,0 +1,60 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.catify.processengine.core.data.dataobjects.DataObjectSPI;
+
+/**
+ * Keeps data objects in memory, so load runs measure the engine and not a data store. 
+ * It is registered under the id of the default (jpa) provider, so the engine uses it 
+ * without configuration changes.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class InMemoryDataObjectSPI extends DataObjectSPI {
+
+	private final ConcurrentMap<String, Object> objects = new ConcurrentHashMap<String, Object>();
+	
+	public InMemoryDataObjectSPI() {
+		this.implementationId = "jpa-data-object";
+	}
+	
+	@Override
+	public void saveObject(String uniqueProcessId, String objectId,
+			String instanceId, Object dataObject) {
+		if (dataObject != null) {
+			objects.put(this.getObjectKey(uniqueProcessId, objectId, instanceId), dataObject);
+		}
+	}
+
+	@Override
+	public Object loadObject(String uniqueProcessId, String objectId,
+			String instanceId) {
+		return objects.get(this.getObjectKey(uniqueProcessId, objectId, instanceId));
+	}
+
+	@Override
+	public void deleteObject(String uniqueProcessId, String objectId,
+			String instanceId) {
+		objects.remove(this.getObjectKey(uniqueProcessId, objectId, instanceId));
+	}
+}
@@ -0,0 +1,119 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.catify.processengine.core.integration.IntegrationMessage;
+import com.catify.processengine.core.integration.MessageIntegrationSPI;
+import com.catify.processengine.core.processdefinition.jaxb.TMetaData;
+import com.catify.processengine.core.services.Admission;
+import com.catify.processengine.core.services.MessageDispatcherService;
+
+/**
+ * Message integration inside the load generator jvm for processes using the 
+ * 'integration_mock' prefix: sent messages are counted and dropped, request-reply 
+ * answers with the request payload and received messages go directly to the engine. 
+ * Messages rejected by the admission control of the engine are counted and dropped.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class InMemoryMessageIntegrationSPI extends MessageIntegrationSPI {
+
+	public static final String PREFIX = "integration_mock";
+	
+	private static final AtomicLong SENT_MESSAGES = new AtomicLong();
+	
+	private static final AtomicLong REJECTED_MESSAGES = new AtomicLong();
+	
+	private MessageDispatcherService messageDispatcherService;
+	
+	public InMemoryMessageIntegrationSPI() {
+		this.prefix = PREFIX;
+	}
+	
+	@Override
+	public void startSend(String uniqueFlowNodeId, String messageIntegrationString) {
+		// nothing to start
+	}
+
+	@Override
+	public void startReceive(String uniqueFlowNodeId, String messageIntegrationString, 
+			List<TMetaData> tMetaDatas) {
+		// nothing to start
+	}
+
+	@Override
+	public void startRequestReply(String uniqueFlowNodeId, String messageIntegrationString) {
+		// nothing to start
+	}
+
+	@Override
+	public boolean shutDownIntegrationImplementation(String uniqueFlowNodeId) {
+		return true;
+	}
+
+	@Override
+	public void send(IntegrationMessage integrationMessage) {
+		SENT_MESSAGES.incrementAndGet();
+	}
+
+	@Override
+	public synchronized Admission receive(IntegrationMessage integrationMessage, Map<String, Object> metaData) {
+		if (messageDispatcherService == null) {
+			messageDispatcherService = new MessageDispatcherService(this);
+		}
+		Admission admission = messageDispatcherService.dispatchToEngine(integrationMessage, metaData);
+		if (admission == Admission.REJECTED) {
+			REJECTED_MESSAGES.incrementAndGet();
+		}
+		return admission;
+	}
+	
+	@Override
+	public void rejected(IntegrationMessage integrationMessage) {
+		REJECTED_MESSAGES.incrementAndGet();
+	}
+
+	@Override
+	public Object requestReply(IntegrationMessage message) {
+		SENT_MESSAGES.incrementAndGet();
+		return message.getPayload();
+	}
+	
+	/**
+	 * Gets the number of messages sent by the engine through this provider.
+	 *
+	 * @return the number of sent messages
+	 */
+	public static long getSentMessages() {
+		return SENT_MESSAGES.get();
+	}
+	
+	/**
+	 * Gets the number of received messages rejected by the admission control of the engine.
+	 *
+	 * @return the number of rejected messages
+	 */
+	public static long getRejectedMessages() {
+		return REJECTED_MESSAGES.get();
+	}
+}
@@ -0,0 +1,129 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.catify.processengine.core.data.dataobjects.TimerBean;
+import com.catify.processengine.core.data.dataobjects.TimerSPI;
+import com.catify.processengine.core.util.Clock;
+
+/**
+ * Keeps timers in memory, one queue per timer event actor, ordered by their time to fire. 
+ * It is registered under the id of the default (jpa) provider, so the engine uses it without 
+ * configuration changes. Due timers are taken from the engine {@link Clock}, so the timers 
+ * follow a virtual clock in simulations.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class InMemoryTimerSPI extends TimerSPI {
+
+	private static final AtomicLong FIRED_TIMERS = new AtomicLong();
+	
+	private static final AtomicLong PENDING_TIMERS = new AtomicLong();
+	
+	private static final Comparator<TimerBean> TIME_TO_FIRE_ORDER = new Comparator<TimerBean>() {
+		@Override
+		public int compare(TimerBean first, TimerBean second) {
+			return first.getTimeToFire() < second.getTimeToFire() ? -1 
+					: first.getTimeToFire() == second.getTimeToFire() ? 0 : 1;
+		}
+	};
+	
+	private final ConcurrentMap<String, PriorityQueue<TimerBean>> timers = new ConcurrentHashMap<String, PriorityQueue<TimerBean>>();
+	
+	public InMemoryTimerSPI() {
+		this.implementationId = "jpa-timer";
+	}
+	
+	@Override
+	public void saveTimer(TimerBean timer) {
+		PriorityQueue<TimerBean> actorTimers = this.getTimers(timer.getActorRef());
+		synchronized (actorTimers) {
+			actorTimers.add(timer);
+		}
+		PENDING_TIMERS.incrementAndGet();
+	}
+
+	@Override
+	public List<TimerBean> loadDueTimers(String actorRef) {
+		List<TimerBean> dueTimers = new ArrayList<TimerBean>();
+		long now = Clock.getClock().currentTimeMillis();
+		PriorityQueue<TimerBean> actorTimers = this.getTimers(actorRef);
+		synchronized (actorTimers) {
+			while (!actorTimers.isEmpty() && actorTimers.peek().getTimeToFire() <= now) {
+				dueTimers.add(actorTimers.poll());
+			}
+		}
+		FIRED_TIMERS.addAndGet(dueTimers.size());
+		PENDING_TIMERS.addAndGet(-dueTimers.size());
+		return dueTimers;
+	}
+
+	@Override
+	public void deleteTimer(String actorRef, String processInstanceId) {
+		PriorityQueue<TimerBean> actorTimers = this.getTimers(actorRef);
+		synchronized (actorTimers) {
+			Iterator<TimerBean> it = actorTimers.iterator();
+			while (it.hasNext()) {
+				if (processInstanceId.equals(it.next().getProcessInstanceId())) {
+					it.remove();
+					PENDING_TIMERS.decrementAndGet();
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Gets the number of timers that have been due so far.
+	 *
+	 * @return the number of fired timers
+	 */
+	public static long getFiredTimers() {
+		return FIRED_TIMERS.get();
+	}
+	
+	/**
+	 * Gets the number of timers waiting to become due.
+	 *
+	 * @return the number of pending timers
+	 */
+	public static long getPendingTimers() {
+		return PENDING_TIMERS.get();
+	}
+	
+	private PriorityQueue<TimerBean> getTimers(String actorRef) {
+		PriorityQueue<TimerBean> actorTimers = timers.get(actorRef);
+		if (actorTimers == null) {
+			PriorityQueue<TimerBean> newTimers = new PriorityQueue<TimerBean>(11, TIME_TO_FIRE_ORDER);
+			actorTimers = timers.putIfAbsent(actorRef, newTimers);
+			if (actorTimers == null) {
+				actorTimers = newTimers;
+			}
+		}
+		return actorTimers;
+	}
+}
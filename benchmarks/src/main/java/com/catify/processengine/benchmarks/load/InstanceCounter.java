@@ -0,0 +1,153 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
+import com.catify.processengine.core.messages.ProcessInstanceStartMessage;
+import com.catify.processengine.core.util.Clock;
+
+/**
+ * Subscribed to the event stream of the actor system, the instance counter counts the 
+ * started and ended instances of a process, no matter if they have been started by a 
+ * client, a timer or a message. It keeps the highest number of running instances and the 
+ * (engine clock) time it has been reached at.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class InstanceCounter extends UntypedActor {
+
+	private final String uniqueProcessId;
+	
+	private final Counts counts;
+	
+	InstanceCounter(String uniqueProcessId, Counts counts) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.counts = counts;
+	}
+	
+	/**
+	 * Creates an instance counter and subscribes it to the process instance start and end messages.
+	 *
+	 * @param actorSystem the actor system
+	 * @param uniqueProcessId the unique process id of the counted process
+	 * @param counts the counts to update
+	 * @return the counter, to be stopped at the end of the run
+	 */
+	public static ActorRef subscribe(ActorSystem actorSystem, final String uniqueProcessId, final Counts counts) {
+		ActorRef counter = actorSystem.actorOf(new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new InstanceCounter(uniqueProcessId, counts);
+			}
+		}));
+		actorSystem.eventStream().subscribe(counter, ProcessInstanceStartMessage.class);
+		actorSystem.eventStream().subscribe(counter, ProcessInstanceEndMessage.class);
+		return counter;
+	}
+	
+	@Override
+	public void onReceive(Object message) throws Exception {
+		if (message instanceof ProcessInstanceStartMessage) {
+			if (uniqueProcessId.equals(((ProcessInstanceStartMessage) message).getUniqueProcessId())) {
+				counts.started();
+			}
+		} else if (message instanceof ProcessInstanceEndMessage) {
+			if (uniqueProcessId.equals(((ProcessInstanceEndMessage) message).getUniqueProcessId())) {
+				counts.ended();
+			}
+		} else {
+			unhandled(message);
+		}
+	}
+	
+	/**
+	 * The counts, updated by the counter actor and read by anyone.
+	 */
+	public static class Counts {
+		
+		private long started;
+		
+		private long ended;
+		
+		private long peakRunning;
+		
+		private long peakTime;
+		
+		private long intervalPeakRunning;
+		
+		synchronized void started() {
+			started++;
+			long running = this.getRunning();
+			if (running > peakRunning) {
+				peakRunning = running;
+				peakTime = Clock.getClock().currentTimeMillis();
+			}
+			intervalPeakRunning = Math.max(intervalPeakRunning, running);
+		}
+		
+		synchronized void ended() {
+			ended++;
+		}
+		
+		public synchronized long getStarted() {
+			return started;
+		}
+		
+		public synchronized long getEnded() {
+			return ended;
+		}
+		
+		public synchronized long getRunning() {
+			return started - ended;
+		}
+		
+		public synchronized long getPeakRunning() {
+			return peakRunning;
+		}
+		
+		/**
+		 * Gets the time the peak of running instances has been reached at.
+		 *
+		 * @return the time in millis of the engine clock
+		 */
+		public synchronized long getPeakTime() {
+			return peakTime;
+		}
+		
+		/**
+		 * Gets the highest number of running instances since the last call and starts 
+		 * the next interval with the currently running instances.
+		 *
+		 * @return the peak of running instances in the interval
+		 */
+		public synchronized long takeIntervalPeakRunning() {
+			long peak = Math.max(intervalPeakRunning, this.getRunning());
+			intervalPeakRunning = this.getRunning();
+			return peak;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.tooling.GlobalGraphOperations;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.benchmarks.BenchmarkRunner;
+import com.catify.processengine.benchmarks.EngineContext;
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
+import com.catify.processengine.core.metrics.Histogram;
+
+/**
+ * Drives a deployed process with a configurable arrival rate (open loop) or a fixed 
+ * number of outstanding instances (closed loop) inside one jvm with an in memory database 
+ * and in memory service providers. The end-to-end latency of an instance is taken from 
+ * its (intended) start until its end event publishes a {@link ProcessInstanceEndMessage}. 
+ * In an open loop the intended start is used, so a stalling engine does not hide its 
+ * queueing delay (coordinated omission). The results are written as a JSON report.
+ * <p>
+ * Options (all optional, except '--process'):
+ * <ul>
+ * <li>--process &lt;file&gt; the bpmn file, relative names are resolved in '--dir'</li>
+ * <li>--dir &lt;directory&gt; the directory of the bpmn files (default: src/test/resources/data)</li>
+ * <li>--startEvent &lt;id&gt; the start event to trigger (default: the first start event)</li>
+ * <li>--rate &lt;instances per second&gt; runs an open loop with this arrival rate</li>
+ * <li>--concurrency &lt;instances&gt; runs a closed loop with this many outstanding instances (default: 10)</li>
+ * <li>--instances &lt;count&gt; the number of process instances to start (default: 1000)</li>
+ * <li>--timeout &lt;seconds&gt; the time to wait for outstanding instances (default: 60)</li>
+ * <li>--report &lt;file&gt; the report file (default: load-report-&lt;process&gt;-&lt;timestamp&gt;.json)</li>
+ * <li>--client &lt;id&gt; the client id to deploy the process for (default: loadClient)</li>
+ * </ul>
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class LoadGenerator {
+
+	private LoadGenerator() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = parseOptions(args);
+		if (!options.containsKey("process")) {
+			System.err.println("usage: LoadGenerator --process <file> [--dir <directory>] [--startEvent <id>] "
+					+ "[--rate <instances per second> | --concurrency <instances>] [--instances <count>] "
+					+ "[--timeout <seconds>] [--report <file>] [--client <id>]");
+			System.exit(1);
+		}
+		
+		int exitCode;
+		try {
+			exitCode = run(options);
+		} finally {
+			EngineContext.close();
+		}
+		System.exit(exitCode);
+	}
+	
+	/**
+	 * Deploys the process, checks that one instance runs to its end, drives the load and 
+	 * writes the report.
+	 *
+	 * @param options the command line options
+	 * @return the exit code
+	 * @throws Exception the exception
+	 */
+	static int run(Map<String, String> options) throws Exception {
+		double rate = Double.parseDouble(getOption(options, "rate", "0"));
+		int concurrency = rate > 0 ? 0 : Integer.parseInt(getOption(options, "concurrency", "10"));
+		int instances = Integer.parseInt(getOption(options, "instances", "1000"));
+		long timeoutSeconds = Long.parseLong(getOption(options, "timeout", "60"));
+		
+		ActorSystem actorSystem = EngineContext.getBean(ActorSystem.class);
+		GraphDatabaseService graphDatabase = EngineContext.getBean(GraphDatabaseService.class);
+		
+		DeployedProcess process = DeployedProcess.deploy(options, "loadClient");
+		if (!process.awaitReady(actorSystem, timeoutSeconds)) {
+			return 2;
+		}
+		
+		long nodesBefore = countNodes(graphDatabase);
+		long relationshipsBefore = countRelationships(graphDatabase);
+		long messagesBefore = InMemoryMessageIntegrationSPI.getSentMessages();
+		
+		LoadRun loadRun = new LoadRun("load.latency", concurrency);
+		ActorRef listener = CompletionListener.subscribe(actorSystem, process.getUniqueProcessId(), loadRun);
+		
+		long startNanos = System.nanoTime();
+		long intervalNanos = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+		for (int i = 0; i < instances; i++) {
+			String processInstanceId = "load-" + i;
+			long intendedStart = System.nanoTime();
+			if (intervalNanos > 0) {
+				intendedStart = startNanos + i * intervalNanos;
+				long delay = intendedStart - System.nanoTime();
+				if (delay > 0) {
+					LockSupport.parkNanos(delay);
+				}
+			}
+			loadRun.started(processInstanceId, intendedStart);
+			process.start(processInstanceId);
+		}
+		long submittedNanos = System.nanoTime();
+		loadRun.awaitOutstanding(timeoutSeconds, TimeUnit.SECONDS);
+		long endNanos = System.nanoTime();
+		actorSystem.stop(listener);
+		
+		long nodesAfter = countNodes(graphDatabase);
+		long relationshipsAfter = countRelationships(graphDatabase);
+		
+		File report = new File(getOption(options, "report", String.format("load-report-%s-%s.json", 
+				process.getProcessDefinition().getName().replaceAll("\\.[^.]*$", ""), 
+				new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()))));
+		
+		Map<String, Object> values = new LinkedHashMap<String, Object>();
+		values.put("engineVersion", BenchmarkRunner.getEngineVersion());
+		values.put("process", process.getProcessDefinition().getName());
+		values.put("startEvent", process.getStartEventId());
+		values.put("mode", rate > 0 ? "open" : "closed");
+		values.put("rate", rate);
+		values.put("concurrency", concurrency);
+		values.put("instances", instances);
+		values.put("completed", loadRun.getCompleted());
+		values.put("timedOut", loadRun.getOutstanding());
+		values.put("submitSeconds", toSeconds(submittedNanos - startNanos));
+		values.put("durationSeconds", toSeconds(endNanos - startNanos));
+		values.put("throughput", loadRun.getCompleted() / toSeconds(endNanos - startNanos));
+		putLatencies(values, loadRun.getLatencies());
+		values.put("sentMessages", InMemoryMessageIntegrationSPI.getSentMessages() - messagesBefore);
+		values.put("nodesPerInstance", (double) (nodesAfter - nodesBefore) / instances);
+		values.put("relationshipsPerInstance", (double) (relationshipsAfter - relationshipsBefore) / instances);
+		writeReport(report, values);
+		
+		System.out.println(String.format("%s instances of %s completed (%s timed out), %.1f instances/s, "
+				+ "latency p50 %.2f ms, p99 %.2f ms, max %.2f ms. Report written to %s.", 
+				loadRun.getCompleted(), process.getProcessDefinition().getName(), loadRun.getOutstanding(), 
+				values.get("throughput"), values.get("latencyP50Millis"), values.get("latencyP99Millis"), 
+				values.get("latencyMaxMillis"), report.getAbsolutePath()));
+		
+		return loadRun.getOutstanding() == 0 ? 0 : 3;
+	}
+	
+	static long countNodes(GraphDatabaseService graphDatabase) {
+		long count = 0;
+		for (@SuppressWarnings("unused") Object node : GlobalGraphOperations.at(graphDatabase).getAllNodes()) {
+			count++;
+		}
+		return count;
+	}
+	
+	static long countRelationships(GraphDatabaseService graphDatabase) {
+		long count = 0;
+		for (@SuppressWarnings("unused") Object relationship : GlobalGraphOperations.at(graphDatabase).getAllRelationships()) {
+			count++;
+		}
+		return count;
+	}
+	
+	private static void putLatencies(Map<String, Object> values, Histogram latencies) {
+		values.put("latencyMeanMillis", latencies.getMean() / TimeUnit.MILLISECONDS.toNanos(1));
+		values.put("latencyP50Millis", toMillis(latencies.getP50()));
+		values.put("latencyP90Millis", toMillis(latencies.getP90()));
+		values.put("latencyP99Millis", toMillis(latencies.getP99()));
+		values.put("latencyP999Millis", toMillis(latencies.getP999()));
+		values.put("latencyMaxMillis", toMillis(latencies.getMax()));
+	}
+	
+	static double toMillis(long nanos) {
+		return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+	
+	static double toSeconds(long nanos) {
+		return (double) nanos / TimeUnit.SECONDS.toNanos(1);
+	}
+	
+	/**
+	 * Writes the report values as a flat JSON object.
+	 *
+	 * @param report the report file
+	 * @param values the values
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static void writeReport(File report, Map<String, Object> values) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(report), "UTF-8");
+		try {
+			writer.write("{\n");
+			int i = 0;
+			for (Map.Entry<String, Object> value : values.entrySet()) {
+				writer.write(String.format("  \"%s\": %s%s\n", value.getKey(), toJson(value.getValue()), 
+						++i < values.size() ? "," : ""));
+			}
+			writer.write("}\n");
+		} finally {
+			writer.close();
+		}
+	}
+	
+	private static String toJson(Object value) {
+		if (value instanceof Number) {
+			double number = ((Number) value).doubleValue();
+			return Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString();
+		}
+		return "\"" + String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+	}
+	
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+			}
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		return options;
+	}
+	
+	static String getOption(Map<String, String> options, String name, String defaultValue) {
+		String value = options.get(name);
+		return value == null ? defaultValue : value;
+	}
+}
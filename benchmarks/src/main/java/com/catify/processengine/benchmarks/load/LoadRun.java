@@ -0,0 +1,131 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.catify.processengine.core.metrics.Histogram;
+
+/**
+ * Book keeping of one load run: the start times of outstanding process instances, the 
+ * end-to-end latencies of the completed ones and the permits of a closed loop run.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class LoadRun {
+
+	private final ConcurrentMap<String, Long> outstanding = new ConcurrentHashMap<String, Long>();
+	
+	private final Histogram latencies;
+	
+	private final AtomicLong completed = new AtomicLong();
+	
+	private final Semaphore permits;
+	
+	private final Object completionLock = new Object();
+	
+	/**
+	 * Instantiates a new load run.
+	 *
+	 * @param name the name of the latency histogram
+	 * @param concurrency the maximum number of outstanding instances (closed loop) 
+	 * or zero for an unlimited number (open loop)
+	 */
+	public LoadRun(String name, int concurrency) {
+		this.latencies = new Histogram(name);
+		this.permits = concurrency > 0 ? new Semaphore(concurrency) : null;
+	}
+	
+	/**
+	 * Registers a process instance that is about to be started. A closed loop run blocks 
+	 * here until one of the outstanding instances has completed.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @param startNanos the (intended) start time in nanos
+	 * @throws InterruptedException if interrupted while waiting for a permit
+	 */
+	public void started(String processInstanceId, long startNanos) throws InterruptedException {
+		if (permits != null) {
+			permits.acquire();
+		}
+		outstanding.put(processInstanceId, startNanos);
+	}
+	
+	/**
+	 * Records the completion of a process instance. Instances not started by this run 
+	 * are ignored.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @param endNanos the end time in nanos
+	 * @return true, if the instance was started by this run
+	 */
+	boolean completed(String processInstanceId, long endNanos) {
+		Long startNanos = outstanding.remove(processInstanceId);
+		if (startNanos == null) {
+			return false;
+		}
+		latencies.record(endNanos - startNanos);
+		completed.incrementAndGet();
+		if (permits != null) {
+			permits.release();
+		}
+		synchronized (completionLock) {
+			completionLock.notifyAll();
+		}
+		return true;
+	}
+	
+	/**
+	 * Waits until all outstanding instances have completed or the timeout has elapsed.
+	 *
+	 * @param timeout the timeout
+	 * @param unit the unit of the timeout
+	 * @return true, if all instances have completed
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean awaitOutstanding(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+		synchronized (completionLock) {
+			while (!outstanding.isEmpty()) {
+				long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+				if (remainingMillis <= 0) {
+					return false;
+				}
+				completionLock.wait(remainingMillis);
+			}
+		}
+		return true;
+	}
+	
+	public Histogram getLatencies() {
+		return latencies;
+	}
+
+	public long getCompleted() {
+		return completed.get();
+	}
+
+	public int getOutstanding() {
+		return outstanding.size();
+	}
+}
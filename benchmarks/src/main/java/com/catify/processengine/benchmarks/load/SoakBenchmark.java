@@ -0,0 +1,393 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.load;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.io.FileUtils;
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.benchmarks.BenchmarkRunner;
+import com.catify.processengine.benchmarks.EngineContext;
+import com.catify.processengine.benchmarks.load.CompletionListener.Cleansing;
+import com.catify.processengine.core.CoreActors;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+
+/**
+ * Runs a process at a fixed arrival rate for hours and samples the engine at a fixed 
+ * interval: throughput and end-to-end latency of the interval, latency of the repository 
+ * queries, size of the graph, heap and garbage collection, and the archive and deletion 
+ * batches of the process instance cleansing. Each sample is one line of a CSV report, 
+ * written as soon as it is taken; the points where archiving or deletion (re-)start are 
+ * marked. Comparing the reports of two engine versions shows whether throughput decays 
+ * faster as the store fills.
+ * <p>
+ * Options (all optional, except '--process'):
+ * <ul>
+ * <li>--process, --dir, --startEvent, --client as for the {@link LoadGenerator}</li>
+ * <li>--rate &lt;instances per second&gt; the arrival rate (default: 20)</li>
+ * <li>--duration &lt;minutes&gt; the duration of the run (default: 240)</li>
+ * <li>--interval &lt;seconds&gt; the sample interval (default: 60)</li>
+ * <li>--cleansing archive|delete|none what to do with ended instances (default: archive)</li>
+ * <li>--store &lt;directory&gt;|memory the store directory of the database, the size of its files is 
+ * reported for each sample; 'memory' runs on the in memory database of the other benchmarks 
+ * (default: soak-store-&lt;timestamp&gt;)</li>
+ * <li>--countStore true|false count the nodes and relationships of the graph for each sample, this 
+ * reads the whole graph and slows the engine down as the store grows (default: false)</li>
+ * <li>--maxOutstanding &lt;instances&gt; aborts the run when the engine falls that far behind (default: 10000)</li>
+ * <li>--timeout &lt;seconds&gt; the time to wait for outstanding instances at the end (default: 60)</li>
+ * <li>--report &lt;file&gt; the report file (default: soak-&lt;version&gt;-&lt;process&gt;-&lt;timestamp&gt;.csv)</li>
+ * </ul>
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class SoakBenchmark {
+
+	static final String COLUMNS = "time,elapsedSeconds,started,completed,outstanding,throughput,"
+			+ "latencyP50Millis,latencyP99Millis,latencyMaxMillis,queries,queryP50Millis,queryP99Millis,"
+			+ "storeNodes,storeRelationships,storeMegabytes,heapUsedMegabytes,gcCount,gcMillis,"
+			+ "archiveBatches,deleteBatches,cleansingP99Millis,marker";
+	
+	/** The '--store' value of the in memory database. */
+	static final String MEMORY_STORE = "memory";
+	
+	private SoakBenchmark() {
+	}
+	
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = LoadGenerator.parseOptions(args);
+		if (!options.containsKey("process")) {
+			System.err.println("usage: SoakBenchmark --process <file> [--dir <directory>] [--startEvent <id>] "
+					+ "[--rate <instances per second>] [--duration <minutes>] [--interval <seconds>] "
+					+ "[--cleansing archive|delete|none] [--store <directory>|memory] [--countStore true|false] "
+					+ "[--maxOutstanding <instances>] "
+					+ "[--timeout <seconds>] [--report <file>] [--client <id>]");
+			System.exit(1);
+		}
+		
+		int exitCode;
+		try {
+			exitCode = run(options);
+		} finally {
+			EngineContext.close();
+		}
+		System.exit(exitCode);
+	}
+	
+	/**
+	 * Deploys the process, checks that one instance runs to its end and drives the load 
+	 * while sampling.
+	 *
+	 * @param options the command line options
+	 * @return the exit code
+	 * @throws Exception the exception
+	 */
+	static int run(Map<String, String> options) throws Exception {
+		double rate = Double.parseDouble(LoadGenerator.getOption(options, "rate", "20"));
+		long durationNanos = TimeUnit.MINUTES.toNanos(Long.parseLong(LoadGenerator.getOption(options, "duration", "240")));
+		long intervalSeconds = Long.parseLong(LoadGenerator.getOption(options, "interval", "60"));
+		Cleansing cleansing = Cleansing.valueOf(LoadGenerator.getOption(options, "cleansing", "archive").toUpperCase(Locale.ENGLISH));
+		boolean countStore = Boolean.parseBoolean(LoadGenerator.getOption(options, "countStore", "false"));
+		int maxOutstanding = Integer.parseInt(LoadGenerator.getOption(options, "maxOutstanding", "10000"));
+		long timeoutSeconds = Long.parseLong(LoadGenerator.getOption(options, "timeout", "60"));
+		
+		String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+		String store = LoadGenerator.getOption(options, "store", "soak-store-" + timestamp);
+		File storeDirectory = null;
+		if (!MEMORY_STORE.equals(store)) {
+			storeDirectory = new File(store);
+			EngineContext.setStoreDirectory(storeDirectory);
+		}
+		
+		ActorSystem actorSystem = EngineContext.getBean(ActorSystem.class);
+		GraphDatabaseService graphDatabase = EngineContext.getBean(GraphDatabaseService.class);
+		ActorRef cleansingActor = EngineContext.getBean(CoreActors.class).getProcessInstanceCleansingActor();
+		
+		DeployedProcess process = DeployedProcess.deploy(options, "soakClient");
+		if (!process.awaitReady(actorSystem, timeoutSeconds)) {
+			return 2;
+		}
+		
+		String processName = process.getProcessDefinition().getName();
+		File reportFile = new File(LoadGenerator.getOption(options, "report", String.format("soak-%s-%s-%s.csv", 
+				BenchmarkRunner.getEngineVersion(), processName.replaceAll("\\.[^.]*$", ""), timestamp)));
+		PrintWriter report = new PrintWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+		report.println(String.format("# engineVersion=%s process=%s rate=%s cleansing=%s interval=%ss store=%s", 
+				BenchmarkRunner.getEngineVersion(), processName, rate, cleansing.name().toLowerCase(Locale.ENGLISH), intervalSeconds, 
+				storeDirectory == null ? MEMORY_STORE : storeDirectory.getAbsolutePath()));
+		report.println(COLUMNS);
+		report.flush();
+		
+		LoadRun loadRun = new LoadRun("soak.latency", 0);
+		ActorRef listener = CompletionListener.subscribe(actorSystem, process.getUniqueProcessId(), loadRun, 
+				cleansing, cleansingActor);
+		
+		long startNanos = System.nanoTime();
+		Sampler sampler = new Sampler(loadRun, graphDatabase, countStore, storeDirectory, report, startNanos);
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+		scheduler.scheduleAtFixedRate(sampler, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+		
+		boolean aborted = false;
+		long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+		try {
+			for (long i = 0; ; i++) {
+				// open loop: the latency is taken from the intended start
+				long intendedStart = startNanos + i * intervalNanos;
+				if (intendedStart - startNanos >= durationNanos) {
+					break;
+				}
+				long delay = intendedStart - System.nanoTime();
+				if (delay > 0) {
+					LockSupport.parkNanos(delay);
+				}
+				if (loadRun.getOutstanding() >= maxOutstanding) {
+					System.err.println(String.format("Aborting after %.0f seconds: %s instances outstanding, the engine "
+							+ "cannot sustain %s instances/s any more.", LoadGenerator.toSeconds(System.nanoTime() - startNanos), 
+							loadRun.getOutstanding(), rate));
+					aborted = true;
+					break;
+				}
+				String processInstanceId = "soak-" + i;
+				loadRun.started(processInstanceId, intendedStart);
+				sampler.incrementStarted();
+				process.start(processInstanceId);
+			}
+			loadRun.awaitOutstanding(timeoutSeconds, TimeUnit.SECONDS);
+		} finally {
+			scheduler.shutdownNow();
+			scheduler.awaitTermination(timeoutSeconds, TimeUnit.SECONDS);
+			sampler.run();
+			report.close();
+			actorSystem.stop(listener);
+		}
+		
+		System.out.println(String.format("%s instances of %s completed (%s outstanding). Throughput %.1f instances/s "
+				+ "in the first and %.1f instances/s in the last interval. Report written to %s.", 
+				loadRun.getCompleted(), processName, loadRun.getOutstanding(), sampler.getFirstThroughput(), 
+				sampler.getLastFullThroughput(), reportFile.getAbsolutePath()));
+		
+		return aborted ? 4 : loadRun.getOutstanding() == 0 ? 0 : 3;
+	}
+	
+	/**
+	 * Takes one sample per interval and writes it to the report. The histograms of the 
+	 * engine are cumulative, so each sample subtracts the snapshot of the previous one.
+	 */
+	static class Sampler implements Runnable {
+		
+		private final LoadRun loadRun;
+		
+		private final GraphDatabaseService graphDatabase;
+		
+		private final boolean countStore;
+		
+		/** The store directory of the database (null for the in memory database). */
+		private final File storeDirectory;
+		
+		private final PrintWriter report;
+		
+		private final long startNanos;
+		
+		private volatile long started;
+		
+		private long lastNanos;
+		
+		private long lastCompleted;
+		
+		private Histogram lastLatencies;
+		
+		private Histogram lastQueries;
+		
+		private Histogram lastArchives;
+		
+		private Histogram lastDeletions;
+		
+		private long lastGcCount;
+		
+		private long lastGcMillis;
+		
+		private boolean archiving;
+		
+		private boolean deleting;
+		
+		private double firstThroughput = -1;
+		
+		private double lastFullThroughput;
+		
+		Sampler(LoadRun loadRun, GraphDatabaseService graphDatabase, boolean countStore, File storeDirectory, 
+				PrintWriter report, long startNanos) {
+			this.loadRun = loadRun;
+			this.graphDatabase = graphDatabase;
+			this.countStore = countStore;
+			this.storeDirectory = storeDirectory;
+			this.report = report;
+			this.startNanos = startNanos;
+			this.lastNanos = startNanos;
+			this.lastLatencies = loadRun.getLatencies().snapshot();
+			this.lastQueries = getQueryHistogram();
+			this.lastArchives = getArchiveHistogram().snapshot();
+			this.lastDeletions = getDeleteHistogram().snapshot();
+			this.lastGcCount = getGcCount();
+			this.lastGcMillis = getGcMillis();
+		}
+		
+		void incrementStarted() {
+			started++;
+		}
+		
+		@Override
+		public synchronized void run() {
+			try {
+				this.sample();
+			} catch (RuntimeException e) {
+				// a failing sample must not end the run
+				System.err.println("Sampling failed: " + e);
+			}
+		}
+		
+		private void sample() {
+			long now = System.nanoTime();
+			double seconds = LoadGenerator.toSeconds(now - lastNanos);
+			if (seconds <= 0) {
+				return;
+			}
+			
+			long completed = loadRun.getCompleted();
+			Histogram latencies = loadRun.getLatencies().snapshot();
+			Histogram intervalLatencies = latencies.minus(lastLatencies);
+			Histogram queries = getQueryHistogram();
+			Histogram intervalQueries = queries.minus(lastQueries);
+			Histogram archives = getArchiveHistogram().snapshot();
+			Histogram intervalArchives = archives.minus(lastArchives);
+			Histogram deletions = getDeleteHistogram().snapshot();
+			Histogram intervalDeletions = deletions.minus(lastDeletions);
+			Histogram intervalCleansing = new Histogram("cleansing");
+			intervalCleansing.add(intervalArchives);
+			intervalCleansing.add(intervalDeletions);
+			long gcCount = getGcCount();
+			long gcMillis = getGcMillis();
+			
+			double throughput = (completed - lastCompleted) / seconds;
+			if (firstThroughput < 0) {
+				firstThroughput = throughput;
+			}
+			if (seconds >= 1) {
+				lastFullThroughput = throughput;
+			}
+			
+			// mark where archiving and deletion start, or start again after a pause
+			StringBuilder marker = new StringBuilder();
+			if (intervalArchives.getCount() > 0 && !archiving) {
+				marker.append("archive started");
+			}
+			if (intervalDeletions.getCount() > 0 && !deleting) {
+				marker.append(marker.length() > 0 ? "; " : "").append("deletion started");
+			}
+			archiving = intervalArchives.getCount() > 0;
+			deleting = intervalDeletions.getCount() > 0;
+			
+			long storeNodes = countStore ? LoadGenerator.countNodes(graphDatabase) : -1;
+			long storeRelationships = countStore ? LoadGenerator.countRelationships(graphDatabase) : -1;
+			double storeMegabytes = storeDirectory != null && storeDirectory.exists() 
+					? FileUtils.sizeOfDirectory(storeDirectory) / (1024.0 * 1024.0) : -1;
+			
+			report.println(String.format(Locale.ENGLISH, "%s,%.0f,%s,%s,%s,%.2f,%.3f,%.3f,%.3f,%s,%.3f,%.3f,%s,%s,%.1f,%s,%s,%s,%s,%s,%.3f,%s", 
+					new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss").format(new Date()), 
+					LoadGenerator.toSeconds(now - startNanos), started, completed, loadRun.getOutstanding(), throughput, 
+					LoadGenerator.toMillis(intervalLatencies.getP50()), LoadGenerator.toMillis(intervalLatencies.getP99()), 
+					LoadGenerator.toMillis(intervalLatencies.getMax()), intervalQueries.getCount(), 
+					LoadGenerator.toMillis(intervalQueries.getP50()), LoadGenerator.toMillis(intervalQueries.getP99()), 
+					storeNodes, storeRelationships, storeMegabytes, 
+					ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024), 
+					gcCount - lastGcCount, gcMillis - lastGcMillis, 
+					intervalArchives.getCount(), intervalDeletions.getCount(), 
+					LoadGenerator.toMillis(intervalCleansing.getP99()), marker));
+			report.flush();
+			
+			lastNanos = now;
+			lastCompleted = completed;
+			lastLatencies = latencies;
+			lastQueries = queries;
+			lastArchives = archives;
+			lastDeletions = deletions;
+			lastGcCount = gcCount;
+			lastGcMillis = gcMillis;
+		}
+		
+		double getFirstThroughput() {
+			return firstThroughput;
+		}
+
+		double getLastFullThroughput() {
+			return lastFullThroughput;
+		}
+		
+		/**
+		 * Sums up the histograms of all repository queries.
+		 */
+		private static Histogram getQueryHistogram() {
+			Histogram queries = new Histogram("repository");
+			for (Histogram histogram : MetricsRegistry.getHistograms().subMap("repository.", "repository/").values()) {
+				queries.add(histogram);
+			}
+			return queries;
+		}
+		
+		private static Histogram getArchiveHistogram() {
+			return MetricsRegistry.getHistogram("cleansing.archiveBatch");
+		}
+		
+		private static Histogram getDeleteHistogram() {
+			return MetricsRegistry.getHistogram("cleansing.deleteBatch");
+		}
+		
+		private static long getGcCount() {
+			long count = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, gc.getCollectionCount());
+			}
+			return count;
+		}
+		
+		private static long getGcMillis() {
+			long millis = 0;
+			for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				millis += Math.max(0, gc.getCollectionTime());
+			}
+			return millis;
+		}
+	}
+}
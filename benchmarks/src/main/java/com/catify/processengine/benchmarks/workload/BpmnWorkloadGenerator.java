@@ -0,0 +1,440 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.workload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic BPMN 2.0 processes (with the catify extensions) of a given 
+ * {@link WorkloadShape}. The processes are block structured: every split gateway has a 
+ * matching join and every sub-process has its own start and end event, so each 
+ * generated process is sound and deployable with the ProcessManagementServiceImpl. 
+ * Tasks are 'integration_mock' send tasks or throw events, catching message events use 
+ * the 'integration_mock' prefix as well. The same shape and seed always generate the same 
+ * process.
+ * <p>
+ * Run as a program it writes the processes of all (or the given) predefined shapes:
+ * 'BpmnWorkloadGenerator &lt;directory&gt; [&lt;flow node count&gt;] [&lt;shape&gt;...]'
+ * 
+ * @author christopher köster
+ * 
+ */
+public class BpmnWorkloadGenerator {
+
+	/** The id of the start event of every generated process. */
+	public static final String START_EVENT_ID = "startEvent";
+	
+	private static final String INTEGRATION_PREFIX = "integration_mock";
+	
+	private final WorkloadShape shape;
+	
+	private Random random;
+	
+	private int idCounter;
+	
+	private int flowNodeCounter;
+	
+	public BpmnWorkloadGenerator(WorkloadShape shape) {
+		this.shape = shape;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("usage: BpmnWorkloadGenerator <directory> [<flow node count>] [<shape>...]");
+			System.exit(1);
+		}
+		File directory = new File(args[0]);
+		int flowNodeCount = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		String[] shapes = WorkloadShape.PRESETS;
+		if (args.length > 2) {
+			shapes = new String[args.length - 2];
+			System.arraycopy(args, 2, shapes, 0, shapes.length);
+		}
+		
+		directory.mkdirs();
+		for (String name : shapes) {
+			String processId = String.format("workload_%s_%s", name, flowNodeCount);
+			File file = new File(directory, processId + ".bpmn");
+			new BpmnWorkloadGenerator(WorkloadShape.preset(name, flowNodeCount)).write(processId, file);
+			System.out.println(String.format("Generated %s", file.getPath()));
+		}
+	}
+	
+	/**
+	 * Generates a process and writes it to a file.
+	 *
+	 * @param processId the process id
+	 * @param file the file
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(String processId, File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			writer.write(this.generate(processId));
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Generates a process.
+	 *
+	 * @param processId the process id (a valid xml id)
+	 * @return the process definition xml
+	 */
+	public String generate(String processId) {
+		this.random = new Random(shape.getSeed());
+		this.idCounter = 0;
+		this.flowNodeCounter = 0;
+		
+		Scope process = new Scope();
+		Node start = process.add(new Node("startEvent", START_EVENT_ID, "Start Event", false));
+		start.attributes = " isInterrupting=\"true\" parallelMultiple=\"false\"";
+		Node last = this.generateSequence(process, start, Math.max(1, shape.getFlowNodeCount() - 2), 0);
+		process.connect(last, process.add(new Node("endEvent", "endEvent", "End Event")));
+		
+		StringBuilder xml = new StringBuilder();
+		xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>\n");
+		xml.append("<definitions xmlns=\"http://www.omg.org/spec/BPMN/20100524/MODEL\"\n");
+		xml.append("\txmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n");
+		xml.append("\txmlns:catify=\"http://www.catify.com/processengine/core/processdefinition\"\n");
+		xml.append("\texporter=\"catify workload generator\" exporterVersion=\"1.0\"\n");
+		xml.append("\texpressionLanguage=\"http://www.w3.org/1999/XPath\" id=\"definitions_").append(processId).append("\"\n");
+		xml.append("\tname=\"\" targetNamespace=\"http://www.catify.com/processengine/workload\"\n");
+		xml.append("\ttypeLanguage=\"http://www.w3.org/2001/XMLSchema\"\n");
+		xml.append("\txsi:schemaLocation=\"http://www.omg.org/spec/BPMN/20100524/MODEL http://bpmn.sourceforge.net/schemas/BPMN20.xsd\">\n");
+		xml.append("\t<!-- ").append(shape.toString().replace("--", "- -")).append(" -->\n");
+		xml.append("\t<process id=\"").append(processId).append("\" isClosed=\"false\" isExecutable=\"true\" processType=\"Private\">\n");
+		xml.append("\t\t<extensionElements>\n");
+		xml.append("\t\t\t<catify:version id=\"VERSION_ID\" version=\"workload\" />\n");
+		xml.append("\t\t</extensionElements>\n");
+		process.render(xml, "\t\t");
+		xml.append("\t</process>\n");
+		xml.append("</definitions>\n");
+		return xml.toString();
+	}
+	
+	/**
+	 * Gets the number of flow nodes of the last generated process (including the nodes 
+	 * inside sub-processes).
+	 *
+	 * @return the flow node count
+	 */
+	public int getFlowNodeCount() {
+		return flowNodeCounter;
+	}
+	
+	/**
+	 * Generates a sequence of segments (tasks, catch events, gateway blocks and 
+	 * sub-processes) after a given node.
+	 *
+	 * @param scope the scope to add the nodes to
+	 * @param previous the node to start from
+	 * @param budget the number of flow nodes to generate
+	 * @param depth the sub-process nesting depth of the scope
+	 * @return the last node of the sequence
+	 */
+	private Node generateSequence(Scope scope, Node previous, int budget, int depth) {
+		while (budget > 0) {
+			double draw = random.nextDouble();
+			int used;
+			Node last;
+			
+			if ((draw -= shape.getGatewayRatio()) < 0 && budget >= 2 + shape.getBranchingFactor() 
+					&& this.getGatewayWeight() > 0) {
+				used = this.getBlockSize(budget, 2 + shape.getBranchingFactor());
+				last = this.generateGatewayBlock(scope, previous, used, depth);
+			} else if ((draw -= shape.getSubProcessRatio()) < 0 && budget >= 4 && depth < shape.getMaxDepth()) {
+				used = this.getBlockSize(budget, 4);
+				last = this.generateSubProcess(scope, previous, used, depth);
+			} else if ((draw -= shape.getTimerRatio()) < 0) {
+				used = 1;
+				last = scope.add(this.createTimerCatchEvent());
+				scope.connect(previous, last);
+			} else if ((draw -= shape.getMessageCatchRatio()) < 0) {
+				used = 1;
+				last = scope.add(this.createMessageCatchEvent());
+				scope.connect(previous, last);
+			} else {
+				used = 1;
+				last = scope.add(this.createTask());
+				scope.connect(previous, last);
+			}
+			
+			budget -= used;
+			previous = last;
+		}
+		return previous;
+	}
+	
+	/**
+	 * Gets a random block size between the minimum size and the remaining budget, 
+	 * preferring smaller blocks so a sequence holds more than one block.
+	 */
+	private int getBlockSize(int budget, int minimum) {
+		int spare = budget - minimum;
+		return minimum + (spare > 0 ? random.nextInt(spare / 2 + 1) : 0);
+	}
+	
+	private int getGatewayWeight() {
+		return shape.getExclusiveWeight() + shape.getParallelWeight() 
+				+ shape.getComplexWeight() + shape.getEventBasedWeight();
+	}
+	
+	/**
+	 * Generates a split gateway, its branches and the matching join gateway.
+	 */
+	private Node generateGatewayBlock(Scope scope, Node previous, int size, int depth) {
+		int branches = shape.getBranchingFactor();
+		int draw = random.nextInt(this.getGatewayWeight());
+		
+		// event based gateways are followed by catch events only, the timer event wins
+		if ((draw -= shape.getExclusiveWeight() + shape.getParallelWeight() + shape.getComplexWeight()) >= 0) {
+			Node split = scope.add(new Node("eventBasedGateway", "eventBasedGateway", "Event Based Gateway"));
+			scope.connect(previous, split);
+			Node join = this.createExclusiveJoin();
+			for (int i = 0; i < branches; i++) {
+				Node catchEvent = scope.add(i == 0 ? this.createTimerCatchEvent() : this.createMessageCatchEvent());
+				scope.connect(split, catchEvent);
+				scope.connect(catchEvent, join);
+			}
+			scope.add(join);
+			return this.generateSequence(scope, join, size - 2 - branches, depth);
+		}
+		
+		Node split;
+		Node join;
+		draw += shape.getComplexWeight() + shape.getParallelWeight() + shape.getExclusiveWeight();
+		if ((draw -= shape.getExclusiveWeight()) < 0) {
+			split = new Node("exclusiveGateway", "exclusiveGateway", "Exclusive Gateway");
+			join = this.createExclusiveJoin();
+		} else if ((draw -= shape.getParallelWeight()) < 0) {
+			split = new Node("parallelGateway", "parallelGateway", "Parallel Gateway");
+			join = new Node("parallelGateway", "parallelGateway", "Parallel Gateway");
+		} else {
+			split = new Node("parallelGateway", "parallelGateway", "Parallel Gateway");
+			join = new Node("complexGateway", "complexGateway", "Complex Gateway");
+			int count = shape.getComplexJoinCount() > 0 ? Math.min(shape.getComplexJoinCount(), branches) : branches;
+			join.extensions = String.format("<catify:nOfM count=\"%s\" />", count);
+			join.tail = String.format("<activationCondition>%s</activationCondition>", count);
+		}
+		split.attributes = join.attributes = " gatewayDirection=\"Unspecified\"";
+		scope.add(split);
+		scope.connect(previous, split);
+		
+		// exactly one branch of an exclusive split is taken
+		int takenBranch = random.nextInt(branches);
+		int branchBudget = size - 2;
+		List<Node> branchEnds = new ArrayList<Node>();
+		for (int i = 0; i < branches; i++) {
+			int budget = branchBudget / branches + (i < branchBudget % branches ? 1 : 0);
+			Node first = scope.add(this.createTask());
+			Flow flow = scope.connect(split, first);
+			if (split.element.equals("exclusiveGateway")) {
+				flow.condition = i == takenBranch ? "1 == 1" : "1 == 2";
+			}
+			branchEnds.add(this.generateSequence(scope, first, budget - 1, depth));
+		}
+		scope.add(join);
+		for (Node branchEnd : branchEnds) {
+			scope.connect(branchEnd, join);
+		}
+		return join;
+	}
+	
+	/**
+	 * Generates a sub-process with its own start and end event.
+	 */
+	private Node generateSubProcess(Scope scope, Node previous, int size, int depth) {
+		Node subProcess = scope.add(new Node("subProcess", "subProcess", "Sub-Process"));
+		subProcess.attributes = " completionQuantity=\"1\" isForCompensation=\"false\" startQuantity=\"1\" triggeredByEvent=\"false\"";
+		subProcess.scope = new Scope();
+		scope.connect(previous, subProcess);
+		
+		Node start = subProcess.scope.add(new Node("startEvent", "subStartEvent", "Start Event"));
+		start.attributes = " isInterrupting=\"true\" parallelMultiple=\"false\"";
+		Node last = this.generateSequence(subProcess.scope, start, size - 3, depth + 1);
+		subProcess.scope.connect(last, subProcess.scope.add(new Node("endEvent", "subEndEvent", "End Event")));
+		return subProcess;
+	}
+	
+	/**
+	 * Creates the join of an exclusive (or event based) gateway block. The engine takes 
+	 * the number of flows a gateway waits for from its declared incoming flows, so the join 
+	 * declares only one of them and is passed by the first (and only) arriving branch.
+	 */
+	private Node createExclusiveJoin() {
+		Node join = new Node("exclusiveGateway", "exclusiveGateway", "Exclusive Gateway");
+		join.attributes = " gatewayDirection=\"Unspecified\"";
+		join.declaredIncoming = 1;
+		return join;
+	}
+	
+	private Node createTask() {
+		if (random.nextDouble() < shape.getLoopRatio()) {
+			Node task = this.createSendTask();
+			task.tail = String.format("<standardLoopCharacteristics>\n\t<loopCondition><![CDATA[$LOOPCOUNTER < %s]]></loopCondition>\n</standardLoopCharacteristics>", 
+					shape.getLoopCount());
+			return task;
+		} else if (random.nextBoolean()) {
+			return this.createSendTask();
+		} else {
+			return new Node("intermediateThrowEvent", "throwEvent", "Intermediate Event");
+		}
+	}
+	
+	private Node createSendTask() {
+		Node task = new Node("sendTask", "sendTask", "Send Task");
+		task.attributes = " completionQuantity=\"1\" implementation=\"##WebService\" isForCompensation=\"false\" startQuantity=\"1\"";
+		task.extensions = String.format("<catify:messageIntegration prefix=\"%s\" integrationstring=\"workload:%s\" />", 
+				INTEGRATION_PREFIX, task.id);
+		return task;
+	}
+	
+	private Node createTimerCatchEvent() {
+		Node event = new Node("intermediateCatchEvent", "timerEvent", "Timer Event");
+		event.attributes = " parallelMultiple=\"false\"";
+		event.tail = String.format("<timerEventDefinition id=\"%s_ED_1\">\n\t<timeDuration><![CDATA[%s]]></timeDuration>\n</timerEventDefinition>", 
+				event.id, shape.getTimerDuration());
+		return event;
+	}
+	
+	private Node createMessageCatchEvent() {
+		Node event = new Node("intermediateCatchEvent", "catchEvent", "Message Event");
+		event.attributes = " parallelMultiple=\"false\"";
+		event.tail = String.format("<messageEventDefinition id=\"%s_ED_1\">\n\t<extensionElements>\n\t\t"
+				+ "<catify:messageIntegration prefix=\"%s\" integrationstring=\"workload:%s\" />\n\t</extensionElements>\n</messageEventDefinition>", 
+				event.id, INTEGRATION_PREFIX, event.id);
+		return event;
+	}
+	
+	/**
+	 * A flow node of the generated process.
+	 */
+	private class Node {
+		final String element;
+		final String id;
+		final String name;
+		String attributes = "";
+		String extensions;
+		String tail;
+		Scope scope;
+		int declaredIncoming = -1;
+		final List<String> incoming = new ArrayList<String>();
+		final List<String> outgoing = new ArrayList<String>();
+		
+		Node(String element, String idPrefix, String name) {
+			this(element, idPrefix, name, true);
+		}
+		
+		Node(String element, String id, String name, boolean numbered) {
+			this.element = element;
+			this.id = numbered ? id + (++idCounter) : id;
+			this.name = name;
+			flowNodeCounter++;
+		}
+		
+		void render(StringBuilder xml, String indent) {
+			xml.append(indent).append(String.format("<%s id=\"%s\" name=\"%s\"%s>\n", element, id, name, attributes));
+			String inner = indent + "\t";
+			if (extensions != null) {
+				xml.append(inner).append("<extensionElements>\n");
+				xml.append(inner).append("\t").append(extensions).append("\n");
+				xml.append(inner).append("</extensionElements>\n");
+			}
+			for (int i = 0; i < incoming.size() && (declaredIncoming < 0 || i < declaredIncoming); i++) {
+				xml.append(inner).append("<incoming>").append(incoming.get(i)).append("</incoming>\n");
+			}
+			for (String flowId : outgoing) {
+				xml.append(inner).append("<outgoing>").append(flowId).append("</outgoing>\n");
+			}
+			if (tail != null) {
+				xml.append(inner).append(tail.replace("\n", "\n" + inner)).append("\n");
+			}
+			if (scope != null) {
+				scope.render(xml, inner);
+			}
+			xml.append(indent).append(String.format("</%s>\n", element));
+		}
+	}
+	
+	/**
+	 * A sequence flow of the generated process.
+	 */
+	private static class Flow {
+		final String id;
+		final String sourceRef;
+		final String targetRef;
+		String condition;
+		
+		Flow(String id, String sourceRef, String targetRef) {
+			this.id = id;
+			this.sourceRef = sourceRef;
+			this.targetRef = targetRef;
+		}
+		
+		void render(StringBuilder xml, String indent) {
+			if (condition == null) {
+				xml.append(indent).append(String.format("<sequenceFlow id=\"%s\" sourceRef=\"%s\" targetRef=\"%s\" />\n", 
+						id, sourceRef, targetRef));
+			} else {
+				xml.append(indent).append(String.format("<sequenceFlow id=\"%s\" sourceRef=\"%s\" targetRef=\"%s\">\n", 
+						id, sourceRef, targetRef));
+				xml.append(indent).append(String.format("\t<conditionExpression><![CDATA[%s]]></conditionExpression>\n", condition));
+				xml.append(indent).append("</sequenceFlow>\n");
+			}
+		}
+	}
+	
+	/**
+	 * The flow nodes and sequence flows of a process or sub-process.
+	 */
+	private class Scope {
+		final List<Node> nodes = new ArrayList<Node>();
+		final List<Flow> flows = new ArrayList<Flow>();
+		
+		Node add(Node node) {
+			nodes.add(node);
+			return node;
+		}
+		
+		Flow connect(Node source, Node target) {
+			Flow flow = new Flow("sequenceFlow" + (++idCounter), source.id, target.id);
+			source.outgoing.add(flow.id);
+			target.incoming.add(flow.id);
+			flows.add(flow);
+			return flow;
+		}
+		
+		void render(StringBuilder xml, String indent) {
+			for (Node node : nodes) {
+				node.render(xml, indent);
+			}
+			for (Flow flow : flows) {
+				flow.render(xml, indent);
+			}
+		}
+	}
+}
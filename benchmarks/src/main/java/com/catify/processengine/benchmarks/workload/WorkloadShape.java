@@ -0,0 +1,271 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.benchmarks.workload;
+
+/**
+ * The parameters of a synthetic process generated by the {@link BpmnWorkloadGenerator}. 
+ * Ratios are probabilities per generated segment of a sequence, the gateway weights 
+ * choose the type of a gateway segment.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class WorkloadShape {
+
+	/** The names of the predefined shapes, see {@link #preset(String, int)}. */
+	public static final String[] PRESETS = {"sequence", "exclusive", "parallel", "complex", 
+		"eventBased", "loop", "timer", "nested", "mixed"};
+	
+	private int flowNodeCount = 50;
+	
+	private int maxDepth = 0;
+	
+	private int branchingFactor = 2;
+	
+	private double gatewayRatio = 0;
+	
+	private int exclusiveWeight = 1;
+	
+	private int parallelWeight = 1;
+	
+	private int complexWeight = 0;
+	
+	private int eventBasedWeight = 0;
+	
+	private int complexJoinCount = 0;
+	
+	private double subProcessRatio = 0;
+	
+	private double loopRatio = 0;
+	
+	private int loopCount = 3;
+	
+	private double timerRatio = 0;
+	
+	private String timerDuration = "PT1S";
+	
+	private double messageCatchRatio = 0;
+	
+	private long seed = 1;
+	
+	/**
+	 * Creates one of the predefined shapes. Apart from 'timer' and 'mixed' (timers) and 
+	 * the message catches (never predefined) all of them run to their end without 
+	 * waiting.
+	 *
+	 * @param name the name of the shape, one of {@link #PRESETS}
+	 * @param flowNodeCount the approximate number of flow nodes
+	 * @return the workload shape
+	 */
+	public static WorkloadShape preset(String name, int flowNodeCount) {
+		WorkloadShape shape = new WorkloadShape();
+		shape.setFlowNodeCount(flowNodeCount);
+		if ("sequence".equals(name)) {
+			// tasks and events only
+		} else if ("exclusive".equals(name)) {
+			shape.setGatewayRatio(0.3);
+			shape.setGatewayWeights(1, 0, 0, 0);
+			shape.setBranchingFactor(3);
+		} else if ("parallel".equals(name)) {
+			shape.setGatewayRatio(0.3);
+			shape.setGatewayWeights(0, 1, 0, 0);
+			shape.setBranchingFactor(3);
+		} else if ("complex".equals(name)) {
+			shape.setGatewayRatio(0.3);
+			shape.setGatewayWeights(0, 0, 1, 0);
+			shape.setBranchingFactor(3);
+		} else if ("eventBased".equals(name)) {
+			shape.setGatewayRatio(0.2);
+			shape.setGatewayWeights(0, 0, 0, 1);
+			shape.setTimerDuration("PT0S");
+		} else if ("loop".equals(name)) {
+			shape.setLoopRatio(0.5);
+		} else if ("timer".equals(name)) {
+			shape.setTimerRatio(0.1);
+			shape.setTimerDuration("PT0S");
+		} else if ("nested".equals(name)) {
+			shape.setMaxDepth(3);
+			shape.setSubProcessRatio(0.3);
+		} else if ("mixed".equals(name)) {
+			shape.setMaxDepth(2);
+			shape.setSubProcessRatio(0.1);
+			shape.setGatewayRatio(0.2);
+			shape.setGatewayWeights(2, 2, 1, 1);
+			shape.setBranchingFactor(3);
+			shape.setLoopRatio(0.1);
+			shape.setTimerRatio(0.02);
+			shape.setTimerDuration("PT0S");
+		} else {
+			throw new IllegalArgumentException(String.format("Unknown workload shape '%s'.", name));
+		}
+		return shape;
+	}
+	
+	/**
+	 * Sets the weights of the gateway types of gateway segments.
+	 *
+	 * @param exclusive the exclusive gateway weight
+	 * @param parallel the parallel gateway weight
+	 * @param complex the complex gateway weight
+	 * @param eventBased the event based gateway weight
+	 */
+	public void setGatewayWeights(int exclusive, int parallel, int complex, int eventBased) {
+		this.exclusiveWeight = exclusive;
+		this.parallelWeight = parallel;
+		this.complexWeight = complex;
+		this.eventBasedWeight = eventBased;
+	}
+	
+	public int getFlowNodeCount() {
+		return flowNodeCount;
+	}
+
+	public void setFlowNodeCount(int flowNodeCount) {
+		this.flowNodeCount = flowNodeCount;
+	}
+
+	public int getMaxDepth() {
+		return maxDepth;
+	}
+
+	public void setMaxDepth(int maxDepth) {
+		this.maxDepth = maxDepth;
+	}
+
+	public int getBranchingFactor() {
+		return branchingFactor;
+	}
+
+	public void setBranchingFactor(int branchingFactor) {
+		this.branchingFactor = Math.max(2, branchingFactor);
+	}
+
+	public double getGatewayRatio() {
+		return gatewayRatio;
+	}
+
+	public void setGatewayRatio(double gatewayRatio) {
+		this.gatewayRatio = gatewayRatio;
+	}
+
+	public int getExclusiveWeight() {
+		return exclusiveWeight;
+	}
+
+	public int getParallelWeight() {
+		return parallelWeight;
+	}
+
+	public int getComplexWeight() {
+		return complexWeight;
+	}
+
+	public int getEventBasedWeight() {
+		return eventBasedWeight;
+	}
+
+	public int getComplexJoinCount() {
+		return complexJoinCount;
+	}
+
+	/**
+	 * Sets the number of branches a complex gateway join waits for (n of m). Zero (the 
+	 * default) waits for all branches.
+	 *
+	 * @param complexJoinCount the complex join count
+	 */
+	public void setComplexJoinCount(int complexJoinCount) {
+		this.complexJoinCount = complexJoinCount;
+	}
+
+	public double getSubProcessRatio() {
+		return subProcessRatio;
+	}
+
+	public void setSubProcessRatio(double subProcessRatio) {
+		this.subProcessRatio = subProcessRatio;
+	}
+
+	public double getLoopRatio() {
+		return loopRatio;
+	}
+
+	public void setLoopRatio(double loopRatio) {
+		this.loopRatio = loopRatio;
+	}
+
+	public int getLoopCount() {
+		return loopCount;
+	}
+
+	public void setLoopCount(int loopCount) {
+		this.loopCount = loopCount;
+	}
+
+	public double getTimerRatio() {
+		return timerRatio;
+	}
+
+	public void setTimerRatio(double timerRatio) {
+		this.timerRatio = timerRatio;
+	}
+
+	public String getTimerDuration() {
+		return timerDuration;
+	}
+
+	/**
+	 * Sets the ISO 8601 duration of timer catch events (eg. 'PT1S').
+	 *
+	 * @param timerDuration the timer duration
+	 */
+	public void setTimerDuration(String timerDuration) {
+		this.timerDuration = timerDuration;
+	}
+
+	public double getMessageCatchRatio() {
+		return messageCatchRatio;
+	}
+
+	/**
+	 * Sets the ratio of message catch events. Instances of processes with message catch 
+	 * events wait for an 'integration_mock' message and do not run to their end on their own.
+	 *
+	 * @param messageCatchRatio the message catch ratio
+	 */
+	public void setMessageCatchRatio(double messageCatchRatio) {
+		this.messageCatchRatio = messageCatchRatio;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("nodes=%s, depth=%s, branching=%s, gateways=%s (x%s/+%s/*%s/e%s), subProcesses=%s, "
+				+ "loops=%s (%s), timers=%s (%s), messages=%s, seed=%s", 
+				flowNodeCount, maxDepth, branchingFactor, gatewayRatio, exclusiveWeight, parallelWeight, 
+				complexWeight, eventBasedWeight, subProcessRatio, loopRatio, loopCount, timerRatio, 
+				timerDuration, messageCatchRatio, seed);
+	}
+}
@@ -23,8 +23,9 @@ package com.catify.processengine.core;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.Props;
-import akka.routing.SmallestMailboxRouter;
+import akka.routing.ConsistentHashingRouter;
 
+import com.catify.processengine.core.nodes.NodeDispatchers;
 import com.catify.processengine.core.services.MetaDataService;
 import com.catify.processengine.core.services.ProcessInstanceCleansingService;
 
@@ -56,16 +57,29 @@ public class CoreActors {
 	 * @param processInstanceCleansingActorName the process instance cleansing actor name
 	 */
 	public CoreActors(ActorSystem actorSystem, String metaDataActorName, int instances, String processInstanceCleansingActorName) {
+		this(actorSystem, metaDataActorName, instances, instances, processInstanceCleansingActorName);
+	}
+	
+	/**
+	 * Instantiates the core actors. (mostly wired by spring)
+	 *
+	 * @param actorSystem the actor system
+	 * @param metaDataActorName the meta data actor name
+	 * @param metaDataInstances the number of meta data writers (meta data is partitioned by process instance id)
+	 * @param instances the number of process instance cleansing actors (process instances are partitioned by their id)
+	 * @param processInstanceCleansingActorName the process instance cleansing actor name
+	 */
+	public CoreActors(ActorSystem actorSystem, String metaDataActorName, int metaDataInstances, int instances, String processInstanceCleansingActorName) {
 		this.actorSystem = actorSystem;
 		this.metaDataActor = this.actorSystem.actorOf(
 				new Props(MetaDataService.class).withRouter(
-						new SmallestMailboxRouter(instances))
-						.withDispatcher("file-mailbox-dispatcher"),
+						new ConsistentHashingRouter(metaDataInstances))
+						.withDispatcher(NodeDispatchers.getCoreDispatcher(actorSystem)),
 						metaDataActorName);
 		this.processInstanceCleansingActor = this.actorSystem.actorOf(
 				new Props(ProcessInstanceCleansingService.class).withRouter(
-						new SmallestMailboxRouter(instances))
-						.withDispatcher("file-mailbox-dispatcher"),
+						new ConsistentHashingRouter(instances))
+						.withDispatcher(NodeDispatchers.getCoreDispatcher(actorSystem)),
 						processInstanceCleansingActorName);
 	}
 
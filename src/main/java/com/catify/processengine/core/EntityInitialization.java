@@ -18,13 +18,20 @@
 package com.catify.processengine.core;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBElement;
 
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.DynamicRelationshipType;
 import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -52,21 +59,26 @@ import com.catify.processengine.core.data.services.IdService;
 import com.catify.processengine.core.data.services.ProcessNodeRepositoryService;
 import com.catify.processengine.core.data.services.RootNodeRepositoryService;
 import com.catify.processengine.core.data.services.RunningNodeRepositoryService;
+import com.catify.processengine.core.nodes.NodeDispatchers;
 import com.catify.processengine.core.nodes.NodeFactory;
 import com.catify.processengine.core.nodes.ServiceNodeBridge;
 import com.catify.processengine.core.processdefinition.jaxb.TFlowElement;
 import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.core.processdefinition.jaxb.TProcessInstanceIdGenerator;
 import com.catify.processengine.core.processdefinition.jaxb.TSequenceFlow;
 import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
 import com.catify.processengine.core.processdefinition.jaxb.services.ExtensionService;
 import com.catify.processengine.core.services.ActorReferenceService;
+import com.catify.processengine.core.services.ProcessInstanceIdService;
 
 /**
  * EntityInitialization creates the data representation of a bpmn process and the runtime logic service node actors. <p>
  * It will create the basic node entities ({@link ClientNode}, {@link ArchiveNode}, {@link RunningNode}) and the process specific node entities ({@link ProcessNode}, 
  * {@link ProcessInstanceNode} and {@link FlowNode}) in the database via the repository services. <p>
- * The service node actor implementation is handled by the {@link NodeFactory}.
+ * The service node actor implementation is handled by the {@link NodeFactory}. <p>
+ * Processes are initialized concurrently. Only the initialization of the same process is 
+ * serialized, the entities shared by all processes of a client are created once up front.
  * 
  * @author christopher köster
  * 
@@ -89,6 +101,12 @@ public class EntityInitialization {
 	@Autowired
 	private RootNodeRepositoryService rootNodeRepositoryService;
 
+	/** The relationship from the running node of a client to its process nodes (see {@link RunningNode}). */
+	static final RelationshipType RUNNING_PROCESS = DynamicRelationshipType.withName("HAS_RUNNING_PROCESS");
+	
+	/** The relationship from the archive node of a client to its archived process nodes (see {@link ArchiveNode}). */
+	static final RelationshipType ARCHIVED_PROCESS = DynamicRelationshipType.withName("HAS_ARCHIVED_PROCESS");
+
 	/** The client node repository service. */
 	@Autowired
 	private ClientNodeRepositoryService clientNodeRepositoryService;
@@ -108,16 +126,190 @@ public class EntityInitialization {
 	/** The running node repository service. */
 	@Autowired
 	private RunningNodeRepositoryService runningNodeRepositoryService;
+	
+	@Autowired
+	private ProcessInstanceIdService processInstanceIdService;
+	
+	/** The locks serializing the initialization of a process, mapped by unique process id. */
+	private static final ConcurrentMap<String, Object> processLocks = new ConcurrentHashMap<String, Object>();
+	
+	/** The locks serializing the changes of the entities shared by the processes of a client, mapped by client id. */
+	private static final ConcurrentMap<String, Object> clientLocks = new ConcurrentHashMap<String, Object>();
+	
+	/** The ids of the clients whose shared entities have been created. */
+	private static final Set<String> initializedClients = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
 
-
 	/**
-	 * Initialize neo4j data beans.
+	 * Initialize neo4j data beans. Different processes can be initialized concurrently, 
+	 * the initialization of the same process is serialized.
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process object generated by jaxb
+	 */
+	public void initializeProcess(String clientId, TProcess processJaxb) {
+		this.initializeClient(clientId);
+		
+		synchronized (getProcessLock(IdService.getUniqueProcessId(clientId, processJaxb))) {
+			this.registerDispatchers(clientId, processJaxb);
+			this.registerProcessInstanceIdGenerator(clientId, processJaxb);
+			this.initializeProcessEntities(clientId, processJaxb);
+		}
+	}
+	
+	/**
+	 * Creates the service node actors of a process whose database representation is already 
+	 * up to date (see {@link com.catify.processengine.core.services.DeploymentCacheService}).
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process object generated by jaxb
+	 */
+	public void initializeServiceNodes(String clientId, TProcess processJaxb) {
+		synchronized (getProcessLock(IdService.getUniqueProcessId(clientId, processJaxb))) {
+			this.registerDispatchers(clientId, processJaxb);
+			this.registerProcessInstanceIdGenerator(clientId, processJaxb);
+			this.createServiceNodes(clientId, processJaxb, new ArrayList<TSubProcess>(), processJaxb.getFlowElement());
+		}
+	}
+	
+	/**
+	 * Registers the dispatchers defined by the catify extension of a process, so that its 
+	 * actors are created on them (see {@link NodeDispatchers}).
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process object generated by jaxb
+	 */
+	private void registerDispatchers(String clientId, TProcess processJaxb) {
+		NodeDispatchers.registerProcess(this.actorSystem, IdService.getUniqueProcessId(clientId, processJaxb), 
+				ExtensionService.getTDispatchers(processJaxb));
+	}
+	
+	/**
+	 * Registers the process instance id generator defined by the catify extension of a process 
+	 * (see {@link ProcessInstanceIdService}).
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process object generated by jaxb
+	 */
+	private void registerProcessInstanceIdGenerator(String clientId, TProcess processJaxb) {
+		TProcessInstanceIdGenerator generatorJaxb = ExtensionService.getTProcessInstanceIdGenerator(processJaxb);
+		processInstanceIdService.registerProcess(IdService.getUniqueProcessId(clientId, processJaxb), 
+				generatorJaxb == null ? null : generatorJaxb.getName());
+	}
+	
+	/**
+	 * Creates the service node actors of the given flow elements and (recursively) of the 
+	 * flow elements of their sub processes.
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process jaxb
+	 * @param subProcessesJaxb the enclosing sub processes
+	 * @param flowElementsJaxb the flow elements
+	 */
+	private void createServiceNodes(String clientId, TProcess processJaxb, ArrayList<TSubProcess> subProcessesJaxb, 
+			List<JAXBElement<? extends TFlowElement>> flowElementsJaxb) {
+		
+		List<TFlowNode> flowNodesJaxb = new ArrayList<TFlowNode>();
+		List<TSequenceFlow> sequenceFlowsJaxb = new ArrayList<TSequenceFlow>();
+		for (JAXBElement<? extends TFlowElement> flowElementJaxb : flowElementsJaxb) {
+			if (flowElementJaxb.getDeclaredType().equals(TSequenceFlow.class)) {
+				sequenceFlowsJaxb.add((TSequenceFlow) flowElementJaxb.getValue());
+			} else if (flowElementJaxb.getValue() instanceof TFlowNode) {
+				flowNodesJaxb.add((TFlowNode) flowElementJaxb.getValue());
+			}
+		}
+		
+		for (TFlowNode flowNodeJaxb : flowNodesJaxb) {
+			createNodeServiceActor(clientId, processJaxb, subProcessesJaxb, flowNodeJaxb, sequenceFlowsJaxb);
+			
+			if (flowNodeJaxb instanceof TSubProcess) {
+				ArrayList<TSubProcess> recursiveSubProcessesJaxb = new ArrayList<TSubProcess>(subProcessesJaxb);
+				recursiveSubProcessesJaxb.add((TSubProcess) flowNodeJaxb);
+				
+				this.createServiceNodes(clientId, processJaxb, recursiveSubProcessesJaxb, ((TSubProcess) flowNodeJaxb).getFlowElement());
+			}
+		}
+	}
+	
+	/**
+	 * Creates the entities shared by all processes of a client once (in their own transaction), so 
+	 * that concurrently initialized processes of that client do not create them twice.
+	 *
+	 * @param clientId the client id
+	 */
+	private void initializeClient(String clientId) {
+		if (initializedClients.contains(clientId)) {
+			return;
+		}
+		synchronized (initializedClients) {
+			if (!initializedClients.contains(clientId)) {
+				this.createClientEntities(clientId);
+				initializedClients.add(clientId);
+			}
+		}
+	}
+	
+	/**
+	 * Creates the client, running and archive node of a client and connects them. Process 
+	 * initializations only add their process nodes to the running and archive node (see 
+	 * {@link #connectProcessNodes(String, ProcessNode, ProcessNode)}).
+	 *
+	 * @param clientId the client id
+	 */
+	@Transactional
+	protected void createClientEntities(String clientId) {
+		ClientNode clientNode = this.createClientContext(clientId);
+		clientNode.addRelationshipToRunningProcessNode(runningNodeRepositoryService.getOrCreateRunningNode(clientId));
+		clientNode.addRelationshipToArchivedProcessNode(archivedNodeRepositoryService.getOrCreateArchivedNode(clientId));
+		clientNodeRepositoryService.save(clientNode);
+	}
+	
+	/**
+	 * Gets the lock for the initialization of a process.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return the process lock
+	 */
+	private static Object getProcessLock(String uniqueProcessId) {
+		return getLock(processLocks, uniqueProcessId);
+	}
+	
+	/**
+	 * Gets the lock for changes of the entities shared by the processes of a client.
+	 *
+	 * @param clientId the client id
+	 * @return the client lock
+	 */
+	private static Object getClientLock(String clientId) {
+		return getLock(clientLocks, clientId);
+	}
+	
+	/**
+	 * Gets or creates the lock of a key.
+	 *
+	 * @param locks the locks
+	 * @param key the key
+	 * @return the lock
+	 */
+	private static Object getLock(ConcurrentMap<String, Object> locks, String key) {
+		Object lock = locks.get(key);
+		if (lock == null) {
+			Object newLock = new Object();
+			lock = locks.putIfAbsent(key, newLock);
+			if (lock == null) {
+				lock = newLock;
+			}
+		}
+		return lock;
+	}
+	
+	/**
+	 * Initialize the neo4j data beans of a process in one transaction.
 	 *
 	 * @param clientId the client id
 	 * @param processJaxb the process object generated by jaxb
 	 */
 	@Transactional
-	public synchronized void initializeProcess(String clientId, TProcess processJaxb) {
+	protected void initializeProcessEntities(String clientId, TProcess processJaxb) {
 
 		List<TFlowNode> flowNodesJaxb = new ArrayList<TFlowNode>();
 		List<TSequenceFlow> sequenceFlowsJaxb = new ArrayList<TSequenceFlow>();
@@ -157,14 +349,11 @@ public class EntityInitialization {
 	private void createEntities(String clientId, TProcess processJaxb,
 			List<TFlowNode> flowNodesJaxb, List<TSequenceFlow> sequenceFlowsJaxb) {
 
-		// create the client context
-		ClientNode clientNode = this.createClientContext(clientId);
-
 		// create the running process node or get it from the db (eg. restart of the process engine)
-		ProcessNode runningProcess = this.createRunningProcessNode(clientId, clientNode, processJaxb);
+		ProcessNode runningProcess = this.createRunningProcessNode(clientId, processJaxb);
 		
 		// create the archived process node or get it from the db (eg. restart of the process engine)
-		ProcessNode archivedProcess = this.createArchivedProcessNode(clientId, clientNode, processJaxb);
+		ProcessNode archivedProcess = this.createArchivedProcessNode(clientId, processJaxb);
 
 		// create the flow nodes (database and runtime)
 		this.createFlowNodes(clientId, processJaxb, new ArrayList<TSubProcess>(), flowNodesJaxb, sequenceFlowsJaxb, runningProcess,
@@ -174,8 +363,51 @@ public class EntityInitialization {
 		processRepositoryService.save(runningProcess);
 		processRepositoryService.save(archivedProcess);
 		
-		// save changes made to this client
-		clientNodeRepositoryService.save(clientNode);
+		// connect the process nodes to the running and archive node of the client
+		this.connectProcessNodes(clientId, runningProcess, archivedProcess);
+	}
+	
+	/**
+	 * Connects the process nodes of a process to the running and archive node of its client. <p>
+	 * The running and archive node are shared by all processes of a client, so the relationships 
+	 * are created one by one instead of saving their (possibly stale) relationship sets. The 
+	 * client lock is only held for these writes and not acquired again in this transaction, so 
+	 * processes waiting for the database locks of the shared nodes cannot deadlock.
+	 *
+	 * @param clientId the client id
+	 * @param runningProcess the running process node
+	 * @param archivedProcess the archived process node
+	 */
+	private void connectProcessNodes(String clientId, ProcessNode runningProcess, ProcessNode archivedProcess) {
+		RunningNode runningNode = runningNodeRepositoryService.getOrCreateRunningNode(clientId);
+		ArchiveNode archiveNode = archivedNodeRepositoryService.getOrCreateArchivedNode(clientId);
+		
+		synchronized (getClientLock(clientId)) {
+			this.createRelationshipOnce(runningNode, runningProcess, RUNNING_PROCESS);
+			this.createRelationshipOnce(archiveNode, archivedProcess, ARCHIVED_PROCESS);
+		}
+		
+		LOG.debug(String.format("Connected %s to %s and %s to %s in neo4j db",
+				runningNode, runningProcess, archiveNode, archivedProcess));
+	}
+	
+	/**
+	 * Creates an outgoing relationship between two persisted entities if it does not exist yet.
+	 *
+	 * @param start the start entity
+	 * @param end the end entity
+	 * @param relationshipType the relationship type
+	 */
+	private void createRelationshipOnce(Object start, Object end, RelationshipType relationshipType) {
+		Node startNode = neo4jTemplate.getPersistentState(start);
+		Node endNode = neo4jTemplate.getPersistentState(end);
+		
+		for (Relationship relationship : startNode.getRelationships(relationshipType, Direction.OUTGOING)) {
+			if (relationship.getEndNode().equals(endNode)) {
+				return;
+			}
+		}
+		startNode.createRelationshipTo(endNode, relationshipType);
 	}
 	
 	/**
@@ -397,21 +629,10 @@ public class EntityInitialization {
 	 * Creates the running process node.
 	 *
 	 * @param clientId the client id
-	 * @param clientNode the client node
 	 * @param processJaxb the process jaxb
 	 * @return the process node
 	 */
-	private ProcessNode createRunningProcessNode(String clientId, ClientNode clientNode, TProcess processJaxb) {
-		// create the running node
-		RunningNode runningNode = runningNodeRepositoryService
-				.getOrCreateRunningNode(clientId);
-		clientNode.addRelationshipToRunningProcessNode(runningNode);
-
-		clientNodeRepositoryService.save(clientNode);
-		
-		LOG.debug(String.format("Added %s with grapId: %s to neo4j db",
-				runningNode, runningNode.getGraphId()));
-		
+	private ProcessNode createRunningProcessNode(String clientId, TProcess processJaxb) {
 		// create the running process node or get it from the db (eg. restart of
 		// the process engine)
 		ProcessNode runningProcess = processRepositoryService
@@ -421,9 +642,6 @@ public class EntityInitialization {
 						processJaxb.getName(), 
 						ExtensionService.getTVersion(processJaxb).getVersion()));
 		
-		runningNode.addRelationshipToProcessNode(runningProcess);
-		runningNodeRepositoryService.save(runningNode);
-		
 		LOG.debug(String.format("Added %s with grapId: %s to neo4j db",
 				runningProcess, runningProcess.getGraphId()));
 		
@@ -434,19 +652,10 @@ public class EntityInitialization {
 	 * Creates the archived process node.
 	 *
 	 * @param clientId the client id
-	 * @param clientNode the client node
 	 * @param processJaxb the process jaxb
 	 * @return the process node
 	 */
-	private ProcessNode createArchivedProcessNode(String clientId, ClientNode clientNode, TProcess processJaxb) {
-		// create the archive node
-		ArchiveNode archiveNode = archivedNodeRepositoryService
-				.getOrCreateArchivedNode(clientId);
-		clientNode.addRelationshipToArchivedProcessNode(archiveNode);
-		
-		LOG.debug(String.format("Added %s with grapId: %s to neo4j db",
-				archiveNode, archiveNode.getGraphId()));
-		
+	private ProcessNode createArchivedProcessNode(String clientId, TProcess processJaxb) {
 		// create the archived process node or get it from the db (eg. restart of
 		// the process engine)
 		ProcessNode archivedProcess = processRepositoryService
@@ -456,9 +665,6 @@ public class EntityInitialization {
 						processJaxb.getName(), 
 						ExtensionService.getTVersion(processJaxb).getVersion()));
 		
-		archiveNode.addRelationshipToProcessNode(archivedProcess);
-		archivedNodeRepositoryService.save(archiveNode);
-		
 		LOG.debug(String.format("Added %s with grapId: %s to neo4j db",
 				archivedProcess, archivedProcess.getGraphId()));
 		
@@ -504,10 +710,19 @@ public class EntityInitialization {
 			 List<TSequenceFlow> sequenceFlowsJaxb) {
 		
 		// create flow node actors (a bridge factory is used to be able to pass parameters to the UntypedActorFactory)
+		// the dispatcher depends on the node category (see NodeDispatchers)
+		String dispatcher = NodeDispatchers.getDispatcher(this.actorSystem, 
+				IdService.getUniqueProcessId(clientId, processJaxb), NodeDispatchers.getCategory(flowNodeJaxb));
+		String uniqueFlowNodeId = IdService.getUniqueFlowNodeId(clientId, processJaxb, subProcessesJaxb, flowNodeJaxb);
+		String actorName = ActorReferenceService.getActorReferenceString(uniqueFlowNodeId);
+		
+		// take over the messages persisted under the actor name of older versions
+		ActorReferenceService.migrateMailbox(this.actorSystem, 
+				ActorReferenceService.getLegacyActorReferenceString(uniqueFlowNodeId), actorName);
+		
 		ActorRef nodeServiceActor = this.actorSystem.actorOf(new Props(
 				new ServiceNodeBridge(clientId, processJaxb, subProcessesJaxb, flowNodeJaxb, sequenceFlowsJaxb)
-					).withDispatcher("file-mailbox-dispatcher"), ActorReferenceService.getActorReferenceString(
-						IdService.getUniqueFlowNodeId(clientId, processJaxb, subProcessesJaxb, flowNodeJaxb)));
+					).withDispatcher(dispatcher), actorName);
 		
 		LOG.debug(String.format("%s --> resulting akka object: %s", flowNodeJaxb,
 				nodeServiceActor.toString()));
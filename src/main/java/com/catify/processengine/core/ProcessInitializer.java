@@ -17,17 +17,27 @@
  */
 package com.catify.processengine.core;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
 
 import javax.xml.bind.JAXBElement;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 
+import com.catify.processengine.core.data.services.IdService;
 import com.catify.processengine.core.processdefinition.jaxb.TDefinitions;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowElement;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
 import com.catify.processengine.core.processdefinition.jaxb.TRootElement;
+import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
+import com.catify.processengine.core.services.DeploymentCacheService;
 
 /**
  * Delegates the initialization of the node instance services and their data
@@ -40,6 +50,9 @@ import com.catify.processengine.core.processdefinition.jaxb.TRootElement;
 public class ProcessInitializer {
 
 	static final Logger LOG = LoggerFactory.getLogger(ProcessInitializer.class);
+	
+	@Autowired
+	private DeploymentCacheService deploymentCacheService;
 
 	/**
 	 * Initialize process(es) of a jaxb definition object. A definition object
@@ -50,6 +63,25 @@ public class ProcessInitializer {
 	 */
 	public void initializeProcessDefinition(String clientId,
 			TDefinitions definition) {
+		this.initializeProcessDefinition(clientId, definition, null);
+	}
+	
+	/**
+	 * Initialize process(es) of a jaxb definition object. Processes that have already been 
+	 * initialized from a definition with the same content hash only get their service nodes 
+	 * created, their database representation is reused (see {@link DeploymentCacheService}). 
+	 * If flow nodes of such a process are missing in the database, the process is initialized 
+	 * again, which creates the missing nodes.
+	 * 
+	 * @param clientId
+	 *            the client id
+	 * @param definition
+	 *            {@link TDefinitions}
+	 * @param contentHash
+	 *            the content hash of the definition or null to always initialize the database
+	 */
+	public void initializeProcessDefinition(String clientId,
+			TDefinitions definition, String contentHash) {
 		for (Iterator<JAXBElement<? extends TRootElement>> iterator = definition
 				.getRootElement().iterator(); iterator.hasNext();) {
 
@@ -58,7 +90,23 @@ public class ProcessInitializer {
 
 			if (rootElement.getClass().equals(TProcess.class)) {
 				process = (TProcess) rootElement;
-				this.initializeProcess(clientId, process);
+				
+				if (contentHash == null) {
+					this.initializeProcess(clientId, process);
+					deploymentCacheService.unregister(IdService.getUniqueProcessId(clientId, process));
+				} else {
+					String uniqueProcessId = IdService.getUniqueProcessId(clientId, process);
+					Set<String> uniqueFlowNodeIds = new HashSet<String>();
+					this.collectUniqueFlowNodeIds(clientId, process, new ArrayList<TSubProcess>(), process.getFlowElement(), uniqueFlowNodeIds);
+					
+					if (deploymentCacheService.isDeployed(contentHash, uniqueProcessId, uniqueFlowNodeIds)) {
+						LOG.debug(String.format("%s is unchanged, creating service nodes only", uniqueProcessId));
+						new EntityInitialization().initializeServiceNodes(clientId, process);
+					} else {
+						this.initializeProcess(clientId, process);
+						deploymentCacheService.register(contentHash, uniqueProcessId);
+					}
+				}
 			}
 		}
 	}
@@ -81,5 +129,33 @@ public class ProcessInitializer {
 		EntityInitialization entityInit = new EntityInitialization();
 		entityInit.initializeProcess(clientId, processJaxb);
 	}
+	
+	/**
+	 * Collects the unique flow node ids of the given flow elements and (recursively) of the 
+	 * flow elements of their sub processes.
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the process jaxb
+	 * @param subProcessesJaxb the enclosing sub processes
+	 * @param flowElementsJaxb the flow elements
+	 * @param uniqueFlowNodeIds the collected unique flow node ids
+	 */
+	private void collectUniqueFlowNodeIds(String clientId, TProcess processJaxb, ArrayList<TSubProcess> subProcessesJaxb, 
+			List<JAXBElement<? extends TFlowElement>> flowElementsJaxb, Set<String> uniqueFlowNodeIds) {
+		for (JAXBElement<? extends TFlowElement> flowElementJaxb : flowElementsJaxb) {
+			if (flowElementJaxb.getValue() instanceof TFlowNode) {
+				TFlowNode flowNodeJaxb = (TFlowNode) flowElementJaxb.getValue();
+				uniqueFlowNodeIds.add(IdService.getUniqueFlowNodeId(clientId, processJaxb, subProcessesJaxb, flowNodeJaxb));
+				
+				if (flowNodeJaxb instanceof TSubProcess) {
+					ArrayList<TSubProcess> recursiveSubProcessesJaxb = new ArrayList<TSubProcess>(subProcessesJaxb);
+					recursiveSubProcessesJaxb.add((TSubProcess) flowNodeJaxb);
+					
+					this.collectUniqueFlowNodeIds(clientId, processJaxb, recursiveSubProcessesJaxb, 
+							((TSubProcess) flowNodeJaxb).getFlowElement(), uniqueFlowNodeIds);
+				}
+			}
+		}
+	}
 
 }
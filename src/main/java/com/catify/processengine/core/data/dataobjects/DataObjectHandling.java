@@ -22,6 +22,10 @@ import javax.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.beans.factory.annotation.Value;
 
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+
 /**
  * Wrapper class for saving/loading a data object within a process. Any class
  * that needs to access such an object needs to bind an object of this class.
@@ -33,6 +37,10 @@ import org.springframework.beans.factory.annotation.Value;
 @Configurable
 public class DataObjectHandling {
 
+	private static final Histogram SAVE_HISTOGRAM = MetricsRegistry.getHistogram("spi.dataObject.saveObject");
+	private static final Histogram LOAD_HISTOGRAM = MetricsRegistry.getHistogram("spi.dataObject.loadObject");
+	private static final Histogram DELETE_HISTOGRAM = MetricsRegistry.getHistogram("spi.dataObject.deleteObject");
+
 	/** The data object implementation id set in the spring context. */
 	@Value("${datastore.implementation}")
 	private String dataObjectServiceProviderId;
@@ -98,8 +106,14 @@ public class DataObjectHandling {
 	public void saveObject(String uniqueProcessId, String instanceId,
 			Object dataObject) {
 		if (this.dataOutputObjectId != null) {
-			this.dataObjectServiceProvider.saveObject(uniqueProcessId,
-					this.dataOutputObjectId, instanceId, dataObject);
+			long start = System.nanoTime();
+			try {
+				this.dataObjectServiceProvider.saveObject(uniqueProcessId,
+						this.dataOutputObjectId, instanceId, dataObject);
+			} finally {
+				SAVE_HISTOGRAM.recordSince(start);
+				FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "dataObject.saveObject", start);
+			}
 		}
 	}
 
@@ -111,8 +125,14 @@ public class DataObjectHandling {
 	 * @return the data object loaded
 	 */
 	public Object loadObject(String uniqueProcessId, String instanceId) {
-		return this.dataObjectServiceProvider.loadObject(uniqueProcessId,
-				this.dataInputObjectId, instanceId);
+		long start = System.nanoTime();
+		try {
+			return this.dataObjectServiceProvider.loadObject(uniqueProcessId,
+					this.dataInputObjectId, instanceId);
+		} finally {
+			LOAD_HISTOGRAM.recordSince(start);
+			FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "dataObject.loadObject", start);
+		}
 	}
 	
 	/**
@@ -125,7 +145,13 @@ public class DataObjectHandling {
 	 */
 	public Object loadObject(String uniqueProcessId, String instanceId,String dataObjectId) {
 		if (dataObjectId != null) {
-			return this.dataObjectServiceProvider.loadObject(uniqueProcessId, dataObjectId, instanceId);
+			long start = System.nanoTime();
+			try {
+				return this.dataObjectServiceProvider.loadObject(uniqueProcessId, dataObjectId, instanceId);
+			} finally {
+				LOAD_HISTOGRAM.recordSince(start);
+				FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "dataObject.loadObject", start);
+			}
 		} else {
 			return null;
 		}
@@ -138,15 +164,8 @@ public class DataObjectHandling {
 	 * @param instanceId the instance id
 	 */
 	public void deleteObject(String uniqueProcessId, String instanceId) {
-		if (this.dataInputObjectId != null) {
-			this.dataObjectServiceProvider.deleteObject(uniqueProcessId,
-					this.dataInputObjectId, instanceId);
-		}
-		
-		if (this.dataOutputObjectId != null) {
-			this.dataObjectServiceProvider.deleteObject(uniqueProcessId,
-					this.dataOutputObjectId, instanceId);
-		}
+		this.deleteObject(uniqueProcessId, this.dataInputObjectId, instanceId);
+		this.deleteObject(uniqueProcessId, this.dataOutputObjectId, instanceId);
 	}
 	
 	/**
@@ -157,8 +176,14 @@ public class DataObjectHandling {
 	 */
 	public void deleteObject(String uniqueProcessId, String dataObjectId, String instanceId) {
 		if (dataObjectId != null) {
-			this.dataObjectServiceProvider.deleteObject(uniqueProcessId,
-					dataObjectId, instanceId);
+			long start = System.nanoTime();
+			try {
+				this.dataObjectServiceProvider.deleteObject(uniqueProcessId,
+						dataObjectId, instanceId);
+			} finally {
+				DELETE_HISTOGRAM.recordSince(start);
+				FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "dataObject.deleteObject", start);
+			}
 		}
 	}
 
@@ -0,0 +1,569 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.data.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.catify.processengine.core.util.Clock;
+
+/**
+ * The ColumnarHistoryStore stores completed process instances outside of the
+ * graph database. The instances are written to gzip compressed segment files in
+ * a column oriented layout. Segments are partitioned by the day (UTC) the
+ * process instances ended, each partition is a directory below
+ * <code>archive.directory</code>, so dropping old history is a directory
+ * removal.
+ * <p>
+ * A segment starts with an uncompressed header holding the end time range and
+ * the unique process ids of its rows. Queries skip partitions and segments that
+ * can not match by their name and header, and evaluate the remaining
+ * predicates on the first columns of a segment, before the other columns are
+ * decoded.
+ * <p>
+ * Every write creates new segment files, so concurrent writers never share a
+ * file. Segments are written to a temporary file, synced to disk and renamed when 
+ * complete. Writers that delete the written instances from the graph database 
+ * prepare the segments first and complete them after their transaction has committed 
+ * (see {@link #prepare(Collection)}), so a rolled back transaction leaves no segments.
+ * <p>
+ * Strings are stored as their UTF-8 bytes with a length prefix, so values of any 
+ * length can be stored (segments of version 1 used modified UTF-8 limited to 64KB 
+ * per value and can still be read).
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class ColumnarHistoryStore {
+
+	static final Logger LOG = LoggerFactory.getLogger(ColumnarHistoryStore.class);
+	
+	static final int MAGIC = 0xCA71F7A1;
+	
+	static final int VERSION = 2;
+	
+	/** The segment version storing strings as modified UTF-8 (see {@link DataOutputStream#writeUTF(String)}). */
+	static final int VERSION_MODIFIED_UTF = 1;
+	
+	static final String TEMP_SUFFIX = ".tmp";
+	
+	static final String SEGMENT_SUFFIX = ".seg";
+	
+	private static final String PARTITION_PATTERN = "yyyyMMdd";
+	
+	private static final long NO_TIME = -1;
+	
+	private static final int NO_STRING = -1;
+	
+	private static final String CHARSET = "UTF-8";
+	
+	@Value("${archive.directory}")
+	private String directory;
+	
+	public ColumnarHistoryStore() {
+	}
+	
+	public ColumnarHistoryStore(String directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * Writes completed process instances to the store. The instances of each partition
+	 * are written to a new segment.
+	 *
+	 * @param records the history records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void write(Collection<HistoryRecord> records) throws IOException {
+		this.complete(this.prepare(records));
+	}
+	
+	/**
+	 * Writes completed process instances to temporary segments that are not visible to 
+	 * queries until they are completed with {@link #complete(List)} or removed with 
+	 * {@link #discard(List)}. The instances of each partition are written to a new segment.
+	 *
+	 * @param records the history records
+	 * @return the temporary segments
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public List<File> prepare(Collection<HistoryRecord> records) throws IOException {
+		Map<String, List<HistoryRecord>> partitions = new LinkedHashMap<String, List<HistoryRecord>>();
+		for (HistoryRecord record : records) {
+			String partition = getPartition(record.getProcessInstanceEndTime());
+			List<HistoryRecord> partitionRecords = partitions.get(partition);
+			if (partitionRecords == null) {
+				partitionRecords = new ArrayList<HistoryRecord>();
+				partitions.put(partition, partitionRecords);
+			}
+			partitionRecords.add(record);
+		}
+		
+		List<File> tempFiles = new ArrayList<File>();
+		try {
+			for (Map.Entry<String, List<HistoryRecord>> partition : partitions.entrySet()) {
+				File partitionDirectory = new File(directory, partition.getKey());
+				if (!partitionDirectory.isDirectory() && !partitionDirectory.mkdirs() && !partitionDirectory.isDirectory()) {
+					throw new IOException("Could not create history partition " + partitionDirectory);
+				}
+				File tempFile = new File(partitionDirectory, UUID.randomUUID().toString() + TEMP_SUFFIX);
+				tempFiles.add(tempFile);
+				writeSegment(tempFile, partition.getValue());
+				LOG.debug(String.format("Wrote %s process instances to history partition %s", partition.getValue().size(), partition.getKey()));
+			}
+		} catch (IOException e) {
+			this.discard(tempFiles);
+			throw e;
+		}
+		return tempFiles;
+	}
+	
+	/**
+	 * Makes temporary segments written by {@link #prepare(Collection)} visible to queries.
+	 *
+	 * @param tempFiles the temporary segments
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void complete(List<File> tempFiles) throws IOException {
+		for (File tempFile : tempFiles) {
+			String name = tempFile.getName();
+			File segment = new File(tempFile.getParentFile(), name.substring(0, name.length() - TEMP_SUFFIX.length()) + SEGMENT_SUFFIX);
+			if (!tempFile.renameTo(segment)) {
+				throw new IOException("Could not complete history segment " + tempFile);
+			}
+		}
+	}
+	
+	/**
+	 * Deletes temporary segments written by {@link #prepare(Collection)}.
+	 *
+	 * @param tempFiles the temporary segments
+	 */
+	public void discard(List<File> tempFiles) {
+		for (File tempFile : tempFiles) {
+			if (tempFile.exists() && !tempFile.delete()) {
+				LOG.warn("Could not delete temporary history segment " + tempFile);
+			}
+		}
+	}
+	
+	/**
+	 * Queries the store.
+	 *
+	 * @param query the query
+	 * @return the matching history records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public List<HistoryRecord> query(HistoryQuery query) throws IOException {
+		final List<HistoryRecord> result = new ArrayList<HistoryRecord>();
+		this.scan(query, new HistoryRecordHandler() {
+			@Override
+			public void handle(HistoryRecord record) {
+				result.add(record);
+			}
+		});
+		return result;
+	}
+	
+	/**
+	 * Scans the store and passes the matching records to a handler. Only one segment 
+	 * is held in memory at a time, so scans over large partitions use constant memory.
+	 *
+	 * @param query the query
+	 * @param handler the handler receiving the matching history records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void scan(HistoryQuery query, HistoryRecordHandler handler) throws IOException {
+		String fromPartition = query.getEndTimeFrom() == null ? null : getPartition(query.getEndTimeFrom());
+		String toPartition = query.getEndTimeTo() == null ? null : getPartition(query.getEndTimeTo());
+		
+		for (String partition : getPartitions()) {
+			if ((fromPartition != null && partition.compareTo(fromPartition) < 0)
+					|| (toPartition != null && partition.compareTo(toPartition) > 0)) {
+				continue;
+			}
+			File[] segments = new File(directory, partition).listFiles();
+			if (segments == null) {
+				// the partition has been dropped in the meantime
+				continue;
+			}
+			for (File segment : segments) {
+				if (segment.getName().endsWith(SEGMENT_SUFFIX)) {
+					readSegment(segment, query, handler);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Drops all partitions with process instances that ended before the given day.
+	 *
+	 * @param endTime the end time (only the day is relevant)
+	 * @return the number of dropped partitions
+	 */
+	public int dropPartitionsBefore(Date endTime) {
+		String lastPartition = getPartition(endTime);
+		int dropped = 0;
+		for (String partition : getPartitions()) {
+			if (partition.compareTo(lastPartition) < 0) {
+				// hide the partition from queries first, then delete its segments
+				File partitionDirectory = new File(directory, partition);
+				File droppedDirectory = new File(directory, partition + ".dropped");
+				if (partitionDirectory.renameTo(droppedDirectory)) {
+					deleteDirectory(droppedDirectory);
+					dropped++;
+				} else {
+					LOG.warn("Could not drop history partition " + partitionDirectory);
+				}
+			}
+		}
+		return dropped;
+	}
+	
+	/**
+	 * Gets the names of all partitions in ascending order.
+	 *
+	 * @return the partitions
+	 */
+	List<String> getPartitions() {
+		List<String> partitions = new ArrayList<String>();
+		String[] names = new File(directory).list();
+		if (names != null) {
+			for (String name : names) {
+				if (name.length() == PARTITION_PATTERN.length() && name.matches("\\d+")) {
+					partitions.add(name);
+				}
+			}
+		}
+		String[] sorted = partitions.toArray(new String[partitions.size()]);
+		Arrays.sort(sorted);
+		return Arrays.asList(sorted);
+	}
+	
+	/**
+	 * Gets the partition of a process instance end time.
+	 *
+	 * @param endTime the end time
+	 * @return the partition name
+	 */
+	static String getPartition(Date endTime) {
+		SimpleDateFormat format = new SimpleDateFormat(PARTITION_PATTERN);
+		format.setTimeZone(TimeZone.getTimeZone("UTC"));
+		return format.format(endTime == null ? Clock.now() : endTime);
+	}
+	
+	private void writeSegment(File file, List<HistoryRecord> records) throws IOException {
+		// build the dictionary of unique process ids and the end time range
+		Map<String, Integer> processIds = new LinkedHashMap<String, Integer>();
+		long minEndTime = Long.MAX_VALUE;
+		long maxEndTime = Long.MIN_VALUE;
+		for (HistoryRecord record : records) {
+			if (!processIds.containsKey(record.getUniqueProcessId())) {
+				processIds.put(record.getUniqueProcessId(), processIds.size());
+			}
+			long endTime = toLong(record.getProcessInstanceEndTime());
+			minEndTime = Math.min(minEndTime, endTime);
+			maxEndTime = Math.max(maxEndTime, endTime);
+		}
+		
+		FileOutputStream fileOut = new FileOutputStream(file);
+		DataOutputStream header = new DataOutputStream(new BufferedOutputStream(fileOut));
+		try {
+			header.writeInt(MAGIC);
+			header.writeInt(VERSION);
+			header.writeInt(records.size());
+			header.writeLong(minEndTime);
+			header.writeLong(maxEndTime);
+			header.writeInt(processIds.size());
+			for (String processId : processIds.keySet()) {
+				writeString(header, processId);
+			}
+			header.flush();
+			
+			GZIPOutputStream gzip = new GZIPOutputStream(header);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(gzip));
+			// columns evaluated by queries first
+			for (HistoryRecord record : records) {
+				out.writeInt(processIds.get(record.getUniqueProcessId()));
+			}
+			for (HistoryRecord record : records) {
+				out.writeLong(toLong(record.getProcessInstanceEndTime()));
+			}
+			for (HistoryRecord record : records) {
+				writeString(out, record.getProcessInstanceId());
+			}
+			// remaining process instance columns
+			for (HistoryRecord record : records) {
+				out.writeLong(toLong(record.getProcessInstanceStartTime()));
+			}
+			for (HistoryRecord record : records) {
+				out.writeInt(record.getMetaData().size());
+				for (Map.Entry<String, String> metaData : record.getMetaData().entrySet()) {
+					writeString(out, metaData.getKey());
+					writeString(out, String.valueOf(metaData.getValue()));
+				}
+			}
+			for (HistoryRecord record : records) {
+				out.writeInt(record.getFlowNodeInstances().size());
+			}
+			// flow node instance columns
+			for (HistoryRecord record : records) {
+				for (FlowNodeHistoryRecord flowNode : record.getFlowNodeInstances()) {
+					writeString(out, flowNode.getUniqueFlowNodeId());
+				}
+			}
+			for (HistoryRecord record : records) {
+				for (FlowNodeHistoryRecord flowNode : record.getFlowNodeInstances()) {
+					writeString(out, flowNode.getNodeInstanceState());
+				}
+			}
+			for (HistoryRecord record : records) {
+				for (FlowNodeHistoryRecord flowNode : record.getFlowNodeInstances()) {
+					out.writeInt(flowNode.getLoopCount());
+				}
+			}
+			for (HistoryRecord record : records) {
+				for (FlowNodeHistoryRecord flowNode : record.getFlowNodeInstances()) {
+					out.writeLong(toLong(flowNode.getNodeInstanceStartTime()));
+				}
+			}
+			for (HistoryRecord record : records) {
+				for (FlowNodeHistoryRecord flowNode : record.getFlowNodeInstances()) {
+					out.writeLong(toLong(flowNode.getNodeInstanceEndTime()));
+				}
+			}
+			out.flush();
+			gzip.finish();
+			header.flush();
+			// the segment must be on disk before it is renamed
+			fileOut.getFD().sync();
+		} finally {
+			header.close();
+		}
+	}
+	
+	private void readSegment(File file, HistoryQuery query, HistoryRecordHandler handler) throws IOException {
+		DataInputStream header = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			if (header.readInt() != MAGIC) {
+				LOG.warn("Skipping unknown history segment " + file);
+				return;
+			}
+			int version = header.readInt();
+			if (version != VERSION && version != VERSION_MODIFIED_UTF) {
+				LOG.warn("Skipping unknown history segment " + file);
+				return;
+			}
+			int rowCount = header.readInt();
+			long minEndTime = header.readLong();
+			long maxEndTime = header.readLong();
+			String[] processIds = new String[header.readInt()];
+			int queriedProcessIndex = -1;
+			for (int i = 0; i < processIds.length; i++) {
+				processIds[i] = readString(header, version);
+				if (processIds[i].equals(query.getUniqueProcessId())) {
+					queriedProcessIndex = i;
+				}
+			}
+			
+			// skip the segment by its header
+			if (!query.overlapsEndTime(minEndTime, maxEndTime)
+					|| (query.getUniqueProcessId() != null && queriedProcessIndex < 0)) {
+				return;
+			}
+			
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(header)));
+			
+			// evaluate the predicates on the leading columns
+			int[] processIndexes = new int[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				processIndexes[i] = in.readInt();
+			}
+			long[] endTimes = new long[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				endTimes[i] = in.readLong();
+			}
+			String[] processInstanceIds = new String[rowCount];
+			boolean[] matches = new boolean[rowCount];
+			int matchCount = 0;
+			for (int i = 0; i < rowCount; i++) {
+				processInstanceIds[i] = readString(in, version);
+				matches[i] = (queriedProcessIndex < 0 || processIndexes[i] == queriedProcessIndex)
+						&& query.matchesEndTime(endTimes[i])
+						&& (query.getProcessInstanceId() == null || query.getProcessInstanceId().equals(processInstanceIds[i]));
+				if (matches[i]) {
+					matchCount++;
+				}
+			}
+			if (matchCount == 0) {
+				return;
+			}
+			
+			// decode the remaining columns and materialize the matching rows
+			HistoryRecord[] records = new HistoryRecord[rowCount];
+			for (int i = 0; i < rowCount; i++) {
+				long startTime = in.readLong();
+				if (matches[i]) {
+					records[i] = new HistoryRecord(processIds[processIndexes[i]], processInstanceIds[i], toDate(startTime), toDate(endTimes[i]));
+				}
+			}
+			for (int i = 0; i < rowCount; i++) {
+				int metaDataCount = in.readInt();
+				Map<String, String> metaData = new HashMap<String, String>();
+				for (int j = 0; j < metaDataCount; j++) {
+					metaData.put(readString(in, version), readString(in, version));
+				}
+				if (matches[i]) {
+					records[i].setMetaData(metaData);
+				}
+			}
+			int[] flowNodeCounts = new int[rowCount];
+			int flowNodeTotal = 0;
+			for (int i = 0; i < rowCount; i++) {
+				flowNodeCounts[i] = in.readInt();
+				flowNodeTotal += flowNodeCounts[i];
+			}
+			String[] flowNodeIds = new String[flowNodeTotal];
+			for (int i = 0; i < flowNodeTotal; i++) {
+				flowNodeIds[i] = readString(in, version);
+			}
+			String[] states = new String[flowNodeTotal];
+			for (int i = 0; i < flowNodeTotal; i++) {
+				states[i] = readString(in, version);
+			}
+			int[] loopCounts = new int[flowNodeTotal];
+			for (int i = 0; i < flowNodeTotal; i++) {
+				loopCounts[i] = in.readInt();
+			}
+			long[] startTimes = new long[flowNodeTotal];
+			for (int i = 0; i < flowNodeTotal; i++) {
+				startTimes[i] = in.readLong();
+			}
+			int flowNode = 0;
+			for (int i = 0; i < rowCount; i++) {
+				for (int j = 0; j < flowNodeCounts[i]; j++) {
+					long endTime = in.readLong();
+					if (matches[i]) {
+						records[i].addFlowNodeInstance(new FlowNodeHistoryRecord(flowNodeIds[flowNode], states[flowNode], 
+								loopCounts[flowNode], toDate(startTimes[flowNode]), toDate(endTime)));
+					}
+					flowNode++;
+				}
+				if (matches[i]) {
+					handler.handle(records[i]);
+				}
+			}
+		} finally {
+			header.close();
+		}
+	}
+	
+	/**
+	 * Writes a string as its UTF-8 bytes with a length prefix.
+	 *
+	 * @param out the output stream
+	 * @param value the string (may be null)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		if (value == null) {
+			out.writeInt(NO_STRING);
+			return;
+		}
+		byte[] bytes = value.getBytes(CHARSET);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+	
+	/**
+	 * Reads a string written by {@link #writeString(DataOutputStream, String)} or, in segments of 
+	 * version 1, by {@link DataOutputStream#writeUTF(String)}.
+	 *
+	 * @param in the input stream
+	 * @param version the segment version
+	 * @return the string (may be null)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static String readString(DataInputStream in, int version) throws IOException {
+		if (version == VERSION_MODIFIED_UTF) {
+			return in.readUTF();
+		}
+		int length = in.readInt();
+		if (length == NO_STRING) {
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, CHARSET);
+	}
+	
+	private static void deleteDirectory(File directory) {
+		File[] files = directory.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete()) {
+					LOG.warn("Could not delete history segment " + file);
+				}
+			}
+		}
+		if (!directory.delete()) {
+			LOG.warn("Could not delete history partition " + directory);
+		}
+	}
+	
+	private static long toLong(Date date) {
+		return date == null ? NO_TIME : date.getTime();
+	}
+	
+	private static Date toDate(long time) {
+		return time == NO_TIME ? null : new Date(time);
+	}
+	
+	public String getDirectory() {
+		return directory;
+	}
+
+	public void setDirectory(String directory) {
+		this.directory = directory;
+	}
+}
@@ -0,0 +1,78 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.data.history;
+
+import java.util.Date;
+
+/**
+ * The FlowNodeHistoryRecord holds a flow node instance of a completed process
+ * instance (see {@link HistoryRecord}).
+ * 
+ * @author christopher köster
+ * 
+ */
+public class FlowNodeHistoryRecord {
+
+	private String uniqueFlowNodeId;
+	
+	private String nodeInstanceState;
+	
+	private int loopCount;
+	
+	private Date nodeInstanceStartTime;
+	
+	private Date nodeInstanceEndTime;
+
+	/**
+	 * Instantiates a new flow node history record.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param nodeInstanceState the node instance state
+	 * @param loopCount the loop count
+	 * @param nodeInstanceStartTime the node instance start time
+	 * @param nodeInstanceEndTime the node instance end time
+	 */
+	public FlowNodeHistoryRecord(String uniqueFlowNodeId, String nodeInstanceState, int loopCount,
+			Date nodeInstanceStartTime, Date nodeInstanceEndTime) {
+		this.uniqueFlowNodeId = uniqueFlowNodeId;
+		this.nodeInstanceState = nodeInstanceState;
+		this.loopCount = loopCount;
+		this.nodeInstanceStartTime = nodeInstanceStartTime;
+		this.nodeInstanceEndTime = nodeInstanceEndTime;
+	}
+
+	public String getUniqueFlowNodeId() {
+		return uniqueFlowNodeId;
+	}
+
+	public String getNodeInstanceState() {
+		return nodeInstanceState;
+	}
+
+	public int getLoopCount() {
+		return loopCount;
+	}
+
+	public Date getNodeInstanceStartTime() {
+		return nodeInstanceStartTime;
+	}
+
+	public Date getNodeInstanceEndTime() {
+		return nodeInstanceEndTime;
+	}
+}
@@ -0,0 +1,113 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.data.history;
+
+import java.util.Date;
+
+/**
+ * The HistoryQuery holds the predicates of a query on the
+ * {@link ColumnarHistoryStore}. All predicates are optional (null), set
+ * predicates must all match. The predicates are pushed down to the store, which
+ * skips partitions and segments that can not match.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class HistoryQuery {
+
+	private String uniqueProcessId;
+	
+	private String processInstanceId;
+	
+	/** The earliest process instance end time (inclusive). */
+	private Date endTimeFrom;
+	
+	/** The latest process instance end time (exclusive). */
+	private Date endTimeTo;
+
+	public HistoryQuery() {
+	}
+	
+	/**
+	 * Instantiates a new history query.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param endTimeFrom the earliest process instance end time (inclusive)
+	 * @param endTimeTo the latest process instance end time (exclusive)
+	 */
+	public HistoryQuery(String uniqueProcessId, Date endTimeFrom, Date endTimeTo) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.endTimeFrom = endTimeFrom;
+		this.endTimeTo = endTimeTo;
+	}
+
+	/**
+	 * Checks if a process instance end time matches the time range of this query.
+	 *
+	 * @param endTime the end time in milliseconds
+	 * @return true, if successful
+	 */
+	boolean matchesEndTime(long endTime) {
+		return (endTimeFrom == null || endTime >= endTimeFrom.getTime())
+				&& (endTimeTo == null || endTime < endTimeTo.getTime());
+	}
+	
+	/**
+	 * Checks if the time range of this query overlaps a given time range.
+	 *
+	 * @param minEndTime the minimum end time in milliseconds
+	 * @param maxEndTime the maximum end time in milliseconds
+	 * @return true, if successful
+	 */
+	boolean overlapsEndTime(long minEndTime, long maxEndTime) {
+		return (endTimeFrom == null || maxEndTime >= endTimeFrom.getTime())
+				&& (endTimeTo == null || minEndTime < endTimeTo.getTime());
+	}
+
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	public void setUniqueProcessId(String uniqueProcessId) {
+		this.uniqueProcessId = uniqueProcessId;
+	}
+
+	public String getProcessInstanceId() {
+		return processInstanceId;
+	}
+
+	public void setProcessInstanceId(String processInstanceId) {
+		this.processInstanceId = processInstanceId;
+	}
+
+	public Date getEndTimeFrom() {
+		return endTimeFrom;
+	}
+
+	public void setEndTimeFrom(Date endTimeFrom) {
+		this.endTimeFrom = endTimeFrom;
+	}
+
+	public Date getEndTimeTo() {
+		return endTimeTo;
+	}
+
+	public void setEndTimeTo(Date endTimeTo) {
+		this.endTimeTo = endTimeTo;
+	}
+}
@@ -0,0 +1,100 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.data.history;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The HistoryRecord holds a completed process instance as it is stored in the
+ * {@link ColumnarHistoryStore}: its timings, its meta data and the flow node
+ * instances it passed.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class HistoryRecord {
+
+	private String uniqueProcessId;
+	
+	private String processInstanceId;
+	
+	private Date processInstanceStartTime;
+	
+	private Date processInstanceEndTime;
+	
+	private Map<String, String> metaData = new HashMap<String, String>();
+	
+	private List<FlowNodeHistoryRecord> flowNodeInstances = new ArrayList<FlowNodeHistoryRecord>();
+
+	/**
+	 * Instantiates a new history record.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 * @param processInstanceStartTime the process instance start time
+	 * @param processInstanceEndTime the process instance end time
+	 */
+	public HistoryRecord(String uniqueProcessId, String processInstanceId,
+			Date processInstanceStartTime, Date processInstanceEndTime) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.processInstanceId = processInstanceId;
+		this.processInstanceStartTime = processInstanceStartTime;
+		this.processInstanceEndTime = processInstanceEndTime;
+	}
+
+	/**
+	 * Adds a flow node instance to the record.
+	 *
+	 * @param flowNodeInstance the flow node instance
+	 */
+	public void addFlowNodeInstance(FlowNodeHistoryRecord flowNodeInstance) {
+		this.flowNodeInstances.add(flowNodeInstance);
+	}
+
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	public String getProcessInstanceId() {
+		return processInstanceId;
+	}
+
+	public Date getProcessInstanceStartTime() {
+		return processInstanceStartTime;
+	}
+
+	public Date getProcessInstanceEndTime() {
+		return processInstanceEndTime;
+	}
+
+	public Map<String, String> getMetaData() {
+		return metaData;
+	}
+
+	public void setMetaData(Map<String, String> metaData) {
+		this.metaData = metaData;
+	}
+
+	public List<FlowNodeHistoryRecord> getFlowNodeInstances() {
+		return flowNodeInstances;
+	}
+}
@@ -0,0 +1,38 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.data.history;
+
+import java.io.IOException;
+
+/**
+ * A HistoryRecordHandler receives the history records of a scan one by one, so
+ * that a scan does not need to hold its result in memory.
+ * 
+ * @author christopher köster
+ * 
+ */
+public interface HistoryRecordHandler {
+
+	/**
+	 * Handle a history record.
+	 *
+	 * @param record the history record
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	void handle(HistoryRecord record) throws IOException;
+}
@@ -17,6 +17,8 @@
  */
 package com.catify.processengine.core.data.repositories;
 
+import java.util.Set;
+
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.GraphRepository;
 import org.springframework.data.neo4j.repository.IndexRepository;
@@ -37,4 +39,7 @@ public interface FlowNodeRepository extends GraphRepository<FlowNode>,
 
 	@Query("start process=node:ProcessNode(uniqueProcessId={0}) match process-[r1:HAS*1..1000]->flownode where flownode.uniqueFlowNodeId = {1} return flownode")
 	FlowNode findFlowNode(String uniqueProcessId, String uniqueFlowNodeId);
+	
+	@Query("start process=node:ProcessNode(uniqueProcessId={0}) match process-[r1:HAS*1..1000]->flownode return distinct flownode.uniqueFlowNodeId")
+	Set<String> findUniqueFlowNodeIds(String uniqueProcessId);
 }
@@ -20,6 +20,8 @@
  */
 package com.catify.processengine.core.data.repositories;
 
+import java.util.Set;
+
 import org.springframework.data.neo4j.annotation.Query;
 import org.springframework.data.neo4j.repository.GraphRepository;
 
@@ -45,4 +47,38 @@ public interface ProcessInstanceNodeRepository extends GraphRepository<ProcessIn
 	 */
 	@Query("start process=node:ProcessNode(uniqueProcessId={0}) match process-[r:HAS_PROCESS_INSTANCE]->processInctanceNode where processInctanceNode.instanceId = {1} return processInctanceNode")
 	ProcessInstanceNode findProcessInstanceNode(String uniqueProcessId, String processInstanceId);
+	
+	/**
+	 * Find the instance ids of the process instances of a process whose meta data match a query 
+	 * on the (lucene) index of the process instance nodes and whose instance of the given flow 
+	 * node is at the given state.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param metaDataQuery the index query (eg. <code>metaDataProperties-orderId:"4711"</code>)
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param state the state of the flow node instance
+	 * @return the process instance ids
+	 */
+	@Query("start process=node:ProcessNode(uniqueProcessId={0}), processInstanceNode=node:ProcessInstanceNode({1}), flownode=node:FlowNode(uniqueFlowNodeId={2}) match process-[:HAS_PROCESS_INSTANCE]->processInstanceNode, flownode-[r:HAS_INSTANCE]->flownodeinstance where r.processInstanceId = processInstanceNode.instanceId and flownodeinstance.nodeInstanceState = {3} return distinct processInstanceNode.instanceId")
+	Set<String> findProcessInstanceIdsByMetaDataAndState(String uniqueProcessId, String metaDataQuery, String uniqueFlowNodeId, String state);
+	
+	/**
+	 * Find the instance ids of all process instances of a process. The result is 
+	 * evaluated lazily while iterating.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return the process instance ids
+	 */
+	@Query("start process=node:ProcessNode(uniqueProcessId={0}) match process-[:HAS_PROCESS_INSTANCE]->processInstanceNode return processInstanceNode.instanceId")
+	Iterable<String> findAllProcessInstanceIds(String uniqueProcessId);
+	
+	/**
+	 * Find the instance ids of the process instances of a process that have no end time. 
+	 * The result is evaluated lazily while iterating.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return the process instance ids
+	 */
+	@Query("start process=node:ProcessNode(uniqueProcessId={0}) match process-[:HAS_PROCESS_INSTANCE]->processInstanceNode where not(has(processInstanceNode.processInstanceEndTime)) return processInstanceNode.instanceId")
+	Iterable<String> findUnendedProcessInstanceIds(String uniqueProcessId);
 }
@@ -20,6 +20,8 @@
  */
 package com.catify.processengine.core.data.services;
 
+import java.util.Set;
+
 import org.springframework.stereotype.Component;
 
 import com.catify.processengine.core.data.model.entities.FlowNode;
@@ -51,6 +53,16 @@ public interface FlowNodeRepositoryService {
 	 * @return the flow node
 	 */
 	FlowNode findArchivedByRunningUniqueFlowNodeId(String uniqueFlowNodeId);
+	
+	/**
+	 * Find the unique flow node ids of all flow nodes of a process (including the flow 
+	 * nodes of its sub processes).
+	 * 
+	 * @param uniqueProcessId
+	 *            the unique process id
+	 * @return the unique flow node ids
+	 */
+	Set<String> findUniqueFlowNodeIds(String uniqueProcessId);
 
 	/**
 	 * delete a flow node by id.
@@ -17,8 +17,13 @@
  */
 package com.catify.processengine.core.data.services;
 
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.xml.bind.JAXBElement;
 
@@ -48,6 +53,12 @@ public final class IdService {
 	
 	public final static String ARCHIVEPREFIX = "Archive:";
 	
+	/** The compact ids, mapped by their unique ids. */
+	private static final ConcurrentMap<String, String> compactIds = new ConcurrentHashMap<String, String>();
+	
+	/** The unique ids, mapped by their compact ids. */
+	private static final ConcurrentMap<String, String> uniqueIds = new ConcurrentHashMap<String, String>();
+	
 	/**
 	 * Gets a unique process id from the given parameters.
 	 * 
@@ -328,5 +339,55 @@ public final class IdService {
 		}
 		return parentSubProcesses;
 	}
-
+	
+	/**
+	 * Gets the compact id of a unique id. The compact id is derived from a 63 bit sha-1 prefix 
+	 * of the unique id in base 36 (eg. 'n3k9x0f2mq1zt'), so it is the same on every node and 
+	 * after every restart and does not need to be persisted. Compact ids are used where the 
+	 * long unique ids are expensive, eg. in actor names, which akka hashes and compares on 
+	 * every lookup. The mapping is registered, so that the unique id stays available for logging 
+	 * (see {@link #getUniqueId(String)}).
+	 *
+	 * @param uniqueId the unique id (eg. a unique flow node id)
+	 * @return the compact id
+	 * @throws IllegalStateException if two unique ids have the same compact id
+	 */
+	public static String getCompactId(String uniqueId) {
+		String compactId = compactIds.get(uniqueId);
+		if (compactId == null) {
+			compactId = createCompactId(uniqueId);
+			String registeredUniqueId = uniqueIds.putIfAbsent(compactId, uniqueId);
+			if (registeredUniqueId != null && !registeredUniqueId.equals(uniqueId)) {
+				throw new IllegalStateException(String.format("The ids '%s' and '%s' have the same compact id %s", 
+						registeredUniqueId, uniqueId, compactId));
+			}
+			compactIds.putIfAbsent(uniqueId, compactId);
+			LOG.debug(String.format("Registered compact id %s for %s", compactId, uniqueId));
+		}
+		return compactId;
+	}
+	
+	/**
+	 * Gets the unique id of a compact id created by {@link #getCompactId(String)}.
+	 *
+	 * @param compactId the compact id
+	 * @return the unique id or null if the compact id is unknown
+	 */
+	public static String getUniqueId(String compactId) {
+		return uniqueIds.get(compactId);
+	}
+	
+	private static String createCompactId(String uniqueId) {
+		byte[] hash;
+		try {
+			hash = MessageDigest.getInstance("SHA-1").digest(uniqueId.getBytes(Charset.forName("UTF-8")));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			value = (value << 8) | (hash[i] & 0xff);
+		}
+		return "n" + Long.toString(value & Long.MAX_VALUE, Character.MAX_RADIX);
+	}
 }
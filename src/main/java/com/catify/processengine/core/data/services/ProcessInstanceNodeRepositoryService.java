@@ -20,6 +20,9 @@
  */
 package com.catify.processengine.core.data.services;
 
+import java.util.Map;
+import java.util.Set;
+
 import org.springframework.stereotype.Component;
 
 import com.catify.processengine.core.data.model.entities.ProcessInstanceNode;
@@ -66,4 +69,35 @@ public interface ProcessInstanceNodeRepositoryService {
 	 * @param processInstanceNode the process instance node
 	 */
 	void delete(ProcessInstanceNode processInstanceNode);
+	
+	/**
+	 * Find the instance ids of the process instances of a process that wait at a flow node 
+	 * (their instance of the flow node is active) and whose meta data match all the given 
+	 * meta data values. The lookup uses the index of the meta data properties.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param metaData the meta data names and values to match
+	 * @return the process instance ids
+	 */
+	Set<String> findWaitingProcessInstanceIdsByMetaData(String uniqueProcessId, String uniqueFlowNodeId, Map<String, Object> metaData);
+	
+	/**
+	 * Find the instance ids of all archived process instances of a process. The ids 
+	 * are loaded lazily while iterating, so processes with many archived instances 
+	 * can be walked without holding all ids in memory.
+	 *
+	 * @param uniqueProcessId the unique process id (of the running process)
+	 * @return the archived process instance ids
+	 */
+	Iterable<String> findArchivedProcessInstanceIds(String uniqueProcessId);
+	
+	/**
+	 * Find the instance ids of all running process instances of a process. Instances that 
+	 * have ended but are not archived yet are included.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return the running process instance ids
+	 */
+	Iterable<String> findRunningProcessInstanceIds(String uniqueProcessId);
 }
@@ -20,6 +20,8 @@
  */
 package com.catify.processengine.core.data.services.impl;
 
+import java.util.Set;
+
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -59,6 +61,14 @@ public class SpringDataFlowNodeRepositoryService implements FlowNodeRepositorySe
 		return flowNodeRepository.findByPropertyValue("uniqueFlowNodeId",
 				IdService.ARCHIVEPREFIX + uniqueFlowNodeId);
 	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.data.services.FlowNodeRepositoryService#findUniqueFlowNodeIds(java.lang.String)
+	 */
+	@Override
+	public Set<String> findUniqueFlowNodeIds(String uniqueProcessId) {
+		return flowNodeRepository.findUniqueFlowNodeIds(uniqueProcessId);
+	}
 
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.core.data.services.FlowNodeRepositoryService#delete(java.lang.String)
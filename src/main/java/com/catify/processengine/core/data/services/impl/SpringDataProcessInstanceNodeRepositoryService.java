@@ -20,9 +20,14 @@
  */
 package com.catify.processengine.core.data.services.impl;
 
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.lucene.queryParser.QueryParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.data.model.entities.ProcessInstanceNode;
 import com.catify.processengine.core.data.repositories.ProcessInstanceNodeRepository;
 import com.catify.processengine.core.data.services.IdService;
@@ -82,4 +87,50 @@ public class SpringDataProcessInstanceNodeRepositoryService implements ProcessIn
 			String uniqueProcessId, String processInstanceId) {
 		return processInstanceNodeRepository.findProcessInstanceNode(IdService.ARCHIVEPREFIX + uniqueProcessId, processInstanceId);
 	}
+
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService#findWaitingProcessInstanceIdsByMetaData(java.lang.String, java.lang.String, java.util.Map)
+	 */
+	@Override
+	public Set<String> findWaitingProcessInstanceIdsByMetaData(String uniqueProcessId, String uniqueFlowNodeId, Map<String, Object> metaData) {
+		return processInstanceNodeRepository.findProcessInstanceIdsByMetaDataAndState(uniqueProcessId, 
+				createMetaDataQuery(metaData), uniqueFlowNodeId, NodeInstaceStates.ACTIVE_STATE);
+	}
+
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService#findArchivedProcessInstanceIds(java.lang.String)
+	 */
+	@Override
+	public Iterable<String> findArchivedProcessInstanceIds(String uniqueProcessId) {
+		return processInstanceNodeRepository.findAllProcessInstanceIds(IdService.ARCHIVEPREFIX + uniqueProcessId);
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService#findRunningProcessInstanceIds(java.lang.String)
+	 */
+	@Override
+	public Iterable<String> findRunningProcessInstanceIds(String uniqueProcessId) {
+		return processInstanceNodeRepository.findUnendedProcessInstanceIds(uniqueProcessId);
+	}
+
+	/**
+	 * Creates a lucene query that matches all given meta data values. Meta data properties are 
+	 * indexed by spring data with the field name as prefix (see {@link ProcessInstanceNode}). 
+	 * Names and values are escaped, so they can not change the query.
+	 *
+	 * @param metaData the meta data names and values
+	 * @return the index query
+	 */
+	static String createMetaDataQuery(Map<String, Object> metaData) {
+		StringBuilder query = new StringBuilder();
+		for (Map.Entry<String, Object> entry : metaData.entrySet()) {
+			if (query.length() > 0) {
+				query.append(" AND ");
+			}
+			query.append("metaDataProperties-").append(QueryParser.escape(entry.getKey())).append(":\"")
+				.append(QueryParser.escape(String.valueOf(entry.getValue())))
+				.append("\"");
+		}
+		return query.toString();
+	}
 }
@@ -26,6 +26,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.catify.processengine.core.processdefinition.jaxb.TMetaData;
+import com.catify.processengine.core.services.Admission;
 import com.catify.processengine.core.services.MessageDispatcherService;
 
 /**
@@ -166,16 +167,36 @@ public abstract class MessageIntegrationSPI {
 	public abstract void send(IntegrationMessage integrationMessage);
 	
 	/**
-	 * Dispatch message from outside to the process engine.
+	 * Dispatch message from outside to the process engine. Messages that start process 
+	 * instances are subject to the admission control of the engine, implementations return 
+	 * the outcome of {@link MessageDispatcherService#dispatchToEngine(IntegrationMessage, Map)}. 
+	 * Rejected messages must be pushed back to their source (e.g. not acknowledged or answered 
+	 * with an error), queued messages that are rejected later are passed to 
+	 * {@link #rejected(IntegrationMessage)}. Messages without a process instance id that do not 
+	 * match a waiting process instance are {@link Admission#UNCORRELATED}, they can be delivered 
+	 * again later (e.g. if the instance has not reached the catching node yet).
 	 * @param integrationMessage
 	 *            the integration message
 	 * @param metaData
 	 *            the meta data map holding the meta data names and values 
 	 * 			  of a flow node to be saved in the process
+	 * @return whether the message has been accepted, queued, rejected or could not be correlated
 	 */
-	public abstract void receive(IntegrationMessage integrationMessage,
+	public abstract Admission receive(IntegrationMessage integrationMessage,
 			Map<String, Object> metaData);
 	
+	/**
+	 * Called if a received message has been queued by the admission control and is rejected 
+	 * later (e.g. because the engine shuts down). Implementations should push the message back 
+	 * to its source, the default implementation only logs it.
+	 *
+	 * @param integrationMessage the rejected integration message
+	 */
+	public void rejected(IntegrationMessage integrationMessage) {
+		LOG.warn(String.format("Queued message for %s (process instance %s) has been rejected.", 
+				integrationMessage.getUniqueFlowNodeId(), integrationMessage.getProcessInstanceId()));
+	}
+	
 	/**
 	 * Issue a request/reply via the spi implementation. The call must be synchronous and will 
 	 * send the reply back to the request initiator. 
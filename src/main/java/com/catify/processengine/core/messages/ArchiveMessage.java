@@ -19,6 +19,8 @@ package com.catify.processengine.core.messages;
 
 import java.util.Date;
 
+import akka.routing.ConsistentHashingRouter.ConsistentHashable;
+
 import com.catify.processengine.core.nodes.EndEventNode;
 import com.catify.processengine.core.services.ProcessInstanceCleansingService;
 
@@ -30,7 +32,7 @@ import com.catify.processengine.core.services.ProcessInstanceCleansingService;
  * @author christopher köster
  * 
  */
-public class ArchiveMessage extends Message {
+public class ArchiveMessage extends Message implements ConsistentHashable {
 
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 1L;
@@ -80,4 +82,12 @@ public class ArchiveMessage extends Message {
 	public void setEndTime(Date endTime) {
 		this.processInstanceEndTime = endTime;
 	}
+
+	/* (non-Javadoc)
+	 * @see akka.routing.ConsistentHashingRouter.ConsistentHashable#consistentHashKey()
+	 */
+	@Override
+	public Object consistentHashKey() {
+		return this.processInstanceId;
+	}
 }
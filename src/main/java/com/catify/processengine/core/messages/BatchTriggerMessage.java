@@ -0,0 +1,84 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.messages;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The batch trigger message carries the triggers of many process instances waiting 
+ * on the same node, e.g. all instances catching a thrown signal. A flow node handles 
+ * it like one {@link TriggerMessage} per process instance, but it takes only one 
+ * message (and mailbox entry) per batch to deliver them.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class BatchTriggerMessage extends Message {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+	
+	/** The process instance ids to trigger. */
+	private List<String> processInstanceIds;
+	
+	/** The payload of every trigger. */
+	private Object payload;
+
+	/**
+	 * Instantiates a new batch trigger message.
+	 *
+	 * @param processInstanceIds the process instance ids to trigger
+	 * @param payload the payload of every trigger
+	 */
+	public BatchTriggerMessage(List<String> processInstanceIds, Object payload) {
+		this.processInstanceIds = processInstanceIds;
+		this.payload = payload;
+	}
+
+	/**
+	 * Gets the process instance ids to trigger.
+	 *
+	 * @return the process instance ids
+	 */
+	public List<String> getProcessInstanceIds() {
+		return processInstanceIds;
+	}
+
+	/**
+	 * Gets the payload.
+	 *
+	 * @return the payload
+	 */
+	public Object getPayload() {
+		return payload;
+	}
+	
+	/**
+	 * Gets the single trigger messages of this batch.
+	 *
+	 * @return one {@link TriggerMessage} per process instance
+	 */
+	public List<TriggerMessage> getTriggerMessages() {
+		List<TriggerMessage> triggerMessages = new ArrayList<TriggerMessage>(processInstanceIds.size());
+		for (String processInstanceId : processInstanceIds) {
+			triggerMessages.add(new TriggerMessage(processInstanceId, payload));
+		}
+		return triggerMessages;
+	}
+}
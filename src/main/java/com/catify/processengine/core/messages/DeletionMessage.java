@@ -19,6 +19,8 @@ package com.catify.processengine.core.messages;
 
 import java.util.Set;
 
+import akka.routing.ConsistentHashingRouter.ConsistentHashable;
+
 import com.catify.processengine.core.nodes.EndEventNode;
 import com.catify.processengine.core.services.ProcessInstanceCleansingService;
 
@@ -30,7 +32,7 @@ import com.catify.processengine.core.services.ProcessInstanceCleansingService;
  * @author christopher köster
  * 
  */
-public class DeletionMessage extends Message {
+public class DeletionMessage extends Message implements ConsistentHashable {
 
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 1L;
@@ -88,4 +90,12 @@ public class DeletionMessage extends Message {
 	public void setDataObjectIds(Set<String> dataObjectIds) {
 		this.dataObjectIds = dataObjectIds;
 	}
+
+	/* (non-Javadoc)
+	 * @see akka.routing.ConsistentHashingRouter.ConsistentHashable#consistentHashKey()
+	 */
+	@Override
+	public Object consistentHashKey() {
+		return this.processInstanceId;
+	}
 }
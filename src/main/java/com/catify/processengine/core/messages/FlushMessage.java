@@ -0,0 +1,65 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.messages;
+
+/**
+ * The flush message is answered by a flow node as soon as it has handled all messages 
+ * it received before (the mailbox of an actor is processed in order). It is used to 
+ * find out whether the messages sent to a node have been processed and persisted, 
+ * e.g. by the {@link com.catify.processengine.management.Ingestion}.
+ * <p>
+ * Batching services send a numbered flush message to themselves to write a batch 
+ * after its timeout, the number identifies the batch (see 
+ * {@link com.catify.processengine.core.services.MetaDataService}).
+ * 
+ * @author christopher köster
+ * 
+ */
+public class FlushMessage extends Message {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+	
+	/** The number of the batch to flush. */
+	private long flushNumber;
+	
+	/**
+	 * Instantiates a new flush message.
+	 */
+	public FlushMessage() {
+	}
+	
+	/**
+	 * Instantiates a new flush message for a batch.
+	 *
+	 * @param flushNumber the number of the batch to flush
+	 */
+	public FlushMessage(long flushNumber) {
+		this.flushNumber = flushNumber;
+	}
+	
+	/**
+	 * Gets the number of the batch to flush.
+	 *
+	 * @return the flush number
+	 */
+	public long getFlushNumber() {
+		return flushNumber;
+	}
+
+}
@@ -1,41 +1,22 @@
 package com.catify.processengine.core.messages;
 
 /**
- * Message for BPMN 2.0 link events.
+ * Message for BPMN 2.0 link events. It is sent by a throwing link event
+ * directly to its catching counterpart, which is activated and triggered by
+ * this single message.
  * 
  * @author claus straube
  *
  */
-public class LinkEventMessage extends Message {
+public class LinkEventMessage extends ActivationMessage {
 
 	/**
 	 * 
 	 */
 	private static final long serialVersionUID = 1779040828585017752L;
 
-	private String target;
-	private String uniqueProcessId;
-	
-	public LinkEventMessage(String target, String uniqueProcessId, String uniqueInstanceId) {
-		this.target = target;
-		this.uniqueProcessId = uniqueProcessId;
-		this.processInstanceId = uniqueInstanceId;
-	}
-	
-	public String getTarget() {
-		return target;
-	}
-	
-	public void setTarget(String target) {
-		this.target = target;
-	}
-	
-	public String getUniqueProcessId() {
-		return uniqueProcessId;
+	public LinkEventMessage(String processInstanceId) {
+		super(processInstanceId);
 	}
 	
-	public void setUniqueProcessId(String uniqueProcessId) {
-		this.uniqueProcessId = uniqueProcessId;
-	}	
-	
 }
@@ -19,6 +19,8 @@ package com.catify.processengine.core.messages;
 
 import java.io.Serializable;
 
+import com.catify.processengine.core.metrics.ExecutionTracer;
+
 /**
  * Base class for akka message exchanges.
  * 
@@ -32,6 +34,15 @@ public abstract class Message implements Serializable {
 	
 	/** The process instance id. */
 	protected String processInstanceId;
+	
+	/** 
+	 * The span that sent this message, only set for traced process instances (see {@link ExecutionTracer}). 
+	 * Not persisted, a message read from a durable mailbox starts a new trace tree. 
+	 */
+	private transient long traceParentSpanId;
+	
+	/** The time this message has been sent with, only set for traced process instances. Not persisted. */
+	private transient long traceEnqueueNanos;
 
 	/**
 	 * Gets the process instance id.
@@ -51,4 +62,33 @@ public abstract class Message implements Serializable {
 		this.processInstanceId = processInstanceId;
 	}
 
+	/**
+	 * Gets the id of the trace span that sent this message.
+	 *
+	 * @return the span id or 0, if unknown
+	 */
+	public long getTraceParentSpanId() {
+		return traceParentSpanId;
+	}
+
+	/**
+	 * Gets the time this message has been sent.
+	 *
+	 * @return the {@link System#nanoTime()} at sending or 0, if unknown
+	 */
+	public long getTraceEnqueueNanos() {
+		return traceEnqueueNanos;
+	}
+
+	/**
+	 * Stamps the message with the trace context of its sender.
+	 *
+	 * @param parentSpanId the id of the span sending this message (0 if unknown)
+	 * @param enqueueNanos the {@link System#nanoTime()} at sending
+	 */
+	public void setTraceContext(long parentSpanId, long enqueueNanos) {
+		this.traceParentSpanId = parentSpanId;
+		this.traceEnqueueNanos = enqueueNanos;
+	}
+
 }
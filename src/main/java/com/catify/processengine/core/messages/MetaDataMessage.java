@@ -22,16 +22,20 @@ package com.catify.processengine.core.messages;
 
 import java.util.Map;
 
+import akka.routing.ConsistentHashingRouter.ConsistentHashable;
+
 import com.catify.processengine.core.integration.MessageIntegrationSPI;
 
 /**
  * The meta data message carries the meta data generated in the message
- * integration ({@link MessageIntegrationSPI}.
+ * integration ({@link MessageIntegrationSPI}. Meta data messages are routed by
+ * their process instance id, so that all meta data of a process instance is
+ * written by the same meta data writer.
  * 
  * @author christopher köster
  * 
  */
-public class MetaDataMessage extends Message {
+public class MetaDataMessage extends Message implements ConsistentHashable {
 
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 1L;
@@ -91,4 +95,12 @@ public class MetaDataMessage extends Message {
 	public void setUniqueProcessID(String uniqueProcessID) {
 		this.uniqueProcessId = uniqueProcessID;
 	}
+
+	/* (non-Javadoc)
+	 * @see akka.routing.ConsistentHashingRouter.ConsistentHashable#consistentHashKey()
+	 */
+	@Override
+	public Object consistentHashKey() {
+		return this.processInstanceId;
+	}
 }
@@ -0,0 +1,73 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.messages;
+
+import java.util.Date;
+
+import com.catify.processengine.core.nodes.EndEventNode;
+
+/**
+ * The ProcessInstanceEndMessage is published on the event stream of the actor system by 
+ * the {@link EndEventNode} when a top level process instance has ended. Anyone interested 
+ * in process instance completion (eg. monitoring or load tests) can subscribe to it.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class ProcessInstanceEndMessage extends Message {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The unique process id. */
+	private String uniqueProcessId;
+	
+	/** The process instance end time. */
+	private Date processInstanceEndTime;
+	
+	/**
+	 * Instantiates a new process instance end message.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 * @param processInstanceEndTime the process instance end time
+	 */
+	public ProcessInstanceEndMessage(String uniqueProcessId, String processInstanceId, Date processInstanceEndTime) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.processInstanceId = processInstanceId;
+		this.processInstanceEndTime = processInstanceEndTime;
+	}
+
+	/**
+	 * Gets the unique process id.
+	 * 
+	 * @return the unique process id
+	 */
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	/**
+	 * Gets the process instance end time.
+	 *
+	 * @return the process instance end time
+	 */
+	public Date getEndTime() {
+		return processInstanceEndTime;
+	}
+}
@@ -0,0 +1,74 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.messages;
+
+import java.util.Date;
+
+import com.catify.processengine.core.nodes.StartEventNode;
+
+/**
+ * The ProcessInstanceStartMessage is published on the event stream of the actor system by 
+ * the {@link StartEventNode} when a top level process instance has been created. Together with 
+ * the {@link ProcessInstanceEndMessage} it gives the number of running instances, including 
+ * those started by timers or incoming messages.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class ProcessInstanceStartMessage extends Message {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The unique process id. */
+	private String uniqueProcessId;
+	
+	/** The process instance start time. */
+	private Date processInstanceStartTime;
+	
+	/**
+	 * Instantiates a new process instance start message.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 * @param processInstanceStartTime the process instance start time
+	 */
+	public ProcessInstanceStartMessage(String uniqueProcessId, String processInstanceId, Date processInstanceStartTime) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.processInstanceId = processInstanceId;
+		this.processInstanceStartTime = processInstanceStartTime;
+	}
+
+	/**
+	 * Gets the unique process id.
+	 * 
+	 * @return the unique process id
+	 */
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	/**
+	 * Gets the process instance start time.
+	 *
+	 * @return the process instance start time
+	 */
+	public Date getStartTime() {
+		return processInstanceStartTime;
+	}
+}
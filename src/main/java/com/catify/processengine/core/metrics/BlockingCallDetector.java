@@ -0,0 +1,207 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The BlockingCallDetector marks the threads handling messages of engine actors (flow nodes 
+ * and event definitions), so the {@link BlockingCallDetectorService} can sample them and 
+ * attribute long waits (eg. 'Await.result' or a slow service provider call) to the actor and 
+ * the BPMN element that blocks the dispatcher thread. Marking costs one volatile read per 
+ * message while the detector is disabled.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class BlockingCallDetector {
+
+	private static volatile boolean enabled;
+	
+	/** The handlings in progress by thread id. */
+	private static final ConcurrentMap<Long, Handling> HANDLINGS = new ConcurrentHashMap<Long, Handling>();
+	
+	/** The ids of all threads that have handled engine messages since the detector has been enabled. */
+	private static final ConcurrentMap<Long, Boolean> ENGINE_THREADS = new ConcurrentHashMap<Long, Boolean>();
+	
+	private BlockingCallDetector() {
+	}
+	
+	/**
+	 * Marks the current thread as handling a message of an engine actor.
+	 *
+	 * @param actor the actor (its path is used in reports)
+	 * @param elementType the type of the BPMN element (eg. the node class)
+	 * @param uniqueFlowNodeId the unique flow node id (null if unknown)
+	 * @param processInstanceId the process instance id
+	 * @param messageType the type of the message
+	 */
+	public static void enter(Object actor, String elementType, String uniqueFlowNodeId, String processInstanceId, 
+			String messageType) {
+		if (!enabled) {
+			return;
+		}
+		Thread thread = Thread.currentThread();
+		ENGINE_THREADS.put(thread.getId(), Boolean.TRUE);
+		HANDLINGS.put(thread.getId(), new Handling(thread, actor, elementType, uniqueFlowNodeId, processInstanceId, 
+				messageType, System.nanoTime()));
+	}
+	
+	/**
+	 * Clears the mark of the current thread. Handlings that have been found blocking are 
+	 * recorded in the 'blocking.&lt;elementType&gt;.&lt;uniqueFlowNodeId&gt;' histogram.
+	 */
+	public static void exit() {
+		if (!enabled) {
+			return;
+		}
+		Handling handling = HANDLINGS.remove(Thread.currentThread().getId());
+		if (handling != null && handling.isBlocked()) {
+			MetricsRegistry.getHistogram("blocking." + handling.getElementType() + "." + handling.getUniqueFlowNodeId())
+					.recordSince(handling.getStartNanos());
+		}
+	}
+	
+	/**
+	 * Gets the handlings in progress.
+	 *
+	 * @return the handlings
+	 */
+	public static List<Handling> getHandlings() {
+		return new ArrayList<Handling>(HANDLINGS.values());
+	}
+	
+	/**
+	 * Checks if a handling is still in progress.
+	 *
+	 * @param handling the handling
+	 * @return true, if its thread has not moved on
+	 */
+	static boolean isCurrent(Handling handling) {
+		return HANDLINGS.get(handling.getThread().getId()) == handling;
+	}
+	
+	/**
+	 * Gets the ids of the threads that have handled engine messages.
+	 *
+	 * @return the thread ids
+	 */
+	public static List<Long> getEngineThreadIds() {
+		return new ArrayList<Long>(ENGINE_THREADS.keySet());
+	}
+	
+	/**
+	 * Forgets a thread that does not exist any more.
+	 *
+	 * @param threadId the thread id
+	 */
+	static void forgetThread(long threadId) {
+		ENGINE_THREADS.remove(threadId);
+		HANDLINGS.remove(threadId);
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables the detector. Disabling forgets all marks.
+	 *
+	 * @param enabled true to enable
+	 */
+	public static void setEnabled(boolean enabled) {
+		BlockingCallDetector.enabled = enabled;
+		if (!enabled) {
+			HANDLINGS.clear();
+			ENGINE_THREADS.clear();
+		}
+	}
+	
+	/**
+	 * The handling of a message by an engine actor on a thread.
+	 */
+	public static class Handling {
+		
+		private final Thread thread;
+		
+		private final Object actor;
+		
+		private final String elementType;
+		
+		private final String uniqueFlowNodeId;
+		
+		private final String processInstanceId;
+		
+		private final String messageType;
+		
+		private final long startNanos;
+		
+		/** Set by the sampling thread, once the handling has been found blocking. */
+		private volatile boolean blocked;
+		
+		Handling(Thread thread, Object actor, String elementType, String uniqueFlowNodeId, String processInstanceId, 
+				String messageType, long startNanos) {
+			this.thread = thread;
+			this.actor = actor;
+			this.elementType = elementType;
+			this.uniqueFlowNodeId = uniqueFlowNodeId;
+			this.processInstanceId = processInstanceId;
+			this.messageType = messageType;
+			this.startNanos = startNanos;
+		}
+
+		public Thread getThread() {
+			return thread;
+		}
+
+		public Object getActor() {
+			return actor;
+		}
+
+		public String getElementType() {
+			return elementType;
+		}
+
+		public String getUniqueFlowNodeId() {
+			return uniqueFlowNodeId;
+		}
+
+		public String getProcessInstanceId() {
+			return processInstanceId;
+		}
+
+		public String getMessageType() {
+			return messageType;
+		}
+
+		public long getStartNanos() {
+			return startNanos;
+		}
+
+		public boolean isBlocked() {
+			return blocked;
+		}
+
+		void markBlocked() {
+			this.blocked = true;
+		}
+	}
+}
@@ -0,0 +1,403 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.catify.processengine.core.metrics.BlockingCallDetector.Handling;
+
+/**
+ * The BlockingCallDetectorService is a diagnostic mode that finds blocking calls on the 
+ * dispatcher threads of the engine actors. It samples the threads marked by the 
+ * {@link BlockingCallDetector}: a message handling that takes longer than the threshold while 
+ * its thread is blocked, waiting or inside a native call (usually blocking I/O) is logged once 
+ * with the actor, the BPMN element and a summary of the stack down to the engine code. When at 
+ * least half of the engine threads of a dispatcher are blocked at the same time, a starvation 
+ * alert lists all of them, because no other actor of that dispatcher can make progress. A summary per 
+ * element and calling frame is logged at shutdown.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class BlockingCallDetectorService {
+
+	static final Logger LOG = LoggerFactory.getLogger(BlockingCallDetectorService.class);
+	
+	/** The part of the engine threads that has to be blocked for a starvation alert. */
+	static final double STARVATION_RATIO = 0.5;
+	
+	/** The maximum number of stack frames in a summary. */
+	static final int MAX_FRAMES = 16;
+	
+	private static final String ENGINE_PACKAGE = "com.catify.processengine.";
+	
+	/** True if blocking calls should be detected. */
+	@Value("${metrics.blockingDetection}")
+	private boolean enabled;
+	
+	/** The time in millis a handling has to block to be reported. */
+	@Value("${metrics.blockingThreshold}")
+	private long threshold;
+	
+	/** The sample interval in millis. */
+	@Value("${metrics.blockingSampleInterval}")
+	private long sampleInterval;
+	
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+	
+	/** The blocking calls found by element and calling frame. */
+	private final Map<String, BlockingStatistics> statistics = new TreeMap<String, BlockingStatistics>();
+	
+	private ScheduledExecutorService executor;
+	
+	/** The start of the active starvation alerts by thread pool. */
+	private final Map<String, Long> starvationStarts = new HashMap<String, Long>();
+	
+	public BlockingCallDetectorService() {
+	}
+	
+	BlockingCallDetectorService(long threshold) {
+		this.enabled = true;
+		this.threshold = threshold;
+	}
+	
+	/**
+	 * Enables the marking of engine threads and starts sampling.
+	 */
+	@PostConstruct
+	void start() {
+		BlockingCallDetector.setEnabled(enabled);
+		if (!enabled) {
+			return;
+		}
+		LOG.info(String.format("Detecting blocking calls longer than %s ms on engine threads.", threshold));
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "blocking-call-detector");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					sample();
+				} catch (RuntimeException e) {
+					// keep the scheduled task alive
+					LOG.warn("Could not sample engine threads", e);
+				}
+			}
+		}, sampleInterval, sampleInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Stops sampling and logs the summary.
+	 */
+	@PreDestroy
+	void stop() {
+		if (executor == null) {
+			return;
+		}
+		executor.shutdownNow();
+		BlockingCallDetector.setEnabled(false);
+		String report = this.getReport();
+		if (report.length() > 0) {
+			LOG.warn("Blocking calls on engine threads:\n" + report);
+		}
+	}
+	
+	/**
+	 * Samples the marked threads once.
+	 *
+	 * @return the handlings blocking at the moment
+	 */
+	synchronized List<BlockingCall> sample() {
+		long now = System.nanoTime();
+		long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(threshold);
+		
+		List<BlockingCall> blocking = new ArrayList<BlockingCall>();
+		for (Handling handling : BlockingCallDetector.getHandlings()) {
+			if (now - handling.getStartNanos() < thresholdNanos) {
+				continue;
+			}
+			ThreadInfo info = threads.getThreadInfo(handling.getThread().getId(), MAX_FRAMES * 4);
+			if (info == null) {
+				BlockingCallDetector.forgetThread(handling.getThread().getId());
+				continue;
+			}
+			// the thread may have moved on to the next message while its stack was taken
+			if (!BlockingCallDetector.isCurrent(handling) || !isBlocking(info)) {
+				continue;
+			}
+			BlockingCall call = new BlockingCall(handling, info, now);
+			blocking.add(call);
+			if (!handling.isBlocked()) {
+				handling.markBlocked();
+				this.getStatistics(call).add(call);
+				LOG.warn(String.format("Blocking call on engine thread %s: %s", info.getThreadName(), call));
+			} else {
+				this.getStatistics(call).update(call);
+			}
+		}
+		
+		this.checkStarvation(blocking, now);
+		return blocking;
+	}
+	
+	/**
+	 * Alerts once when at least half of the engine threads of a dispatcher block at the same 
+	 * time, and again when the starvation of that dispatcher is over. Dispatchers are checked 
+	 * on their own, so blocking on a dedicated I/O pool does not hide or fake the starvation 
+	 * of the routing pool.
+	 */
+	private void checkStarvation(List<BlockingCall> blocking, long now) {
+		Map<String, Integer> engineThreads = new HashMap<String, Integer>();
+		for (Long threadId : BlockingCallDetector.getEngineThreadIds()) {
+			ThreadInfo info = threads.getThreadInfo(threadId);
+			if (info == null) {
+				BlockingCallDetector.forgetThread(threadId);
+			} else {
+				increment(engineThreads, getPoolName(info.getThreadName()));
+			}
+		}
+		
+		Map<String, List<BlockingCall>> blockingByPool = new HashMap<String, List<BlockingCall>>();
+		for (BlockingCall call : blocking) {
+			String pool = getPoolName(call.getHandling().getThread().getName());
+			List<BlockingCall> poolBlocking = blockingByPool.get(pool);
+			if (poolBlocking == null) {
+				poolBlocking = new ArrayList<BlockingCall>();
+				blockingByPool.put(pool, poolBlocking);
+			}
+			poolBlocking.add(call);
+		}
+		
+		Set<String> pools = new HashSet<String>(engineThreads.keySet());
+		pools.addAll(starvationStarts.keySet());
+		for (String pool : pools) {
+			List<BlockingCall> poolBlocking = blockingByPool.get(pool);
+			Integer poolThreads = engineThreads.get(pool);
+			boolean starving = poolBlocking != null && poolThreads != null 
+					&& poolBlocking.size() >= poolThreads * STARVATION_RATIO;
+			Long starvationStart = starvationStarts.get(pool);
+			if (starving && starvationStart == null) {
+				starvationStarts.put(pool, now);
+				StringBuilder alert = new StringBuilder(String.format(
+						"Dispatcher starvation: %s of %s engine threads of %s are blocked", poolBlocking.size(), poolThreads, pool));
+				for (BlockingCall call : poolBlocking) {
+					alert.append("\n").append(call);
+				}
+				LOG.error(alert.toString());
+			} else if (!starving && starvationStart != null) {
+				LOG.warn(String.format("Dispatcher starvation of %s over after %s ms.", 
+						pool, TimeUnit.NANOSECONDS.toMillis(now - starvationStart)));
+				starvationStarts.remove(pool);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the thread pool of a thread by its name. Akka names the threads of a dispatcher 
+	 * '&lt;actor system&gt;-&lt;dispatcher id&gt;-&lt;number&gt;', so the number is removed.
+	 *
+	 * @param threadName the thread name
+	 * @return the pool name
+	 */
+	static String getPoolName(String threadName) {
+		return threadName.replaceFirst("-\\d+$", "");
+	}
+	
+	/**
+	 * Checks if the given dispatcher is starving at the moment.
+	 *
+	 * @param pool the pool name (see {@link #getPoolName(String)})
+	 * @return true, if an alert for the pool is active
+	 */
+	synchronized boolean isStarving(String pool) {
+		return starvationStarts.containsKey(pool);
+	}
+	
+	private static void increment(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+	
+	/**
+	 * Checks if a thread waits instead of working: blocked on a monitor, waiting (eg. in 
+	 * 'Await.result') or inside a native method, which is where blocking I/O shows up as 
+	 * runnable.
+	 */
+	static boolean isBlocking(ThreadInfo info) {
+		switch (info.getThreadState()) {
+		case BLOCKED:
+		case WAITING:
+		case TIMED_WAITING:
+			return true;
+		case RUNNABLE:
+			StackTraceElement[] stack = info.getStackTrace();
+			return stack.length > 0 && stack[0].isNativeMethod();
+		default:
+			return false;
+		}
+	}
+	
+	private BlockingStatistics getStatistics(BlockingCall call) {
+		String key = call.getHandling().getElementType() + " " + call.getHandling().getUniqueFlowNodeId() 
+				+ " at " + call.getCallingFrame();
+		BlockingStatistics elementStatistics = statistics.get(key);
+		if (elementStatistics == null) {
+			elementStatistics = new BlockingStatistics();
+			statistics.put(key, elementStatistics);
+		}
+		return elementStatistics;
+	}
+	
+	/**
+	 * Gets the blocking calls found so far by element and calling frame, one line each.
+	 *
+	 * @return the report (empty if nothing has been found)
+	 */
+	synchronized String getReport() {
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, BlockingStatistics> entry : statistics.entrySet()) {
+			report.append(String.format("%s: %s blocking handlings, longest %s ms%n", 
+					entry.getKey(), entry.getValue().count, entry.getValue().maxMillis));
+		}
+		return report.toString();
+	}
+	
+	/**
+	 * A handling found blocking, with the state and stack of its thread.
+	 */
+	static class BlockingCall {
+		
+		private final Handling handling;
+		
+		private final ThreadInfo info;
+		
+		private final long millis;
+		
+		BlockingCall(Handling handling, ThreadInfo info, long now) {
+			this.handling = handling;
+			this.info = info;
+			this.millis = TimeUnit.NANOSECONDS.toMillis(now - handling.getStartNanos());
+		}
+		
+		/**
+		 * Gets the first frame of engine code, which is usually the call into the blocking 
+		 * library or service provider.
+		 *
+		 * @return the frame or 'unknown'
+		 */
+		String getCallingFrame() {
+			for (StackTraceElement frame : info.getStackTrace()) {
+				if (frame.getClassName().startsWith(ENGINE_PACKAGE)) {
+					return format(frame);
+				}
+			}
+			return "unknown";
+		}
+		
+		/**
+		 * Gets the top of the stack down to (and including) the calling frame.
+		 *
+		 * @return the stack summary
+		 */
+		String getStackSummary() {
+			StringBuilder summary = new StringBuilder();
+			String callingFrame = this.getCallingFrame();
+			StackTraceElement[] stack = info.getStackTrace();
+			for (int i = 0; i < stack.length && i < MAX_FRAMES; i++) {
+				summary.append("\n\tat ").append(format(stack[i]));
+				if (format(stack[i]).equals(callingFrame)) {
+					break;
+				}
+			}
+			return summary.toString();
+		}
+
+		/**
+		 * Formats a frame without the class loader and module prefix of newer JVMs.
+		 */
+		private static String format(StackTraceElement frame) {
+			return String.format("%s.%s(%s:%s)", frame.getClassName(), frame.getMethodName(), 
+					frame.getFileName(), frame.getLineNumber());
+		}
+
+		Handling getHandling() {
+			return handling;
+		}
+
+		long getMillis() {
+			return millis;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s (%s '%s', process instance '%s', %s) %s for %s ms%s%s", 
+					handling.getActor(), handling.getElementType(), handling.getUniqueFlowNodeId(), 
+					handling.getProcessInstanceId(), handling.getMessageType(), info.getThreadState(), millis, 
+					info.getLockName() == null ? "" : " on " + info.getLockName() 
+							+ (info.getLockOwnerName() == null ? "" : " held by " + info.getLockOwnerName()), 
+					this.getStackSummary());
+		}
+	}
+	
+	/**
+	 * The blocking handlings of one element at one calling frame.
+	 */
+	static class BlockingStatistics {
+		
+		private long count;
+		
+		private long maxMillis;
+		
+		void add(BlockingCall call) {
+			count++;
+			this.update(call);
+		}
+		
+		void update(BlockingCall call) {
+			maxMillis = Math.max(maxMillis, call.getMillis());
+		}
+	}
+}
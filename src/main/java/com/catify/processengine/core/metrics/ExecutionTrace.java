@@ -0,0 +1,224 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The ExecutionTrace of a process instance is made of the {@link TraceSpan}s recorded by the 
+ * {@link ExecutionTracer}. Its critical path is the chain of spans that ends last, followed 
+ * back through the spans that sent its messages: with parallel branches it runs through the 
+ * branch that completed the join, so shortening any other branch would not end the 
+ * instance earlier.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class ExecutionTrace {
+
+	private static final Comparator<TraceSpan> START_ORDER = new Comparator<TraceSpan>() {
+		@Override
+		public int compare(TraceSpan first, TraceSpan second) {
+			return first.getStartNanos() < second.getStartNanos() ? -1 
+					: first.getStartNanos() == second.getStartNanos() ? 0 : 1;
+		}
+	};
+	
+	private final String uniqueProcessId;
+	
+	private final String processInstanceId;
+	
+	private final List<TraceSpan> spans;
+	
+	private final List<TraceSpan> criticalPath;
+	
+	private final boolean complete;
+	
+	/**
+	 * Assembles the trace of a process instance.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 * @param spans the spans of the instance in any order
+	 */
+	public ExecutionTrace(String uniqueProcessId, String processInstanceId, List<TraceSpan> spans) {
+		this.uniqueProcessId = uniqueProcessId;
+		this.processInstanceId = processInstanceId;
+		this.spans = new ArrayList<TraceSpan>(spans);
+		Collections.sort(this.spans, START_ORDER);
+		
+		Map<Long, TraceSpan> byId = new HashMap<Long, TraceSpan>();
+		for (TraceSpan span : this.spans) {
+			byId.put(span.getId(), span);
+		}
+		
+		// spans whose parent is missing have been overwritten in the buffer (or sent from outside a node)
+		boolean allParentsFound = true;
+		TraceSpan last = null;
+		for (TraceSpan span : this.spans) {
+			if (span.getParentId() != 0 && !byId.containsKey(span.getParentId())) {
+				allParentsFound = false;
+			}
+			if (last == null || span.getEndNanos() > last.getEndNanos()) {
+				last = span;
+			}
+		}
+		this.complete = allParentsFound;
+		
+		LinkedList<TraceSpan> path = new LinkedList<TraceSpan>();
+		Set<Long> visited = new HashSet<Long>();
+		for (TraceSpan span = last; span != null && visited.add(span.getId()); span = byId.get(span.getParentId())) {
+			path.addFirst(span);
+		}
+		this.criticalPath = path;
+	}
+	
+	/**
+	 * Gets the time from the first to the last recorded moment of the instance.
+	 *
+	 * @return the duration in nanos
+	 */
+	public long getDurationNanos() {
+		if (spans.isEmpty()) {
+			return 0;
+		}
+		long end = 0;
+		for (TraceSpan span : spans) {
+			end = Math.max(end, span.getEndNanos());
+		}
+		return end - spans.get(0).getStartNanos();
+	}
+	
+	/**
+	 * Gets the time the critical path waited in mailboxes.
+	 *
+	 * @return the wait time in nanos
+	 */
+	public long getCriticalWaitNanos() {
+		long wait = 0;
+		for (TraceSpan span : criticalPath) {
+			wait += span.getWaitNanos();
+		}
+		return wait;
+	}
+	
+	/**
+	 * Gets the time the critical path spent handling messages, without database calls.
+	 *
+	 * @return the processing time in nanos
+	 */
+	public long getCriticalProcessingNanos() {
+		long processing = 0;
+		for (TraceSpan span : criticalPath) {
+			processing += span.getProcessingNanos();
+		}
+		return processing;
+	}
+	
+	/**
+	 * Gets the time the critical path spent in the database.
+	 *
+	 * @return the database time in nanos
+	 */
+	public long getCriticalDatabaseNanos() {
+		long database = 0;
+		for (TraceSpan span : criticalPath) {
+			database += span.getDatabaseNanos();
+		}
+		return database;
+	}
+	
+	/**
+	 * Writes the trace as one line of JSON. Times are in microseconds, the span start times 
+	 * relative to the start of the trace.
+	 *
+	 * @return the JSON
+	 */
+	public String toJson() {
+		long origin = spans.isEmpty() ? 0 : spans.get(0).getStartNanos();
+		StringBuilder json = new StringBuilder(256 + spans.size() * 160);
+		json.append("{\"uniqueProcessId\":\"").append(escape(uniqueProcessId))
+			.append("\",\"processInstanceId\":\"").append(escape(processInstanceId))
+			.append("\",\"complete\":").append(complete)
+			.append(",\"durationMicros\":").append(micros(this.getDurationNanos()))
+			.append(",\"criticalPath\":{\"waitMicros\":").append(micros(this.getCriticalWaitNanos()))
+			.append(",\"processingMicros\":").append(micros(this.getCriticalProcessingNanos()))
+			.append(",\"databaseMicros\":").append(micros(this.getCriticalDatabaseNanos()))
+			.append(",\"spans\":[");
+		for (int i = 0; i < criticalPath.size(); i++) {
+			json.append(i == 0 ? "" : ",").append(criticalPath.get(i).getId());
+		}
+		json.append("]},\"spans\":[");
+		for (int i = 0; i < spans.size(); i++) {
+			TraceSpan span = spans.get(i);
+			json.append(i == 0 ? "" : ",")
+				.append("{\"id\":").append(span.getId())
+				.append(",\"parent\":").append(span.getParentId())
+				.append(",\"node\":\"").append(escape(span.getUniqueFlowNodeId()))
+				.append("\",\"nodeType\":\"").append(escape(span.getNodeType()))
+				.append("\",\"message\":\"").append(escape(span.getMessageType()))
+				.append("\",\"startMicros\":").append(micros(span.getStartNanos() - origin))
+				.append(",\"waitMicros\":").append(micros(span.getWaitNanos()))
+				.append(",\"processingMicros\":").append(micros(span.getProcessingNanos()))
+				.append(",\"databaseMicros\":").append(micros(span.getDatabaseNanos()))
+				.append('}');
+		}
+		return json.append("]}").toString();
+	}
+	
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+	
+	private static String escape(String value) {
+		return value == null ? "" : value.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	public String getProcessInstanceId() {
+		return processInstanceId;
+	}
+
+	public List<TraceSpan> getSpans() {
+		return spans;
+	}
+
+	public List<TraceSpan> getCriticalPath() {
+		return criticalPath;
+	}
+
+	/**
+	 * Checks if all spans of the instance have been found.
+	 *
+	 * @return false, if spans have been overwritten in the buffer before the trace was assembled
+	 */
+	public boolean isComplete() {
+		return complete;
+	}
+}
@@ -0,0 +1,199 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
+
+/**
+ * The ExecutionTraceService configures the {@link ExecutionTracer} and writes the 
+ * {@link ExecutionTrace}s of the traced process instances to a local file, one JSON line per 
+ * instance. Traces are assembled shortly after the end of their instance (the end event is 
+ * still finishing its span when it announces the end), on a daemon thread of their own.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class ExecutionTraceService {
+
+	static final Logger LOG = LoggerFactory.getLogger(ExecutionTraceService.class);
+	
+	/** The time in millis between the end of an instance and the assembly of its trace. */
+	static final long ASSEMBLY_DELAY = 1000;
+	
+	@Autowired
+	private ActorSystem actorSystem;
+	
+	/** Trace every n-th process instance (0 disables tracing). */
+	@Value("${metrics.traceSampleRate}")
+	private int sampleRate;
+	
+	/** The number of spans kept until their instance ends. */
+	@Value("${metrics.traceBufferSize}")
+	private int bufferSize;
+	
+	/** The file the traces are appended to. */
+	@Value("${metrics.traceFile}")
+	private String file;
+	
+	private ScheduledExecutorService executor;
+	
+	private ActorRef listener;
+	
+	/**
+	 * Configures the tracer and subscribes to the ends of process instances.
+	 */
+	@PostConstruct
+	void start() {
+		ExecutionTracer.setBufferSize(bufferSize);
+		ExecutionTracer.setSampleRate(sampleRate);
+		if (sampleRate <= 0) {
+			return;
+		}
+		LOG.info(String.format("Tracing every %s. process instance to %s.", sampleRate, file));
+		
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "trace-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		listener = actorSystem.actorOf(new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new EndListener(ExecutionTraceService.this);
+			}
+		}));
+		actorSystem.eventStream().subscribe(listener, ProcessInstanceEndMessage.class);
+	}
+	
+	/**
+	 * Stops tracing and writes the traces of instances that have already ended.
+	 */
+	@PreDestroy
+	void stop() {
+		ExecutionTracer.setSampleRate(0);
+		if (executor == null) {
+			return;
+		}
+		actorSystem.stop(listener);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(ASSEMBLY_DELAY * 2, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * Schedules the assembly of the trace of an ended instance, if it is traced.
+	 *
+	 * @param endMessage the end message of the instance
+	 */
+	void ended(final ProcessInstanceEndMessage endMessage) {
+		if (!ExecutionTracer.isSampled(endMessage.getProcessInstanceId())) {
+			return;
+		}
+		executor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				List<TraceSpan> spans = ExecutionTracer.findSpans(endMessage.getProcessInstanceId());
+				write(new ExecutionTrace(endMessage.getUniqueProcessId(), endMessage.getProcessInstanceId(), spans));
+			}
+		}, ASSEMBLY_DELAY, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Appends a trace to the trace file.
+	 *
+	 * @param trace the trace
+	 */
+	void write(ExecutionTrace trace) {
+		File target = new File(file);
+		if (target.getParentFile() != null) {
+			target.getParentFile().mkdirs();
+		}
+		
+		Writer writer = null;
+		try {
+			writer = new FileWriter(target, true);
+			writer.write(trace.toJson());
+			writer.write('\n');
+		} catch (IOException e) {
+			LOG.warn(String.format("Could not write trace to %s", target), e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					LOG.warn(String.format("Could not write trace to %s", target), e);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Hands the ends of process instances from the event stream to the service.
+	 */
+	static class EndListener extends UntypedActor {
+		
+		private final ExecutionTraceService service;
+		
+		EndListener(ExecutionTraceService service) {
+			this.service = service;
+		}
+
+		@Override
+		public void onReceive(Object message) throws Exception {
+			if (message instanceof ProcessInstanceEndMessage) {
+				service.ended((ProcessInstanceEndMessage) message);
+			} else {
+				unhandled(message);
+			}
+		}
+	}
+}
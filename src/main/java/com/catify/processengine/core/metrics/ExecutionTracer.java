@@ -0,0 +1,226 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.catify.processengine.core.messages.Message;
+
+/**
+ * The ExecutionTracer records where the time of a process instance goes: for every message 
+ * handled by a flow node it records a {@link TraceSpan} with the time the message waited in 
+ * the mailbox, the time of its handling and the part of it spent in the database. Messages 
+ * sent while handling a message are stamped with the span and the send time, which links 
+ * the spans of an instance to a tree (see {@link ExecutionTrace}).
+ * <p>
+ * Tracing is sampled: only every n-th process instance (by the hash of its id, so every node 
+ * takes the same decision without coordination) is traced, all other instances pay one 
+ * check per message. Spans are kept in a {@link SpanRingBuffer} until the 
+ * {@link ExecutionTraceService} assembles the trace of an ended instance.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class ExecutionTracer {
+
+	/** The default number of spans kept. */
+	public static final int DEFAULT_BUFFER_SIZE = 65536;
+	
+	/** Trace every n-th instance, 0 disables tracing. */
+	private static volatile int sampleRate;
+	
+	private static volatile SpanRingBuffer buffer = new SpanRingBuffer(DEFAULT_BUFFER_SIZE);
+	
+	private static final AtomicLong SPAN_IDS = new AtomicLong();
+	
+	/** The span being recorded by the current thread. */
+	private static final ThreadLocal<ActiveSpan> CURRENT = new ThreadLocal<ActiveSpan>();
+	
+	private ExecutionTracer() {
+	}
+	
+	/**
+	 * Checks if a process instance is traced.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return true, if traced
+	 */
+	public static boolean isSampled(String processInstanceId) {
+		int rate = sampleRate;
+		return rate > 0 && processInstanceId != null && (processInstanceId.hashCode() & Integer.MAX_VALUE) % rate == 0;
+	}
+	
+	/**
+	 * Begins the span of a message taken from the mailbox of a flow node, if its process 
+	 * instance is traced.
+	 *
+	 * @param message the message
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param nodeType the type of the flow node
+	 */
+	public static void beginSpan(Message message, String uniqueProcessId, String uniqueFlowNodeId, String nodeType) {
+		if (!isSampled(message.getProcessInstanceId())) {
+			return;
+		}
+		CURRENT.set(new ActiveSpan(SPAN_IDS.incrementAndGet(), message, uniqueProcessId, uniqueFlowNodeId, 
+				nodeType, System.nanoTime()));
+	}
+	
+	/**
+	 * Ends the span of the current thread (if any) and adds it to the buffer.
+	 */
+	public static void endSpan() {
+		ActiveSpan active = CURRENT.get();
+		if (active == null) {
+			return;
+		}
+		CURRENT.remove();
+		buffer.add(active.toSpan(System.nanoTime()));
+	}
+	
+	/**
+	 * Stamps a message about to be sent with the current span and the send time, if its 
+	 * process instance is traced.
+	 *
+	 * @param message the message
+	 */
+	public static void stamp(Message message) {
+		if (sampleRate == 0) {
+			return;
+		}
+		ActiveSpan active = CURRENT.get();
+		if (active != null || isSampled(message.getProcessInstanceId())) {
+			message.setTraceContext(active == null ? 0 : active.id, System.nanoTime());
+		}
+	}
+	
+	/**
+	 * Marks the begin of a database call of the current span.
+	 *
+	 * @return the start time to hand to {@link #exitDatabase(long)}, 0 if no span is recorded
+	 */
+	public static long enterDatabase() {
+		if (sampleRate == 0) {
+			return 0;
+		}
+		ActiveSpan active = CURRENT.get();
+		if (active == null || active.databaseDepth++ > 0) {
+			return 0;
+		}
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Marks the end of a database call of the current span. Nested calls (eg. the repository 
+	 * calls of a commit) are only counted once.
+	 *
+	 * @param start the value returned by {@link #enterDatabase()}
+	 */
+	public static void exitDatabase(long start) {
+		if (sampleRate == 0) {
+			return;
+		}
+		ActiveSpan active = CURRENT.get();
+		if (active == null) {
+			return;
+		}
+		active.databaseDepth--;
+		if (start != 0) {
+			active.databaseNanos += System.nanoTime() - start;
+		}
+	}
+	
+	/**
+	 * Finds the spans of a process instance still in the buffer.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return the spans
+	 */
+	public static List<TraceSpan> findSpans(String processInstanceId) {
+		return buffer.find(processInstanceId);
+	}
+	
+	public static int getSampleRate() {
+		return sampleRate;
+	}
+
+	/**
+	 * Sets the sample rate.
+	 *
+	 * @param sampleRate trace every n-th instance, 0 disables tracing
+	 */
+	public static void setSampleRate(int sampleRate) {
+		ExecutionTracer.sampleRate = Math.max(0, sampleRate);
+	}
+	
+	/**
+	 * Replaces the span buffer, dropping all recorded spans.
+	 *
+	 * @param capacity the number of spans kept
+	 */
+	public static void setBufferSize(int capacity) {
+		buffer = new SpanRingBuffer(capacity);
+	}
+	
+	/**
+	 * A span being recorded, only touched by the thread handling the message.
+	 */
+	private static class ActiveSpan {
+		
+		private final long id;
+		
+		private final long parentId;
+		
+		private final String uniqueProcessId;
+		
+		private final String uniqueFlowNodeId;
+		
+		private final String processInstanceId;
+		
+		private final String nodeType;
+		
+		private final String messageType;
+		
+		private final long enqueueNanos;
+		
+		private final long dequeueNanos;
+		
+		private long databaseNanos;
+		
+		private int databaseDepth;
+		
+		ActiveSpan(long id, Message message, String uniqueProcessId, String uniqueFlowNodeId, String nodeType, long dequeueNanos) {
+			this.id = id;
+			this.parentId = message.getTraceParentSpanId();
+			this.uniqueProcessId = uniqueProcessId;
+			this.uniqueFlowNodeId = uniqueFlowNodeId;
+			this.processInstanceId = message.getProcessInstanceId();
+			this.nodeType = nodeType;
+			this.messageType = message.getClass().getSimpleName();
+			this.enqueueNanos = message.getTraceEnqueueNanos();
+			this.dequeueNanos = dequeueNanos;
+		}
+		
+		TraceSpan toSpan(long endNanos) {
+			return new TraceSpan(id, parentId, uniqueProcessId, uniqueFlowNodeId, processInstanceId, nodeType, 
+					messageType, enqueueNanos, dequeueNanos, endNanos, databaseNanos);
+		}
+	}
+}
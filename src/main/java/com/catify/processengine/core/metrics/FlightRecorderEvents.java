@@ -0,0 +1,288 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits custom Java Flight Recorder events, so that a recording shows which process, flow node 
+ * and process instance an Akka or Neo4j thread was working for. <br><br>
+ * The engine is compiled for Java 6, so the event types are created reflectively with the 
+ * {@code jdk.jfr.EventFactory} of the running JVM. On JVMs without JFR every method is a no-op.
+ * <br><br>
+ * The flow node actors set the execution context of the current thread (see 
+ * {@link #enterContext}), all events committed while handling the message carry it. Timed 
+ * events are only committed if they took at least {@link #getThresholdNanos()} and the event 
+ * type is enabled in a running recording.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class FlightRecorderEvents {
+
+	static final Logger LOG = LoggerFactory.getLogger(FlightRecorderEvents.class);
+	
+	/**
+	 * The event types emitted by the engine.
+	 */
+	public enum EventType {
+		NODE_MESSAGE("NodeMessage", "Node Message", "A message handled by a flow node actor"),
+		STATE_CHANGE("StateChange", "Node Instance State Change", "A state change of a flow node instance"),
+		PERSIST("Persist", "Node Instance Persist", "A flow node instance written to the database"),
+		EXPRESSION("Expression", "Expression Evaluation", "A JEXL condition evaluated by a gateway or loop"),
+		SPI_CALL("SpiCall", "SPI Call", "A call to a data object, timer or message integration provider");
+		
+		private final String eventName;
+		private final String label;
+		private final String description;
+		
+		private EventType(String eventName, String label, String description) {
+			this.eventName = eventName;
+			this.label = label;
+			this.description = description;
+		}
+	}
+	
+	/** The field names in the order of {@link #commit(EventType, String, String, String, String, String, long)}. */
+	static final String[] FIELDS = { "uniqueProcessId", "uniqueFlowNodeId", "processInstanceId", "messageType", "operation" };
+	
+	private static final int DURATION_FIELD = FIELDS.length;
+	
+	/** The execution context of the current thread (uniqueProcessId, uniqueFlowNodeId, processInstanceId, messageType). */
+	private static final ThreadLocal<String[]> CONTEXT = new ThreadLocal<String[]>() {
+		@Override
+		protected String[] initialValue() {
+			return new String[4];
+		}
+	};
+	
+	private static volatile boolean enabled = true;
+	
+	private static volatile long thresholdNanos = 1000000;
+	
+	/** The reflective JFR bridge, null if JFR is not available. */
+	private static final JfrBridge BRIDGE = JfrBridge.create();
+	
+	private FlightRecorderEvents() {
+	}
+	
+	/**
+	 * Sets the execution context of the current thread.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param processInstanceId the process instance id
+	 * @param messageType the type of the message being handled
+	 */
+	public static void enterContext(String uniqueProcessId, String uniqueFlowNodeId, String processInstanceId, String messageType) {
+		if (BRIDGE == null) {
+			return;
+		}
+		String[] context = CONTEXT.get();
+		context[0] = uniqueProcessId;
+		context[1] = uniqueFlowNodeId;
+		context[2] = processInstanceId;
+		context[3] = messageType;
+	}
+	
+	/**
+	 * Clears the execution context of the current thread.
+	 */
+	public static void exitContext() {
+		if (BRIDGE == null) {
+			return;
+		}
+		Arrays.fill(CONTEXT.get(), null);
+	}
+	
+	/**
+	 * Commits a timed event with the execution context of the current thread.
+	 *
+	 * @param type the event type
+	 * @param operation the operation (eg. the spi method)
+	 * @param startNanos the start time taken with {@link System#nanoTime()}
+	 */
+	public static void commit(EventType type, String operation, long startNanos) {
+		if (isActive(type, System.nanoTime() - startNanos)) {
+			String[] context = CONTEXT.get();
+			BRIDGE.commit(type, context[0], context[1], context[2], context[3], operation, System.nanoTime() - startNanos);
+		}
+	}
+	
+	/**
+	 * Commits a timed event with the given ids. The message type is taken from the 
+	 * execution context of the current thread.
+	 *
+	 * @param type the event type
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param processInstanceId the process instance id
+	 * @param operation the operation
+	 * @param startNanos the start time taken with {@link System#nanoTime()}
+	 */
+	public static void commit(EventType type, String uniqueProcessId, String uniqueFlowNodeId, 
+			String processInstanceId, String operation, long startNanos) {
+		if (isActive(type, System.nanoTime() - startNanos)) {
+			BRIDGE.commit(type, uniqueProcessId, uniqueFlowNodeId, processInstanceId, 
+					CONTEXT.get()[3], operation, System.nanoTime() - startNanos);
+		}
+	}
+	
+	/**
+	 * Commits an instant event (eg. a state change), which is not subject to the threshold.
+	 *
+	 * @param type the event type
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param processInstanceId the process instance id
+	 * @param operation the operation (eg. the new state)
+	 */
+	public static void commitInstant(EventType type, String uniqueProcessId, String uniqueFlowNodeId, 
+			String processInstanceId, String operation) {
+		if (enabled && BRIDGE != null && BRIDGE.isEnabled(type)) {
+			BRIDGE.commit(type, uniqueProcessId, uniqueFlowNodeId, processInstanceId, 
+					CONTEXT.get()[3], operation, 0);
+		}
+	}
+	
+	private static boolean isActive(EventType type, long durationNanos) {
+		return enabled && BRIDGE != null && durationNanos >= thresholdNanos && BRIDGE.isEnabled(type);
+	}
+	
+	/**
+	 * Checks if JFR is available in this JVM.
+	 *
+	 * @return true, if available
+	 */
+	public static boolean isAvailable() {
+		return BRIDGE != null;
+	}
+	
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean enabled) {
+		FlightRecorderEvents.enabled = enabled;
+	}
+
+	public static long getThresholdNanos() {
+		return thresholdNanos;
+	}
+
+	public static void setThresholdNanos(long thresholdNanos) {
+		FlightRecorderEvents.thresholdNanos = thresholdNanos;
+	}
+	
+	/**
+	 * Reflective access to the {@code jdk.jfr} api.
+	 */
+	static final class JfrBridge {
+		
+		private final Object[] factories = new Object[EventType.values().length];
+		private final Object[] eventTypes = new Object[EventType.values().length];
+		private final Method newEvent;
+		private final Method isEnabled;
+		private final Method set;
+		private final Method commit;
+		
+		private JfrBridge() throws Exception {
+			Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+			Constructor<?> annotation = annotationElementClass.getConstructor(Class.class, Object.class);
+			Constructor<?> valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor")
+					.getConstructor(Class.class, String.class, List.class);
+			Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+			Method create = eventFactoryClass.getMethod("create", List.class, List.class);
+			Method getEventType = eventFactoryClass.getMethod("getEventType");
+			
+			List<Object> fields = new ArrayList<Object>();
+			for (String field : FIELDS) {
+				fields.add(valueDescriptor.newInstance(String.class, field, Collections.singletonList(
+						annotation.newInstance(Class.forName("jdk.jfr.Label"), field))));
+			}
+			fields.add(valueDescriptor.newInstance(long.class, "executionTime", Arrays.asList(
+					annotation.newInstance(Class.forName("jdk.jfr.Label"), "Execution Time"), 
+					annotation.newInstance(Class.forName("jdk.jfr.Timespan"), "NANOSECONDS"))));
+			
+			for (EventType type : EventType.values()) {
+				List<Object> annotations = Arrays.asList(
+						annotation.newInstance(Class.forName("jdk.jfr.Name"), "com.catify.processengine." + type.eventName),
+						annotation.newInstance(Class.forName("jdk.jfr.Label"), type.label),
+						annotation.newInstance(Class.forName("jdk.jfr.Description"), type.description),
+						annotation.newInstance(Class.forName("jdk.jfr.Category"), new String[] { "Catify Process Engine" }),
+						annotation.newInstance(Class.forName("jdk.jfr.StackTrace"), Boolean.FALSE));
+				factories[type.ordinal()] = create.invoke(null, annotations, fields);
+				eventTypes[type.ordinal()] = getEventType.invoke(factories[type.ordinal()]);
+			}
+			
+			newEvent = eventFactoryClass.getMethod("newEvent");
+			isEnabled = Class.forName("jdk.jfr.EventType").getMethod("isEnabled");
+			Class<?> eventClass = Class.forName("jdk.jfr.Event");
+			set = eventClass.getMethod("set", int.class, Object.class);
+			commit = eventClass.getMethod("commit");
+		}
+		
+		/**
+		 * Creates the bridge.
+		 *
+		 * @return the bridge or null if JFR is not available
+		 */
+		static JfrBridge create() {
+			try {
+				return new JfrBridge();
+			} catch (ClassNotFoundException e) {
+				LOG.debug("Java Flight Recorder is not available, no process engine events will be recorded.");
+			} catch (Exception e) {
+				LOG.warn("Could not create the Java Flight Recorder event types.", e);
+			}
+			return null;
+		}
+		
+		boolean isEnabled(EventType type) {
+			try {
+				return (Boolean) isEnabled.invoke(eventTypes[type.ordinal()]);
+			} catch (Exception e) {
+				return false;
+			}
+		}
+		
+		void commit(EventType type, String uniqueProcessId, String uniqueFlowNodeId, String processInstanceId, 
+				String messageType, String operation, long durationNanos) {
+			try {
+				Object event = newEvent.invoke(factories[type.ordinal()]);
+				set.invoke(event, 0, uniqueProcessId);
+				set.invoke(event, 1, uniqueFlowNodeId);
+				set.invoke(event, 2, processInstanceId);
+				set.invoke(event, 3, messageType);
+				set.invoke(event, 4, operation);
+				set.invoke(event, DURATION_FIELD, durationNanos);
+				commit.invoke(event);
+			} catch (Exception e) {
+				LOG.debug(String.format("Could not commit %s event", type), e);
+			}
+		}
+	}
+}
@@ -0,0 +1,255 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non-negative long values (eg. latencies in nanoseconds or queue 
+ * depths) in the style of an HDR histogram: values are counted in buckets whose width grows 
+ * with the magnitude of the value, so every recorded value is kept with a relative error 
+ * of at most 1/16 while the histogram only needs a fixed, small array of counters. 
+ * Recording is a few shifts and an atomic increment, so histograms can stay enabled in production.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class Histogram implements HistogramMBean {
+
+	/** The number of bits resolved within each power of two. */
+	static final int SUB_BUCKET_BITS = 4;
+	
+	static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	
+	/** The largest magnitude (power of two) tracked, larger values are counted as 2^45-1 (about 9.7 hours in nanoseconds). */
+	static final int MAX_MAGNITUDE = 44;
+	
+	static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+	
+	private final String name;
+	
+	private final AtomicLongArray counts = new AtomicLongArray(
+			SUB_BUCKET_COUNT + (MAX_MAGNITUDE - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT);
+	
+	private final AtomicLong count = new AtomicLong();
+	
+	private final AtomicLong sum = new AtomicLong();
+	
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * Instantiates a new histogram.
+	 *
+	 * @param name the name
+	 */
+	public Histogram(String name) {
+		this.name = name;
+	}
+	
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value the value
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		} else if (value > MAX_VALUE) {
+			value = MAX_VALUE;
+		}
+		counts.incrementAndGet(getIndex(value));
+		count.incrementAndGet();
+		sum.addAndGet(value);
+		this.updateMax(value);
+	}
+	
+	/**
+	 * Records the nanoseconds elapsed since the given start time.
+	 *
+	 * @param startNanos the start time taken from {@link System#nanoTime()}
+	 */
+	public void recordSince(long startNanos) {
+		this.record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * Adds the values recorded by another histogram to this one (eg. to sum up the 
+	 * histograms of several queries).
+	 *
+	 * @param other the other histogram
+	 */
+	public void add(Histogram other) {
+		long addedCount = 0;
+		for (int index = 0; index < counts.length(); index++) {
+			long bucketCount = other.counts.get(index);
+			if (bucketCount > 0) {
+				counts.addAndGet(index, bucketCount);
+				addedCount += bucketCount;
+			}
+		}
+		count.addAndGet(addedCount);
+		sum.addAndGet(other.sum.get());
+		this.updateMax(other.getMax());
+	}
+	
+	/**
+	 * Creates a copy of the values recorded so far. Subtracting the snapshot from the 
+	 * histogram later (see {@link #minus(Histogram)}) gives the values of the interval.
+	 *
+	 * @return the snapshot
+	 */
+	public Histogram snapshot() {
+		Histogram snapshot = new Histogram(name);
+		snapshot.add(this);
+		return snapshot;
+	}
+	
+	/**
+	 * Gets the values recorded since an earlier snapshot of this histogram. The maximum of 
+	 * the result is the highest value of its highest bucket, as the exact value is not known.
+	 *
+	 * @param earlier the earlier snapshot
+	 * @return the values recorded since the snapshot
+	 */
+	public Histogram minus(Histogram earlier) {
+		Histogram difference = new Histogram(name);
+		long differenceCount = 0;
+		int highestIndex = -1;
+		for (int index = 0; index < counts.length(); index++) {
+			long bucketCount = counts.get(index) - earlier.counts.get(index);
+			if (bucketCount > 0) {
+				difference.counts.set(index, bucketCount);
+				differenceCount += bucketCount;
+				highestIndex = index;
+			}
+		}
+		difference.count.set(differenceCount);
+		difference.sum.set(Math.max(0, sum.get() - earlier.sum.get()));
+		difference.max.set(highestIndex < 0 ? 0 : Math.min(getHighestValue(highestIndex), max.get()));
+		return difference;
+	}
+	
+	/**
+	 * Gets the value at a percentile. The value is the highest value that falls into the same 
+	 * bucket as the exact value.
+	 *
+	 * @param percentile the percentile (0 to 100)
+	 * @return the value at the percentile or 0 if no values have been recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long totalCount = count.get();
+		if (totalCount == 0) {
+			return 0;
+		}
+		long countAtPercentile = Math.max(1, (long) Math.ceil(percentile / 100.0 * totalCount));
+		long runningCount = 0;
+		for (int index = 0; index < counts.length(); index++) {
+			runningCount += counts.get(index);
+			if (runningCount >= countAtPercentile) {
+				return Math.min(getHighestValue(index), max.get());
+			}
+		}
+		return max.get();
+	}
+	
+	@Override
+	public String getName() {
+		return name;
+	}
+	
+	@Override
+	public long getCount() {
+		return count.get();
+	}
+	
+	@Override
+	public double getMean() {
+		long totalCount = count.get();
+		return totalCount == 0 ? 0 : (double) sum.get() / totalCount;
+	}
+	
+	@Override
+	public long getP50() {
+		return getValueAtPercentile(50);
+	}
+	
+	@Override
+	public long getP90() {
+		return getValueAtPercentile(90);
+	}
+	
+	@Override
+	public long getP99() {
+		return getValueAtPercentile(99);
+	}
+	
+	@Override
+	public long getP999() {
+		return getValueAtPercentile(99.9);
+	}
+	
+	@Override
+	public long getMax() {
+		return max.get();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s count=%s mean=%.0f p50=%s p90=%s p99=%s p999=%s max=%s", 
+				name, getCount(), getMean(), getP50(), getP90(), getP99(), getP999(), getMax());
+	}
+	
+	private void updateMax(long value) {
+		long currentMax = max.get();
+		while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+			currentMax = max.get();
+		}
+	}
+	
+	/**
+	 * Gets the bucket index of a value.
+	 *
+	 * @param value the value (0 to {@link #MAX_VALUE})
+	 * @return the index
+	 */
+	static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int magnitude = 63 - Long.numberOfLeadingZeros(value);
+		int shift = magnitude - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return SUB_BUCKET_COUNT + shift * SUB_BUCKET_COUNT + subBucket;
+	}
+	
+	/**
+	 * Gets the highest value counted in a bucket.
+	 *
+	 * @param index the bucket index
+	 * @return the highest value
+	 */
+	static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - SUB_BUCKET_COUNT) / SUB_BUCKET_COUNT;
+		long subBucket = (index - SUB_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
@@ -15,31 +15,29 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  */
-package com.catify.processengine.core.messages;
-
-import scala.concurrent.duration.DurationConversions.Classifier;
-import akka.event.EventBus;
+package com.catify.processengine.core.metrics;
 
 /**
- * {@link Classifier} for the akka {@link EventBus}.
+ * The JMX management interface of a {@link Histogram}.
+ * 
+ * @author christopher köster
  * 
- * @author claus straube
- *
  */
-public class SignalEventMessage {
+public interface HistogramMBean {
 
-	private String signalRef;
+	String getName();
 	
-	public SignalEventMessage(String signalRef) {
-		this.signalRef = signalRef;
-	}
-
-	public String getSignalRef() {
-		return signalRef;
-	}
-
-	public void setSignalRef(String signalRef) {
-		this.signalRef = signalRef;
-	}
+	long getCount();
+	
+	double getMean();
+	
+	long getP50();
+	
+	long getP90();
+	
+	long getP99();
+	
+	long getP999();
 	
+	long getMax();
 }
@@ -0,0 +1,126 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The MetricsRegistry holds all {@link Histogram}s of the process engine by name. It is static, 
+ * so that code that is not managed by spring (eg. service provider implementations) can record 
+ * metrics as well. Callers should look their histograms up once and keep them, so that recording 
+ * does not need a map lookup. Latencies are recorded in nanoseconds.
+ * <p>
+ * The histograms are published by the {@link MetricsService}.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class MetricsRegistry {
+
+	/** The name prefix of the histograms of single flow nodes. */
+	public static final String NODE_PREFIX = "node.";
+	
+	/** The name prefix of the histograms aggregated over all flow nodes of a type. */
+	public static final String NODE_TYPE_PREFIX = "nodeType.";
+	
+	private static final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<String, Histogram>();
+	
+	/** Every how many messages the flow nodes sample their mailbox size (0 disables sampling). */
+	private static volatile int mailboxSampleRate = 0;
+	
+	private MetricsRegistry() {}
+	
+	/**
+	 * Gets the histogram with the given name, creating it if it does not exist.
+	 *
+	 * @param name the histogram name
+	 * @return the histogram
+	 */
+	public static Histogram getHistogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			Histogram newHistogram = new Histogram(name);
+			histogram = histograms.putIfAbsent(name, newHistogram);
+			if (histogram == null) {
+				histogram = newHistogram;
+			}
+		}
+		return histogram;
+	}
+	
+	/**
+	 * Gets all histograms sorted by name.
+	 *
+	 * @return the histograms
+	 */
+	public static SortedMap<String, Histogram> getHistograms() {
+		return new TreeMap<String, Histogram>(histograms);
+	}
+	
+	/**
+	 * Removes all histograms (eg. between tests).
+	 */
+	static void clear() {
+		histograms.clear();
+	}
+	
+	/**
+	 * Gets the histogram of a flow node operation.
+	 *
+	 * @param nodeType the node type (eg. the node class name)
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param operation the operation (eg. 'activate')
+	 * @return the histogram
+	 */
+	public static Histogram getNodeHistogram(String nodeType, String uniqueFlowNodeId, String operation) {
+		return getHistogram(NODE_PREFIX + nodeType + "." + operation + "." + uniqueFlowNodeId);
+	}
+	
+	/**
+	 * Gets the histogram of a flow node operation aggregated over all flow nodes of a type.
+	 *
+	 * @param nodeType the node type (eg. the node class name)
+	 * @param operation the operation (eg. 'activate')
+	 * @return the histogram
+	 */
+	public static Histogram getNodeTypeHistogram(String nodeType, String operation) {
+		return getHistogram(NODE_TYPE_PREFIX + nodeType + "." + operation);
+	}
+	
+	/**
+	 * Gets every how many messages the flow nodes sample their mailbox size.
+	 *
+	 * @return the mailbox sample rate (0 if sampling is disabled)
+	 */
+	public static int getMailboxSampleRate() {
+		return mailboxSampleRate;
+	}
+	
+	/**
+	 * Sets every how many messages the flow nodes sample their mailbox size. Counting 
+	 * the messages of a file based mailbox is expensive, so sampling is disabled by default.
+	 *
+	 * @param rate the mailbox sample rate (0 disables sampling)
+	 */
+	public static void setMailboxSampleRate(int rate) {
+		mailboxSampleRate = Math.max(0, rate);
+	}
+}
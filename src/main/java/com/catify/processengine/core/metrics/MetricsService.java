@@ -0,0 +1,244 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The MetricsService publishes the histograms of the {@link MetricsRegistry} periodically: new 
+ * histograms are registered as MBeans (domain 'com.catify.processengine.metrics') and all 
+ * histograms are appended to a local file. Publishing runs on its own daemon thread, so 
+ * recording metrics never waits for it. It also configures the {@link FlightRecorderEvents}.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class MetricsService {
+
+	static final Logger LOG = LoggerFactory.getLogger(MetricsService.class);
+	
+	static final String JMX_DOMAIN = "com.catify.processengine.metrics";
+	
+	/** The publishing interval in seconds (0 disables publishing). */
+	@Value("${metrics.interval}")
+	private long interval;
+	
+	/** The file the histograms are appended to (empty disables the file dump). */
+	@Value("${metrics.file}")
+	private String file;
+	
+	/** True if the histograms should be registered as MBeans. */
+	@Value("${metrics.jmx}")
+	private boolean jmx;
+	
+	/** True if the histograms of single flow nodes should be registered as MBeans as well (not only their aggregates by node type). */
+	@Value("${metrics.jmxNodes}")
+	private boolean jmxNodes;
+	
+	/** The maximum number of histograms registered as MBeans. */
+	@Value("${metrics.jmxMaxHistograms}")
+	private int jmxMaxHistograms;
+	
+	/** Every how many messages the flow nodes sample their mailbox size (0 disables sampling). */
+	@Value("${metrics.mailboxSampleRate}")
+	private int mailboxSampleRate;
+	
+	/** True if flight recorder events should be emitted (see {@link FlightRecorderEvents}). */
+	@Value("${metrics.jfr}")
+	private boolean jfr;
+	
+	/** The minimum duration in microseconds of timed flight recorder events. */
+	@Value("${metrics.jfrThreshold}")
+	private long jfrThreshold;
+	
+	private ScheduledExecutorService executor;
+	
+	private final Set<String> registeredHistograms = new HashSet<String>();
+	
+	private boolean jmxLimitReached;
+	
+	/**
+	 * Configures the flight recorder events and starts publishing.
+	 */
+	@PostConstruct
+	void start() {
+		MetricsRegistry.setMailboxSampleRate(mailboxSampleRate);
+		FlightRecorderEvents.setEnabled(jfr);
+		FlightRecorderEvents.setThresholdNanos(TimeUnit.MICROSECONDS.toNanos(jfrThreshold));
+		if (jfr && FlightRecorderEvents.isAvailable()) {
+			LOG.info(String.format("Emitting flight recorder events slower than %s µs.", jfrThreshold));
+		}
+		
+		if (interval <= 0) {
+			return;
+		}
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "metrics-publisher");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		executor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run() {
+				publish();
+			}
+		}, interval, interval, TimeUnit.SECONDS);
+	}
+	
+	/**
+	 * Stops publishing and unregisters the MBeans.
+	 */
+	@PreDestroy
+	void stop() {
+		if (executor == null) {
+			return;
+		}
+		executor.shutdown();
+		try {
+			executor.awaitTermination(interval, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		this.publish();
+		
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (String name : registeredHistograms) {
+			try {
+				server.unregisterMBean(getObjectName(name));
+			} catch (JMException e) {
+				LOG.debug(String.format("Could not unregister histogram %s", name), e);
+			}
+		}
+		registeredHistograms.clear();
+		jmxLimitReached = false;
+	}
+	
+	/**
+	 * Registers new histograms and dumps all histograms. 
+	 */
+	synchronized void publish() {
+		try {
+			if (jmx) {
+				this.registerMBeans();
+			}
+			if (file != null && file.length() > 0) {
+				this.dump(new File(file));
+			}
+		} catch (RuntimeException e) {
+			// keep the scheduled task alive
+			LOG.warn("Could not publish metrics", e);
+		}
+	}
+	
+	private void registerMBeans() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (Histogram histogram : MetricsRegistry.getHistograms().values()) {
+			if (!registeredHistograms.contains(histogram.getName()) && isPublishedAsMBean(histogram.getName())) {
+				if (registeredHistograms.size() >= jmxMaxHistograms) {
+					if (!jmxLimitReached) {
+						LOG.warn(String.format("Not registering more than %s histograms as MBeans (metrics.jmxMaxHistograms).", 
+								jmxMaxHistograms));
+						jmxLimitReached = true;
+					}
+					return;
+				}
+				try {
+					server.registerMBean(histogram, getObjectName(histogram.getName()));
+				} catch (JMException e) {
+					LOG.debug(String.format("Could not register histogram %s", histogram.getName()), e);
+				}
+				registeredHistograms.add(histogram.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Checks if a histogram is registered as MBean. The histograms of single flow nodes are 
+	 * only registered if configured, there may be thousands of them.
+	 *
+	 * @param name the histogram name
+	 * @return true if the histogram is registered as MBean
+	 */
+	boolean isPublishedAsMBean(String name) {
+		return jmxNodes || !name.startsWith(MetricsRegistry.NODE_PREFIX);
+	}
+	
+	/**
+	 * Appends all histograms to a file, one line per histogram prefixed by the current time.
+	 *
+	 * @param target the file
+	 */
+	void dump(File target) {
+		if (target.getParentFile() != null) {
+			target.getParentFile().mkdirs();
+		}
+		String timestamp = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ").format(new Date());
+		
+		Writer writer = null;
+		try {
+			writer = new FileWriter(target, true);
+			for (Histogram histogram : MetricsRegistry.getHistograms().values()) {
+				writer.write(timestamp);
+				writer.write(' ');
+				writer.write(histogram.toString());
+				writer.write('\n');
+			}
+		} catch (IOException e) {
+			LOG.warn(String.format("Could not write metrics to %s", target), e);
+		} finally {
+			if (writer != null) {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					LOG.warn(String.format("Could not write metrics to %s", target), e);
+				}
+			}
+		}
+	}
+	
+	static ObjectName getObjectName(String histogramName) throws JMException {
+		return new ObjectName(JMX_DOMAIN + ":type=Histogram,name=" + ObjectName.quote(histogramName));
+	}
+}
@@ -0,0 +1,112 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import com.catify.processengine.core.data.repositories.FlowNodeInstanceRepository;
+
+/**
+ * Wraps the {@link FlowNodeInstanceRepository} into a proxy that records the latency of every 
+ * repository method (query) in a histogram named 'repository.FlowNodeInstanceRepository.&lt;method&gt;'.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class RepositoryMetricsPostProcessor implements BeanPostProcessor {
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.config.BeanPostProcessor#postProcessBeforeInitialization(java.lang.Object, java.lang.String)
+	 */
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		return bean;
+	}
+
+	/* (non-Javadoc)
+	 * @see org.springframework.beans.factory.config.BeanPostProcessor#postProcessAfterInitialization(java.lang.Object, java.lang.String)
+	 */
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof FlowNodeInstanceRepository) {
+			return createTimedProxy(bean, FlowNodeInstanceRepository.class.getSimpleName());
+		}
+		return bean;
+	}
+	
+	/**
+	 * Creates a proxy implementing all interfaces of the target that times every method call.
+	 *
+	 * @param target the target
+	 * @param name the name used in the histogram names
+	 * @return the proxy
+	 */
+	static Object createTimedProxy(final Object target, final String name) {
+		return Proxy.newProxyInstance(RepositoryMetricsPostProcessor.class.getClassLoader(), getInterfaces(target.getClass()), 
+				new InvocationHandler() {
+			
+			private final ConcurrentMap<Method, Histogram> histograms = new ConcurrentHashMap<Method, Histogram>();
+			
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				if (method.getDeclaringClass() == Object.class) {
+					return method.invoke(target, args);
+				}
+				
+				Histogram histogram = histograms.get(method);
+				if (histogram == null) {
+					histogram = MetricsRegistry.getHistogram("repository." + name + "." + method.getName());
+					histograms.put(method, histogram);
+				}
+				
+				long start = System.nanoTime();
+				long traceStart = ExecutionTracer.enterDatabase();
+				try {
+					return method.invoke(target, args);
+				} catch (InvocationTargetException e) {
+					throw e.getCause();
+				} finally {
+					ExecutionTracer.exitDatabase(traceStart);
+					histogram.recordSince(start);
+				}
+			}
+		});
+	}
+	
+	private static Class<?>[] getInterfaces(Class<?> type) {
+		Set<Class<?>> interfaces = new LinkedHashSet<Class<?>>();
+		for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+			for (Class<?> implemented : current.getInterfaces()) {
+				interfaces.add(implemented);
+			}
+		}
+		return interfaces.toArray(new Class<?>[interfaces.size()]);
+	}
+}
@@ -0,0 +1,90 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A fixed size buffer of the latest {@link TraceSpan}s. Writers claim a slot with a single 
+ * atomic increment and never wait for each other or for readers; when the buffer is full 
+ * the oldest spans are overwritten. 
+ * 
+ * @author christopher köster
+ * 
+ */
+public class SpanRingBuffer {
+
+	private final AtomicReferenceArray<TraceSpan> spans;
+	
+	private final int mask;
+	
+	private final AtomicLong cursor = new AtomicLong();
+	
+	/**
+	 * Instantiates a new span ring buffer.
+	 *
+	 * @param capacity the minimum capacity, rounded up to the next power of two
+	 */
+	public SpanRingBuffer(int capacity) {
+		int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+		this.spans = new AtomicReferenceArray<TraceSpan>(size);
+		this.mask = size - 1;
+	}
+	
+	/**
+	 * Adds a span, overwriting the oldest span if the buffer is full.
+	 *
+	 * @param span the span
+	 */
+	public void add(TraceSpan span) {
+		spans.set((int) (cursor.getAndIncrement() & mask), span);
+	}
+	
+	/**
+	 * Finds the spans of a process instance still in the buffer.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return the spans in no particular order
+	 */
+	public List<TraceSpan> find(String processInstanceId) {
+		List<TraceSpan> found = new ArrayList<TraceSpan>();
+		for (int i = 0; i < spans.length(); i++) {
+			TraceSpan span = spans.get(i);
+			if (span != null && processInstanceId.equals(span.getProcessInstanceId())) {
+				found.add(span);
+			}
+		}
+		return found;
+	}
+	
+	public int getCapacity() {
+		return spans.length();
+	}
+	
+	/**
+	 * Gets the number of spans added so far.
+	 *
+	 * @return the number of spans
+	 */
+	public long getWritten() {
+		return cursor.get();
+	}
+}
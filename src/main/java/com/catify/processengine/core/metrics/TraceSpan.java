@@ -0,0 +1,153 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.metrics;
+
+/**
+ * A TraceSpan is the handling of one message by one flow node of a traced process instance: 
+ * the time the message has been sent (enqueued), taken from the mailbox (dequeued) and 
+ * handled, and the part of the handling spent in the database. The parent span is the 
+ * handling that sent the message, so the spans of an instance form a tree.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class TraceSpan {
+
+	private final long id;
+	
+	private final long parentId;
+	
+	private final String uniqueProcessId;
+	
+	private final String uniqueFlowNodeId;
+	
+	private final String processInstanceId;
+	
+	private final String nodeType;
+	
+	private final String messageType;
+	
+	private final long enqueueNanos;
+	
+	private final long dequeueNanos;
+	
+	private final long endNanos;
+	
+	private final long databaseNanos;
+
+	/**
+	 * Instantiates a new trace span.
+	 *
+	 * @param id the span id
+	 * @param parentId the id of the span that sent the message (0 if unknown)
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param processInstanceId the process instance id
+	 * @param nodeType the type of the flow node
+	 * @param messageType the type of the message
+	 * @param enqueueNanos the time the message has been sent (0 if unknown)
+	 * @param dequeueNanos the time the message has been taken from the mailbox
+	 * @param endNanos the time the handling ended
+	 * @param databaseNanos the time spent in the database
+	 */
+	public TraceSpan(long id, long parentId, String uniqueProcessId, String uniqueFlowNodeId, String processInstanceId, 
+			String nodeType, String messageType, long enqueueNanos, long dequeueNanos, long endNanos, long databaseNanos) {
+		this.id = id;
+		this.parentId = parentId;
+		this.uniqueProcessId = uniqueProcessId;
+		this.uniqueFlowNodeId = uniqueFlowNodeId;
+		this.processInstanceId = processInstanceId;
+		this.nodeType = nodeType;
+		this.messageType = messageType;
+		this.enqueueNanos = enqueueNanos;
+		this.dequeueNanos = dequeueNanos;
+		this.endNanos = endNanos;
+		this.databaseNanos = databaseNanos;
+	}
+	
+	/**
+	 * Gets the time the message waited in the mailbox.
+	 *
+	 * @return the wait time in nanos (0 if the enqueue time is unknown)
+	 */
+	public long getWaitNanos() {
+		return enqueueNanos == 0 ? 0 : Math.max(0, dequeueNanos - enqueueNanos);
+	}
+	
+	/**
+	 * Gets the time the handling took without the time spent in the database.
+	 *
+	 * @return the processing time in nanos
+	 */
+	public long getProcessingNanos() {
+		return Math.max(0, endNanos - dequeueNanos - databaseNanos);
+	}
+	
+	/**
+	 * Gets the first known time of this span, the enqueue time if known.
+	 *
+	 * @return the start time in nanos
+	 */
+	public long getStartNanos() {
+		return enqueueNanos == 0 ? dequeueNanos : enqueueNanos;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public long getParentId() {
+		return parentId;
+	}
+
+	public String getUniqueProcessId() {
+		return uniqueProcessId;
+	}
+
+	public String getUniqueFlowNodeId() {
+		return uniqueFlowNodeId;
+	}
+
+	public String getProcessInstanceId() {
+		return processInstanceId;
+	}
+
+	public String getNodeType() {
+		return nodeType;
+	}
+
+	public String getMessageType() {
+		return messageType;
+	}
+
+	public long getEnqueueNanos() {
+		return enqueueNanos;
+	}
+
+	public long getDequeueNanos() {
+		return dequeueNanos;
+	}
+
+	public long getEndNanos() {
+		return endNanos;
+	}
+
+	public long getDatabaseNanos() {
+		return databaseNanos;
+	}
+}
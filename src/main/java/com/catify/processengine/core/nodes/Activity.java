@@ -38,6 +38,7 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionFactory;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.processdefinition.jaxb.TNodeCategory;
 import com.catify.processengine.core.services.ActorReferenceService;
 
 /**
@@ -137,8 +138,19 @@ public abstract class Activity extends FlowElement {
 		return future;
 	}
 
+	/**
+	 * Checks if a synchronous call has been answered with a failure.
+	 *
+	 * @param future the future returned by {@link #callSynchronousActor(ActorRef, Message, long)}
+	 * @return true, if the call failed (a call that timed out has not failed)
+	 */
+	protected boolean isFailed(Future<Object> future) {
+		return future.value().isDefined() && future.value().get().isFailure();
+	}
+	
 	/**
 	 * Creates the event definition actor from the eventDefinitionParameter as a child node to the given actor context.
+	 * It runs on the dispatcher of the 'event-definition' category (see {@link NodeDispatchers}).
 	 *
 	 * @param uniqueFlowNodeId the unique flow node id
 	 * @param message the message
@@ -153,7 +165,8 @@ public abstract class Activity extends FlowElement {
 			public UntypedActor create() {
 					return new EventDefinitionFactory().getEventDefinition(eventDefinitionParameter);
 				}
-		}), ActorReferenceService.getActorReferenceString(this.context()+"-eventDefinition"));
+		}).withDispatcher(NodeDispatchers.getDispatcher(this.context().system(), this.getUniqueProcessId(), TNodeCategory.EVENT_DEFINITION)), 
+		ActorReferenceService.getActorReferenceString(this.context()+"-eventDefinition"));
 		return eventDefinitionActor;
 	}
 	
@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 import java.util.Set;
 
@@ -35,6 +34,7 @@ import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.services.ActorReferenceService;
 import com.catify.processengine.core.services.ProcessInstanceMediatorService;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * A complex gateway triggers on a user defined condition. At this stage of
@@ -80,7 +80,7 @@ public class ComplexGatewayNode extends FlowElement implements NOfMService {
 		// if this is the first call, set state to active and set start time
 		if (this.getNodeInstanceMediatorService().getSequenceFlowsFired(iid) == 0) {
 			this.getNodeInstanceMediatorService().setActive(iid);
-			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(iid, new Date());
+			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(iid, Clock.now());
 		}
 		
 		int flowsFired = this.incrementSequenceFlowsFired(message,
@@ -91,7 +91,7 @@ public class ComplexGatewayNode extends FlowElement implements NOfMService {
 		// check the n of m condition (encapsulated as a whole to be able to plug in other trigger conditions in a later step)
 		// and react only if it is fulfilled
 		if (checkNOfMCondition(iid, flowsFired)) {
-			this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, new Date());
+			this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, Clock.now());
 
 			this.deactivatePreviousLoosingNodes(message);
 			
@@ -108,7 +108,7 @@ public class ComplexGatewayNode extends FlowElement implements NOfMService {
 
 	@Override
 	protected void deactivate(DeactivationMessage message) {
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
 				NodeInstaceStates.DEACTIVATED_STATE);
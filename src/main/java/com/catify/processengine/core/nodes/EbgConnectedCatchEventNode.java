@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 
 import akka.actor.ActorRef;
@@ -29,6 +28,7 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.messages.WinningMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * An EbgConnectedCatchEvent is a specialization of the standard catch event
@@ -88,7 +88,7 @@ public class EbgConnectedCatchEventNode extends CatchEvent {
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.ACTIVE_STATE);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.setActivatingGatewayNode(this.getSender());
 		
@@ -101,7 +101,7 @@ public class EbgConnectedCatchEventNode extends CatchEvent {
 	protected void deactivate(DeactivationMessage message) {
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -121,7 +121,7 @@ public class EbgConnectedCatchEventNode extends CatchEvent {
 		
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().persistChanges();
 		
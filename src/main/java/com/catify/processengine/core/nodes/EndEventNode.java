@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.Set;
 
 import org.springframework.beans.factory.annotation.Autowired;
@@ -30,11 +29,13 @@ import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
 import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinition;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
 import com.catify.processengine.core.nodes.eventdefinition.TerminateEventDefinition;
 import com.catify.processengine.core.services.ProcessInstanceMediatorService;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * End point for a process. Ends a process instance if there are no active nodes
@@ -84,13 +85,13 @@ public class EndEventNode extends ThrowEvent {
 	@Override
 	protected void activate(ActivationMessage message) {
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
 		
 		message.setPayload(this.getDataObjectHandling().loadObject(this.getUniqueProcessId(), message.getProcessInstanceId()));
 		
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.PASSED_STATE);
@@ -104,7 +105,7 @@ public class EndEventNode extends ThrowEvent {
 	protected void deactivate(DeactivationMessage message) {
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -148,6 +149,8 @@ public class EndEventNode extends ThrowEvent {
 			// top level end events will work with the whole process instance to either save or delete it
 			} else {
 				LOG.debug(String.format("Process instance with instance id '%s' ended sucessfully", processInstanceId));
+				this.getContext().system().eventStream().publish(
+						new ProcessInstanceEndMessage(this.getUniqueProcessId(), processInstanceId, Clock.now()));
 			}
 			// return instance has ended
 			return true;
@@ -18,7 +18,6 @@
 package com.catify.processengine.core.nodes;
 
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
 import akka.actor.ActorRef;
@@ -29,6 +28,7 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.messages.WinningMessage;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * An event based gateway triggers immediately if one of the following event
@@ -68,7 +68,7 @@ public class EventBasedGatewayNode extends FlowElement {
 				message.getProcessInstanceId(),
 				NodeInstaceStates.ACTIVE_STATE);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().persistChanges();
 		
@@ -79,7 +79,7 @@ public class EventBasedGatewayNode extends FlowElement {
 
 	@Override
 	protected void deactivate(DeactivationMessage message) {
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -90,7 +90,7 @@ public class EventBasedGatewayNode extends FlowElement {
 
 	@Override
 	protected void trigger(TriggerMessage message) {
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -19,7 +19,6 @@ package com.catify.processengine.core.nodes;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +37,7 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.services.ExpressionService;
+import com.catify.processengine.core.util.Clock;
 import com.catify.processengine.core.util.GatewayUtil;
 
 /**
@@ -126,13 +126,13 @@ public class ExclusiveGatewayNode extends FlowElement implements NOfMService {
 		if (nodeInstanceMediatorService.getSequenceFlowsFired(iid) == 0) {
 			this.getNodeInstanceMediatorService().setActive(iid);
 			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(
-					message.getProcessInstanceId(), new Date());
+					message.getProcessInstanceId(), Clock.now());
 		}
 		
 		// check, if we have to change the state
 		int flowsFired = GatewayUtil.setFiredPlusOne(getNodeInstanceMediatorService(), iid);
 		if(checkNOfMCondition(iid, flowsFired)) {
-			this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, new Date());
+			this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, Clock.now());
 			this.getNodeInstanceMediatorService().setPassed(iid);
 			LOG.debug(String.format("Setting exclusive gateway '%s' to passed.", super.getUniqueFlowNodeId()));
 		}
@@ -161,7 +161,7 @@ public class ExclusiveGatewayNode extends FlowElement implements NOfMService {
 	protected void deactivate(DeactivationMessage message) {
 		String iid = message.getProcessInstanceId();
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, Clock.now());
 		this.getNodeInstanceMediatorService().setDeactivated(iid);
 		this.getNodeInstanceMediatorService().persistChanges();
 	}
@@ -24,17 +24,25 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 
+import akka.actor.ActorCell;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 import akka.actor.UntypedActor;
 
 import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.messages.ActivationMessage;
+import com.catify.processengine.core.messages.BatchTriggerMessage;
 import com.catify.processengine.core.messages.CommitMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.messages.FlushMessage;
 import com.catify.processengine.core.messages.LoopMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.BlockingCallDetector;
+import com.catify.processengine.core.metrics.ExecutionTracer;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
 import com.catify.processengine.core.services.NodeInstanceMediatorService;
 
 /**
@@ -78,6 +86,24 @@ public abstract class FlowElement extends UntypedActor {
 	/** The node instance mediator service. */
 	protected NodeInstanceMediatorService nodeInstanceMediatorService;
 	
+	private static final int ACTIVATE = 0;
+	private static final int TRIGGER = 1;
+	private static final int DEACTIVATE = 2;
+	private static final String[] OPERATIONS = { "activate", "trigger", "deactivate" };
+	private static final String MAILBOX_SIZE = "mailboxSize";
+	
+	/** The latency histograms of the message types of this node (see {@link MetricsRegistry}). */
+	private Histogram[] histograms;
+	
+	/** The latency histograms of the message types aggregated over all nodes of this type. */
+	private Histogram[] typeHistograms;
+	
+	/** The mailbox size histogram, created when the mailbox size is sampled first. */
+	private Histogram mailboxSizeHistogram;
+	
+	/** The number of messages received (to sample the mailbox size). */
+	private int receivedMessages;
+	
 	public FlowElement(String uniqueProcessId, String uniqueFlowNodeId) {
 		this.setUniqueProcessId(uniqueProcessId);
 		this.setUniqueFlowNodeId(uniqueFlowNodeId);
@@ -96,18 +122,58 @@ public abstract class FlowElement extends UntypedActor {
 		LOG.debug(String.format("%s received %s", this.getSelf(), message
 				.getClass().getSimpleName()));
 		
+		this.recordMailboxSize();
+		
+		// all messages received before have been handled
+		if (message instanceof FlushMessage) {
+			this.getSender().tell(message, this.getSelf());
+			return;
+		}
+		
+		// a batch is handled like its single trigger messages
+		if (message instanceof BatchTriggerMessage) {
+			for (TriggerMessage triggerMessage : ((BatchTriggerMessage) message).getTriggerMessages()) {
+				this.handle(triggerMessage);
+			}
+			return;
+		}
+		
+		this.handle(message);
+	}
+	
+	/**
+	 * Handles a message of a process instance, if the instance is in a processable state.
+	 * 
+	 * @param message the message
+	 */
+	private void handle(Object message) {
 		if (this.isProcessableInstance((Message) message)) {
-			if (message instanceof ActivationMessage) {		
-				this.handleLoopCount((Message) message);			
-				activate((ActivationMessage) message);
-			} else if (message instanceof TriggerMessage) {
-				trigger((TriggerMessage) message);
-			} else if (message instanceof DeactivationMessage) {
-				deactivate((DeactivationMessage) message);
-				// commit message after deactivation
-				new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
-			} else {
-				handleNonStandardMessage(message);
+			String processInstanceId = ((Message) message).getProcessInstanceId();
+			FlightRecorderEvents.enterContext(uniqueProcessId, uniqueFlowNodeId, processInstanceId, message.getClass().getSimpleName());
+			ExecutionTracer.beginSpan((Message) message, uniqueProcessId, uniqueFlowNodeId, this.getClass().getSimpleName());
+			BlockingCallDetector.enter(this.getSelf(), this.getClass().getSimpleName(), uniqueFlowNodeId, processInstanceId, 
+					message.getClass().getSimpleName());
+			try {
+				long start = System.nanoTime();
+				if (message instanceof ActivationMessage) {		
+					this.handleLoopCount((Message) message);			
+					activate((ActivationMessage) message);
+					this.recordLatency(ACTIVATE, processInstanceId, start);
+				} else if (message instanceof TriggerMessage) {
+					trigger((TriggerMessage) message);
+					this.recordLatency(TRIGGER, processInstanceId, start);
+				} else if (message instanceof DeactivationMessage) {
+					deactivate((DeactivationMessage) message);
+					this.recordLatency(DEACTIVATE, processInstanceId, start);
+					// commit message after deactivation
+					new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
+				} else {
+					handleNonStandardMessage(message);
+				}
+			} finally {
+				BlockingCallDetector.exit();
+				ExecutionTracer.endSpan();
+				FlightRecorderEvents.exitContext();
 			}
 		} else {
 			if (message instanceof DeactivationMessage) {
@@ -117,6 +183,61 @@ public abstract class FlowElement extends UntypedActor {
 		}
 	}
 
+	/**
+	 * Gets the histograms of this node, which are created on first use because the 
+	 * unique flow node id is not known before construction.
+	 *
+	 * @return the histograms (indexed by {@link #ACTIVATE}, {@link #TRIGGER}, {@link #DEACTIVATE})
+	 */
+	private Histogram[] getHistograms() {
+		if (histograms == null) {
+			String nodeType = this.getClass().getSimpleName();
+			histograms = new Histogram[OPERATIONS.length];
+			typeHistograms = new Histogram[OPERATIONS.length];
+			for (int i = 0; i < OPERATIONS.length; i++) {
+				histograms[i] = MetricsRegistry.getNodeHistogram(nodeType, uniqueFlowNodeId, OPERATIONS[i]);
+				typeHistograms[i] = MetricsRegistry.getNodeTypeHistogram(nodeType, OPERATIONS[i]);
+			}
+		}
+		return histograms;
+	}
+	
+	/**
+	 * Records the latency of a handled message in the histogram of the operation and 
+	 * as flight recorder event (see {@link FlightRecorderEvents}).
+	 *
+	 * @param operation the operation index
+	 * @param processInstanceId the process instance id
+	 * @param start the start time taken with {@link System#nanoTime()}
+	 */
+	private void recordLatency(int operation, String processInstanceId, long start) {
+		long latency = System.nanoTime() - start;
+		this.getHistograms()[operation].record(latency);
+		this.typeHistograms[operation].record(latency);
+		FlightRecorderEvents.commit(FlightRecorderEvents.EventType.NODE_MESSAGE, 
+				uniqueProcessId, uniqueFlowNodeId, processInstanceId, OPERATIONS[operation], start);
+	}
+	
+	/**
+	 * Records the number of messages waiting in the mailbox of this node every 
+	 * {@link MetricsRegistry#getMailboxSampleRate()} messages. Counting the messages 
+	 * of a mailbox is linear in its size, so it is disabled by default.
+	 */
+	private void recordMailboxSize() {
+		int sampleRate = MetricsRegistry.getMailboxSampleRate();
+		if (sampleRate <= 0 || ++receivedMessages < sampleRate) {
+			return;
+		}
+		receivedMessages = 0;
+		
+		if (this.getContext() instanceof ActorCell) {
+			if (mailboxSizeHistogram == null) {
+				mailboxSizeHistogram = MetricsRegistry.getNodeHistogram(this.getClass().getSimpleName(), uniqueFlowNodeId, MAILBOX_SIZE);
+			}
+			mailboxSizeHistogram.record(((ActorCell) this.getContext()).mailbox().numberOfMessages());
+		}
+	}
+	
 	/**
 	 * Handles the loop count of a flow node instance (fni). Will increase the loop count, if a fni is in passed state.
 	 *
@@ -224,6 +345,7 @@ public abstract class FlowElement extends UntypedActor {
 			// prior calling of the actorSystem
 			String ars = targetNode.path().toString();
 			ActorRef ar = actorSystem.actorFor(ars);
+			ExecutionTracer.stamp(message);
 			ar.tell(message, this.getSelf());
 			
 	//		targetNode.tell(message, this.getSelf());
@@ -242,6 +364,8 @@ public abstract class FlowElement extends UntypedActor {
 			List<ActorRef> targetNodes) {
 		
 		if (targetNodes != null) {
+			// the message instance is shared by all targets, so it must not change once it has been sent
+			ExecutionTracer.stamp(message);
 
 			for (ActorRef actorRef : targetNodes) {
 				LOG.debug(String.format("Sending %s from %s to %s", message
@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 
 import akka.actor.ActorRef;
@@ -28,6 +27,7 @@ import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * An intermediate catch event can receive (and save) messages sent from outside
@@ -76,7 +76,7 @@ public class IntermediateBoundaryEventNode extends CatchEvent {
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.ACTIVE_STATE);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().persistChanges();
 		
@@ -87,7 +87,7 @@ public class IntermediateBoundaryEventNode extends CatchEvent {
 	protected void deactivate(DeactivationMessage message) {
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -109,7 +109,7 @@ public class IntermediateBoundaryEventNode extends CatchEvent {
 				this.getBoundaryActivity());
 		}
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.PASSED_STATE);
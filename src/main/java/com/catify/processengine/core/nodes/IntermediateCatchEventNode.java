@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 
 import akka.actor.ActorRef;
@@ -26,8 +25,10 @@ import com.catify.processengine.core.data.dataobjects.DataObjectHandling;
 import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.messages.LinkEventMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * An intermediate catch event can receive (and save) messages sent from outside
@@ -68,7 +69,13 @@ public class IntermediateCatchEventNode extends CatchEvent {
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.ACTIVE_STATE);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
+		
+		// catching link events are activated and triggered by a single message of the throwing link event
+		if (message instanceof LinkEventMessage) {
+			this.trigger(new TriggerMessage(message.getProcessInstanceId(), null));
+			return;
+		}
 		
 		this.getNodeInstanceMediatorService().persistChanges();
 		
@@ -79,7 +86,7 @@ public class IntermediateCatchEventNode extends CatchEvent {
 	protected void deactivate(DeactivationMessage message) {
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -94,7 +101,7 @@ public class IntermediateCatchEventNode extends CatchEvent {
 		
 		this.callEventDefinitionActor(message);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.PASSED_STATE);
@@ -17,7 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 
 import akka.actor.ActorRef;
@@ -28,6 +27,7 @@ import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * An intermediate throw event can send (and load) messages outside of the
@@ -71,10 +71,19 @@ public class IntermediateThrowEventNode extends ThrowEvent {
 	protected void activate(ActivationMessage message) {
 		message.setPayload(this.getDataObjectHandling().loadObject(this.getUniqueProcessId(), message.getProcessInstanceId()));
 		
-		this.callEventDefinitionActor(message);
+		// a failed event (e.g. a link without a catching event) keeps the process instance at this node
+		if (this.isFailed(this.callEventDefinitionActor(message))) {
+			LOG.error(String.format("The event definition of %s failed, process instance %s stays at this node.", 
+					this.getUniqueFlowNodeId(), message.getProcessInstanceId()));
+			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
+			this.getNodeInstanceMediatorService().setState(
+					message.getProcessInstanceId(), NodeInstaceStates.ACTIVE_STATE);
+			this.getNodeInstanceMediatorService().persistChanges();
+			return;
+		}
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.PASSED_STATE);
@@ -92,7 +101,7 @@ public class IntermediateThrowEventNode extends ThrowEvent {
 		
 		this.callEventDefinitionActor(message);
 
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(processInstanceId, new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(processInstanceId, Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				processInstanceId,
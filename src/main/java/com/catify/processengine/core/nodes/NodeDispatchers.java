@@ -0,0 +1,163 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.nodes;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.core.processdefinition.jaxb.TDispatcher;
+import com.catify.processengine.core.processdefinition.jaxb.TEvent;
+import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
+import com.catify.processengine.core.processdefinition.jaxb.TGateway;
+import com.catify.processengine.core.processdefinition.jaxb.TNodeCategory;
+import com.typesafe.config.Config;
+
+/**
+ * Selects the akka dispatcher of the engine actors by node category. This keeps blocking work in 
+ * thread pools apart from the token routing: service task instances and the event definitions 
+ * calling the message integration run in one pool, the event and activity nodes waiting 
+ * synchronously for them in another, so the gateways and core actors keep their own threads. <p>
+ * The dispatchers are configured in the akka configuration below {@value #CONFIG_PATH}, keyed by 
+ * the category (e.g. <code>catify.dispatchers.service-task = io-dispatcher</code>, the core actors 
+ * use the key 'core'). A process can override them with <code>dispatcher</code> extension elements. 
+ * Categories without a dispatcher use the {@value #NODE_DISPATCHER} for node actors and the akka 
+ * default dispatcher for the child actors of the nodes.
+ * 
+ * @author christopher köster
+ * 
+ */
+public final class NodeDispatchers {
+
+	static final Logger LOG = LoggerFactory.getLogger(NodeDispatchers.class);
+	
+	/** The path of the dispatcher configuration. */
+	public static final String CONFIG_PATH = "catify.dispatchers";
+	
+	/** The default dispatcher of node and core actors. */
+	public static final String NODE_DISPATCHER = "file-mailbox-dispatcher";
+	
+	/** The default dispatcher of the child actors of nodes. */
+	public static final String CHILD_DISPATCHER = "akka.actor.default-dispatcher";
+	
+	/** The configuration key of the core actors. */
+	public static final String CORE = "core";
+	
+	/** The dispatchers defined by the processes, mapped by unique process id. */
+	private static final ConcurrentMap<String, Map<TNodeCategory, String>> processDispatchers = new ConcurrentHashMap<String, Map<TNodeCategory, String>>();
+	
+	private NodeDispatchers() {
+	}
+	
+	/**
+	 * Registers the dispatchers defined by a process. Must be called before the actors of the 
+	 * process are created. Dispatchers that are not configured in the actor system are ignored.
+	 *
+	 * @param actorSystem the actor system
+	 * @param uniqueProcessId the unique process id
+	 * @param dispatchersJaxb the dispatcher extension elements of the process
+	 */
+	public static void registerProcess(ActorSystem actorSystem, String uniqueProcessId, List<TDispatcher> dispatchersJaxb) {
+		Map<TNodeCategory, String> dispatchers = new EnumMap<TNodeCategory, String>(TNodeCategory.class);
+		for (TDispatcher dispatcherJaxb : dispatchersJaxb) {
+			if (actorSystem.dispatchers().hasDispatcher(dispatcherJaxb.getName())) {
+				dispatchers.put(dispatcherJaxb.getCategory(), dispatcherJaxb.getName());
+			} else {
+				LOG.warn(String.format("Dispatcher '%s' of process %s is not configured, using the default %s dispatcher.", 
+						dispatcherJaxb.getName(), uniqueProcessId, dispatcherJaxb.getCategory().value()));
+			}
+		}
+		
+		if (dispatchers.isEmpty()) {
+			processDispatchers.remove(uniqueProcessId);
+		} else {
+			processDispatchers.put(uniqueProcessId, dispatchers);
+		}
+	}
+	
+	/**
+	 * Gets the dispatcher of an actor of a process.
+	 *
+	 * @param actorSystem the actor system
+	 * @param uniqueProcessId the unique process id
+	 * @param category the node category of the actor
+	 * @return the dispatcher id
+	 */
+	public static String getDispatcher(ActorSystem actorSystem, String uniqueProcessId, TNodeCategory category) {
+		Map<TNodeCategory, String> dispatchers = processDispatchers.get(uniqueProcessId);
+		if (dispatchers != null && dispatchers.containsKey(category)) {
+			return dispatchers.get(category);
+		}
+		
+		if (category == TNodeCategory.EVENT_DEFINITION || category == TNodeCategory.SERVICE_TASK) {
+			return getConfiguredDispatcher(actorSystem, category.value(), CHILD_DISPATCHER);
+		} else {
+			return getConfiguredDispatcher(actorSystem, category.value(), NODE_DISPATCHER);
+		}
+	}
+	
+	/**
+	 * Gets the dispatcher of the core actors.
+	 *
+	 * @param actorSystem the actor system
+	 * @return the dispatcher id
+	 */
+	public static String getCoreDispatcher(ActorSystem actorSystem) {
+		return getConfiguredDispatcher(actorSystem, CORE, NODE_DISPATCHER);
+	}
+	
+	/**
+	 * Gets the category of a flow node.
+	 *
+	 * @param flowNodeJaxb the jaxb flow node
+	 * @return the node category
+	 */
+	public static TNodeCategory getCategory(TFlowNode flowNodeJaxb) {
+		if (flowNodeJaxb instanceof TGateway) {
+			return TNodeCategory.GATEWAY;
+		} else if (flowNodeJaxb instanceof TEvent) {
+			return TNodeCategory.EVENT;
+		} else {
+			return TNodeCategory.ACTIVITY;
+		}
+	}
+	
+	private static String getConfiguredDispatcher(ActorSystem actorSystem, String key, String defaultDispatcher) {
+		Config config = actorSystem.settings().config();
+		String path = CONFIG_PATH + "." + key;
+		if (!config.hasPath(path)) {
+			return defaultDispatcher;
+		}
+		
+		String dispatcher = config.getString(path);
+		if (actorSystem.dispatchers().hasDispatcher(dispatcher)) {
+			return dispatcher;
+		} else {
+			LOG.warn(String.format("Dispatcher '%s' configured at %s is not configured, using the default dispatcher %s.", 
+					dispatcher, path, defaultDispatcher));
+			return defaultDispatcher;
+		}
+	}
+}
@@ -58,6 +58,7 @@ import com.catify.processengine.core.processdefinition.jaxb.TFlowElement;
 import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
 import com.catify.processengine.core.processdefinition.jaxb.TIntermediateCatchEvent;
 import com.catify.processengine.core.processdefinition.jaxb.TIntermediateThrowEvent;
+import com.catify.processengine.core.processdefinition.jaxb.TNodeCategory;
 import com.catify.processengine.core.processdefinition.jaxb.TParallelGateway;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
 import com.catify.processengine.core.processdefinition.jaxb.TReceiveTask;
@@ -70,7 +71,8 @@ import com.catify.processengine.core.processdefinition.jaxb.TTerminateEventDefin
 import com.catify.processengine.core.services.ActorReferenceService;
 
 /**
- * A factory for creating akka node objects.
+ * A factory for creating akka node objects. The factory holds no state of its own, so service 
+ * nodes of different processes can be created concurrently.
  * 
  * @author christopher köster
  * 
@@ -86,7 +88,7 @@ public class NodeFactoryImpl implements NodeFactory {
 	protected ActorSystem actorSystem;
 	
 	@Override
-	public synchronized FlowElement createServiceNode(String clientId, TProcess processJaxb,  List<TSubProcess> subProcessesJaxb,
+	public FlowElement createServiceNode(String clientId, TProcess processJaxb,  List<TSubProcess> subProcessesJaxb,
 			TFlowNode flowNodeJaxb, List<TSequenceFlow> sequenceFlowsJaxb) {
 		// event nodes
 		if (flowNodeJaxb instanceof TStartEvent) {
@@ -564,6 +566,10 @@ public class NodeFactoryImpl implements NodeFactory {
 	 */
 	private ActorRef createLoopStrategy(final TFlowNode flowNodeJaxb,
 			final NodeParameter nodeParameter, final String uniqueFlowNodeId) {
+		String actorName = ActorReferenceService.getActorReferenceString(uniqueFlowNodeId) + "-strategy";
+		ActorReferenceService.migrateMailbox(this.actorSystem, 
+				ActorReferenceService.getLegacyActorReferenceString(uniqueFlowNodeId) + "-strategy", actorName);
+		
 		ActorRef strategy = this.actorSystem.actorOf(new Props(new UntypedActorFactory() {
 			private static final long serialVersionUID = 1L;
 
@@ -572,8 +578,8 @@ public class NodeFactoryImpl implements NodeFactory {
 						new ActorReferenceService().getActorReference(uniqueFlowNodeId), // task wrapper actor Ref
 						nodeParameter);
 				}
-			}).withDispatcher("file-mailbox-dispatcher"), 
-			ActorReferenceService.getActorReferenceString(uniqueFlowNodeId) + "-strategy");
+			}).withDispatcher(NodeDispatchers.getDispatcher(this.actorSystem, nodeParameter.getUniqueProcessId(), TNodeCategory.LOOP)), 
+			actorName);
 		
 		LOG.debug(String.format("%s --> resulting akka object: %s", flowNodeJaxb, strategy.toString()));
 		return strategy;
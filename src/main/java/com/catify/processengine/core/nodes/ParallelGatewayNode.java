@@ -17,11 +17,11 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 
 import akka.actor.ActorRef;
 
@@ -29,10 +29,16 @@ import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
-import com.catify.processengine.core.util.GatewayUtil;
+import com.catify.processengine.core.services.NodeInstanceMediatorService;
+import com.catify.processengine.core.util.Clock;
+import com.catify.processengine.core.util.JoinCounter;
 
 /**
  * The ParallelGatewayNode triggers when all incoming flow nodes have triggered.
+ * The fired incoming flows are counted in memory ({@link JoinCounter}) and
+ * written to the db when the first flow arrives, when a checkpoint is due and
+ * when the join completes. By default every fired flow is a checkpoint, so a
+ * join interrupted by a restart continues with the persisted fired flows.
  * 
  * @author christopher köster
  * 
@@ -41,6 +47,17 @@ public class ParallelGatewayNode extends FlowElement implements NOfMService {
 
 	static final Logger LOG = LoggerFactory.getLogger(ParallelGatewayNode.class);
 
+	/** The number of fired flows after which the join state is persisted (0 only persists on completion). Flows fired after the last checkpoint are lost on a restart, so a value other than 1 may block the join. Note: This value is only available after construction is completed. */
+	@Value("${core.joinCheckpointInterval}")
+	private int joinCheckpointInterval;
+	
+	/** The maximum number of process instances whose join counters are kept in memory. Note: This value is only available after construction is completed. */
+	@Value("${core.joinCounterCapacity}")
+	private int joinCounterCapacity;
+	
+	/** The in-memory join counters of the process instances currently waiting at this gateway. */
+	private JoinCounter joinCounter;
+
 	/**
 	 * Instantiates a new parallel gateway node.
 	 * 
@@ -61,31 +78,60 @@ public class ParallelGatewayNode extends FlowElement implements NOfMService {
 		this.setOutgoingNodes(outgoingNodes);
 	}
 
+	/**
+	 * Gets the join counter, which is created on first use, because the @Value annotated fields get filled by spring <b>after</b> construction.
+	 *
+	 * @return the join counter
+	 */
+	protected JoinCounter getJoinCounter() {
+		if (joinCounter == null) {
+			joinCounter = new JoinCounter(joinCheckpointInterval, joinCounterCapacity);
+		}
+		return joinCounter;
+	}
+
 	@Override
 	protected void activate(ActivationMessage message) {
 		
 		String iid = message.getProcessInstanceId();
+		NodeInstanceMediatorService nodeInstanceMediatorService = this.getNodeInstanceMediatorService();
 		
-		// if this is the first call, set state to active and set start time
-		if (this.getNodeInstanceMediatorService().getSequenceFlowsFired(message.getProcessInstanceId()) == 0) {
-			this.getNodeInstanceMediatorService().setActive(iid);
-			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
-		}
+		JoinCounter joinCounter = this.getJoinCounter();
+		boolean persist = false;
 		
-		int flowsFired = GatewayUtil.setFiredPlusOne(getNodeInstanceMediatorService(), iid);
+		// the join counter is rebuilt from the persisted fired flows if this instance is not (or no longer) tracked
+		if (!joinCounter.isTracked(iid)) {
+			int persistedFlowsFired = nodeInstanceMediatorService.getSequenceFlowsFired(iid);
+			
+			// if this is the first call, set state to active and set start time
+			if (persistedFlowsFired == 0) {
+				nodeInstanceMediatorService.setActive(iid);
+				nodeInstanceMediatorService.setNodeInstanceStartTime(iid, Clock.now());
+				persist = true;
+			}
+			joinCounter.track(iid, persistedFlowsFired, nodeInstanceMediatorService.getIncomingFiredFlowsNeeded(iid));
+		}
 		
-		this.getNodeInstanceMediatorService().persistChanges();
+		int flowsFired = joinCounter.increment(iid);
 		
 		// check the n of m condition and react only if it is fulfilled
 		if (checkNOfMCondition(iid, flowsFired)) {
-			this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, new Date());
-			this.getNodeInstanceMediatorService().setPassed(iid);
+			joinCounter.remove(iid);
+			
+			nodeInstanceMediatorService.setSequenceFlowsFired(iid, flowsFired);
+			nodeInstanceMediatorService.setNodeInstanceEndTime(iid, Clock.now());
+			nodeInstanceMediatorService.setPassed(iid);
 			
-			this.getNodeInstanceMediatorService().persistChanges();
+			nodeInstanceMediatorService.persistChanges();
 			
 			this.sendMessageToNodeActors(
 					new ActivationMessage(iid),
 					this.getOutgoingNodes());
+		} else if (persist || joinCounter.isCheckpointDue(iid)) {
+			nodeInstanceMediatorService.setSequenceFlowsFired(iid, flowsFired);
+			nodeInstanceMediatorService.persistChanges();
+			
+			joinCounter.markPersisted(iid);
 		}
 
 	}
@@ -95,7 +141,9 @@ public class ParallelGatewayNode extends FlowElement implements NOfMService {
 		
 		String iid = message.getProcessInstanceId();
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, new Date());
+		this.getJoinCounter().remove(iid);
+		
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(iid, Clock.now());
 		this.getNodeInstanceMediatorService().setDeactivated(iid);
 		this.getNodeInstanceMediatorService().persistChanges();
 	}
@@ -107,6 +155,9 @@ public class ParallelGatewayNode extends FlowElement implements NOfMService {
 
 	@Override
 	public boolean checkNOfMCondition(String iid, int flowsFired) {
+		if (this.getJoinCounter().isTracked(iid)) {
+			return (this.getJoinCounter().getFlowsNeeded(iid) == flowsFired);
+		}
 		return (this.getNodeInstanceMediatorService().getIncomingFiredFlowsNeeded(iid) == flowsFired);
 	}
 
@@ -17,8 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
-
 import scala.concurrent.Future;
 
 import com.catify.processengine.core.data.dataobjects.DataObjectHandling;
@@ -29,6 +27,7 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.LoopMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * The ServiceTaskInstance is a synchronous node. It will load a value from a data object (if specified), 
@@ -61,7 +60,7 @@ public class ServiceTaskInstance extends Task {
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.ACTIVE_STATE);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceStartTime(message.getProcessInstanceId(), Clock.now());
 		
 		Future<Object> repliedFuture = this.callEventDefinitionActor(message);
 		
@@ -69,7 +68,7 @@ public class ServiceTaskInstance extends Task {
 		
 		this.getDataObjectHandling().saveObject(this.getUniqueProcessId(), message.getProcessInstanceId(), repliedPayload);
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(), NodeInstaceStates.PASSED_STATE);
@@ -17,8 +17,6 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
-
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
 
@@ -35,7 +33,9 @@ import com.catify.processengine.core.messages.LoopMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.processdefinition.jaxb.TNodeCategory;
 import com.catify.processengine.core.services.ActorReferenceService;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * The ServiceTaskNode is the supervisor for the {@link ServiceTaskInstance}, which implements the actual bpmn service task. 
@@ -82,7 +82,8 @@ public class ServiceTaskNode extends Task {
 							return new ServiceTaskInstance(getUniqueProcessId(), getUniqueFlowNodeId(), 
 									eventDefinitionParameter, getDataObjectHandling());
 					}
-				}), this.getTaskInstanceActorRef(message));
+				}).withDispatcher(NodeDispatchers.getDispatcher(this.getContext().system(), getUniqueProcessId(), TNodeCategory.SERVICE_TASK)), 
+				this.getTaskInstanceActorRef(message));
 		LOG.debug(String.format("Service task instance craeted %s --> resulting akka object: %s", this.getClass(),
 				serviceTaskInstance.toString()));
 		
@@ -94,7 +95,7 @@ public class ServiceTaskNode extends Task {
 		// if a service task instance is still active and waiting, stop it (invokes akka stop hooks) 
 		this.getContext().stop(this.getContext().actorFor(this.getTaskInstanceActorRef(message)));
 		
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -17,9 +17,7 @@
  */
 package com.catify.processengine.core.nodes;
 
-import java.util.Date;
 import java.util.List;
-import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -32,9 +30,13 @@ import com.catify.processengine.core.data.dataobjects.DataObjectHandling;
 import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.messages.ProcessInstanceStartMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinitionParameter;
+import com.catify.processengine.core.services.AdmissionControlService;
+import com.catify.processengine.core.services.ProcessInstanceIdService;
 import com.catify.processengine.core.services.ProcessInstanceMediatorService;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * Start event nodes instantiate a new process instance and trigger following
@@ -59,6 +61,9 @@ public class StartEventNode extends CatchEvent {
 	
 	@Autowired
 	private ProcessInstanceMediatorService processInstanceMediatorService;
+	
+	@Autowired
+	private ProcessInstanceIdService processInstanceIdService;
 
 	/** The other start nodes in the same process. */
 	private List<ActorRef> otherStartNodes;
@@ -92,6 +97,11 @@ public class StartEventNode extends CatchEvent {
 		this.setParentsUniqueFlowNodeId(parentsUniqueFlowNodeId);
 		this.setDataObjectHandling(dataObjectHandling);
 		
+		// triggers of top level start events are subject to the admission control
+		if (parentsUniqueFlowNodeId == null) {
+			AdmissionControlService.registerStartNode(uniqueFlowNodeId, uniqueProcessId);
+		}
+		
 		// create EventDefinition actor
 		this.eventDefinitionActor = this.createEventDefinitionActor(eventDefinitionParameter);
 	}
@@ -111,7 +121,7 @@ public class StartEventNode extends CatchEvent {
 			this.getNodeInstanceMediatorService().setState(
 					instanceId, NodeInstaceStates.PASSED_STATE);
 			
-			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(instanceId, new Date());
+			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(instanceId, Clock.now());
 			
 			this.getNodeInstanceMediatorService().persistChanges();
 			
@@ -126,7 +136,7 @@ public class StartEventNode extends CatchEvent {
 	protected void deactivate(DeactivationMessage message) {
 		this.callEventDefinitionActor(message);
 
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(message.getProcessInstanceId(), Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(
 				message.getProcessInstanceId(),
@@ -144,13 +154,15 @@ public class StartEventNode extends CatchEvent {
 			LOG.debug("Process instance starting with given processInstanceId: " + message.getProcessInstanceId());
 		} else {
 			// get a unique id as process instance id
-			processInstanceId = UUID.randomUUID().toString();
-			LOG.debug("Process instance starting with new randomUUID processInstanceId: " + processInstanceId);
+			processInstanceId = processInstanceIdService.nextProcessInstanceId(this.getUniqueProcessId());
+			LOG.debug("Process instance starting with new processInstanceId: " + processInstanceId);
 		}
 		
 		// create a top level process instance
 		if (parentsUniqueFlowNodeId == null) {
 			processInstanceMediatorService.createProcessInstance(this.getUniqueProcessId(), processInstanceId);
+			this.getContext().system().eventStream().publish(
+					new ProcessInstanceStartMessage(this.getUniqueProcessId(), processInstanceId, Clock.now()));
 		} 
 		// or create a sub process instance on the current level
 		else {
@@ -164,7 +176,7 @@ public class StartEventNode extends CatchEvent {
 		// set the time only, if it has not been done already (will be null if start event has been triggered with 
 		// an ActivationMessage before, eg. through a timer service, related to remine #109)
 		if (this.getNodeInstanceMediatorService().getNodeInstanceStartTime(processInstanceId) == null) {
-			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(processInstanceId, new Date());
+			this.getNodeInstanceMediatorService().setNodeInstanceStartTime(processInstanceId, Clock.now());
 		}
 		
 		this.getDataObjectHandling().saveObject(this.getUniqueProcessId(),
@@ -172,7 +184,7 @@ public class StartEventNode extends CatchEvent {
 
 		this.callEventDefinitionActor(message);
 
-		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(processInstanceId, new Date());
+		this.getNodeInstanceMediatorService().setNodeInstanceEndTime(processInstanceId, Clock.now());
 		
 		this.getNodeInstanceMediatorService().setState(processInstanceId,
 				NodeInstaceStates.PASSED_STATE);
@@ -30,7 +30,9 @@ import akka.actor.UntypedActor;
 import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.CommitMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.BlockingCallDetector;
 import com.catify.processengine.core.nodes.NodeUtils;
 
 /**
@@ -58,6 +60,9 @@ public abstract class EventDefinition extends UntypedActor {
 	@Value("${core.eventDefinitionTimeout}")
 	protected long timeoutInSeconds;
 	
+	/** The unique flow node id of the encapsulating event (set by the {@link EventDefinitionFactory}). */
+	private String uniqueFlowNodeId;
+	
 	@Override
 	public void onReceive(Object message) throws Exception {
 		LOG.debug(String.format("%s received %s ('%s' received from '%s')", this.getClass().getSimpleName(), message
@@ -71,12 +76,25 @@ public abstract class EventDefinition extends UntypedActor {
 	
 	/**
 	 * Separated default message handling from 'onReceive', to
-	 * use it in classes that override the onReceive method.
+	 * use it in classes that override the onReceive method. The 
+	 * thread is marked for the {@link BlockingCallDetector} meanwhile.
 	 * 
 	 * @param message
 	 * @return
 	 */
 	protected boolean handle(Object message) {
+		if (message instanceof Message) {
+			BlockingCallDetector.enter(this.getSelf(), this.getClass().getSimpleName(), this.getUniqueFlowNodeId(), 
+					((Message) message).getProcessInstanceId(), message.getClass().getSimpleName());
+		}
+		try {
+			return this.handleMessage(message);
+		} finally {
+			BlockingCallDetector.exit();
+		}
+	}
+	
+	private boolean handleMessage(Object message) {
 		boolean handled = Boolean.FALSE;
 		
 		// process message and reply with a commit message to the underlying node event
@@ -155,4 +173,17 @@ public abstract class EventDefinition extends UntypedActor {
 	protected CommitMessage<?> createSuccessfullCommitMessage(String processInstanceId, Object payload) {
 		return new NodeUtils().createSuccessfulCommitMessage(processInstanceId, this.getSelf(), this.getSender(), payload);
 	}
+	
+	/**
+	 * Gets the unique flow node id of the encapsulating event.
+	 *
+	 * @return the unique flow node id (null if unknown)
+	 */
+	public String getUniqueFlowNodeId() {
+		return uniqueFlowNodeId;
+	}
+
+	void setUniqueFlowNodeId(String uniqueFlowNodeId) {
+		this.uniqueFlowNodeId = uniqueFlowNodeId;
+	}
 }
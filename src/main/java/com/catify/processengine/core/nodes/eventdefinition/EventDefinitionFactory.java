@@ -73,6 +73,14 @@ public class EventDefinitionFactory {
 	}
 	
 	public EventDefinition getEventDefinition(EventDefinitionParameter eventDefinitionParameter) {
+		EventDefinition eventDefinition = createEventDefinition(eventDefinitionParameter);
+		if (eventDefinition != null) {
+			eventDefinition.setUniqueFlowNodeId(eventDefinitionParameter.getUniqueFlowNodeId());
+		}
+		return eventDefinition;
+	}
+	
+	private EventDefinition createEventDefinition(EventDefinitionParameter eventDefinitionParameter) {
 		// get the event definition (if any)
 		TEventDefinition eventDefinitionJaxb = getTEventDefinition(eventDefinitionParameter.flowNodeJaxb);
 	
@@ -290,7 +298,8 @@ public class EventDefinitionFactory {
 				IdService.getUniqueFlowNodeId(params), 
 				ActorReferenceService.getActorReferenceString(
 						IdService.getUniqueFlowNodeId(params)),  
-				messageIntegration);
+				messageIntegration,
+				params.flowNodeJaxb instanceof TStartEvent);
 		return eventDefinition;
 	}
 
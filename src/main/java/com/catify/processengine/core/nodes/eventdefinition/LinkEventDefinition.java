@@ -10,17 +10,25 @@ import javax.annotation.PostConstruct;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 import akka.actor.ActorRef;
+import akka.actor.Status;
 
 import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.CommitMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.LinkEventMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.services.LinkEventRoutingService;
 
 /**
- * Event definition for BPMN 2.0 link events (catching and throwing).
+ * Event definition for BPMN 2.0 link events (catching and throwing). Catching
+ * link events register themselves in the {@link LinkEventRoutingService}, 
+ * throwing link events send a {@link LinkEventMessage} directly to the 
+ * registered catching event node. The route is looked up on every send, so a 
+ * catching event replaced by a redeployment is used at once. If there is no 
+ * route, the activation fails and the throwing event does not pass.
  * 
  * @author claus straube
  *
@@ -35,6 +43,9 @@ public class LinkEventDefinition extends EventDefinition {
 	private String uniqueProcessId;
 	private ActorRef eventActorRef;
 	
+	@Autowired
+	private LinkEventRoutingService linkEventRoutingService;
+	
 	/**
 	 * Constructor for a catching link event definition.
 	 * 
@@ -63,10 +74,16 @@ public class LinkEventDefinition extends EventDefinition {
 		this.eventActorRef = eventActorRef;
 	}
 	
+	/**
+	 * Register catching link events to the {@link LinkEventRoutingService}.
+	 */
 	@PostConstruct
 	void init() {
-		// register to event bus
-		actorSystem.eventStream().subscribe(this.getSelf(), LinkEventMessage.class);
+		if(!this.isThrow) {
+			for (String source : sources) {
+				linkEventRoutingService.registerCatchEvent(uniqueProcessId, source, eventActorRef);
+			}
+		}
 	}
 	
 	/* (non-Javadoc)
@@ -76,7 +93,11 @@ public class LinkEventDefinition extends EventDefinition {
 	protected CommitMessage<?> activate(ActivationMessage message) {
 		if(this.isThrow) {
 			LOG.debug(String.format("Received activate message. Sending now link '%s'.", target));
-			actorSystem.eventStream().publish(new LinkEventMessage(target, uniqueProcessId, message.getProcessInstanceId()));
+			ActorRef targetActorRef = linkEventRoutingService.getCatchEvent(uniqueProcessId, target);
+			if(targetActorRef == null) {
+				throw new IllegalStateException(String.format("There is no catching link event for link '%s' in process %s.", target, uniqueProcessId));
+			}
+			targetActorRef.tell(new LinkEventMessage(message.getProcessInstanceId()), this.getSelf());
 		}
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
@@ -98,38 +119,21 @@ public class LinkEventDefinition extends EventDefinition {
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
 	
-	/**
-	 * Mailbox for all {@link LinkEventMessage}s.
-	 * 
-	 * @param message
-	 */
-	protected void listen(LinkEventMessage message) {
-		/*
-		 * if the message fits to the event node (same process and
-		 * correct identifier), the activate catching event node
-		 * and trigger it.
-		 */
-		if(this.sources.contains(message.getTarget()) && message.getUniqueProcessId().equals(this.uniqueProcessId)) {
-			LOG.debug("Activate and trigger link event node.");
-			String iid = message.getProcessInstanceId();
-			eventActorRef.tell(new ActivationMessage(iid), getSender());
-			eventActorRef.tell(new TriggerMessage(iid, null), getSender());
-		}
-	}
-	
 	@Override
 	public void onReceive(Object message) throws Exception {
 		LOG.debug(String.format("%s received %s", this.getSelf(), message
 				.getClass().getSimpleName()));
 		
 		// process message and reply with a commit message to the underlying node event
-		if (this.handle(message)) {
-			// everything is done
-		} else if (message instanceof LinkEventMessage) {
-			this.listen((LinkEventMessage) message);
-		} else {
-			LOG.warn("Unhandled message received: " + message.getClass());
-			unhandled(message);
+		try {
+			if (!this.handle(message)) {
+				LOG.warn("Unhandled message received: " + message.getClass());
+				unhandled(message);
+			}
+		} catch (IllegalStateException e) {
+			// let the throwing event node fail instead of waiting for the timeout
+			LOG.error(e.getMessage());
+			this.getSender().tell(new Status.Failure(e), this.getSelf());
 		}
 	}
 
@@ -47,11 +47,12 @@ public class MessageEventDefinitionCatch extends EventDefinition {
 	private final String uniqueProcessId;
 	private final String uniqueFlowNodeId;
 	private final String actorRefString;
+	private final boolean isStart;
 
 	private MessageIntegrationSPI integrationSPI;
 
 	/**
-	 * Instantiates a new throwing message event definition.
+	 * Instantiates a new catching message event definition.
 	 * 
 	 * @param uniqueProcessId
 	 *            the unique process id
@@ -64,10 +65,30 @@ public class MessageEventDefinitionCatch extends EventDefinition {
 	 */
 	public MessageEventDefinitionCatch(String uniqueProcessId, String uniqueFlowNodeId,
 			String actorRefString, TMessageIntegration messageIntegration) {
+		this(uniqueProcessId, uniqueFlowNodeId, actorRefString, messageIntegration, false);
+	}
+	
+	/**
+	 * Instantiates a new catching message event definition.
+	 * 
+	 * @param uniqueProcessId
+	 *            the unique process id
+	 * @param uniqueFlowNodeId
+	 *            the unique flow node id
+	 * @param actorRefString
+	 *            the actor reference string
+	 * @param messageIntegration
+	 *            the message event definition
+	 * @param isStart
+	 *            true if this is a start event (whose messages need no correlation)
+	 */
+	public MessageEventDefinitionCatch(String uniqueProcessId, String uniqueFlowNodeId,
+			String actorRefString, TMessageIntegration messageIntegration, boolean isStart) {
 
 		this.uniqueProcessId = uniqueProcessId;
 		this.uniqueFlowNodeId = uniqueFlowNodeId;
 		this.actorRefString = actorRefString;
+		this.isStart = isStart;
 
 		if (messageIntegration != null) {
 			this.integrationSPI = MessageIntegrationSPI
@@ -111,8 +132,8 @@ public class MessageEventDefinitionCatch extends EventDefinition {
 				messageIntegration.getMetaData());
 
 		// add it to the message dispatchers mapping table
-		MessageDispatcherService.uniqueFlowNodeIdToActorRefMap.put(
-				this.uniqueFlowNodeId, this.actorRefString);
+		MessageDispatcherService.registerTargetNode(
+				this.uniqueFlowNodeId, this.actorRefString, this.isStart);
 	}
 
 	public String getUniqueProcessId() {
@@ -137,8 +137,8 @@ public class MessageEventDefinitionThrow extends EventDefinition {
 				messageIntegration.getIntegrationstring());
 
 		// add it to the message dispatchers mapping table
-		MessageDispatcherService.uniqueFlowNodeIdToActorRefMap.put(
-				this.uniqueFlowNodeId, this.actorRefString);
+		MessageDispatcherService.registerTargetNode(
+				this.uniqueFlowNodeId, this.actorRefString, false);
 	}
 
 }
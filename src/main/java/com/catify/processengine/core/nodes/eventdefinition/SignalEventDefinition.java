@@ -17,7 +17,8 @@
  */
 package com.catify.processengine.core.nodes.eventdefinition;
 
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
 import javax.annotation.PostConstruct;
 
@@ -26,18 +27,18 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import akka.actor.ActorRef;
-import akka.event.EventBus;
 
-import com.catify.processengine.core.data.model.NodeInstaceStates;
-import com.catify.processengine.core.data.services.FlowNodeInstanceRepositoryService;
 import com.catify.processengine.core.messages.ActivationMessage;
+import com.catify.processengine.core.messages.BatchTriggerMessage;
 import com.catify.processengine.core.messages.CommitMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
-import com.catify.processengine.core.messages.SignalEventMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.services.SignalSubscriptionService;
 
 /**
- * Event definition for BPMN 2.0 signal events (catching and throwing).
+ * Event definition for BPMN 2.0 signal events (catching and throwing). Catching
+ * events keep their waiting instances in the {@link SignalSubscriptionService},
+ * throwing events look the receivers of a signal up there.
  * 
  * @author claus straube
  *
@@ -46,6 +47,9 @@ public class SignalEventDefinition extends EventDefinition {
 
 	static final Logger LOG = LoggerFactory.getLogger(SignalEventDefinition.class);
 	
+	/** The maximum number of waiting instances triggered with one message. */
+	static final int TRIGGER_BATCH_SIZE = 1000;
+	
 	private boolean isStart;
 	private boolean isThrow;
 	private String signalRef;
@@ -53,7 +57,7 @@ public class SignalEventDefinition extends EventDefinition {
 	private EventDefinitionParameter params;
 	
 	@Autowired
-	private FlowNodeInstanceRepositoryService repo;
+	private SignalSubscriptionService signalSubscriptionService;
 	
 	/**
 	 * Creates a signal event definition.
@@ -73,12 +77,21 @@ public class SignalEventDefinition extends EventDefinition {
 	}
 	
 	/**
-	 * Register node to the akka {@link EventBus}.
+	 * Register catching nodes to the {@link SignalSubscriptionService}. Instances 
+	 * that have been waiting before the engine was (re-)started are loaded 
+	 * from the database when the signal is thrown first.
 	 */
 	@PostConstruct
 	void init() {
-		// register to event bus
-		actorSystem.eventStream().subscribe(this.getSelf(), SignalEventMessage.class);
+		if (isThrow) {
+			return;
+		}
+		if (isStart) {
+			signalSubscriptionService.registerStartEvent(signalRef, eventActorRef);
+		} else {
+			signalSubscriptionService.registerCatchEvent(signalRef, eventActorRef, 
+					params.getUniqueProcessId(), params.getUniqueFlowNodeId());
+		}
 	}
 	
 	
@@ -87,10 +100,13 @@ public class SignalEventDefinition extends EventDefinition {
 	 */
 	@Override
 	protected CommitMessage<?> activate(ActivationMessage message) {
-		// throw part - push the signal message into the event bus
 		if(isThrow) {
+			// throw part - trigger all subscribers of the signal
 			LOG.debug(String.format("Received activate message. Sending now signal '%s'.", signalRef));
-			actorSystem.eventStream().publish(new SignalEventMessage(signalRef));
+			this.sendSignal();
+		} else if (!isStart) {
+			// catch part - wait for the signal
+			signalSubscriptionService.subscribe(signalRef, eventActorRef, message.getProcessInstanceId());
 		}
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
@@ -99,7 +115,7 @@ public class SignalEventDefinition extends EventDefinition {
 	 */
 	@Override
 	protected CommitMessage<?> deactivate(DeactivationMessage message) {
-		// nothing to do
+		this.unsubscribe(message.getProcessInstanceId());
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
 	/* (non-Javadoc)
@@ -108,47 +124,39 @@ public class SignalEventDefinition extends EventDefinition {
 	@Override
 	protected CommitMessage<?> trigger(TriggerMessage message) {
 		// the event node does the work
+		this.unsubscribe(message.getProcessInstanceId());
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
 	
 	/**
-	 * 	Mailbox for all {@link SignalEventMessage}s.
-	 * 
-	 * @param message
+	 * Sends the signal to all start events (creating exactly one new process 
+	 * instance each) and to all waiting catch event instances. The receivers 
+	 * are taken from the {@link SignalSubscriptionService}, so no database 
+	 * query is needed.
 	 */
-	protected void listen(SignalEventMessage message) {
-		LOG.debug(String.format("Received signal '%s'.", message.getSignalRef()));
-		/*
-		 * filter out the correct signal reference.
-		 */
-		if(message.getSignalRef().equals(signalRef)) {
-			LOG.debug(String.format("Signal '%s' equals awaited signal.", message.getSignalRef()));
-			// catch part
-			if(isStart) {
-				/*
-				 * Create exactly one new process instance by sending a
-				 * trigger message to the base event node.
-				 */
-				LOG.debug("Starting new process instance.");
-				eventActorRef.tell(new TriggerMessage(), getSender());
-			} else {
-				/*
-				 * Load for all active signal catch events the
-				 * process instance id from the database. Send
-				 * for every entry a trigger message to the base event,
-				 * to signal the node after the signal catch event. 
-				 */
-				LOG.debug("Find and trigger all waiting instances.");
-				Set<String> activeInstanceIds = repo.findAllFlowNodeInstancesAtState(
-						params.getUniqueProcessId(), 
-						params.getUniqueFlowNodeId(), 
-						NodeInstaceStates.ACTIVE_STATE);
-				for (String iid : activeInstanceIds) {
-					eventActorRef.tell(new TriggerMessage(iid, null), getSender());
-				}
+	protected void sendSignal() {
+		for (ActorRef startEventActorRef : signalSubscriptionService.getStartEvents(signalRef)) {
+			LOG.debug("Starting new process instance.");
+			startEventActorRef.tell(new TriggerMessage(), this.getSelf());
+		}
+		
+		Map<ActorRef, List<BatchTriggerMessage>> batches = signalSubscriptionService.getTriggerBatches(signalRef, TRIGGER_BATCH_SIZE);
+		for (Map.Entry<ActorRef, List<BatchTriggerMessage>> nodeBatches : batches.entrySet()) {
+			LOG.debug(String.format("Triggering waiting instances of %s in %s batches.", nodeBatches.getKey(), nodeBatches.getValue().size()));
+			for (BatchTriggerMessage batch : nodeBatches.getValue()) {
+				nodeBatches.getKey().tell(batch, this.getSelf());
 			}
-		} else {
-			LOG.debug(String.format("Received signal '%s' but awaited '%s'.", message.getSignalRef(), signalRef));
+		}
+	}
+	
+	/**
+	 * Removes a process instance of a catching node from the signal subscriptions.
+	 * 
+	 * @param processInstanceId the process instance id
+	 */
+	private void unsubscribe(String processInstanceId) {
+		if (!isThrow && !isStart) {
+			signalSubscriptionService.unsubscribe(signalRef, eventActorRef, processInstanceId);
 		}
 	}
 	
@@ -160,8 +168,6 @@ public class SignalEventDefinition extends EventDefinition {
 		// process message and reply with a commit message to the underlying node event
 		if (this.handle(message)) {
 			// everything is done
-		} else if (message instanceof SignalEventMessage) {
-			this.listen((SignalEventMessage) message);
 		} else {
 			LOG.warn("Unhandled message received: " + message.getClass());
 			unhandled(message);
@@ -20,7 +20,6 @@ package com.catify.processengine.core.nodes.eventdefinition;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
 
@@ -29,7 +28,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Configurable;
 import org.springframework.beans.factory.annotation.Value;
 
-import scala.concurrent.duration.Duration;
 import akka.actor.ActorRef;
 
 import com.catify.processengine.core.data.dataobjects.TimerBean;
@@ -38,12 +36,16 @@ import com.catify.processengine.core.messages.ActivationMessage;
 import com.catify.processengine.core.messages.CommitMessage;
 import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+import com.catify.processengine.core.util.Clock;
 import com.catify.processengine.core.util.TimerUtil;
 
 /**
  * The TimerEventDefinition will constantly evaluate the due timers and create {@link TriggerMessage}s to fire those.
  * Saving and loading is handled via the configured {@link TimerSPI} service provider, while time calculations are done
- * via the {@link TimerUtil}.
+ * via the {@link TimerUtil}. Due timers are polled on the schedule of the engine {@link Clock}.
  *
  * @author christopher köster
  * @author claus straube
@@ -55,6 +57,10 @@ public class TimerEventDefinition extends EventDefinition {
 	static final Logger LOG = LoggerFactory
 			.getLogger(TimerEventDefinition.class);
 	
+	private static final Histogram LOAD_DUE_TIMERS_HISTOGRAM = MetricsRegistry.getHistogram("spi.timer.loadDueTimers");
+	private static final Histogram SAVE_TIMER_HISTOGRAM = MetricsRegistry.getHistogram("spi.timer.saveTimer");
+	private static final Histogram DELETE_TIMER_HISTOGRAM = MetricsRegistry.getHistogram("spi.timer.deleteTimer");
+	
 	/** The timer spi implementation id set in the spring context. */
 	@Value("${timer.implementation}")
 	private String timerServiceProviderId;
@@ -97,21 +103,27 @@ public class TimerEventDefinition extends EventDefinition {
 			this.saveTimers(timeToFire);
 		} 
 		
-		// init akka scheduler
-		actorSystem.scheduler().schedule(
-				Duration.create(10000, TimeUnit.MILLISECONDS), // delay until scheduler starts
-				Duration.create(timerPollingInterval, TimeUnit.MILLISECONDS), // polling interval
+		// init the timer polling (on the akka scheduler, unless a virtual clock is set)
+		Clock.getClock().schedule(actorSystem, 
+				10000, // delay until scheduler starts
+				timerPollingInterval, // polling interval
 				new Runnable() {
 					@Override
 					public void run() {
 						// for each due timer create a trigger message and send it to the underlying event node
-						List<TimerBean> dueTimers = timerSPI.loadDueTimers(getSelf().toString());
+						long start = System.nanoTime();
+						List<TimerBean> dueTimers;
+						try {
+							dueTimers = timerSPI.loadDueTimers(getSelf().toString());
+						} finally {
+							LOAD_DUE_TIMERS_HISTOGRAM.recordSince(start);
+							FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "timer.loadDueTimers", start);
+						}
 						for (TimerBean timerBean : dueTimers) {
 							eventActorRef.tell(new TriggerMessage(timerBean.getProcessInstanceId(), null), getSender());
 						}
 					}
-				},
-				actorSystem.dispatcher());
+				});
 	}
 	
 	/* (non-Javadoc)
@@ -135,7 +147,13 @@ public class TimerEventDefinition extends EventDefinition {
 	@Override
 	protected CommitMessage<?> deactivate(DeactivationMessage message) {
 		
-		this.timerSPI.deleteTimer(this.getSelf().toString(), message.getProcessInstanceId());
+		long start = System.nanoTime();
+		try {
+			this.timerSPI.deleteTimer(this.getSelf().toString(), message.getProcessInstanceId());
+		} finally {
+			DELETE_TIMER_HISTOGRAM.recordSince(start);
+			FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "timer.deleteTimer", start);
+		}
 		
 		return createSuccessfullCommitMessage(message.getProcessInstanceId());
 	}
@@ -161,7 +179,13 @@ public class TimerEventDefinition extends EventDefinition {
 	 */
 	private void saveTimers(String processInstanceId, List<Long> timeToFire) {
 		for (Long longToFire : timeToFire) {
-			this.timerSPI.saveTimer(new TimerBean(longToFire, this.getSelf().toString(), processInstanceId));
+			long start = System.nanoTime();
+			try {
+				this.timerSPI.saveTimer(new TimerBean(longToFire, this.getSelf().toString(), processInstanceId));
+			} finally {
+				SAVE_TIMER_HISTOGRAM.recordSince(start);
+				FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "timer.saveTimer", start);
+			}
 		}
 	}
 	
@@ -172,7 +196,13 @@ public class TimerEventDefinition extends EventDefinition {
 	 */
 	private void saveTimers(List<Long> timeToFire) {
 		for (Long longToFire : timeToFire) {
-			this.timerSPI.saveTimer(new TimerBean(longToFire, this.getSelf().toString(), UUID.randomUUID().toString()));
+			long start = System.nanoTime();
+			try {
+				this.timerSPI.saveTimer(new TimerBean(longToFire, this.getSelf().toString(), UUID.randomUUID().toString()));
+			} finally {
+				SAVE_TIMER_HISTOGRAM.recordSince(start);
+				FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "timer.saveTimer", start);
+			}
 		}
 	}
 
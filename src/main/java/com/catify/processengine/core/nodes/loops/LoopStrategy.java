@@ -15,7 +15,10 @@ import com.catify.processengine.core.messages.DeactivationMessage;
 import com.catify.processengine.core.messages.LoopMessage;
 import com.catify.processengine.core.messages.Message;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.ExecutionTracer;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
 import com.catify.processengine.core.nodes.ActivityActionFactory;
+import com.catify.processengine.core.nodes.NodeDispatchers;
 import com.catify.processengine.core.nodes.NodeParameter;
 import com.catify.processengine.core.nodes.NodeUtils;
 import com.catify.processengine.core.services.ActorReferenceService;
@@ -73,19 +76,27 @@ public abstract class LoopStrategy extends UntypedActor {
 		LOG.debug(String.format("%s received %s", this.getSelf(), message
 				.getClass().getSimpleName()));
 		
-		if (message instanceof ActivationMessage) {
-			activate((ActivationMessage) message);
-		} else if (message instanceof TriggerMessage) {
-			trigger((TriggerMessage) message);
-		} else if (message instanceof DeactivationMessage) {
-			deactivate((DeactivationMessage) message);
-			// commit message after deactivation
-			new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
-		} else if (message instanceof LoopMessage) {
-			loop((LoopMessage) message);
-		} else if (message instanceof DeactivationMessage) {
-			// commit message for already passed nodes (which do not need deactivation)
-			new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
+		if (message instanceof Message) {
+			FlightRecorderEvents.enterContext(uniqueProcessId, uniqueFlowNodeId, 
+					((Message) message).getProcessInstanceId(), message.getClass().getSimpleName());
+		}
+		try {
+			if (message instanceof ActivationMessage) {
+				activate((ActivationMessage) message);
+			} else if (message instanceof TriggerMessage) {
+				trigger((TriggerMessage) message);
+			} else if (message instanceof DeactivationMessage) {
+				deactivate((DeactivationMessage) message);
+				// commit message after deactivation
+				new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
+			} else if (message instanceof LoopMessage) {
+				loop((LoopMessage) message);
+			} else if (message instanceof DeactivationMessage) {
+				// commit message for already passed nodes (which do not need deactivation)
+				new NodeUtils().replySuccessfulCommit(((DeactivationMessage) message).getProcessInstanceId(), this.getSelf(), this.getSender());
+			}
+		} finally {
+			FlightRecorderEvents.exitContext();
 		}
 	}
 	
@@ -146,6 +157,7 @@ public abstract class LoopStrategy extends UntypedActor {
 					.getSimpleName(), this.getSelf().toString(), targetNode
 					.toString()));
 			
+			ExecutionTracer.stamp(message);
 			targetNode.tell(message, this.getSelf());
 		} else {
 			LOG.error(String.format("Target actor was NULL (sender: %s, message: %s)", this.getSender(), message));
@@ -169,7 +181,9 @@ public abstract class LoopStrategy extends UntypedActor {
 			public UntypedActor create() {
 					return new ActivityActionFactory().createServiceNode(nodeParameter.clientId, nodeParameter.processJaxb, nodeParameter.subProcessesJaxb, nodeParameter.flowNodeJaxb, nodeParameter.sequenceFlowsJaxb);
 				}
-		}), ActorReferenceService.getActorReferenceString(nodeParameter.getUniqueFlowNodeId() + "-activityAction"));
+		}).withDispatcher(NodeDispatchers.getDispatcher(context.system(), nodeParameter.getUniqueProcessId(), 
+				NodeDispatchers.getCategory(nodeParameter.flowNodeJaxb))), 
+				ActorReferenceService.getActorReferenceString(nodeParameter.getUniqueFlowNodeId() + "-activityAction"));
 		return eventDefinitionActor;
 	}
 	
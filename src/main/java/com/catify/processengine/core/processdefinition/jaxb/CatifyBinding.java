@@ -57,7 +57,9 @@ import javax.xml.bind.annotation.XmlType;
 @XmlType(name = "catifyBinding", namespace = "http://www.catify.com/processengine/core/processdefinition/binding", propOrder = {
     "messageIntegration",
     "version",
-    "nOfM"
+    "nOfM",
+    "dispatcher",
+    "processInstanceIdGenerator"
 })
 public class CatifyBinding {
 
@@ -67,6 +69,10 @@ public class CatifyBinding {
     protected List<TVersion> version;
     @XmlElement(namespace = "http://www.catify.com/processengine/core/processdefinition")
     protected List<TNOfM> nOfM;
+    @XmlElement(namespace = "http://www.catify.com/processengine/core/processdefinition")
+    protected List<TDispatcher> dispatcher;
+    @XmlElement(namespace = "http://www.catify.com/processengine/core/processdefinition")
+    protected List<TProcessInstanceIdGenerator> processInstanceIdGenerator;
 
     /**
      * Gets the value of the messageIntegration property.
@@ -155,4 +161,62 @@ public class CatifyBinding {
         return this.nOfM;
     }
 
+    /**
+     * Gets the value of the dispatcher property.
+     * 
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     * This is why there is not a <CODE>set</CODE> method for the dispatcher property.
+     * 
+     * <p>
+     * For example, to add a new item, do as follows:
+     * <pre>
+     *    getDispatcher().add(newItem);
+     * </pre>
+     * 
+     * 
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link TDispatcher }
+     * 
+     * 
+     */
+    public List<TDispatcher> getDispatcher() {
+        if (dispatcher == null) {
+            dispatcher = new ArrayList<TDispatcher>();
+        }
+        return this.dispatcher;
+    }
+
+    /**
+     * Gets the value of the processInstanceIdGenerator property.
+     * 
+     * <p>
+     * This accessor method returns a reference to the live list,
+     * not a snapshot. Therefore any modification you make to the
+     * returned list will be present inside the JAXB object.
+     * This is why there is not a <CODE>set</CODE> method for the processInstanceIdGenerator property.
+     * 
+     * <p>
+     * For example, to add a new item, do as follows:
+     * <pre>
+     *    getProcessInstanceIdGenerator().add(newItem);
+     * </pre>
+     * 
+     * 
+     * <p>
+     * Objects of the following type(s) are allowed in the list
+     * {@link TProcessInstanceIdGenerator }
+     * 
+     * 
+     */
+    public List<TProcessInstanceIdGenerator> getProcessInstanceIdGenerator() {
+        if (processInstanceIdGenerator == null) {
+            processInstanceIdGenerator = new ArrayList<TProcessInstanceIdGenerator>();
+        }
+        return this.processInstanceIdGenerator;
+    }
+
 }
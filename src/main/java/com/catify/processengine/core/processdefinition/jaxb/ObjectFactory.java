@@ -143,6 +143,8 @@ public class ObjectFactory {
     private final static QName _GlobalTask_QNAME = new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", "globalTask");
     private final static QName _Error_QNAME = new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", "error");
     private final static QName _NOfM_QNAME = new QName("http://www.catify.com/processengine/core/processdefinition", "nOfM");
+    private final static QName _Dispatcher_QNAME = new QName("http://www.catify.com/processengine/core/processdefinition", "dispatcher");
+    private final static QName _ProcessInstanceIdGenerator_QNAME = new QName("http://www.catify.com/processengine/core/processdefinition", "processInstanceIdGenerator");
     private final static QName _Task_QNAME = new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", "task");
     private final static QName _Resource_QNAME = new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", "resource");
     private final static QName _Interface_QNAME = new QName("http://www.omg.org/spec/BPMN/20100524/MODEL", "interface");
@@ -670,6 +672,22 @@ public class ObjectFactory {
         return new TNOfM();
     }
 
+    /**
+     * Create an instance of {@link TDispatcher }
+     * 
+     */
+    public TDispatcher createTDispatcher() {
+        return new TDispatcher();
+    }
+
+    /**
+     * Create an instance of {@link TProcessInstanceIdGenerator }
+     * 
+     */
+    public TProcessInstanceIdGenerator createTProcessInstanceIdGenerator() {
+        return new TProcessInstanceIdGenerator();
+    }
+
     /**
      * Create an instance of {@link TCancelEventDefinition }
      * 
@@ -2060,6 +2078,24 @@ public class ObjectFactory {
         return new JAXBElement<TNOfM>(_NOfM_QNAME, TNOfM.class, null, value);
     }
 
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link TDispatcher }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://www.catify.com/processengine/core/processdefinition", name = "dispatcher")
+    public JAXBElement<TDispatcher> createDispatcher(TDispatcher value) {
+        return new JAXBElement<TDispatcher>(_Dispatcher_QNAME, TDispatcher.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link TProcessInstanceIdGenerator }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://www.catify.com/processengine/core/processdefinition", name = "processInstanceIdGenerator")
+    public JAXBElement<TProcessInstanceIdGenerator> createProcessInstanceIdGenerator(TProcessInstanceIdGenerator value) {
+        return new JAXBElement<TProcessInstanceIdGenerator>(_ProcessInstanceIdGenerator_QNAME, TProcessInstanceIdGenerator.class, null, value);
+    }
+
     /**
      * Create an instance of {@link JAXBElement }{@code <}{@link TTask }{@code >}}
      * 
@@ -23,11 +23,13 @@ import java.util.List;
 import javax.xml.bind.JAXBElement;
 
 import com.catify.processengine.core.processdefinition.jaxb.ObjectFactory;
+import com.catify.processengine.core.processdefinition.jaxb.TDispatcher;
 import com.catify.processengine.core.processdefinition.jaxb.TFlowNode;
 import com.catify.processengine.core.processdefinition.jaxb.TMessageEventDefinition;
 import com.catify.processengine.core.processdefinition.jaxb.TMessageIntegration;
 import com.catify.processengine.core.processdefinition.jaxb.TNOfM;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.core.processdefinition.jaxb.TProcessInstanceIdGenerator;
 import com.catify.processengine.core.processdefinition.jaxb.TVersion;
 
 
@@ -118,4 +120,35 @@ public class ExtensionService {
 		return null; 
 	}
 	
+	public static List<TDispatcher> getTDispatchers(TProcess processJaxb) {
+		List<TDispatcher> dispatchers = new ArrayList<TDispatcher>();
+		if (processJaxb.getExtensionElements() != null) {
+			for (Object extensionElement : processJaxb.getExtensionElements().getAny()) {
+				if (extensionElement instanceof JAXBElement && (((JAXBElement<?>) extensionElement).getValue() instanceof TDispatcher) ) {
+					
+					JAXBElement<?> jaxbElement = (JAXBElement<?>) extensionElement;
+					TDispatcher dispatcherJaxb = (TDispatcher) ((JAXBElement<?>) jaxbElement).getValue();
+	
+					dispatchers.add(dispatcherJaxb);
+				}
+			}
+		}
+		return dispatchers; 
+	}
+	
+	public static TProcessInstanceIdGenerator getTProcessInstanceIdGenerator(TProcess processJaxb) {
+		if (processJaxb.getExtensionElements() != null) {
+			for (Object extensionElement : processJaxb.getExtensionElements().getAny()) {
+				if (extensionElement instanceof JAXBElement && (((JAXBElement<?>) extensionElement).getValue() instanceof TProcessInstanceIdGenerator) ) {
+					
+					JAXBElement<?> jaxbElement = (JAXBElement<?>) extensionElement;
+					TProcessInstanceIdGenerator generatorJaxb = (TProcessInstanceIdGenerator) ((JAXBElement<?>) jaxbElement).getValue();
+	
+					return generatorJaxb;
+				}
+			}
+		}
+		return null; 
+	}
+	
 }
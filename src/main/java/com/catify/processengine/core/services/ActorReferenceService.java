@@ -20,6 +20,7 @@
  */
 package com.catify.processengine.core.services;
 
+import java.io.File;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -30,8 +31,11 @@ import org.springframework.beans.factory.annotation.Configurable;
 import akka.actor.ActorRef;
 import akka.actor.ActorSystem;
 
+import com.catify.processengine.core.data.services.IdService;
+import com.typesafe.config.Config;
+
 /**
- * The ActorReferenceService creates actor references based on the uniqueFlowNodeId (cleaned of any characters not allowed by akka). 
+ * The ActorReferenceService creates actor references based on the uniqueFlowNodeId (as compact id, see {@link IdService#getCompactId(String)}). 
  * 
  * @author christopher köster
  * 
@@ -42,6 +46,12 @@ public class ActorReferenceService {
 	public static final Logger LOG = LoggerFactory
 			.getLogger(ActorReferenceService.class);
 	
+	/** The configuration path of the directory of the durable file mailboxes. */
+	public static final String MAILBOX_DIRECTORY_PATH = "akka.actor.mailbox.file-based.directory-path";
+	
+	/** The suffix of rotated mailbox journals (a timestamp). */
+	private static final Pattern ROTATED_JOURNAL_SUFFIX = Pattern.compile("\\.\\d+");
+	
 	@Autowired
 	private ActorSystem actorSystem;
 	
@@ -59,16 +69,66 @@ public class ActorReferenceService {
 	}
 
 	/**
-	 * Get an actor reference string from the unique flow node id.
+	 * Get an actor reference string from the unique flow node id. The actor reference string 
+	 * is the compact id of the unique flow node id (see {@link IdService#getCompactId(String)}), 
+	 * which is always akka compliant.
 	 *
 	 * @param uniqueFlowNodeId the unique flow node id
 	 * @return the actor reference as string
 	 */
 	public static String getActorReferenceString(String uniqueFlowNodeId) {
-			// replace invalid characters and return a valid actor reference string
+			return IdService.getCompactId(uniqueFlowNodeId);
+	}
+	
+	/**
+	 * Get the actor reference string used before the compact ids (the akka compliant unique flow node id).
+	 * Only needed to find the durable mailboxes of older versions, see {@link #migrateMailbox(ActorSystem, String, String)}.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @return the legacy actor reference as string
+	 */
+	public static String getLegacyActorReferenceString(String uniqueFlowNodeId) {
 			return getAkkaComplientString(uniqueFlowNodeId);
 	}
 	
+	/**
+	 * Moves the durable file mailbox of a top level actor to a new actor name, so that messages 
+	 * persisted by an older version under the old actor name are delivered after an upgrade. 
+	 * Must be called before the actor is created. Mailboxes are not moved if the new actor 
+	 * already has one (its messages would be lost otherwise).
+	 *
+	 * @param actorSystem the actor system
+	 * @param oldActorName the actor name used by the older version
+	 * @param newActorName the current actor name
+	 */
+	public static void migrateMailbox(ActorSystem actorSystem, String oldActorName, String newActorName) {
+		Config config = actorSystem.settings().config();
+		if (oldActorName.equals(newActorName) || !config.hasPath(MAILBOX_DIRECTORY_PATH)) {
+			return;
+		}
+		
+		File directory = new File(config.getString(MAILBOX_DIRECTORY_PATH));
+		// the file mailbox is named by the actor path (with '_' instead of '/'), rotated journals get a suffix
+		String oldName = "user_" + oldActorName;
+		String newName = "user_" + newActorName;
+		File[] files = directory.listFiles();
+		if (files == null || new File(directory, newName).exists()) {
+			return;
+		}
+		
+		for (File file : files) {
+			if (file.getName().equals(oldName) 
+					|| file.getName().startsWith(oldName) && ROTATED_JOURNAL_SUFFIX.matcher(file.getName().substring(oldName.length())).matches()) {
+				File target = new File(directory, newName + file.getName().substring(oldName.length()));
+				if (file.renameTo(target)) {
+					LOG.info(String.format("Moved mailbox %s to %s", file, target));
+				} else {
+					LOG.error(String.format("Could not move mailbox %s to %s, its messages will not be delivered.", file, target));
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Get an akka compliant actor reference string from any input string.
 	 * This method is used to eliminate all characters from a string that are forbidden to exist in an akka actor reference.
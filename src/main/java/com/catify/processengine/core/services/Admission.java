@@ -0,0 +1,41 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+/**
+ * The outcome of the admission control for the start of a process instance 
+ * (see {@link AdmissionControlService}) or of the dispatch of a message to a 
+ * waiting process instance (see {@link MessageDispatcherService}).
+ * 
+ * @author christopher köster
+ * 
+ */
+public enum Admission {
+
+	/** The start has been sent to the start event. */
+	ACCEPTED,
+	
+	/** The start has been queued and will be sent as soon as the limits allow it. */
+	QUEUED,
+	
+	/** The engine is overloaded and the start queue is full, the start has been discarded. */
+	REJECTED,
+	
+	/** The message could not be correlated to a waiting process instance and has been discarded. */
+	UNCORRELATED
+}
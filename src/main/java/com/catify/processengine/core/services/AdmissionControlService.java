@@ -0,0 +1,295 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+
+import com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService;
+import com.catify.processengine.core.messages.ProcessInstanceEndMessage;
+import com.catify.processengine.core.messages.ProcessInstanceStartMessage;
+import com.catify.processengine.core.messages.TriggerMessage;
+
+/**
+ * The AdmissionControlService protects the engine from bursts of process instance starts, 
+ * which would otherwise fill the mailboxes and the write path of the database and slow down 
+ * the instances already running. Starts sent by the {@link com.catify.processengine.management.ProcessManagementService} 
+ * and by the message integration (see {@link MessageDispatcherService}) are admitted by an 
+ * {@link AdmissionController}, which is configured by the 'admission.*' properties. Admission 
+ * control is off if no limit is set. <p>
+ * The outcome ({@link Admission}) is returned to the caller. Triggers for running instances 
+ * are always accepted. <p>
+ * The running instances counted by the controller are periodically reconciled with the 
+ * running instances in the database, and admissions whose instance does not start in time 
+ * are released, so that instances which never announce their end do not hold their slots.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class AdmissionControlService {
+
+	static final Logger LOG = LoggerFactory.getLogger(AdmissionControlService.class);
+	
+	/** The interval in millis in which queued starts are checked for new tokens of the start rate. */
+	static final long DRAIN_INTERVAL = 10;
+	
+	/** The unique process ids of the top level start events, mapped by their unique flow node id. */
+	private static final ConcurrentMap<String, String> startNodes = new ConcurrentHashMap<String, String>();
+	
+	@Autowired
+	private ActorSystem actorSystem;
+	
+	@Autowired
+	private ProcessInstanceIdService processInstanceIdService;
+	
+	@Autowired
+	private ProcessInstanceNodeRepositoryService processInstanceNodeRepositoryService;
+	
+	/** The maximum of running instances (0 is unlimited). */
+	@Value("${admission.maxRunningInstances}")
+	private int maxRunningInstances;
+	
+	/** The maximum of running instances of one process (0 is unlimited). */
+	@Value("${admission.maxRunningInstancesPerProcess}")
+	private int maxRunningInstancesPerProcess;
+	
+	/** The starts per second (0 is unlimited). */
+	@Value("${admission.startRate}")
+	private double startRate;
+	
+	/** The number of starts that may exceed the start rate at once. */
+	@Value("${admission.startBurst}")
+	private int startBurst;
+	
+	/** The maximum number of starts waiting for admission. */
+	@Value("${admission.queueCapacity}")
+	private int queueCapacity;
+	
+	/** The time in millis an admitted instance may take to start before its admission is released. */
+	@Value("${admission.pendingTimeout}")
+	private long pendingTimeout;
+	
+	/** The interval in millis in which the running instances are reconciled with the database. */
+	@Value("${admission.reconcileInterval}")
+	private long reconcileInterval;
+	
+	private volatile AdmissionController controller;
+	
+	private ScheduledExecutorService executor;
+	
+	private ActorRef listener;
+	
+	/**
+	 * Registers a top level start event, whose triggers start new process instances.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id of the start event
+	 * @param uniqueProcessId the unique process id
+	 */
+	public static void registerStartNode(String uniqueFlowNodeId, String uniqueProcessId) {
+		startNodes.put(uniqueFlowNodeId, uniqueProcessId);
+	}
+	
+	/**
+	 * Creates the admission controller, if any limit is set, and subscribes to the starts and 
+	 * ends of process instances.
+	 */
+	@PostConstruct
+	void start() {
+		if (maxRunningInstances <= 0 && maxRunningInstancesPerProcess <= 0 && startRate <= 0) {
+			return;
+		}
+		LOG.info(String.format("Admitting at most %s running instances (%s per process) and %s starts per second, queueing %s starts.", 
+				maxRunningInstances, maxRunningInstancesPerProcess, startRate, queueCapacity));
+		
+		controller = new AdmissionController(maxRunningInstances, maxRunningInstancesPerProcess, startRate, startBurst, queueCapacity);
+		listener = actorSystem.actorOf(new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new InstanceListener(controller);
+			}
+		}));
+		actorSystem.eventStream().subscribe(listener, ProcessInstanceStartMessage.class);
+		actorSystem.eventStream().subscribe(listener, ProcessInstanceEndMessage.class);
+		
+		executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "admission-control");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		if (startRate > 0) {
+			executor.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					controller.drain();
+				}
+			}, DRAIN_INTERVAL, DRAIN_INTERVAL, TimeUnit.MILLISECONDS);
+		}
+		executor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					reconcile();
+				} catch (RuntimeException e) {
+					LOG.error("Reconciling the running process instances failed.", e);
+				}
+			}
+		}, reconcileInterval, reconcileInterval, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Releases the admissions of instances that did not start in time and reconciles the 
+	 * running instances of all processes with the database.
+	 */
+	void reconcile() {
+		controller.expirePending(TimeUnit.MILLISECONDS.toNanos(pendingTimeout));
+		
+		for (String uniqueProcessId : new HashSet<String>(startNodes.values())) {
+			long readNanos = controller.nanoTime();
+			List<String> processInstanceIds = new ArrayList<String>();
+			for (String processInstanceId : processInstanceNodeRepositoryService.findRunningProcessInstanceIds(uniqueProcessId)) {
+				processInstanceIds.add(processInstanceId);
+			}
+			controller.reconcile(uniqueProcessId, processInstanceIds, readNanos);
+		}
+	}
+	
+	/**
+	 * Stops the admission control and logs its statistics. Queued starts are rejected, callers 
+	 * that passed a reject callback to {@link #admit(String, TriggerMessage, Runnable, Runnable)} 
+	 * are told so; starts queued without callback are only logged.
+	 */
+	@PreDestroy
+	void stop() {
+		if (controller == null) {
+			return;
+		}
+		executor.shutdownNow();
+		actorSystem.stop(listener);
+		
+		int rejectedStarts = controller.rejectQueue();
+		if (rejectedStarts > 0) {
+			LOG.warn(String.format("Rejected %s queued starts on shutdown.", rejectedStarts));
+		}
+		LOG.info("Admission control: " + controller);
+	}
+	
+	/**
+	 * Admits a trigger message. Triggers of top level start events start new process instances 
+	 * and are subject to the admission control, they get their process instance id here if 
+	 * they have none. All other triggers are sent at once.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id of the target node
+	 * @param triggerMessage the trigger message
+	 * @param send sends the trigger message to the target node
+	 * @return the admission
+	 */
+	public Admission admit(String uniqueFlowNodeId, TriggerMessage triggerMessage, Runnable send) {
+		return this.admit(uniqueFlowNodeId, triggerMessage, send, null);
+	}
+	
+	/**
+	 * Admits a trigger message. Triggers of top level start events start new process instances 
+	 * and are subject to the admission control, they get their process instance id here if 
+	 * they have none. All other triggers are sent at once.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id of the target node
+	 * @param triggerMessage the trigger message
+	 * @param send sends the trigger message to the target node
+	 * @param reject run if the trigger has been queued and is rejected later (on shutdown), may be null
+	 * @return the admission
+	 */
+	public Admission admit(String uniqueFlowNodeId, TriggerMessage triggerMessage, Runnable send, Runnable reject) {
+		AdmissionController admissionController = controller;
+		String uniqueProcessId = startNodes.get(uniqueFlowNodeId);
+		if (admissionController == null || uniqueProcessId == null) {
+			send.run();
+			return Admission.ACCEPTED;
+		}
+		
+		if (triggerMessage.getProcessInstanceId() == null) {
+			triggerMessage.setProcessInstanceId(processInstanceIdService.nextProcessInstanceId(uniqueProcessId));
+		}
+		Admission admission = admissionController.admit(uniqueProcessId, triggerMessage.getProcessInstanceId(), send, reject);
+		if (admission == Admission.REJECTED) {
+			LOG.warn(String.format("Rejected start of process %s, the admission queue is full (%s).", uniqueProcessId, admissionController));
+		}
+		return admission;
+	}
+	
+	/**
+	 * Gets the admission controller.
+	 *
+	 * @return the admission controller or null if admission control is off
+	 */
+	public AdmissionController getController() {
+		return controller;
+	}
+	
+	/**
+	 * Hands the starts and ends of process instances from the event stream to the controller.
+	 */
+	static class InstanceListener extends UntypedActor {
+		
+		private final AdmissionController controller;
+		
+		InstanceListener(AdmissionController controller) {
+			this.controller = controller;
+		}
+
+		@Override
+		public void onReceive(Object message) throws Exception {
+			if (message instanceof ProcessInstanceStartMessage) {
+				ProcessInstanceStartMessage startMessage = (ProcessInstanceStartMessage) message;
+				controller.started(startMessage.getUniqueProcessId(), startMessage.getProcessInstanceId());
+			} else if (message instanceof ProcessInstanceEndMessage) {
+				ProcessInstanceEndMessage endMessage = (ProcessInstanceEndMessage) message;
+				controller.ended(endMessage.getUniqueProcessId(), endMessage.getProcessInstanceId());
+			} else {
+				unhandled(message);
+			}
+		}
+	}
+}
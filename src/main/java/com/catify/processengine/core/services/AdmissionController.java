@@ -0,0 +1,498 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+
+/**
+ * The AdmissionController decides whether a process instance may start now, has to wait in 
+ * a bounded queue or is rejected. Starts are limited by the number of running instances 
+ * (overall and per process) and by a token bucket on the start rate. Queued starts are sent 
+ * when a running instance ends or new tokens are available; the queue is served in order, 
+ * except that starts of processes at their own limit do not hold up the others. <p>
+ * Running instances are counted by their id from their admission to their end. Instances 
+ * started by the engine itself (timers, signals) are counted from their start message on, but 
+ * never delayed. The starts themselves are run outside of the lock of the controller. <p>
+ * Not every instance announces its end (e.g. deleted instances, instances that never reach a 
+ * top level end event or that were running before a restart), so the counts are corrected: a 
+ * failed start releases its slot at once, admitted instances that have not announced their 
+ * start in time are released (see {@link #expirePending(long)}) and the running instances of a 
+ * process are periodically reconciled with the database (see {@link #reconcile(String, Collection, long)}).
+ * 
+ * @author christopher köster
+ * 
+ */
+public class AdmissionController {
+
+	static final Logger LOG = LoggerFactory.getLogger(AdmissionController.class);
+	
+	private static final Histogram QUEUE_WAIT_HISTOGRAM = MetricsRegistry.getHistogram("admission.queueWait");
+	
+	/** The maximum of running instances (0 is unlimited). */
+	private final int maxRunning;
+	
+	/** The maximum of running instances of one process (0 is unlimited). */
+	private final int maxRunningPerProcess;
+	
+	/** The starts per second (0 is unlimited). */
+	private final double startRate;
+	
+	/** The number of starts that may exceed the start rate at once. */
+	private final int startBurst;
+	
+	/** The maximum number of queued starts. */
+	private final int queueCapacity;
+	
+	private double tokens;
+	
+	private long lastRefill;
+	
+	/** The running instances, mapped by process instance id. */
+	private final Map<String, RunningInstance> runningInstances = new HashMap<String, RunningInstance>();
+	
+	private final Map<String, Integer> runningPerProcess = new HashMap<String, Integer>();
+	
+	/** The admission time of admitted instances that have not announced their start yet, mapped by process instance id. */
+	private final Map<String, Long> pending = new HashMap<String, Long>();
+	
+	/** The ids of ended instances that may still be found in the database (until they are archived), mapped by unique process id. */
+	private final Map<String, Set<String>> endedPerProcess = new HashMap<String, Set<String>>();
+	
+	private final LinkedList<QueuedStart> queue = new LinkedList<QueuedStart>();
+	
+	private final Map<String, Integer> queuedPerProcess = new HashMap<String, Integer>();
+	
+	private long accepted;
+	
+	private long queued;
+	
+	private long rejected;
+	
+	/** The number of slots released without an end of their instance. */
+	private long released;
+	
+	/**
+	 * Instantiates a new admission controller.
+	 *
+	 * @param maxRunning the maximum of running instances (0 is unlimited)
+	 * @param maxRunningPerProcess the maximum of running instances of one process (0 is unlimited)
+	 * @param startRate the starts per second (0 is unlimited)
+	 * @param startBurst the number of starts that may exceed the start rate at once
+	 * @param queueCapacity the maximum number of queued starts
+	 */
+	public AdmissionController(int maxRunning, int maxRunningPerProcess, double startRate, int startBurst, int queueCapacity) {
+		this.maxRunning = maxRunning;
+		this.maxRunningPerProcess = maxRunningPerProcess;
+		this.startRate = startRate;
+		this.startBurst = Math.max(1, startBurst);
+		this.queueCapacity = queueCapacity;
+		this.tokens = this.startBurst;
+		this.lastRefill = this.nanoTime();
+	}
+	
+	/**
+	 * Admits the start of a process instance. If the start fails, its slot is released 
+	 * and the exception is rethrown.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the id of the new process instance
+	 * @param start sends the start to the start event
+	 * @return the admission
+	 */
+	public Admission admit(String uniqueProcessId, String processInstanceId, Runnable start) {
+		return this.admit(uniqueProcessId, processInstanceId, start, null);
+	}
+	
+	/**
+	 * Admits the start of a process instance. If the start fails, its slot is released 
+	 * and the exception is rethrown.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the id of the new process instance
+	 * @param start sends the start to the start event
+	 * @param reject run if the start is queued and later rejected (see {@link #rejectQueue()}) or fails, may be null
+	 * @return the admission
+	 */
+	public Admission admit(String uniqueProcessId, String processInstanceId, Runnable start, Runnable reject) {
+		synchronized (this) {
+			if (!queuedPerProcess.containsKey(uniqueProcessId) && this.canStart(uniqueProcessId)) {
+				this.startInstance(uniqueProcessId, processInstanceId);
+				accepted++;
+			} else if (queue.size() < queueCapacity) {
+				queue.add(new QueuedStart(uniqueProcessId, processInstanceId, start, reject, this.nanoTime()));
+				increment(queuedPerProcess, uniqueProcessId);
+				queued++;
+				return Admission.QUEUED;
+			} else {
+				rejected++;
+				return Admission.REJECTED;
+			}
+		}
+		
+		try {
+			start.run();
+		} catch (RuntimeException e) {
+			this.release(processInstanceId);
+			throw e;
+		}
+		return Admission.ACCEPTED;
+	}
+	
+	/**
+	 * Counts the start of a process instance. Only instances that have not been admitted 
+	 * (e.g. started by timers or signals) are new to the controller.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 */
+	public synchronized void started(String uniqueProcessId, String processInstanceId) {
+		if (pending.remove(processInstanceId) == null) {
+			this.addRunning(uniqueProcessId, processInstanceId, this.nanoTime());
+		}
+	}
+	
+	/**
+	 * Counts the end of a process instance and sends the queued starts that may start now. 
+	 * Ends of instances that are not counted (e.g. ended twice) are ignored.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 */
+	public void ended(String uniqueProcessId, String processInstanceId) {
+		synchronized (this) {
+			pending.remove(processInstanceId);
+			this.removeRunning(processInstanceId);
+			
+			Set<String> ended = endedPerProcess.get(uniqueProcessId);
+			if (ended == null) {
+				ended = new HashSet<String>();
+				endedPerProcess.put(uniqueProcessId, ended);
+			}
+			ended.add(processInstanceId);
+		}
+		this.drain();
+	}
+	
+	/**
+	 * Releases the slot of an admitted instance whose start failed and sends the queued 
+	 * starts that may start now.
+	 *
+	 * @param processInstanceId the process instance id
+	 */
+	public void release(String processInstanceId) {
+		synchronized (this) {
+			pending.remove(processInstanceId);
+			if (this.removeRunning(processInstanceId)) {
+				released++;
+			}
+		}
+		this.drain();
+	}
+	
+	/**
+	 * Releases the slots of admitted instances that have not announced their start within 
+	 * the given time (e.g. because their start trigger failed in the start event).
+	 *
+	 * @param timeoutNanos the time in nanos an admitted instance may take to start
+	 */
+	public void expirePending(long timeoutNanos) {
+		synchronized (this) {
+			long now = this.nanoTime();
+			Iterator<Map.Entry<String, Long>> iterator = pending.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, Long> entry = iterator.next();
+				if (now - entry.getValue() > timeoutNanos) {
+					iterator.remove();
+					if (this.removeRunning(entry.getKey())) {
+						released++;
+						LOG.warn(String.format("Released the admission of process instance %s, it did not start within %s ms.", 
+								entry.getKey(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos)));
+					}
+				}
+			}
+		}
+		this.drain();
+	}
+	
+	/**
+	 * Reconciles the running instances of a process with the instances found in the database. 
+	 * Counted instances that are no longer in the database are released, instances in the 
+	 * database that are not counted (e.g. after a restart) are added. Instances counted after 
+	 * the database has been read, instances still pending and instances that have already 
+	 * ended (but are not archived yet) are left alone.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceIds the ids of the running instances in the database
+	 * @param readNanos the time (see {@link #nanoTime()}) before the database has been read
+	 */
+	public void reconcile(String uniqueProcessId, Collection<String> processInstanceIds, long readNanos) {
+		synchronized (this) {
+			Set<String> inDatabase = new HashSet<String>(processInstanceIds);
+			
+			List<String> gone = new ArrayList<String>();
+			for (Map.Entry<String, RunningInstance> entry : runningInstances.entrySet()) {
+				RunningInstance instance = entry.getValue();
+				if (instance.uniqueProcessId.equals(uniqueProcessId) && instance.sinceNanos < readNanos 
+						&& !pending.containsKey(entry.getKey()) && !inDatabase.contains(entry.getKey())) {
+					gone.add(entry.getKey());
+				}
+			}
+			for (String processInstanceId : gone) {
+				this.removeRunning(processInstanceId);
+				released++;
+			}
+			
+			Set<String> ended = endedPerProcess.get(uniqueProcessId);
+			if (ended != null) {
+				// forget ended instances once they have left the database
+				ended.retainAll(inDatabase);
+				if (ended.isEmpty()) {
+					endedPerProcess.remove(uniqueProcessId);
+				}
+			}
+			for (String processInstanceId : inDatabase) {
+				if (ended == null || !ended.contains(processInstanceId)) {
+					this.addRunning(uniqueProcessId, processInstanceId, readNanos);
+				}
+			}
+			
+			if (!gone.isEmpty()) {
+				LOG.info(String.format("Released %s admissions of process %s whose instances are no longer running.", 
+						gone.size(), uniqueProcessId));
+			}
+		}
+		this.drain();
+	}
+	
+	/**
+	 * Sends the queued starts that may start now. Starts that fail release their slot.
+	 */
+	public void drain() {
+		List<QueuedStart> starts = new ArrayList<QueuedStart>();
+		synchronized (this) {
+			Iterator<QueuedStart> iterator = queue.iterator();
+			while (iterator.hasNext() && this.canStartAny()) {
+				QueuedStart queuedStart = iterator.next();
+				if (this.canStart(queuedStart.uniqueProcessId)) {
+					iterator.remove();
+					decrement(queuedPerProcess, queuedStart.uniqueProcessId);
+					this.startInstance(queuedStart.uniqueProcessId, queuedStart.processInstanceId);
+					starts.add(queuedStart);
+				}
+			}
+		}
+		
+		long now = this.nanoTime();
+		for (QueuedStart queuedStart : starts) {
+			QUEUE_WAIT_HISTOGRAM.record(now - queuedStart.queuedNanos);
+			try {
+				queuedStart.start.run();
+			} catch (RuntimeException e) {
+				LOG.error(String.format("Queued start of process instance %s failed.", queuedStart.processInstanceId), e);
+				this.release(queuedStart.processInstanceId);
+				this.runReject(queuedStart);
+			}
+		}
+	}
+	
+	/**
+	 * Rejects all queued starts (e.g. on shutdown) and runs their reject callbacks.
+	 *
+	 * @return the number of rejected starts
+	 */
+	public int rejectQueue() {
+		List<QueuedStart> starts;
+		synchronized (this) {
+			starts = new ArrayList<QueuedStart>(queue);
+			queue.clear();
+			queuedPerProcess.clear();
+			rejected += starts.size();
+		}
+		
+		for (QueuedStart queuedStart : starts) {
+			this.runReject(queuedStart);
+		}
+		return starts.size();
+	}
+	
+	/**
+	 * Runs the reject callback of a queued start (if any).
+	 */
+	private void runReject(QueuedStart queuedStart) {
+		if (queuedStart.reject != null) {
+			try {
+				queuedStart.reject.run();
+			} catch (RuntimeException e) {
+				LOG.error(String.format("Rejecting the queued start of process instance %s failed.", queuedStart.processInstanceId), e);
+			}
+		}
+	}
+	
+	/**
+	 * Checks whether an instance of any process may start now (overall limit and start rate).
+	 */
+	private boolean canStartAny() {
+		if (maxRunning > 0 && runningInstances.size() >= maxRunning) {
+			return false;
+		}
+		if (startRate > 0) {
+			long now = this.nanoTime();
+			tokens = Math.min(startBurst, tokens + (now - lastRefill) * startRate / TimeUnit.SECONDS.toNanos(1));
+			lastRefill = now;
+			return tokens >= 1;
+		}
+		return true;
+	}
+	
+	/**
+	 * Checks whether an instance of the given process may start now.
+	 */
+	private boolean canStart(String uniqueProcessId) {
+		if (maxRunningPerProcess > 0) {
+			Integer processRunning = runningPerProcess.get(uniqueProcessId);
+			if (processRunning != null && processRunning >= maxRunningPerProcess) {
+				return false;
+			}
+		}
+		return this.canStartAny();
+	}
+	
+	private void startInstance(String uniqueProcessId, String processInstanceId) {
+		if (startRate > 0) {
+			tokens--;
+		}
+		long now = this.nanoTime();
+		this.addRunning(uniqueProcessId, processInstanceId, now);
+		pending.put(processInstanceId, now);
+	}
+	
+	private void addRunning(String uniqueProcessId, String processInstanceId, long sinceNanos) {
+		if (!runningInstances.containsKey(processInstanceId)) {
+			runningInstances.put(processInstanceId, new RunningInstance(uniqueProcessId, sinceNanos));
+			increment(runningPerProcess, uniqueProcessId);
+		}
+	}
+	
+	/**
+	 * Removes a running instance.
+	 *
+	 * @return true, if the instance has been counted
+	 */
+	private boolean removeRunning(String processInstanceId) {
+		RunningInstance instance = runningInstances.remove(processInstanceId);
+		if (instance == null) {
+			return false;
+		}
+		decrement(runningPerProcess, instance.uniqueProcessId);
+		return true;
+	}
+	
+	private static void increment(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		counts.put(key, count == null ? 1 : count + 1);
+	}
+	
+	private static void decrement(Map<String, Integer> counts, String key) {
+		Integer count = counts.get(key);
+		if (count == null) {
+			return;
+		} else if (count == 1) {
+			counts.remove(key);
+		} else {
+			counts.put(key, count - 1);
+		}
+	}
+	
+	/**
+	 * Gets the time for the start rate and the expiry of admissions, overridden by tests.
+	 *
+	 * @return the time in nanos
+	 */
+	long nanoTime() {
+		return System.nanoTime();
+	}
+	
+	public synchronized int getRunning() {
+		return runningInstances.size();
+	}
+	
+	public synchronized int getQueueSize() {
+		return queue.size();
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("%s accepted, %s queued, %s rejected starts, %s released admissions (%s running, %s queued now)", 
+				accepted, queued, rejected, released, runningInstances.size(), queue.size());
+	}
+	
+	/**
+	 * A counted instance.
+	 */
+	private static class RunningInstance {
+		
+		private final String uniqueProcessId;
+		
+		/** The time the instance has been counted from. */
+		private final long sinceNanos;
+
+		RunningInstance(String uniqueProcessId, long sinceNanos) {
+			this.uniqueProcessId = uniqueProcessId;
+			this.sinceNanos = sinceNanos;
+		}
+	}
+	
+	/**
+	 * A start waiting for admission.
+	 */
+	private static class QueuedStart {
+		
+		private final String uniqueProcessId;
+		
+		private final String processInstanceId;
+		
+		private final Runnable start;
+		
+		private final Runnable reject;
+		
+		private final long queuedNanos;
+
+		QueuedStart(String uniqueProcessId, String processInstanceId, Runnable start, Runnable reject, long queuedNanos) {
+			this.uniqueProcessId = uniqueProcessId;
+			this.processInstanceId = processInstanceId;
+			this.start = start;
+			this.reject = reject;
+			this.queuedNanos = queuedNanos;
+		}
+	}
+}
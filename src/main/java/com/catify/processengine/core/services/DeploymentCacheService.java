@@ -0,0 +1,251 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Properties;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.catify.processengine.core.data.services.FlowNodeRepositoryService;
+import com.catify.processengine.core.data.services.ProcessNodeRepositoryService;
+
+/**
+ * The DeploymentCacheService remembers which process definitions have already been 
+ * written to the database. Each deployed process is bound by its unique process id 
+ * (which contains the process version) to the content hash of its definition. The 
+ * bindings are kept in a properties file, so that on a restart unchanged processes only 
+ * need their service node actors to be created and can skip the database initialization.
+ * <p>
+ * A binding is only trusted if the database holds a process node with the unique process 
+ * id and all flow nodes of the definition, so a replaced, emptied or partially deleted 
+ * database leads to a full initialization (which creates the missing nodes and keeps the 
+ * existing ones). Graph ids are not used, because Neo4j reuses them after deletes.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class DeploymentCacheService {
+
+	static final Logger LOG = LoggerFactory.getLogger(DeploymentCacheService.class);
+	
+	static final String MANIFEST_FILE = "deployments.properties";
+	
+	@Autowired
+	private ProcessNodeRepositoryService processNodeRepositoryService;
+	
+	@Autowired
+	private FlowNodeRepositoryService flowNodeRepositoryService;
+	
+	/** The directory holding the deployment manifest. */
+	@Value("${core.deploymentCacheDirectory}")
+	private String directory;
+	
+	/** The content hashes of the deployed process definitions, mapped by unique process id. */
+	private final Properties bindings = new Properties();
+	
+	public DeploymentCacheService() {
+	}
+	
+	/**
+	 * Creates a deployment cache with its manifest in the given directory.
+	 *
+	 * @param directory the directory holding the deployment manifest
+	 */
+	DeploymentCacheService(String directory) {
+		this.directory = directory;
+	}
+	
+	/**
+	 * Loads the deployment manifest (if there is one).
+	 */
+	@PostConstruct
+	void load() {
+		File manifest = new File(directory, MANIFEST_FILE);
+		if (!manifest.exists()) {
+			return;
+		}
+		InputStream in = null;
+		try {
+			in = new FileInputStream(manifest);
+			bindings.load(in);
+			// bindings of older versions are keyed by 'content hash/unique process id' and point to graph ids
+			for (Iterator<Object> iterator = bindings.keySet().iterator(); iterator.hasNext();) {
+				if (((String) iterator.next()).contains("/")) {
+					iterator.remove();
+				}
+			}
+			LOG.debug(String.format("Loaded %s deployment bindings from %s", bindings.size(), manifest));
+		} catch (IOException e) {
+			LOG.warn(String.format("Could not read deployment manifest %s, all processes will be fully initialized", manifest), e);
+			bindings.clear();
+		} finally {
+			closeQuietly(in);
+		}
+	}
+	
+	/**
+	 * Checks if a process has already been initialized in the database from a definition with 
+	 * the given content hash and if the database still holds all of its flow nodes.
+	 *
+	 * @param contentHash the content hash of the process definition
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeIds the unique flow node ids of the flow nodes in the process definition
+	 * @return true, if the database representation of the process is up to date
+	 */
+	public synchronized boolean isDeployed(String contentHash, String uniqueProcessId, Collection<String> uniqueFlowNodeIds) {
+		return contentHash.equals(bindings.getProperty(uniqueProcessId)) && this.isInitialized(uniqueProcessId)
+				&& this.findUniqueFlowNodeIds(uniqueProcessId).containsAll(uniqueFlowNodeIds);
+	}
+	
+	/**
+	 * Binds an initialized process to the content hash of its definition and saves the manifest. 
+	 * A binding of the process to another content hash is replaced.
+	 *
+	 * @param contentHash the content hash of the process definition
+	 * @param uniqueProcessId the unique process id
+	 */
+	public synchronized void register(String contentHash, String uniqueProcessId) {
+		if (!this.isInitialized(uniqueProcessId)) {
+			return;
+		}
+		bindings.setProperty(uniqueProcessId, contentHash);
+		this.store();
+	}
+	
+	/**
+	 * Removes the binding of a process, e.g. because it has been initialized from a definition 
+	 * without content hash.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 */
+	public synchronized void unregister(String uniqueProcessId) {
+		if (bindings.remove(uniqueProcessId) != null) {
+			this.store();
+		}
+	}
+	
+	/**
+	 * Checks if the database holds the process node of a process.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return true, if the process node exists
+	 */
+	boolean isInitialized(String uniqueProcessId) {
+		return processNodeRepositoryService.findByUniqueProcessId(uniqueProcessId) != null;
+	}
+	
+	/**
+	 * Finds the unique flow node ids of the flow nodes of a process in the database.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @return the unique flow node ids
+	 */
+	Collection<String> findUniqueFlowNodeIds(String uniqueProcessId) {
+		return flowNodeRepositoryService.findUniqueFlowNodeIds(uniqueProcessId);
+	}
+	
+	/**
+	 * Writes the manifest to a temporary file first, so that a crash leaves the old manifest intact.
+	 */
+	private void store() {
+		File dir = new File(directory);
+		dir.mkdirs();
+		File tmp = new File(dir, MANIFEST_FILE + ".tmp");
+		File manifest = new File(dir, MANIFEST_FILE);
+		
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(tmp);
+			bindings.store(out, "deployed process definitions (unique process id = content hash)");
+			out.close();
+			out = null;
+			if (!tmp.renameTo(manifest)) {
+				// renaming onto an existing file fails on some platforms
+				manifest.delete();
+				if (!tmp.renameTo(manifest)) {
+					LOG.warn(String.format("Could not write deployment manifest %s", manifest));
+				}
+			}
+		} catch (IOException e) {
+			LOG.warn(String.format("Could not write deployment manifest %s", manifest), e);
+		} finally {
+			closeQuietly(out);
+		}
+	}
+	
+	/**
+	 * Calculates the content hash (sha-1) of a process definition file.
+	 *
+	 * @param processDefinition the process definition file
+	 * @return the content hash as hex string
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public static String getContentHash(File processDefinition) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		
+		InputStream in = new FileInputStream(processDefinition);
+		try {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) > 0) {
+				digest.update(buffer, 0, read);
+			}
+		} finally {
+			in.close();
+		}
+		
+		StringBuilder hash = new StringBuilder();
+		for (byte b : digest.digest()) {
+			hash.append(String.format("%02x", b));
+		}
+		return hash.toString();
+	}
+	
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException e) {
+				LOG.warn("Could not close stream", e);
+			}
+		}
+	}
+}
@@ -18,6 +18,7 @@ import akka.actor.ActorRef;
 
 import com.catify.processengine.core.data.dataobjects.DataObjectHandling;
 import com.catify.processengine.core.data.dataobjects.DataObjectSPI;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
 
 /**
  * 
@@ -278,7 +279,9 @@ public class ExpressionService {
 	 */
 	public static boolean evaluateToBoolean(Expression expression, JexlContext context) {
 		if(expression != null) {
+			long start = System.nanoTime();
 			Object result = expression.evaluate(context);
+			FlightRecorderEvents.commit(FlightRecorderEvents.EventType.EXPRESSION, expression.getExpression(), start);
 			LOG.debug(String.format("Evaluated expression '%s' to result '%s'.", expression.getExpression(), result));
 			
 			if(result instanceof Boolean) {
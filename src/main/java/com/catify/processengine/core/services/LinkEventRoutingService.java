@@ -0,0 +1,82 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import akka.actor.ActorRef;
+
+/**
+ * The LinkEventRoutingService holds the routing table of all link events. It
+ * maps a link name of a process to the catching link event node, so that a
+ * throwing link event can send its message directly to its counterpart. The
+ * table is filled when the catching link events are deployed.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class LinkEventRoutingService {
+
+	static final Logger LOG = LoggerFactory.getLogger(LinkEventRoutingService.class);
+
+	/** The catching link event nodes, mapped by unique process id and link name. */
+	private final ConcurrentMap<String, ConcurrentMap<String, ActorRef>> routes = new ConcurrentHashMap<String, ConcurrentMap<String, ActorRef>>();
+
+	/**
+	 * Registers a catching link event node for a link name.
+	 * 
+	 * @param uniqueProcessId the unique process id
+	 * @param linkName the link name (source of the catching link event)
+	 * @param eventActorRef the {@link ActorRef} of the catching link event node
+	 */
+	public void registerCatchEvent(String uniqueProcessId, String linkName, ActorRef eventActorRef) {
+		ConcurrentMap<String, ActorRef> processRoutes = routes.get(uniqueProcessId);
+		if (processRoutes == null) {
+			ConcurrentMap<String, ActorRef> newProcessRoutes = new ConcurrentHashMap<String, ActorRef>();
+			processRoutes = routes.putIfAbsent(uniqueProcessId, newProcessRoutes);
+			if (processRoutes == null) {
+				processRoutes = newProcessRoutes;
+			}
+		}
+		ActorRef previous = processRoutes.put(linkName, eventActorRef);
+		if (previous != null && !previous.equals(eventActorRef)) {
+			LOG.warn(String.format("Link '%s' of process %s is caught by more than one event. Using %s.", linkName, uniqueProcessId, eventActorRef));
+		}
+	}
+
+	/**
+	 * Gets the catching link event node of a link.
+	 * 
+	 * @param uniqueProcessId the unique process id
+	 * @param linkName the link name (target of the throwing link event)
+	 * @return the {@link ActorRef} of the catching link event node or null if there is none
+	 */
+	public ActorRef getCatchEvent(String uniqueProcessId, String linkName) {
+		ConcurrentMap<String, ActorRef> processRoutes = routes.get(uniqueProcessId);
+		if (processRoutes == null) {
+			return null;
+		}
+		return processRoutes.get(linkName);
+	}
+}
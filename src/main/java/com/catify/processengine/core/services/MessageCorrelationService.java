@@ -0,0 +1,87 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService;
+import com.catify.processengine.core.integration.IntegrationMessage;
+
+/**
+ * The MessageCorrelationService correlates inbound messages that do not carry a
+ * process instance id to a waiting process instance. The correlation keys are
+ * the meta data the message integration extracted from the payload of the
+ * message. They are looked up in the (persistent) index of the meta data
+ * properties of the process instances that wait at the target node of the 
+ * message, so instances that are somewhere else in the process never match.
+ * <p>
+ * Meta data is written asynchronously (see {@link MetaDataService}), so a 
+ * message may not be correlated if its instance has not reached the target 
+ * node yet or its correlation keys have not been written yet. The message 
+ * integration can deliver such messages again later.
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class MessageCorrelationService {
+
+	static final Logger LOG = LoggerFactory.getLogger(MessageCorrelationService.class);
+
+	@Autowired
+	private ProcessInstanceNodeRepositoryService processInstanceNodeRepositoryService;
+
+	/**
+	 * Correlate an integration message to a process instance waiting at its target node.
+	 * 
+	 * @param integrationMessage the integration message
+	 * @param metaData the meta data (correlation keys) extracted from the payload
+	 * @return the process instance id or null if no unique process instance matches
+	 */
+	public String correlate(IntegrationMessage integrationMessage, Map<String, Object> metaData) {
+		if (metaData == null || metaData.isEmpty()) {
+			LOG.warn(String.format("Message for %s can not be correlated, because it neither has a process instance id nor meta data.", 
+					integrationMessage.getUniqueFlowNodeId()));
+			return null;
+		}
+
+		Set<String> processInstanceIds = processInstanceNodeRepositoryService
+				.findWaitingProcessInstanceIdsByMetaData(integrationMessage.getProcessId(), 
+						integrationMessage.getUniqueFlowNodeId(), metaData);
+
+		if (processInstanceIds == null || processInstanceIds.isEmpty()) {
+			LOG.warn(String.format("No process instance of %s waiting at %s matches the correlation keys %s.", 
+					integrationMessage.getProcessId(), integrationMessage.getUniqueFlowNodeId(), metaData));
+			return null;
+		} else if (processInstanceIds.size() > 1) {
+			LOG.warn(String.format("%s process instances of %s match the correlation keys %s.", 
+					processInstanceIds.size(), integrationMessage.getProcessId(), metaData));
+			return null;
+		}
+		
+		String processInstanceId = processInstanceIds.iterator().next();
+		LOG.debug(String.format("Correlated message for %s to process instance %s", integrationMessage.getUniqueFlowNodeId(), processInstanceId));
+		return processInstanceId;
+	}
+}
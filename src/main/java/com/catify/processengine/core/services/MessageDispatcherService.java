@@ -17,8 +17,11 @@
  */
 package com.catify.processengine.core.services;
 
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.annotation.PostConstruct;
 
@@ -35,6 +38,9 @@ import com.catify.processengine.core.integration.IntegrationMessage;
 import com.catify.processengine.core.integration.MessageIntegrationSPI;
 import com.catify.processengine.core.messages.MetaDataMessage;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
 import com.catify.processengine.core.nodes.eventdefinition.EventDefinition;
 
 /**
@@ -48,6 +54,9 @@ import com.catify.processengine.core.nodes.eventdefinition.EventDefinition;
 public class MessageDispatcherService {
 
 	static final Logger LOG = LoggerFactory.getLogger(MessageDispatcherService.class);
+	
+	private static final Histogram SEND_HISTOGRAM = MetricsRegistry.getHistogram("spi.messageIntegration.send");
+	private static final Histogram REQUEST_REPLY_HISTOGRAM = MetricsRegistry.getHistogram("spi.messageIntegration.requestReply");
 
 	/**
 	 * Holds the message integration implementation.
@@ -64,8 +73,20 @@ public class MessageDispatcherService {
 	private String metaDataActorName;
 	private ActorRef metaDataActor;
 
-	/** The unique flow node id to actor ref map. */
-	public static Map<String, String> uniqueFlowNodeIdToActorRefMap = new HashMap<String, String>();
+	/** The unique flow node id to actor ref string map (filled on deployment). */
+	private static final ConcurrentMap<String, String> uniqueFlowNodeIdToActorRefMap = new ConcurrentHashMap<String, String>();
+	
+	/** The unique flow node id to resolved actor ref map (filled on first dispatch, holds live actors only). */
+	private static final ConcurrentMap<String, ActorRef> uniqueFlowNodeIdToResolvedActorRefMap = new ConcurrentHashMap<String, ActorRef>();
+	
+	/** The unique flow node ids of catching start nodes, whose messages create new process instances instead of being correlated. */
+	private static final Set<String> startNodes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	@Autowired
+	private MessageCorrelationService messageCorrelationService;
+	
+	@Autowired
+	private AdmissionControlService admissionControlService;
 
 	public MessageDispatcherService(MessageIntegrationSPI integrationSPI) {
 		this.integrationSPI = integrationSPI;
@@ -80,40 +101,113 @@ public class MessageDispatcherService {
 	}
 	
 	/**
-	 * Dispatch messages from message integration to the engine.
+	 * Register a flow node that messages can be dispatched to.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @param actorRefString the actor reference string of the flow node
+	 * @param isStart true if the flow node is a start event (which does not need correlation)
+	 */
+	public static void registerTargetNode(String uniqueFlowNodeId, String actorRefString, boolean isStart) {
+		uniqueFlowNodeIdToActorRefMap.put(uniqueFlowNodeId, actorRefString);
+		uniqueFlowNodeIdToResolvedActorRefMap.remove(uniqueFlowNodeId);
+		if (isStart) {
+			startNodes.add(uniqueFlowNodeId);
+		} else {
+			startNodes.remove(uniqueFlowNodeId);
+		}
+	}
+	
+	/**
+	 * Dispatch messages from message integration to the engine. Messages to 
+	 * catching nodes that do not carry a process instance id are correlated
+	 * with the {@link MessageCorrelationService}, messages that do not match a 
+	 * waiting instance are discarded as {@link Admission#UNCORRELATED}. Messages 
+	 * to start nodes are subject to the {@link AdmissionControlService}, the outcome 
+	 * is returned to the message integration, which should push back on its source 
+	 * if the message has been rejected. Queued messages that are rejected later are 
+	 * passed to {@link MessageIntegrationSPI#rejected(IntegrationMessage)}.
 	 * 
 	 * @param integrationMessage
 	 *            the message that should be dispatched to the engine
 	 * @param metaData
 	 *            the meta Data map that holds meta data names and their 
 	 *            values returned by their according xpath query
+	 * @return the admission of the message
 	 */
-	public void dispatchToEngine(IntegrationMessage integrationMessage, Map<String, Object> metaData) {
+	public Admission dispatchToEngine(final IntegrationMessage integrationMessage, Map<String, Object> metaData) {
 
+		// correlate messages to waiting instances if necessary
+		if (integrationMessage.getProcessInstanceId() == null
+				&& !startNodes.contains(integrationMessage.getUniqueFlowNodeId())) {
+			String processInstanceId = messageCorrelationService.correlate(integrationMessage, metaData);
+			if (processInstanceId == null) {
+				LOG.error(String.format("Discarding message for %s, because it could not be correlated to a process instance.", 
+						integrationMessage.getUniqueFlowNodeId()));
+				return Admission.UNCORRELATED;
+			}
+			integrationMessage.setProcessInstanceId(processInstanceId);
+		}
+		
 		// get the actor to send the integration message to
-		String targetNodeActorString = uniqueFlowNodeIdToActorRefMap
-				.get(integrationMessage.getUniqueFlowNodeId());
-		ActorRef targetNodeActor = this.actorSystem
-				.actorFor("user/" + targetNodeActorString);
+		final ActorRef targetNodeActor = this.getTargetNodeActor(integrationMessage.getUniqueFlowNodeId());
 		
 		// create the integration message
-		TriggerMessage triggerMessage = new TriggerMessage(
+		final TriggerMessage triggerMessage = new TriggerMessage(
 				integrationMessage.getProcessInstanceId(),
 				integrationMessage.getPayload());
 
-		LOG.debug("Message Dispatcher sending trigger message to " + targetNodeActor);
-		
-		// send the integration message to the actor
-		targetNodeActor.tell(triggerMessage, null);
+		// send the integration message to the actor (starts might be queued or rejected)
+		Admission admission = admissionControlService.admit(integrationMessage.getUniqueFlowNodeId(), triggerMessage, new Runnable() {
+			@Override
+			public void run() {
+				LOG.debug("Message Dispatcher sending trigger message to " + targetNodeActor);
+				
+				targetNodeActor.tell(triggerMessage, null);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				integrationSPI.rejected(integrationMessage);
+			}
+		});
 		
 		// send the meta data to the meta data actor (if it is not a start event, which can not collect meta data)
-		if (integrationMessage.getProcessInstanceId() != null) {
+		if (admission != Admission.REJECTED && integrationMessage.getProcessInstanceId() != null) {
 			MetaDataMessage metaDataMessage = new MetaDataMessage(integrationMessage.getProcessId(), integrationMessage.getProcessInstanceId(), metaData);
 			
 			LOG.debug("Message Dispatcher sending meta data message to " + this.metaDataActor);
 			
 			metaDataActor.tell(metaDataMessage, null);
 		}
+		return admission;
+	}
+
+	/**
+	 * Gets the actor reference of a registered flow node. The actor reference is
+	 * resolved once per flow node and cached as long as the actor is alive. Actors
+	 * that have not been created yet or have been stopped (e.g. on a redeployment) 
+	 * are resolved again on the next dispatch.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @return the actor reference
+	 */
+	private ActorRef getTargetNodeActor(String uniqueFlowNodeId) {
+		ActorRef targetNodeActor = uniqueFlowNodeIdToResolvedActorRefMap.get(uniqueFlowNodeId);
+		if (targetNodeActor != null && !targetNodeActor.isTerminated()) {
+			return targetNodeActor;
+		}
+		if (targetNodeActor != null) {
+			uniqueFlowNodeIdToResolvedActorRefMap.remove(uniqueFlowNodeId, targetNodeActor);
+		}
+		
+		String actorRefString = uniqueFlowNodeIdToActorRefMap.get(uniqueFlowNodeId);
+		targetNodeActor = this.actorSystem.actorFor("user/" + actorRefString);
+		
+		// only cache live actors, a reference to a missing actor would send to the dead letters forever
+		if (actorRefString != null && !targetNodeActor.isTerminated()) {
+			uniqueFlowNodeIdToResolvedActorRefMap.put(uniqueFlowNodeId, targetNodeActor);
+		}
+		return targetNodeActor;
 	}
 
 	/**
@@ -128,7 +222,13 @@ public class MessageDispatcherService {
 	 *            implementation
 	 */
 	public void dispatchViaIntegrationSPI(final String uniqueFlowNodeId, final IntegrationMessage message) {
-		integrationSPI.send(message);
+		long start = System.nanoTime();
+		try {
+			integrationSPI.send(message);
+		} finally {
+			SEND_HISTOGRAM.recordSince(start);
+			FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "messageIntegration.send", start);
+		}
 	}
 
 	/**
@@ -143,6 +243,12 @@ public class MessageDispatcherService {
 	 *            implementation
 	 */
 	public Object requestReplyViaIntegrationSPI(final String uniqueFlowNodeId, final IntegrationMessage message) {
-		return integrationSPI.requestReply(message);
+		long start = System.nanoTime();
+		try {
+			return integrationSPI.requestReply(message);
+		} finally {
+			REQUEST_REPLY_HISTOGRAM.recordSince(start);
+			FlightRecorderEvents.commit(FlightRecorderEvents.EventType.SPI_CALL, "messageIntegration.requestReply", start);
+		}
 	}
 }
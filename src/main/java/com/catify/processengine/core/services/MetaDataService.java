@@ -20,17 +20,34 @@
  */
 package com.catify.processengine.core.services;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
 
+import scala.concurrent.duration.Duration;
 import akka.actor.UntypedActor;
 
 import com.catify.processengine.core.integration.MessageIntegrationSPI;
+import com.catify.processengine.core.messages.FlushMessage;
 import com.catify.processengine.core.messages.MetaDataMessage;
 
 /**
- * The MetaDataService asynchronously writes the meta data collected in the
- * {@link MessageIntegrationSPI} implementation.
+ * The MetaDataService writes the meta data generated by the
+ * {@link MessageIntegrationSPI} to the process instance nodes. Meta data
+ * messages are collected in a batch (merging the meta data of the messages
+ * of a process instance, later values win) and the batch is written in one transaction as soon as it reaches
+ * <code>core.metaDataBatchSize</code> process instances or is older than
+ * <code>core.metaDataBatchTimeout</code> milliseconds. If the batch fails, its 
+ * messages are written one by one, so that a single bad message does not discard 
+ * the others (they have already been taken from the mailbox).
  * 
  * @author christopher köster
  * 
@@ -38,30 +55,114 @@ import com.catify.processengine.core.messages.MetaDataMessage;
 @Configurable
 public class MetaDataService extends UntypedActor {
 
+	static final Logger LOG = LoggerFactory.getLogger(MetaDataService.class);
+	
 	@Autowired
 	private ProcessInstanceMediatorService processInstanceMediatorService;
 	
+	/** The maximum number of process instances written in one transaction. */
+	@Value("${core.metaDataBatchSize}")
+	private int batchSize;
+	
+	/** The maximum time in milliseconds a meta data message waits for its batch to be written. */
+	@Value("${core.metaDataBatchTimeout}")
+	private long batchTimeout;
+	
+	/** The current batch, mapped by process instance id (holding the merged meta data of the instance). */
+	private Map<String, MetaDataMessage> batch = new LinkedHashMap<String, MetaDataMessage>();
+	
+	/** The number of the current batch (used to ignore flush messages of already written batches). */
+	private long batchNumber;
+	
 	public MetaDataService() {
 	}
 
-	/**
-	 * On receiving of a MetaDataMessage this actor will write the meta data to
-	 * the process instance node
-	 */
 	@Override
 	public void onReceive(Object message) {
 		if (message instanceof MetaDataMessage) {
 
 			MetaDataMessage metaMessage = (MetaDataMessage) message;
+			
+			// there is nothing to write
+			if (metaMessage.getMetaData() == null) {
+				return;
+			}
 
-			processInstanceMediatorService.setMetaDataProperties(
-					metaMessage.getUniqueProcessID(),
-					metaMessage.getProcessInstanceId(),
-					metaMessage.getMetaData());
+			if (batch.isEmpty() && batchTimeout > 0) {
+				// close the batch in time, even if it does not get full
+				this.getContext().system().scheduler().scheduleOnce(
+						Duration.create(batchTimeout, TimeUnit.MILLISECONDS), 
+						this.getSelf(), new FlushMessage(batchNumber), 
+						this.getContext().dispatcher());
+			}
+			this.merge(metaMessage);
 
+			if (batch.size() >= batchSize || batchTimeout <= 0) {
+				this.flush();
+			}
+			
+		} else if (message instanceof FlushMessage) {
+			if (((FlushMessage) message).getFlushNumber() == batchNumber) {
+				this.flush();
+			}
 		} else {
 			unhandled(message);
 		}
 	}
+	
+	@Override
+	public void postStop() {
+		this.flush();
+	}
+	
+	/**
+	 * Add the meta data of a message to the meta data of its process instance in the current batch.
+	 *
+	 * @param metaMessage the meta data message
+	 */
+	private void merge(MetaDataMessage metaMessage) {
+		MetaDataMessage batched = batch.get(metaMessage.getProcessInstanceId());
+		if (batched == null) {
+			batch.put(metaMessage.getProcessInstanceId(), new MetaDataMessage(metaMessage.getUniqueProcessID(), 
+					metaMessage.getProcessInstanceId(), new HashMap<String, Object>(metaMessage.getMetaData())));
+		} else {
+			batched.getMetaData().putAll(metaMessage.getMetaData());
+		}
+	}
+	
+	/**
+	 * Write the current batch to the db and start a new one.
+	 */
+	private void flush() {
+		if (!batch.isEmpty()) {
+			LOG.debug(String.format("Writing meta data of %s process instances", batch.size()));
+			
+			try {
+				processInstanceMediatorService.setMetaDataProperties(batch.values());
+			} catch (RuntimeException e) {
+				LOG.warn(String.format("Writing meta data of %s process instances failed, retrying them one by one.", batch.size()), e);
+				this.writeEach(batch.values());
+			}
+			batch = new LinkedHashMap<String, MetaDataMessage>();
+		}
+		batchNumber++;
+	}
+	
+	/**
+	 * Write the meta data messages in a transaction each, skipping the ones that fail.
+	 *
+	 * @param metaDataMessages the meta data messages
+	 */
+	private void writeEach(Collection<MetaDataMessage> metaDataMessages) {
+		for (MetaDataMessage metaDataMessage : metaDataMessages) {
+			try {
+				processInstanceMediatorService.setMetaDataProperties(metaDataMessage.getUniqueProcessID(), 
+						metaDataMessage.getProcessInstanceId(), metaDataMessage.getMetaData());
+			} catch (RuntimeException e) {
+				LOG.error(String.format("Discarding meta data of process instance %s, it could not be written.", 
+						metaDataMessage.getProcessInstanceId()), e);
+			}
+		}
+	}
 
 }
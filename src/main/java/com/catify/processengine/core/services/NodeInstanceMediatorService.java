@@ -30,6 +30,10 @@ import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.data.model.entities.FlowNode;
 import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
 import com.catify.processengine.core.data.services.FlowNodeInstanceRepositoryService;
+import com.catify.processengine.core.metrics.ExecutionTracer;
+import com.catify.processengine.core.metrics.FlightRecorderEvents;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
 
 /**
  * The NodeInstanceMediatorService handles all data access between the node
@@ -50,6 +54,8 @@ public class NodeInstanceMediatorService {
 	static final Logger LOG = LoggerFactory
 			.getLogger(NodeInstanceMediatorService.class);
 	
+	private static final Histogram PERSIST_CHANGES_HISTOGRAM = MetricsRegistry.getHistogram("transaction.persistChanges");
+	
 	@Autowired 
 	private Neo4jTemplate neo4jTemplate;
 	
@@ -249,10 +255,27 @@ public class NodeInstanceMediatorService {
 	}
 	
 	/**
-	 * Persist any changes to the flow node instance to the db.
+	 * Persist any changes to the flow node instance to the db. The duration including 
+	 * the commit is recorded in the 'transaction.persistChanges' histogram 
+	 * and as flight recorder event (and in the span of traced instances).
 	 */
-	@Transactional //FIXME: need to test if transaction is needed
 	public void persistChanges() {
+		long start = System.nanoTime();
+		long traceStart = ExecutionTracer.enterDatabase();
+		try {
+			this.saveNodeInstance();
+		} finally {
+			ExecutionTracer.exitDatabase(traceStart);
+		}
+		PERSIST_CHANGES_HISTOGRAM.recordSince(start);
+		FlightRecorderEvents.commit(FlightRecorderEvents.EventType.PERSIST, "persistChanges", start);
+	}
+	
+	/**
+	 * Save the flow node instance in its own transaction.
+	 */
+	@Transactional //FIXME: need to test if transaction is needed
+	protected void saveNodeInstance() {
 		flowNodeInstanceRepositoryService.save(this.nodeInstance);
 	}
 	
@@ -411,6 +434,8 @@ public class NodeInstanceMediatorService {
 			nodeInstance.setNodeInstanceState(state);
 			
 			this.updateCache(nodeInstance, nodeInstance.getLoopCount());
+			FlightRecorderEvents.commitInstant(FlightRecorderEvents.EventType.STATE_CHANGE, 
+					this.getUniqueProcessId(), this.getUniqueFlowNodeId(), processInstanceId, state);
 		}
 	}
 
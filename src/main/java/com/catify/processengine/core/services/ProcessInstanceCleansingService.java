@@ -20,19 +20,44 @@
  */
 package com.catify.processengine.core.services;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
 
+import scala.Option;
+import scala.concurrent.duration.Duration;
 import akka.actor.UntypedActor;
 
 import com.catify.processengine.core.data.dataobjects.DataObjectHandling;
 import com.catify.processengine.core.messages.ArchiveMessage;
 import com.catify.processengine.core.messages.DeletionMessage;
+import com.catify.processengine.core.messages.FlushMessage;
+import com.catify.processengine.core.metrics.Histogram;
+import com.catify.processengine.core.metrics.MetricsRegistry;
+import com.catify.processengine.core.util.Clock;
 
 /**
- * The ProcessInstanceCleansingService either deletes or archives a process instance asynchronously.
+ * The ProcessInstanceCleansingService either deletes or archives process instances asynchronously.
+ * <p>
+ * Completed process instances are collected and archived or deleted in batches of 
+ * <code>core.cleansingBatchSize</code> instances per transaction. A batch is written when 
+ * it is full or <code>core.cleansingBatchTimeout</code> milliseconds after its first instance 
+ * arrived. The number of instances cleansed per second is limited by 
+ * <code>core.cleansingMaxInstancesPerSecond</code> (0 for no limit), so that cleansing does 
+ * not starve the process execution. Several cleansing actors can work in parallel, the 
+ * instances are partitioned by their process instance id.
+ * <p>
+ * If a batch fails, its instances are cleansed one by one, so that a single bad instance 
+ * does not discard the others (they have already been taken from the mailbox). The pending 
+ * instances are sent back to the mailbox if the actor is restarted.
  * 
  * @author christopher köster
  * 
@@ -43,18 +68,67 @@ public class ProcessInstanceCleansingService extends UntypedActor {
 	static final Logger LOG = LoggerFactory
 			.getLogger(ProcessInstanceCleansingService.class);
 	
+	/** The durations of the archive batches. */
+	static final Histogram ARCHIVE_BATCH_HISTOGRAM = MetricsRegistry.getHistogram("cleansing.archiveBatch");
+	
+	/** The durations of the deletion batches. */
+	static final Histogram DELETE_BATCH_HISTOGRAM = MetricsRegistry.getHistogram("cleansing.deleteBatch");
+	
 	@Autowired
 	private ProcessInstanceMediatorService processInstanceMediatorService;
 	
 	private DataObjectHandling dataObjectService = new DataObjectHandling();
 	
+	/** The maximum number of process instances cleansed in one transaction. */
+	@Value("${core.cleansingBatchSize}")
+	private int batchSize;
+	
+	/** The maximum time in milliseconds a process instance waits for its batch to be cleansed. */
+	@Value("${core.cleansingBatchTimeout}")
+	private long batchTimeout;
+	
+	/** The maximum number of process instances cleansed per second (0 for no limit). */
+	@Value("${core.cleansingMaxInstancesPerSecond}")
+	private int maxInstancesPerSecond;
+	
+	/** The process instances waiting to be archived. */
+	private LinkedList<ArchiveMessage> pendingArchives = new LinkedList<ArchiveMessage>();
+	
+	/** The process instances waiting to be deleted. */
+	private LinkedList<DeletionMessage> pendingDeletions = new LinkedList<DeletionMessage>();
+	
+	/** The number of the current flush (used to ignore outdated flush messages). */
+	private long flushNumber;
+	
+	/** True if a flush message for the current flush number has been scheduled. */
+	private boolean flushScheduled;
+	
+	/** The earliest time (in ms) the next batch may be cleansed without exceeding the rate limit. */
+	private long nextFlushTime;
+	
 	public ProcessInstanceCleansingService() {
 		
 	}
+	
+	/**
+	 * Creates a cleansing service with the given settings.
+	 *
+	 * @param processInstanceMediatorService the process instance mediator service
+	 * @param batchSize the maximum number of process instances cleansed in one transaction
+	 * @param batchTimeout the maximum time in milliseconds a process instance waits for its batch
+	 * @param maxInstancesPerSecond the maximum number of process instances cleansed per second (0 for no limit)
+	 */
+	ProcessInstanceCleansingService(ProcessInstanceMediatorService processInstanceMediatorService, 
+			int batchSize, long batchTimeout, int maxInstancesPerSecond) {
+		this.processInstanceMediatorService = processInstanceMediatorService;
+		this.batchSize = batchSize;
+		this.batchTimeout = batchTimeout;
+		this.maxInstancesPerSecond = maxInstancesPerSecond;
+	}
 
 	/**
-	 * On receiving of a MetaDataMessage this actor will write the meta data to
-	 * the process instance node
+	 * On receiving an {@link ArchiveMessage} or a {@link DeletionMessage} this actor 
+	 * will queue the process instance for archiving or deletion.
 	 */
 	@Override
 	public void onReceive(Object message) {
@@ -63,25 +137,181 @@ public class ProcessInstanceCleansingService extends UntypedActor {
 		
 		// the handling of the data objects saved by a process instance must be evaluated, see redmine #113
 		if (message instanceof ArchiveMessage) {
-			processInstanceMediatorService.archiveProcessInstance(
-					((ArchiveMessage) message).getUniqueProcessId(),
-					((ArchiveMessage) message).getProcessInstanceId(), 
-					((ArchiveMessage) message).getEndTime());
-			LOG.debug(String.format("Archived process instance with instance id '%s'", ((ArchiveMessage) message).getProcessInstanceId()));
+			pendingArchives.add((ArchiveMessage) message);
+			this.scheduleFlush();
 		} else if (message instanceof DeletionMessage) {
-			processInstanceMediatorService.deleteProcessInstance(
-					((DeletionMessage) message).getUniqueProcessId(),
-					((DeletionMessage) message).getProcessInstanceId());
-			
-			for (String dataObjectId : ((DeletionMessage) message).getDataObjectIds()) {
-				this.getDataObjectService().deleteObject(((DeletionMessage) message).getUniqueProcessId(), 
-						dataObjectId, ((DeletionMessage) message).getProcessInstanceId());
+			pendingDeletions.add((DeletionMessage) message);
+			this.scheduleFlush();
+		} else if (message instanceof FlushMessage) {
+			if (((FlushMessage) message).getFlushNumber() == flushNumber) {
+				this.flush();
 			}
-			LOG.debug(String.format("Deleted process instance with instance id '%s'", ((ArchiveMessage) message).getProcessInstanceId()));
 		} else {
 			unhandled(message);
 		}
 	}
+	
+	/**
+	 * Sends the pending process instances back to the mailbox, so that they are not lost 
+	 * with the state of the failed actor.
+	 */
+	@Override
+	public void preRestart(Throwable reason, Option<Object> message) throws Exception {
+		List<ArchiveMessage> archives = new ArrayList<ArchiveMessage>(pendingArchives);
+		List<DeletionMessage> deletions = new ArrayList<DeletionMessage>(pendingDeletions);
+		pendingArchives.clear();
+		pendingDeletions.clear();
+		
+		for (ArchiveMessage archive : archives) {
+			this.getSelf().tell(archive, this.getSelf());
+		}
+		for (DeletionMessage deletion : deletions) {
+			this.getSelf().tell(deletion, this.getSelf());
+		}
+		super.preRestart(reason, message);
+	}
+	
+	@Override
+	public void postStop() {
+		while (this.getPendingCount() > 0) {
+			this.flush();
+		}
+	}
+	
+	/**
+	 * Flush the pending process instances now if a batch is full and the rate limit allows it, 
+	 * or schedule a flush for later.
+	 */
+	private void scheduleFlush() {
+		long now = Clock.getClock().currentTimeMillis();
+		if (this.getPendingCount() >= batchSize && now >= nextFlushTime) {
+			this.flush();
+		} else if (!flushScheduled) {
+			long delay = Math.max(this.getPendingCount() >= batchSize ? 0 : batchTimeout, nextFlushTime - now);
+			this.schedule(delay, new FlushMessage(flushNumber));
+			flushScheduled = true;
+		}
+	}
+	
+	/**
+	 * Sends a flush message to this actor after a delay.
+	 *
+	 * @param delay the delay in milliseconds
+	 * @param flushMessage the flush message
+	 */
+	void schedule(long delay, FlushMessage flushMessage) {
+		this.getContext().system().scheduler().scheduleOnce(
+				Duration.create(delay, TimeUnit.MILLISECONDS), 
+				this.getSelf(), flushMessage, 
+				this.getContext().dispatcher());
+	}
+	
+	/**
+	 * Archive and delete the next batch of pending process instances.
+	 */
+	private void flush() {
+		flushNumber++;
+		flushScheduled = false;
+		
+		List<ArchiveMessage> archives = new ArrayList<ArchiveMessage>();
+		while (!pendingArchives.isEmpty() && archives.size() < batchSize) {
+			archives.add(pendingArchives.poll());
+		}
+		List<DeletionMessage> deletions = new ArrayList<DeletionMessage>();
+		while (!pendingDeletions.isEmpty() && archives.size() + deletions.size() < batchSize) {
+			deletions.add(pendingDeletions.poll());
+		}
+		
+		if (!archives.isEmpty()) {
+			long start = System.nanoTime();
+			try {
+				processInstanceMediatorService.archiveProcessInstances(archives);
+			} catch (RuntimeException e) {
+				LOG.warn(String.format("Archiving %s process instances failed, retrying them one by one.", archives.size()), e);
+				this.archiveEach(archives);
+			}
+			ARCHIVE_BATCH_HISTOGRAM.recordSince(start);
+			LOG.debug(String.format("Archived %s process instances", archives.size()));
+		}
+		
+		if (!deletions.isEmpty()) {
+			long start = System.nanoTime();
+			try {
+				processInstanceMediatorService.deleteProcessInstances(deletions);
+				for (DeletionMessage deletion : deletions) {
+					this.deleteDataObjects(deletion);
+				}
+			} catch (RuntimeException e) {
+				LOG.warn(String.format("Deleting %s process instances failed, retrying them one by one.", deletions.size()), e);
+				this.deleteEach(deletions);
+			}
+			DELETE_BATCH_HISTOGRAM.recordSince(start);
+			LOG.debug(String.format("Deleted %s process instances", deletions.size()));
+		}
+		
+		// throttle the next batch
+		if (maxInstancesPerSecond > 0) {
+			nextFlushTime = Clock.getClock().currentTimeMillis() + (archives.size() + deletions.size()) * 1000L / maxInstancesPerSecond;
+		}
+		
+		if (this.getPendingCount() > 0) {
+			this.scheduleFlush();
+		}
+	}
+	
+	/**
+	 * Archive the process instances in a transaction each, skipping the ones that fail.
+	 *
+	 * @param archives the archive messages
+	 */
+	private void archiveEach(List<ArchiveMessage> archives) {
+		for (ArchiveMessage archive : archives) {
+			try {
+				processInstanceMediatorService.archiveProcessInstances(Collections.singletonList(archive));
+			} catch (RuntimeException e) {
+				LOG.error(String.format("Discarding process instance %s, it could not be archived.", 
+						archive.getProcessInstanceId()), e);
+			}
+		}
+	}
+	
+	/**
+	 * Delete the process instances in a transaction each, skipping the ones that fail.
+	 *
+	 * @param deletions the deletion messages
+	 */
+	private void deleteEach(List<DeletionMessage> deletions) {
+		for (DeletionMessage deletion : deletions) {
+			try {
+				processInstanceMediatorService.deleteProcessInstances(Collections.singletonList(deletion));
+				this.deleteDataObjects(deletion);
+			} catch (RuntimeException e) {
+				LOG.error(String.format("Discarding process instance %s, it could not be deleted.", 
+						deletion.getProcessInstanceId()), e);
+			}
+		}
+	}
+	
+	/**
+	 * Delete the data objects of a deleted process instance.
+	 *
+	 * @param deletion the deletion message
+	 */
+	private void deleteDataObjects(DeletionMessage deletion) {
+		for (String dataObjectId : deletion.getDataObjectIds()) {
+			this.getDataObjectService().deleteObject(deletion.getUniqueProcessId(), 
+					dataObjectId, deletion.getProcessInstanceId());
+		}
+	}
+	
+	/**
+	 * Gets the number of process instances waiting to be cleansed.
+	 *
+	 * @return the pending count
+	 */
+	private int getPendingCount() {
+		return pendingArchives.size() + pendingDeletions.size();
+	}
 
 	/**
 	 * Gets the data object service.
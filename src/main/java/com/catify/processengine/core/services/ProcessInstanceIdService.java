@@ -0,0 +1,181 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * The ProcessInstanceIdService creates the ids of new process instances with the 
+ * {@link ProcessInstanceIdGenerator} set in the spring context. The built-in generators are 
+ * 'timeordered' ({@link TimeOrderedProcessInstanceIdGenerator}) and 'uuid' 
+ * ({@link UuidProcessInstanceIdGenerator}), other generators can be set by their class name. 
+ * The time ordered generator stores its high-water mark in the file set by 
+ * 'core.processInstanceIdHighWaterMarkFile', so it never issues an id twice across restarts.
+ * <p>
+ * A process can choose its own generator with a &lt;processInstanceIdGenerator name="..."/&gt; 
+ * extension element, which is registered before the actors of the process are created. Each 
+ * generator is created once and shared by all processes using it.
+ * <p>
+ * Note: the default generator is 'timeordered', so new process instance ids have the form 
+ * '&lt;node id&gt;-&lt;13 base 32 characters&gt;' instead of being UUIDs as in earlier versions. 
+ * Instances started before the change keep their UUIDs. Clients that parse or validate process 
+ * instance ids as UUIDs have to set 'core.processInstanceIdGenerator' to 'uuid' (or the 
+ * processes they start to the 'uuid' generator).
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class ProcessInstanceIdService {
+
+	static final Logger LOG = LoggerFactory.getLogger(ProcessInstanceIdService.class);
+	
+	public static final String TIME_ORDERED_GENERATOR = "timeordered";
+	
+	public static final String UUID_GENERATOR = "uuid";
+	
+	/** The generator name or class set in the spring context. */
+	@Value("${core.processInstanceIdGenerator}")
+	private String generatorName;
+	
+	/** The id of this process engine node. */
+	@Value("${core.nodeId}")
+	private String nodeId;
+	
+	/** The file holding the high-water mark of the time ordered generator. */
+	@Value("${core.processInstanceIdHighWaterMarkFile}")
+	private String highWaterMarkFile;
+	
+	/** The generator of processes without their own generator. */
+	private ProcessInstanceIdGenerator generator;
+	
+	/** The created generators, mapped by generator name or class. */
+	private final ConcurrentMap<String, ProcessInstanceIdGenerator> generators = new ConcurrentHashMap<String, ProcessInstanceIdGenerator>();
+	
+	/** The generators of processes with their own generator, mapped by unique process id. */
+	private final ConcurrentMap<String, ProcessInstanceIdGenerator> processGenerators = new ConcurrentHashMap<String, ProcessInstanceIdGenerator>();
+	
+	public ProcessInstanceIdService() {
+	}
+	
+	/**
+	 * Creates a process instance id service.
+	 *
+	 * @param generatorName the name or class of the generator of processes without their own generator
+	 * @param nodeId the id of this process engine node
+	 * @param highWaterMarkFile the file holding the high-water mark of the time ordered generator
+	 */
+	ProcessInstanceIdService(String generatorName, String nodeId, String highWaterMarkFile) {
+		this.generatorName = generatorName;
+		this.nodeId = nodeId;
+		this.highWaterMarkFile = highWaterMarkFile;
+	}
+	
+	/**
+	 * Creates the generator after the @Value annotated fields have been filled.
+	 */
+	@PostConstruct
+	void init() {
+		this.generator = this.getGenerator(generatorName);
+		LOG.debug(String.format("Using %s to create process instance ids", generator.getClass().getSimpleName()));
+	}
+	
+	/**
+	 * Registers the generator of a process. Processes without a generator (null) use 
+	 * the generator set in the spring context.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param generatorName the generator name or class, may be null
+	 */
+	public void registerProcess(String uniqueProcessId, String generatorName) {
+		if (generatorName == null) {
+			processGenerators.remove(uniqueProcessId);
+		} else {
+			ProcessInstanceIdGenerator processGenerator = this.getGenerator(generatorName);
+			processGenerators.put(uniqueProcessId, processGenerator);
+			LOG.debug(String.format("Using %s to create process instance ids of %s", 
+					processGenerator.getClass().getSimpleName(), uniqueProcessId));
+		}
+	}
+	
+	/**
+	 * Creates a new process instance id.
+	 *
+	 * @param uniqueProcessId the unique process id of the process to start
+	 * @return the process instance id
+	 */
+	public String nextProcessInstanceId(String uniqueProcessId) {
+		ProcessInstanceIdGenerator processGenerator = processGenerators.get(uniqueProcessId);
+		return processGenerator == null ? generator.nextId() : processGenerator.nextId();
+	}
+	
+	/**
+	 * Gets (or creates) a generator, so that generators sharing state (like the high-water 
+	 * mark file of the time ordered generator) exist only once.
+	 *
+	 * @param generatorName the generator name or class
+	 * @return the process instance id generator
+	 */
+	private synchronized ProcessInstanceIdGenerator getGenerator(String generatorName) {
+		ProcessInstanceIdGenerator namedGenerator = generators.get(generatorName);
+		if (namedGenerator == null) {
+			namedGenerator = createGenerator(generatorName, nodeId, new File(highWaterMarkFile));
+			generators.put(generatorName, namedGenerator);
+		}
+		return namedGenerator;
+	}
+	
+	/**
+	 * Creates a process instance id generator.
+	 *
+	 * @param generatorName the generator name or the class name of a {@link ProcessInstanceIdGenerator} 
+	 * with a default constructor
+	 * @param nodeId the id of this process engine node
+	 * @param highWaterMarkFile the file holding the high-water mark of the time ordered generator
+	 * @return the process instance id generator
+	 */
+	static ProcessInstanceIdGenerator createGenerator(String generatorName, String nodeId, File highWaterMarkFile) {
+		if (TIME_ORDERED_GENERATOR.equals(generatorName)) {
+			try {
+				return new TimeOrderedProcessInstanceIdGenerator(nodeId, highWaterMarkFile);
+			} catch (IOException e) {
+				throw new IllegalStateException(String.format("Could not read the process instance id high-water mark from %s", highWaterMarkFile), e);
+			} catch (NumberFormatException e) {
+				throw new IllegalStateException(String.format("Invalid process instance id high-water mark in %s", highWaterMarkFile), e);
+			}
+		} else if (UUID_GENERATOR.equals(generatorName)) {
+			return new UuidProcessInstanceIdGenerator();
+		}
+		
+		try {
+			return (ProcessInstanceIdGenerator) Class.forName(generatorName).newInstance();
+		} catch (Exception e) {
+			throw new IllegalArgumentException(String.format("Could not create the process instance id generator '%s'", generatorName), e);
+		}
+	}
+}
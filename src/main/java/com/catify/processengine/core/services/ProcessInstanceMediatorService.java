@@ -17,20 +17,33 @@
  */
 package com.catify.processengine.core.services;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Scope;
 import org.springframework.data.neo4j.support.Neo4jTemplate;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import com.catify.processengine.core.data.history.ColumnarHistoryStore;
+import com.catify.processengine.core.data.history.FlowNodeHistoryRecord;
+import com.catify.processengine.core.data.history.HistoryQuery;
+import com.catify.processengine.core.data.history.HistoryRecord;
+import com.catify.processengine.core.data.history.HistoryRecordHandler;
 import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.data.model.entities.FlowNode;
 import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
@@ -38,9 +51,14 @@ import com.catify.processengine.core.data.model.entities.ProcessInstanceNode;
 import com.catify.processengine.core.data.model.entities.ProcessNode;
 import com.catify.processengine.core.data.services.FlowNodeInstanceRepositoryService;
 import com.catify.processengine.core.data.services.FlowNodeRepositoryService;
+import com.catify.processengine.core.data.services.IdService;
 import com.catify.processengine.core.data.services.ProcessInstanceNodeRepositoryService;
 import com.catify.processengine.core.data.services.ProcessNodeRepositoryService;
+import com.catify.processengine.core.messages.ArchiveMessage;
+import com.catify.processengine.core.messages.DeletionMessage;
+import com.catify.processengine.core.messages.MetaDataMessage;
 import com.catify.processengine.core.processdefinition.jaxb.TStartEvent;
+import com.catify.processengine.core.util.Clock;
 
 /**
  * The ProcessInstanceMediatorService handles the data access between node
@@ -59,6 +77,9 @@ public class ProcessInstanceMediatorService {
 
 	static final Logger LOG = LoggerFactory.getLogger(ProcessInstanceMediatorService.class);
 	
+	/** The archive implementation that writes to the {@link ColumnarHistoryStore}. */
+	public static final String COLUMNAR_ARCHIVE = "columnar";
+	
 	@Autowired 
 	private Neo4jTemplate neo4jTemplate;
 	
@@ -73,11 +94,21 @@ public class ProcessInstanceMediatorService {
 	
 	@Autowired 
 	private FlowNodeInstanceRepositoryService flowNodeInstanceRepositoryService;
+	
+	@Autowired
+	private ColumnarHistoryStore columnarHistoryStore;
+	
+	/** The archive implementation, either 'graph' (archive nodes in the graph db) or 'columnar' (see {@link ColumnarHistoryStore}). */
+	@Value("${archive.implementation}")
+	private String archiveImplementation;
 
 	private ProcessInstanceNode processInstanceNode;
 	
 	private ProcessNode process;
 	
+	/** The archived flow nodes, mapped by the unique flow node id of their running flow node. */
+	private Map<String, FlowNode> archivedFlowNodes = new HashMap<String, FlowNode>();
+	
 	public ProcessInstanceMediatorService() {
 
 	}
@@ -170,7 +201,7 @@ public class ProcessInstanceMediatorService {
 			ProcessNode process, Set<FlowNode> flowNodes, int loopCount) {
 		// create a process instance node
 		ProcessInstanceNode processInstanceNode =  new ProcessInstanceNode(process,
-				processInstanceId, new Date());
+				processInstanceId, Clock.now());
 		
 		// create relationships between process instance node and start node instances
 		// TODO: this is a pretty costly operation and should be evaluated
@@ -275,6 +306,10 @@ public class ProcessInstanceMediatorService {
 	 */
 	@Transactional
 	public void archiveProcessInstance(String uniqueProcessId, String processInstanceId, Date endTime) {	
+		if (COLUMNAR_ARCHIVE.equals(archiveImplementation)) {
+			this.archiveProcessInstances(Collections.singletonList(new ArchiveMessage(uniqueProcessId, processInstanceId, endTime)));
+			return;
+		}
 		
 		// save the flow node instances to their archived flow nodes
 		Iterable<Map<String,Object>> result = flowNodeInstanceRepositoryService.findAllFlowNodeInstancesAndFlowNodeIds(uniqueProcessId, processInstanceId);
@@ -282,8 +317,7 @@ public class ProcessInstanceMediatorService {
 			FlowNodeInstance flowNodeInstance = neo4jTemplate.convert(map.get("flownodeinstance"), FlowNodeInstance.class);
 			String flowNodeId = (String) map.get("flownode.uniqueFlowNodeId");
 			
-			FlowNode archivedFlowNode = flowNodeRepositoryService.findArchivedByRunningUniqueFlowNodeId(flowNodeId);
-			flowNodeInstance.moveToArchive(archivedFlowNode, processInstanceId);
+			flowNodeInstance.moveToArchive(getArchivedFlowNode(flowNodeId), processInstanceId);
 		}
 		
 		// save the process instance node to the archived process node 
@@ -295,6 +329,181 @@ public class ProcessInstanceMediatorService {
 		processInstanceNode.setProcessInstanceEndTime(endTime);
 	}
 	
+	/**
+	 * Archive several process instances in one transaction.
+	 *
+	 * @param archiveMessages the archive messages holding the process instances to archive
+	 */
+	@Transactional
+	public void archiveProcessInstances(Collection<ArchiveMessage> archiveMessages) {
+		if (COLUMNAR_ARCHIVE.equals(archiveImplementation)) {
+			this.archiveProcessInstancesToHistoryStore(archiveMessages);
+			return;
+		}
+		
+		for (ArchiveMessage archiveMessage : archiveMessages) {
+			this.archiveProcessInstance(archiveMessage.getUniqueProcessId(), 
+					archiveMessage.getProcessInstanceId(), archiveMessage.getEndTime());
+		}
+	}
+	
+	/**
+	 * Write process instances to the {@link ColumnarHistoryStore} and delete them from the graph db.
+	 * The instances stay in the graph db if they could not be written. 
+	 * <p>
+	 * The segments are written and synced before the instances are deleted, but only become 
+	 * visible after the transaction has committed. If the transaction is rolled back, they are 
+	 * discarded, so instances that are archived again (e.g. one by one after a failed batch) 
+	 * are not stored twice.
+	 *
+	 * @param archiveMessages the archive messages holding the process instances to archive
+	 */
+	private void archiveProcessInstancesToHistoryStore(Collection<ArchiveMessage> archiveMessages) {
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		for (ArchiveMessage archiveMessage : archiveMessages) {
+			records.add(this.createHistoryRecord(archiveMessage.getUniqueProcessId(), 
+					archiveMessage.getProcessInstanceId(), archiveMessage.getEndTime()));
+		}
+		
+		final List<File> segments;
+		try {
+			segments = columnarHistoryStore.prepare(records);
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not write process instances to the history store", e);
+		}
+		
+		try {
+			for (ArchiveMessage archiveMessage : archiveMessages) {
+				this.deleteProcessInstance(archiveMessage.getUniqueProcessId(), archiveMessage.getProcessInstanceId());
+			}
+		} catch (RuntimeException e) {
+			columnarHistoryStore.discard(segments);
+			throw e;
+		}
+		
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					if (status == STATUS_COMMITTED) {
+						completeSegments(segments);
+					} else {
+						columnarHistoryStore.discard(segments);
+					}
+				}
+			});
+		} else {
+			this.completeSegments(segments);
+		}
+	}
+	
+	/**
+	 * Makes the prepared history store segments of archived process instances visible.
+	 *
+	 * @param segments the prepared segments
+	 */
+	private void completeSegments(List<File> segments) {
+		try {
+			columnarHistoryStore.complete(segments);
+		} catch (IOException e) {
+			LOG.error(String.format("Could not complete the history store segments %s, their process instances "
+					+ "have already been deleted from the graph db", segments), e);
+		}
+	}
+	
+	/**
+	 * Passes all archived process instances of a process to a handler. Depending on the 
+	 * archive implementation the instances are read from the {@link ColumnarHistoryStore} 
+	 * or from the archive nodes in the graph db. The instances are read one after another, 
+	 * so the memory needed does not depend on the number of archived instances.
+	 *
+	 * @param uniqueProcessId the unique process id (of the running process)
+	 * @param handler the handler receiving the history records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public void scanArchivedProcessInstances(String uniqueProcessId, HistoryRecordHandler handler) throws IOException {
+		if (COLUMNAR_ARCHIVE.equals(archiveImplementation)) {
+			columnarHistoryStore.scan(new HistoryQuery(uniqueProcessId, null, null), handler);
+			return;
+		}
+		
+		String archivedUniqueProcessId = IdService.ARCHIVEPREFIX + uniqueProcessId;
+		for (String processInstanceId : processInstanceNodeRepositoryService.findArchivedProcessInstanceIds(uniqueProcessId)) {
+			ProcessInstanceNode archivedProcessInstanceNode = processInstanceNodeRepositoryService
+					.findArchivedProcessInstanceNode(uniqueProcessId, processInstanceId);
+			handler.handle(this.createHistoryRecord(uniqueProcessId, archivedUniqueProcessId, archivedProcessInstanceNode, 
+					processInstanceId, archivedProcessInstanceNode.getProcessInstanceEndTime()));
+		}
+	}
+	
+	/**
+	 * Creates the history record of a running process instance.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param processInstanceId the process instance id
+	 * @param endTime the process instance end time
+	 * @return the history record
+	 */
+	private HistoryRecord createHistoryRecord(String uniqueProcessId, String processInstanceId, Date endTime) {
+		return this.createHistoryRecord(uniqueProcessId, uniqueProcessId, 
+				loadProcessInstanceNode(uniqueProcessId, processInstanceId), processInstanceId, endTime);
+	}
+	
+	/**
+	 * Creates the history record of a process instance.
+	 *
+	 * @param uniqueProcessId the unique process id of the running process
+	 * @param graphUniqueProcessId the unique process id of the process node holding the instance 
+	 * (which is prefixed for archived instances)
+	 * @param processInstanceNode the process instance node
+	 * @param processInstanceId the process instance id
+	 * @param endTime the process instance end time
+	 * @return the history record
+	 */
+	private HistoryRecord createHistoryRecord(String uniqueProcessId, String graphUniqueProcessId, 
+			ProcessInstanceNode processInstanceNode, String processInstanceId, Date endTime) {
+		HistoryRecord record = new HistoryRecord(uniqueProcessId, processInstanceId, 
+				processInstanceNode.getProcessInstanceStartTime(), endTime);
+		
+		Map<String, String> metaData = new HashMap<String, String>();
+		for (Map.Entry<String, Object> entry : processInstanceNode.getMetaDataProperties().asMap().entrySet()) {
+			metaData.put(entry.getKey(), String.valueOf(entry.getValue()));
+		}
+		record.setMetaData(metaData);
+		
+		Iterable<Map<String,Object>> result = flowNodeInstanceRepositoryService.findAllFlowNodeInstancesAndFlowNodeIds(graphUniqueProcessId, processInstanceId);
+		for (Map<String, Object> map : result) {
+			FlowNodeInstance flowNodeInstance = neo4jTemplate.convert(map.get("flownodeinstance"), FlowNodeInstance.class);
+			String uniqueFlowNodeId = (String) map.get("flownode.uniqueFlowNodeId");
+			if (uniqueFlowNodeId.startsWith(IdService.ARCHIVEPREFIX)) {
+				uniqueFlowNodeId = uniqueFlowNodeId.substring(IdService.ARCHIVEPREFIX.length());
+			}
+			record.addFlowNodeInstance(new FlowNodeHistoryRecord(
+					uniqueFlowNodeId, 
+					flowNodeInstance.getNodeInstanceState(), 
+					flowNodeInstance.getLoopCount(), 
+					flowNodeInstance.getNodeInstanceStartTime(), 
+					flowNodeInstance.getNodeInstanceEndTime()));
+		}
+		return record;
+	}
+	
+	/**
+	 * Gets the archived flow node of a running flow node. The archived flow nodes are 
+	 * cached, because they are needed for every flow node instance to archive.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id of the running flow node
+	 * @return the archived flow node
+	 */
+	private FlowNode getArchivedFlowNode(String uniqueFlowNodeId) {
+		FlowNode archivedFlowNode = archivedFlowNodes.get(uniqueFlowNodeId);
+		if (archivedFlowNode == null) {
+			archivedFlowNode = flowNodeRepositoryService.findArchivedByRunningUniqueFlowNodeId(uniqueFlowNodeId);
+			archivedFlowNodes.put(uniqueFlowNodeId, archivedFlowNode);
+		}
+		return archivedFlowNode;
+	}
+	
 	/**
 	 * Delete a process instance.
 	 * <p> The {@link ProcessInstanceNode} and the {@link FlowNodeInstance}s will be deleted via cypher.
@@ -305,6 +514,18 @@ public class ProcessInstanceMediatorService {
 	public void deleteProcessInstance(String uniqueProcessId, String processInstanceId) {
 		flowNodeInstanceRepositoryService.deleteAllFlowNodeInstanceNodes(uniqueProcessId, processInstanceId);
 	}
+	
+	/**
+	 * Delete several process instances in one transaction.
+	 *
+	 * @param deletionMessages the deletion messages holding the process instances to delete
+	 */
+	@Transactional
+	public void deleteProcessInstances(Collection<DeletionMessage> deletionMessages) {
+		for (DeletionMessage deletionMessage : deletionMessages) {
+			this.deleteProcessInstance(deletionMessage.getUniqueProcessId(), deletionMessage.getProcessInstanceId());
+		}
+	}
 
 	/**
 	 * Sets the process instance start time.
@@ -331,7 +552,9 @@ public class ProcessInstanceMediatorService {
 	}
 	
 	/**
-	 * Sets the meta data properties.
+	 * Sets the meta data properties. Meta data of process instances that are neither running 
+	 * nor archived in the graph (e.g. deleted or archived to the columnar history store) are 
+	 * skipped.
 	 *
 	 * @param processInstanceId the process instance id
 	 * @param metaData the meta data
@@ -345,6 +568,11 @@ public class ProcessInstanceMediatorService {
 			if (processInstanceNode == null) {
 				processInstanceNode = processInstanceNodeRepositoryService.findArchivedProcessInstanceNode(uniqueProcessId, processInstanceId);
 			}
+			if (processInstanceNode == null) {
+				LOG.warn(String.format("Skipping meta data of process instance %s of process %s, the instance does not exist in the graph.", 
+						processInstanceId, uniqueProcessId));
+				return;
+			}
 	
 			processInstanceNode.setMetaDataProperties(processInstanceNode
 					.getMetaDataProperties().createFrom(metaData));
@@ -355,6 +583,19 @@ public class ProcessInstanceMediatorService {
 		}
 	}
 
+	/**
+	 * Sets the meta data properties of several process instances in one transaction.
+	 *
+	 * @param metaDataMessages the meta data messages holding the process instances and their meta data
+	 */
+	@Transactional
+	public void setMetaDataProperties(Collection<MetaDataMessage> metaDataMessages) {
+		for (MetaDataMessage metaDataMessage : metaDataMessages) {
+			this.setMetaDataProperties(metaDataMessage.getUniqueProcessID(), 
+					metaDataMessage.getProcessInstanceId(), metaDataMessage.getMetaData());
+		}
+	}
+
 	/**
 	 * Load process instance node. The method will try to avoid unnecessary db lookups if possible.
 	 *
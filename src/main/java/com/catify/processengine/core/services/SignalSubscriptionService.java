@@ -0,0 +1,313 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import akka.actor.ActorRef;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+import com.catify.processengine.core.data.services.FlowNodeInstanceRepositoryService;
+import com.catify.processengine.core.messages.BatchTriggerMessage;
+
+/**
+ * The SignalSubscriptionService is an index of all signal subscriptions of the
+ * process engine. It maps a signal reference to the signal start events
+ * listening to it and to the waiting (flow node, process instance id) pairs of
+ * the signal catch events. Throwing a signal is therefore a lookup instead of a
+ * query for all active flow node instances of every catching node.
+ * <p>
+ * The index is maintained by the signal event definitions on activation,
+ * deactivation and trigger. It only holds in memory state, the persisted
+ * form are the ACTIVE states of the catch event instances (a second persisted 
+ * copy of the subscriptions would have to be kept consistent with these states 
+ * in every transaction of a catch event). After the engine has been started, the 
+ * persisted waiting instances of a catch event are loaded into the index when 
+ * its signal is thrown for the first time, so signals that are not thrown in an 
+ * engine run cause no queries. The waiting instances of a catch event are 
+ * delivered in batches (see {@link #getTriggerBatches(String, int)}).
+ * 
+ * @author christopher köster
+ * 
+ */
+@Component
+public class SignalSubscriptionService {
+
+	static final Logger LOG = LoggerFactory.getLogger(SignalSubscriptionService.class);
+
+	/** The signal start events, mapped by signal reference. */
+	private final ConcurrentMap<String, Set<ActorRef>> startEvents = new ConcurrentHashMap<String, Set<ActorRef>>();
+
+	/** The waiting process instance ids, mapped by signal reference and catch event node. */
+	private final ConcurrentMap<String, ConcurrentMap<ActorRef, Set<String>>> subscriptions = new ConcurrentHashMap<String, ConcurrentMap<ActorRef, Set<String>>>();
+	
+	/** The unique flow node ids of the registered catch events. */
+	private final Set<String> registeredCatchEvents = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	
+	/** The registered catch events whose persisted instances have not been loaded yet, mapped by signal reference. */
+	private final ConcurrentMap<String, Queue<CatchEvent>> unrecoveredCatchEvents = new ConcurrentHashMap<String, Queue<CatchEvent>>();
+	
+	@Autowired
+	private FlowNodeInstanceRepositoryService flowNodeInstanceRepositoryService;
+
+	/**
+	 * Registers a signal start event, that will create a new process instance
+	 * every time the given signal is thrown.
+	 * 
+	 * @param signalRef the signal reference
+	 * @param eventActorRef the {@link ActorRef} of the start event node
+	 */
+	public void registerStartEvent(String signalRef, ActorRef eventActorRef) {
+		Set<ActorRef> actorRefs = startEvents.get(signalRef);
+		if (actorRefs == null) {
+			Set<ActorRef> newActorRefs = Collections.newSetFromMap(new ConcurrentHashMap<ActorRef, Boolean>());
+			actorRefs = startEvents.putIfAbsent(signalRef, newActorRefs);
+			if (actorRefs == null) {
+				actorRefs = newActorRefs;
+			}
+		}
+		actorRefs.add(eventActorRef);
+	}
+
+	/**
+	 * Registers a signal catch event, once per catch event and engine run. Its persisted 
+	 * waiting process instances are loaded into the index when the signal is thrown for 
+	 * the first time (see {@link #getSubscriptions(String)}).
+	 * 
+	 * @param signalRef the signal reference
+	 * @param eventActorRef the {@link ActorRef} of the catch event node
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id of the catch event
+	 * @return true, if the catch event has not been registered before
+	 */
+	public boolean registerCatchEvent(String signalRef, ActorRef eventActorRef, String uniqueProcessId, String uniqueFlowNodeId) {
+		if (!registeredCatchEvents.add(uniqueFlowNodeId)) {
+			return false;
+		}
+		Queue<CatchEvent> catchEvents = unrecoveredCatchEvents.get(signalRef);
+		if (catchEvents == null) {
+			Queue<CatchEvent> newCatchEvents = new ConcurrentLinkedQueue<CatchEvent>();
+			catchEvents = unrecoveredCatchEvents.putIfAbsent(signalRef, newCatchEvents);
+			if (catchEvents == null) {
+				catchEvents = newCatchEvents;
+			}
+		}
+		catchEvents.add(new CatchEvent(eventActorRef, uniqueProcessId, uniqueFlowNodeId));
+		return true;
+	}
+
+	/**
+	 * Subscribes a waiting process instance of a signal catch event.
+	 * 
+	 * @param signalRef the signal reference
+	 * @param eventActorRef the {@link ActorRef} of the catch event node
+	 * @param processInstanceId the process instance id
+	 */
+	public void subscribe(String signalRef, ActorRef eventActorRef, String processInstanceId) {
+		this.getInstanceIds(signalRef, eventActorRef).add(processInstanceId);
+		LOG.debug(String.format("Subscribed instance %s of %s to signal '%s'", processInstanceId, eventActorRef, signalRef));
+	}
+
+	/**
+	 * Subscribes a set of waiting process instances of a signal catch event.
+	 * 
+	 * @param signalRef the signal reference
+	 * @param eventActorRef the {@link ActorRef} of the catch event node
+	 * @param processInstanceIds the process instance ids
+	 */
+	public void subscribeAll(String signalRef, ActorRef eventActorRef, Set<String> processInstanceIds) {
+		this.getInstanceIds(signalRef, eventActorRef).addAll(processInstanceIds);
+	}
+
+	/**
+	 * Removes the subscription of a process instance of a signal catch event.
+	 * 
+	 * @param signalRef the signal reference
+	 * @param eventActorRef the {@link ActorRef} of the catch event node
+	 * @param processInstanceId the process instance id
+	 */
+	public void unsubscribe(String signalRef, ActorRef eventActorRef, String processInstanceId) {
+		Map<ActorRef, Set<String>> nodes = subscriptions.get(signalRef);
+		if (nodes != null) {
+			Set<String> instanceIds = nodes.get(eventActorRef);
+			if (instanceIds != null) {
+				instanceIds.remove(processInstanceId);
+			}
+		}
+	}
+
+	/**
+	 * Gets the signal start events listening to a given signal.
+	 * 
+	 * @param signalRef the signal reference
+	 * @return the start event {@link ActorRef}s (never null)
+	 */
+	public Set<ActorRef> getStartEvents(String signalRef) {
+		Set<ActorRef> actorRefs = startEvents.get(signalRef);
+		if (actorRefs == null) {
+			return Collections.emptySet();
+		}
+		return new HashSet<ActorRef>(actorRefs);
+	}
+
+	/**
+	 * Gets a snapshot of the waiting process instances of all catch events
+	 * listening to a given signal, grouped by catch event node. Catch events
+	 * without waiting instances are omitted. The persisted waiting instances 
+	 * of catch events that have not been recovered yet are loaded first.
+	 * 
+	 * @param signalRef the signal reference
+	 * @return the process instance ids mapped by catch event {@link ActorRef} (never null)
+	 */
+	public Map<ActorRef, Set<String>> getSubscriptions(String signalRef) {
+		this.recover(signalRef);
+		
+		Map<ActorRef, Set<String>> snapshot = new HashMap<ActorRef, Set<String>>();
+		Map<ActorRef, Set<String>> nodes = subscriptions.get(signalRef);
+		if (nodes != null) {
+			for (Map.Entry<ActorRef, Set<String>> entry : nodes.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					snapshot.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Gets the waiting process instances of all catch events listening to a given 
+	 * signal as trigger batches, so that a signal reaches many waiting instances 
+	 * with few messages.
+	 * 
+	 * @param signalRef the signal reference
+	 * @param batchSize the maximum number of process instances per batch
+	 * @return the batches mapped by catch event {@link ActorRef} (never null)
+	 */
+	public Map<ActorRef, List<BatchTriggerMessage>> getTriggerBatches(String signalRef, int batchSize) {
+		Map<ActorRef, List<BatchTriggerMessage>> batches = new HashMap<ActorRef, List<BatchTriggerMessage>>();
+		for (Map.Entry<ActorRef, Set<String>> subscription : this.getSubscriptions(signalRef).entrySet()) {
+			List<BatchTriggerMessage> nodeBatches = new ArrayList<BatchTriggerMessage>();
+			List<String> batch = new ArrayList<String>(Math.min(batchSize, subscription.getValue().size()));
+			for (String processInstanceId : subscription.getValue()) {
+				batch.add(processInstanceId);
+				if (batch.size() == batchSize) {
+					nodeBatches.add(new BatchTriggerMessage(batch, null));
+					batch = new ArrayList<String>(batchSize);
+				}
+			}
+			if (!batch.isEmpty()) {
+				nodeBatches.add(new BatchTriggerMessage(batch, null));
+			}
+			batches.put(subscription.getKey(), nodeBatches);
+		}
+		return batches;
+	}
+	
+	/**
+	 * Loads the persisted waiting process instances of the registered catch events of a 
+	 * signal into the index, once per catch event. Instances that have subscribed in the 
+	 * meantime are kept. Concurrent callers wait for the recovery, so that their snapshot 
+	 * contains the recovered instances.
+	 *
+	 * @param signalRef the signal reference
+	 */
+	private void recover(String signalRef) {
+		Queue<CatchEvent> catchEvents = unrecoveredCatchEvents.get(signalRef);
+		if (catchEvents == null) {
+			return;
+		}
+		synchronized (catchEvents) {
+			CatchEvent catchEvent;
+			while ((catchEvent = catchEvents.peek()) != null) {
+				Set<String> waitingInstanceIds = this.loadWaitingInstances(catchEvent.uniqueProcessId, catchEvent.uniqueFlowNodeId);
+				this.subscribeAll(signalRef, catchEvent.eventActorRef, waitingInstanceIds);
+				catchEvents.poll();
+				LOG.debug(String.format("Recovered %s waiting instances of %s for signal '%s'.", 
+						waitingInstanceIds.size(), catchEvent.uniqueFlowNodeId, signalRef));
+			}
+		}
+	}
+	
+	/**
+	 * Loads the persisted waiting (active) process instances of a catch event.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param uniqueFlowNodeId the unique flow node id of the catch event
+	 * @return the process instance ids
+	 */
+	Set<String> loadWaitingInstances(String uniqueProcessId, String uniqueFlowNodeId) {
+		return flowNodeInstanceRepositoryService.findAllFlowNodeInstancesAtState(
+				uniqueProcessId, uniqueFlowNodeId, NodeInstaceStates.ACTIVE_STATE);
+	}
+
+	/**
+	 * Gets (or creates) the live set of waiting process instance ids of a catch event.
+	 */
+	private Set<String> getInstanceIds(String signalRef, ActorRef eventActorRef) {
+		ConcurrentMap<ActorRef, Set<String>> nodes = subscriptions.get(signalRef);
+		if (nodes == null) {
+			ConcurrentMap<ActorRef, Set<String>> newNodes = new ConcurrentHashMap<ActorRef, Set<String>>();
+			nodes = subscriptions.putIfAbsent(signalRef, newNodes);
+			if (nodes == null) {
+				nodes = newNodes;
+			}
+		}
+		Set<String> instanceIds = nodes.get(eventActorRef);
+		if (instanceIds == null) {
+			Set<String> newInstanceIds = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+			instanceIds = nodes.putIfAbsent(eventActorRef, newInstanceIds);
+			if (instanceIds == null) {
+				instanceIds = newInstanceIds;
+			}
+		}
+		return instanceIds;
+	}
+	
+	/**
+	 * A registered catch event whose persisted waiting instances have not been loaded yet.
+	 */
+	private static class CatchEvent {
+		
+		private final ActorRef eventActorRef;
+		
+		private final String uniqueProcessId;
+		
+		private final String uniqueFlowNodeId;
+		
+		CatchEvent(ActorRef eventActorRef, String uniqueProcessId, String uniqueFlowNodeId) {
+			this.eventActorRef = eventActorRef;
+			this.uniqueProcessId = uniqueProcessId;
+			this.uniqueFlowNodeId = uniqueFlowNodeId;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Creates time ordered process instance ids of the form '&lt;node id&gt;-&lt;13 characters&gt;'. 
+ * The characters are a fixed width base 32 encoding of a 64 bit value holding the current 
+ * time in milliseconds and a 12 bit sequence, so ids of the same node sort in the order of 
+ * their creation and new ids are appended at the end of the indexes instead of being 
+ * scattered over them.
+ * <p>
+ * The value is advanced with a compare-and-set loop, so the generator is lock-free and does 
+ * not need a (shared) random source. If more than 4096 ids are created within one millisecond, 
+ * the following milliseconds are borrowed, which keeps the ids unique and monotonic.
+ * <p>
+ * Values never go backwards, not even after a restart or when the wall clock is set back: 
+ * the generator reserves values ahead of time by writing a high-water mark to a file before 
+ * it issues a value beyond the previous one, and starts after the stored mark. A reservation 
+ * covers some seconds of ids, so the file is written rarely.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class TimeOrderedProcessInstanceIdGenerator implements ProcessInstanceIdGenerator {
+
+	static final int SEQUENCE_BITS = 12;
+	
+	/** The time in millis covered by one reservation of values. */
+	static final long RESERVATION_MILLIS = TimeUnit.SECONDS.toMillis(10);
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	/** Crockford's base 32 alphabet, which is in ascii order. */
+	private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+	
+	private static final int ENCODED_LENGTH = 13;
+	
+	private final String prefix;
+	
+	/** The file holding the high-water mark (null if the values are not persisted). */
+	private final File highWaterMarkFile;
+	
+	private final AtomicLong lastValue = new AtomicLong();
+	
+	/** The values below this one may be issued (they are covered by the stored high-water mark). */
+	private volatile long reserved;
+	
+	/**
+	 * Instantiates a new time ordered process instance id generator, which does not persist its 
+	 * high-water mark (ids may repeat after a restart if the wall clock has been set back).
+	 *
+	 * @param nodeId the id of this process engine node, which must be unique in a cluster
+	 */
+	public TimeOrderedProcessInstanceIdGenerator(String nodeId) {
+		this.prefix = nodeId + "-";
+		this.highWaterMarkFile = null;
+		this.reserved = Long.MAX_VALUE;
+	}
+	
+	/**
+	 * Instantiates a new time ordered process instance id generator, which starts after the 
+	 * high-water mark stored in the given file.
+	 *
+	 * @param nodeId the id of this process engine node, which must be unique in a cluster
+	 * @param highWaterMarkFile the file holding the high-water mark (created if it does not exist)
+	 * @throws IOException Signals that the high-water mark could not be read.
+	 */
+	public TimeOrderedProcessInstanceIdGenerator(String nodeId, File highWaterMarkFile) throws IOException {
+		this.prefix = nodeId + "-";
+		this.highWaterMarkFile = highWaterMarkFile;
+		
+		long highWaterMark = 0;
+		if (highWaterMarkFile.exists()) {
+			highWaterMark = Long.parseLong(FileUtils.readFileToString(highWaterMarkFile, UTF8.name()).trim());
+		}
+		// all values below the stored mark may have been issued before
+		this.lastValue.set(highWaterMark);
+		this.reserved = highWaterMark;
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.services.ProcessInstanceIdGenerator#nextId()
+	 */
+	@Override
+	public String nextId() {
+		return prefix + encode(nextValue());
+	}
+	
+	/**
+	 * Gets the next (strictly increasing) value.
+	 *
+	 * @return the value
+	 */
+	long nextValue() {
+		while (true) {
+			long previous = lastValue.get();
+			long next = Math.max(previous + 1, this.currentTimeMillis() << SEQUENCE_BITS);
+			if (next >= reserved) {
+				this.reserve(next);
+			} else if (lastValue.compareAndSet(previous, next)) {
+				return next;
+			}
+		}
+	}
+	
+	/**
+	 * Stores a new high-water mark, so that the given value (and some seconds of values after it) 
+	 * may be issued.
+	 *
+	 * @param value the value to reserve
+	 */
+	private synchronized void reserve(long value) {
+		if (value < reserved) {
+			return;
+		}
+		long highWaterMark = value + (RESERVATION_MILLIS << SEQUENCE_BITS);
+		try {
+			File tempFile = new File(highWaterMarkFile.getPath() + ".tmp");
+			FileOutputStream out = FileUtils.openOutputStream(tempFile);
+			try {
+				out.write(String.valueOf(highWaterMark).getBytes(UTF8));
+				out.getFD().sync();
+			} finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(highWaterMarkFile)) {
+				FileUtils.copyFile(tempFile, highWaterMarkFile);
+				FileUtils.deleteQuietly(tempFile);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(String.format("Could not store the process instance id high-water mark to %s", highWaterMarkFile), e);
+		}
+		reserved = highWaterMark;
+	}
+	
+	/**
+	 * Gets the wall clock time, overridden by tests.
+	 *
+	 * @return the time in millis
+	 */
+	long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+	
+	/**
+	 * Encodes a value in fixed width base 32.
+	 *
+	 * @param value the value
+	 * @return the encoded value
+	 */
+	static String encode(long value) {
+		char[] chars = new char[ENCODED_LENGTH];
+		for (int i = ENCODED_LENGTH - 1; i >= 0; i--) {
+			chars[i] = ALPHABET[(int) (value & 31)];
+			value >>>= 5;
+		}
+		return new String(chars);
+	}
+}
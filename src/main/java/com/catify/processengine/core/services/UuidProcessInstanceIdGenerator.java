@@ -0,0 +1,37 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.services;
+
+import java.util.UUID;
+
+/**
+ * Creates random (type 4) uuids as process instance ids. 
+ * 
+ * @author christopher köster
+ * 
+ */
+public class UuidProcessInstanceIdGenerator implements ProcessInstanceIdGenerator {
+
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.services.ProcessInstanceIdGenerator#nextId()
+	 */
+	@Override
+	public String nextId() {
+		return UUID.randomUUID().toString();
+	}
+}
@@ -0,0 +1,102 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.util;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import scala.concurrent.duration.Duration;
+import akka.actor.ActorSystem;
+
+/**
+ * The Clock is the source of time for all time stamps of the process engine (node instance 
+ * and process instance start and end times) and for the {@link TimerUtil} calculations. It 
+ * also schedules the periodic timer polls, so a {@link VirtualClock} can replace the wall clock 
+ * to simulate days or months of timer traffic in minutes.
+ * <p>
+ * The clock is static like the timer calculations that use it. It has to be set before the 
+ * process engine is started and must not be changed while processes are running.
+ * 
+ * @author christopher köster
+ * 
+ */
+public abstract class Clock {
+
+	/** The wall clock, used by default. */
+	public static final Clock SYSTEM = new Clock() {
+		@Override
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+	
+	private static volatile Clock clock = SYSTEM;
+	
+	/**
+	 * Gets the clock of the process engine.
+	 *
+	 * @return the clock
+	 */
+	public static Clock getClock() {
+		return clock;
+	}
+	
+	/**
+	 * Sets the clock of the process engine.
+	 *
+	 * @param newClock the new clock
+	 */
+	public static void setClock(Clock newClock) {
+		if (newClock == null) {
+			throw new IllegalArgumentException("The clock must not be null.");
+		}
+		clock = newClock;
+	}
+	
+	/**
+	 * Gets the current time of the process engine clock as a date.
+	 *
+	 * @return the current date
+	 */
+	public static Date now() {
+		return new Date(clock.currentTimeMillis());
+	}
+	
+	/**
+	 * Gets the current time in millis.
+	 *
+	 * @return the current time in millis
+	 */
+	public abstract long currentTimeMillis();
+	
+	/**
+	 * Runs a task periodically. The wall clock uses the scheduler of the actor system.
+	 *
+	 * @param actorSystem the actor system
+	 * @param initialDelayMillis the delay until the first run in millis
+	 * @param intervalMillis the interval between two runs in millis
+	 * @param task the task
+	 */
+	public void schedule(ActorSystem actorSystem, long initialDelayMillis, long intervalMillis, Runnable task) {
+		actorSystem.scheduler().schedule(
+				Duration.create(initialDelayMillis, TimeUnit.MILLISECONDS), 
+				Duration.create(intervalMillis, TimeUnit.MILLISECONDS), 
+				task, 
+				actorSystem.dispatcher());
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory join counters for gateways that wait for a number of incoming
+ * flows (eg. the parallel join). Counters are kept per process instance id as
+ * primitives, so a gateway only needs to write to the db when the join
+ * completes (or when a checkpoint is due) instead of once per incoming flow.
+ * <p>
+ * A JoinCounter is only accessed by the actor that owns it and therefore needs
+ * no synchronization. After a restart the counters are empty and will be
+ * rebuilt from the persisted fired flows of the flow node instance.
+ * <p>
+ * Instances that never complete (eg. because they have been deleted) must not
+ * fill the memory, so the number of counters is bounded. If the capacity is
+ * reached, the least recently used counters without unpersisted increments
+ * are dropped; they are rebuilt from the db when their instance is joined
+ * again.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class JoinCounter {
+
+	/** The counters of the process instances currently joining. */
+	private final Map<String, Counter> counters = new LinkedHashMap<String, Counter>(16, 0.75f, true);
+
+	/** The number of increments after which a checkpoint is due (0 disables checkpoints). */
+	private final int checkpointInterval;
+	
+	/** The maximum number of counters kept (if they can be rebuilt from the db). */
+	private final int capacity;
+
+	/**
+	 * Instantiates a new join counter without a capacity limit.
+	 *
+	 * @param checkpointInterval the number of increments after which the fired
+	 * flows should be persisted, 0 to only persist on completion
+	 */
+	public JoinCounter(int checkpointInterval) {
+		this(checkpointInterval, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Instantiates a new join counter.
+	 *
+	 * @param checkpointInterval the number of increments after which the fired
+	 * flows should be persisted, 0 to only persist on completion
+	 * @param capacity the maximum number of counters kept
+	 */
+	public JoinCounter(int checkpointInterval, int capacity) {
+		this.checkpointInterval = checkpointInterval;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Checks if there is a counter for the given process instance.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return true, if the instance is tracked
+	 */
+	public boolean isTracked(String processInstanceId) {
+		return counters.containsKey(processInstanceId);
+	}
+
+	/**
+	 * Starts tracking a process instance. The fired flows are taken from the
+	 * persisted flow node instance, so a join that has been interrupted can be
+	 * continued.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @param flowsFired the persisted number of fired flows
+	 * @param flowsNeeded the number of fired flows needed to complete the join
+	 */
+	public void track(String processInstanceId, int flowsFired, int flowsNeeded) {
+		this.evictPersisted();
+		counters.put(processInstanceId, new Counter(flowsFired, flowsNeeded));
+	}
+	
+	/**
+	 * Drops the least recently used persisted counters until there is room for
+	 * a new counter.
+	 */
+	private void evictPersisted() {
+		Iterator<Counter> iterator = counters.values().iterator();
+		while (counters.size() >= capacity && iterator.hasNext()) {
+			if (iterator.next().unpersisted == 0) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * Increments the fired flows of a tracked process instance.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return the fired flows plus one
+	 */
+	public int increment(String processInstanceId) {
+		Counter counter = counters.get(processInstanceId);
+		counter.unpersisted++;
+		return ++counter.flowsFired;
+	}
+
+	/**
+	 * Gets the fired flows of a tracked process instance.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return the fired flows
+	 */
+	public int getFlowsFired(String processInstanceId) {
+		return counters.get(processInstanceId).flowsFired;
+	}
+
+	/**
+	 * Gets the fired flows needed of a tracked process instance.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return the fired flows needed
+	 */
+	public int getFlowsNeeded(String processInstanceId) {
+		return counters.get(processInstanceId).flowsNeeded;
+	}
+
+	/**
+	 * Checks if enough increments happened since the last persist to write a
+	 * checkpoint.
+	 *
+	 * @param processInstanceId the process instance id
+	 * @return true, if a checkpoint is due
+	 */
+	public boolean isCheckpointDue(String processInstanceId) {
+		return checkpointInterval > 0
+				&& counters.get(processInstanceId).unpersisted >= checkpointInterval;
+	}
+
+	/**
+	 * Marks the current fired flows of a process instance as persisted.
+	 *
+	 * @param processInstanceId the process instance id
+	 */
+	public void markPersisted(String processInstanceId) {
+		counters.get(processInstanceId).unpersisted = 0;
+	}
+
+	/**
+	 * Stops tracking a process instance (eg. because the join completed or the
+	 * instance has been deactivated).
+	 *
+	 * @param processInstanceId the process instance id
+	 */
+	public void remove(String processInstanceId) {
+		counters.remove(processInstanceId);
+	}
+
+	/**
+	 * Gets the number of tracked process instances.
+	 *
+	 * @return the number of tracked process instances
+	 */
+	public int size() {
+		return counters.size();
+	}
+
+	/**
+	 * The counter of a single process instance.
+	 */
+	private static final class Counter {
+		private int flowsFired;
+		private final int flowsNeeded;
+		private int unpersisted;
+
+		private Counter(int flowsFired, int flowsNeeded) {
+			this.flowsFired = flowsFired;
+			this.flowsNeeded = flowsNeeded;
+		}
+	}
+}
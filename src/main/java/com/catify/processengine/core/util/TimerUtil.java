@@ -196,13 +196,13 @@ public class TimerUtil {
 	
 	/**
 	 * Convenient method to calculate the time cycle based on
-	 * the now time.
+	 * the current time of the {@link Clock}.
 	 * 
 	 * @param isoDate as {@link String} e.g. R7/2013-04-09T16:34:08Z/P1D
 	 * @return a {@link List} of time stamps in millis
 	 */
 	public static List<Long> calculateTimeToFireForCycle(String isoDate) {
-		return calculateTimeToFireForCycle(System.currentTimeMillis(), isoDate);
+		return calculateTimeToFireForCycle(Clock.getClock().currentTimeMillis(), isoDate);
 	}
 	
 	/**
@@ -222,13 +222,13 @@ public class TimerUtil {
 	
 	/**
 	 * Convenient method to calculate the duration based on the
-	 * now time.
+	 * current time of the {@link Clock}.
 	 * 
 	 * @param isoDate as {@link String} e.g. PT2H1M10S
 	 * @return time to fire time stamp in millis
 	 */
 	public static long calculateTimeToFireForDuration(String isoDate) {
-		return calculateTimeToFireForDuration(System.currentTimeMillis(), isoDate);
+		return calculateTimeToFireForDuration(Clock.getClock().currentTimeMillis(), isoDate);
 	}
 	
 	/**
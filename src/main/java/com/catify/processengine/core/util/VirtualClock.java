@@ -0,0 +1,185 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.util;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import akka.actor.ActorSystem;
+
+/**
+ * A deterministic clock for simulations. Time only moves when {@link #advanceTo(long)} or 
+ * {@link #advanceBy(long, TimeUnit)} is called; scheduled tasks then run on the calling 
+ * thread, ordered by their due time and (for equal due times) by the order they have been 
+ * scheduled in. The clock is set at each due time while its task runs, so timers calculated 
+ * inside a task see the virtual time they fire at.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class VirtualClock extends Clock {
+
+	private volatile long currentTimeMillis;
+	
+	private final PriorityQueue<ScheduledTask> tasks = new PriorityQueue<ScheduledTask>();
+	
+	private long sequence;
+	
+	/**
+	 * Instantiates a new virtual clock.
+	 *
+	 * @param startTimeMillis the start time in millis
+	 */
+	public VirtualClock(long startTimeMillis) {
+		this.currentTimeMillis = startTimeMillis;
+	}
+	
+	@Override
+	public long currentTimeMillis() {
+		return currentTimeMillis;
+	}
+	
+	/**
+	 * Schedules the task on the virtual time line. The actor system is not used.
+	 */
+	@Override
+	public synchronized void schedule(ActorSystem actorSystem, long initialDelayMillis, long intervalMillis, Runnable task) {
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("The interval of a scheduled task must be positive.");
+		}
+		tasks.add(new ScheduledTask(currentTimeMillis + initialDelayMillis, intervalMillis, sequence++, task));
+	}
+	
+	/**
+	 * Runs a task once at the given virtual time (or at the next advance, if the time has passed).
+	 *
+	 * @param timeMillis the time in millis
+	 * @param task the task
+	 */
+	public synchronized void scheduleOnce(long timeMillis, Runnable task) {
+		tasks.add(new ScheduledTask(timeMillis, 0, sequence++, task));
+	}
+	
+	/**
+	 * Advances the clock by the given duration.
+	 *
+	 * @param duration the duration
+	 * @param unit the unit of the duration
+	 * @return the number of tasks run
+	 */
+	public long advanceBy(long duration, TimeUnit unit) {
+		return this.advanceTo(currentTimeMillis + unit.toMillis(duration));
+	}
+	
+	/**
+	 * Advances the clock to the given time, running all tasks due until then. Tasks 
+	 * scheduled by running tasks are run as well, if they are due.
+	 *
+	 * @param timeMillis the time in millis
+	 * @return the number of tasks run
+	 */
+	public long advanceTo(long timeMillis) {
+		long run = 0;
+		ScheduledTask task;
+		while ((task = this.pollDueTask(timeMillis)) != null) {
+			task.getTask().run();
+			run++;
+		}
+		synchronized (this) {
+			currentTimeMillis = Math.max(currentTimeMillis, timeMillis);
+		}
+		return run;
+	}
+	
+	/**
+	 * Gets the due time of the next scheduled task.
+	 *
+	 * @return the time in millis or -1, if there is no task
+	 */
+	public synchronized long getNextDueTime() {
+		ScheduledTask next = tasks.peek();
+		return next == null ? -1 : next.getDueTime();
+	}
+	
+	/**
+	 * Gets the number of scheduled tasks.
+	 *
+	 * @return the number of tasks
+	 */
+	public synchronized int getScheduledTasks() {
+		return tasks.size();
+	}
+	
+	/**
+	 * Takes the next task due until the given time, sets the clock to its due time and 
+	 * re-schedules periodic tasks.
+	 */
+	private synchronized ScheduledTask pollDueTask(long timeMillis) {
+		ScheduledTask next = tasks.peek();
+		if (next == null || next.getDueTime() > timeMillis) {
+			return null;
+		}
+		tasks.poll();
+		currentTimeMillis = Math.max(currentTimeMillis, next.getDueTime());
+		if (next.getInterval() > 0) {
+			tasks.add(new ScheduledTask(next.getDueTime() + next.getInterval(), next.getInterval(), sequence++, next.getTask()));
+		}
+		return next;
+	}
+	
+	/**
+	 * A task on the virtual time line.
+	 */
+	private static class ScheduledTask implements Comparable<ScheduledTask> {
+		
+		private final long dueTime;
+		
+		private final long interval;
+		
+		private final long sequence;
+		
+		private final Runnable task;
+
+		ScheduledTask(long dueTime, long interval, long sequence, Runnable task) {
+			this.dueTime = dueTime;
+			this.interval = interval;
+			this.sequence = sequence;
+			this.task = task;
+		}
+
+		@Override
+		public int compareTo(ScheduledTask other) {
+			if (dueTime != other.dueTime) {
+				return dueTime < other.dueTime ? -1 : 1;
+			}
+			return sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+		}
+
+		long getDueTime() {
+			return dueTime;
+		}
+
+		long getInterval() {
+			return interval;
+		}
+
+		Runnable getTask() {
+			return task;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+
+/**
+ * A stream reader that hides the BPMN diagram interchange (BPMNDI, DC, DI) elements of a 
+ * bpmn xml file. Diagram elements are only needed by modelling tools and can make up most of 
+ * a large process definition, so they are skipped while streaming instead of being unmarshalled.
+ * 
+ * @author christopher köster
+ * 
+ */
+class DiagramInterchangeFilter extends StreamReaderDelegate {
+
+	/** The namespaces of the diagram interchange elements. */
+	static final Set<String> DIAGRAM_NAMESPACES = new HashSet<String>(Arrays.asList(
+			"http://www.omg.org/spec/BPMN/20100524/DI",
+			"http://www.omg.org/spec/DD/20100524/DC",
+			"http://www.omg.org/spec/DD/20100524/DI"));
+	
+	/**
+	 * Instantiates a new diagram interchange filter.
+	 *
+	 * @param reader the reader to filter
+	 */
+	DiagramInterchangeFilter(XMLStreamReader reader) {
+		super(reader);
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.xml.stream.util.StreamReaderDelegate#next()
+	 */
+	@Override
+	public int next() throws XMLStreamException {
+		int event = super.next();
+		while (event == XMLStreamConstants.START_ELEMENT && DIAGRAM_NAMESPACES.contains(getNamespaceURI())) {
+			this.skipElement();
+			event = super.next();
+		}
+		return event;
+	}
+
+	/* (non-Javadoc)
+	 * @see javax.xml.stream.util.StreamReaderDelegate#nextTag()
+	 */
+	@Override
+	public int nextTag() throws XMLStreamException {
+		// the delegate's nextTag() would bypass the filtering in next()
+		int event = this.next();
+		while ((event == XMLStreamConstants.CHARACTERS && isWhiteSpace())
+				|| (event == XMLStreamConstants.CDATA && isWhiteSpace())
+				|| event == XMLStreamConstants.SPACE
+				|| event == XMLStreamConstants.PROCESSING_INSTRUCTION
+				|| event == XMLStreamConstants.COMMENT) {
+			event = this.next();
+		}
+		if (event != XMLStreamConstants.START_ELEMENT && event != XMLStreamConstants.END_ELEMENT) {
+			throw new XMLStreamException("expected start or end tag", getLocation());
+		}
+		return event;
+	}
+	
+	/**
+	 * Skips the current element including all of its children. The reader is left on 
+	 * the end tag of the element.
+	 *
+	 * @throws XMLStreamException the xML stream exception
+	 */
+	private void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = super.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				depth++;
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,33 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+/**
+ * The formats supported by the {@link HistoryExporter}.
+ * 
+ * @author christopher köster
+ * 
+ */
+public enum HistoryExportFormat {
+	
+	/** One json object per process instance and line, flow node instances are nested. */
+	NDJSON,
+	
+	/** One row per flow node instance, process instance columns are repeated on every row. */
+	CSV
+}
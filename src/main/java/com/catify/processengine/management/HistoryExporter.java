@@ -0,0 +1,340 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.zip.GZIPOutputStream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.catify.processengine.core.data.history.FlowNodeHistoryRecord;
+import com.catify.processengine.core.data.history.HistoryRecord;
+import com.catify.processengine.core.data.history.HistoryRecordHandler;
+
+/**
+ * The HistoryExporter writes history records to a channel as they are handed in. Records 
+ * are encoded into a fixed size buffer that is drained to the channel whenever it is full, 
+ * so the memory needed is independent of the number of exported records. Progress 
+ * and throughput are logged periodically.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class HistoryExporter implements HistoryRecordHandler, Closeable {
+
+	static final Logger LOG = LoggerFactory.getLogger(HistoryExporter.class);
+	
+	/** The size of the write buffer (and the gzip buffer). */
+	static final int BUFFER_SIZE = 64 * 1024;
+	
+	/** The number of records between two progress log messages. */
+	static final long PROGRESS_INTERVAL = 10000;
+	
+	static final String CSV_HEADER = "uniqueProcessId,processInstanceId,processInstanceStartTime,processInstanceEndTime,"
+			+ "metaData,uniqueFlowNodeId,nodeInstanceState,loopCount,nodeInstanceStartTime,nodeInstanceEndTime\n";
+	
+	private final HistoryExportFormat format;
+	private final WritableByteChannel channel;
+	private final GZIPOutputStream gzipStream;
+	
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	
+	/** Reused for every record to avoid garbage per record. */
+	private final StringBuilder line = new StringBuilder(1024);
+	private final SimpleDateFormat dateFormat;
+	
+	private long recordCount;
+	private long byteCount;
+	private final long startTime = System.currentTimeMillis();
+	
+	/**
+	 * Instantiates a new history exporter. The exporter takes ownership of the channel and 
+	 * closes it on {@link #close()}.
+	 *
+	 * @param channel the channel to write to
+	 * @param format the export format
+	 * @param gzip true if the output should be gzip compressed
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public HistoryExporter(WritableByteChannel channel, HistoryExportFormat format, boolean gzip) throws IOException {
+		this.format = format;
+		if (gzip) {
+			this.gzipStream = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+			this.channel = Channels.newChannel(gzipStream);
+		} else {
+			this.gzipStream = null;
+			this.channel = channel;
+		}
+		
+		this.dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+		this.dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+		
+		if (format == HistoryExportFormat.CSV) {
+			this.write(CSV_HEADER);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.core.data.history.HistoryRecordHandler#handle(com.catify.processengine.core.data.history.HistoryRecord)
+	 */
+	@Override
+	public void handle(HistoryRecord record) throws IOException {
+		line.setLength(0);
+		if (format == HistoryExportFormat.CSV) {
+			appendCsv(record);
+		} else {
+			appendJson(record);
+		}
+		this.write(line);
+		
+		recordCount++;
+		if (recordCount % PROGRESS_INTERVAL == 0) {
+			this.logProgress();
+		}
+	}
+	
+	/**
+	 * Flushes the remaining buffer, finishes the gzip stream (if any) and closes the channel.
+	 *
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			this.drainBuffer();
+			if (gzipStream != null) {
+				gzipStream.finish();
+			}
+		} finally {
+			channel.close();
+		}
+		this.logProgress();
+	}
+	
+	/**
+	 * Gets the number of exported records.
+	 *
+	 * @return the record count
+	 */
+	public long getRecordCount() {
+		return recordCount;
+	}
+	
+	/**
+	 * Gets the number of (uncompressed) bytes written.
+	 *
+	 * @return the byte count
+	 */
+	public long getByteCount() {
+		return byteCount + buffer.position();
+	}
+	
+	/**
+	 * Appends a record as one json line.
+	 *
+	 * @param record the history record
+	 */
+	private void appendJson(HistoryRecord record) {
+		line.append("{\"uniqueProcessId\":");
+		appendJsonString(record.getUniqueProcessId());
+		line.append(",\"processInstanceId\":");
+		appendJsonString(record.getProcessInstanceId());
+		line.append(",\"processInstanceStartTime\":");
+		appendJsonDate(record.getProcessInstanceStartTime());
+		line.append(",\"processInstanceEndTime\":");
+		appendJsonDate(record.getProcessInstanceEndTime());
+		line.append(",\"metaData\":{");
+		boolean first = true;
+		for (Map.Entry<String, String> entry : record.getMetaData().entrySet()) {
+			if (!first) {
+				line.append(',');
+			}
+			first = false;
+			appendJsonString(entry.getKey());
+			line.append(':');
+			appendJsonString(entry.getValue());
+		}
+		line.append("},\"flowNodeInstances\":[");
+		first = true;
+		for (FlowNodeHistoryRecord flowNodeRecord : record.getFlowNodeInstances()) {
+			if (!first) {
+				line.append(',');
+			}
+			first = false;
+			line.append("{\"uniqueFlowNodeId\":");
+			appendJsonString(flowNodeRecord.getUniqueFlowNodeId());
+			line.append(",\"nodeInstanceState\":");
+			appendJsonString(flowNodeRecord.getNodeInstanceState());
+			line.append(",\"loopCount\":").append(flowNodeRecord.getLoopCount());
+			line.append(",\"nodeInstanceStartTime\":");
+			appendJsonDate(flowNodeRecord.getNodeInstanceStartTime());
+			line.append(",\"nodeInstanceEndTime\":");
+			appendJsonDate(flowNodeRecord.getNodeInstanceEndTime());
+			line.append('}');
+		}
+		line.append("]}\n");
+	}
+	
+	private void appendJsonDate(Date date) {
+		if (date == null) {
+			line.append("null");
+		} else {
+			line.append('"').append(dateFormat.format(date)).append('"');
+		}
+	}
+	
+	private void appendJsonString(String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"': line.append("\\\""); break;
+			case '\\': line.append("\\\\"); break;
+			case '\n': line.append("\\n"); break;
+			case '\r': line.append("\\r"); break;
+			case '\t': line.append("\\t"); break;
+			default:
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+		}
+		line.append('"');
+	}
+	
+	/**
+	 * Appends a record as csv rows, one row per flow node instance. Records without 
+	 * flow node instances get a single row with empty flow node columns.
+	 *
+	 * @param record the history record
+	 */
+	private void appendCsv(HistoryRecord record) {
+		if (record.getFlowNodeInstances().isEmpty()) {
+			appendCsvProcessInstance(record);
+			line.append(",,,,,\n");
+			return;
+		}
+		for (FlowNodeHistoryRecord flowNodeRecord : record.getFlowNodeInstances()) {
+			appendCsvProcessInstance(record);
+			line.append(',');
+			appendCsvValue(flowNodeRecord.getUniqueFlowNodeId());
+			line.append(',');
+			appendCsvValue(flowNodeRecord.getNodeInstanceState());
+			line.append(',').append(flowNodeRecord.getLoopCount()).append(',');
+			appendCsvDate(flowNodeRecord.getNodeInstanceStartTime());
+			line.append(',');
+			appendCsvDate(flowNodeRecord.getNodeInstanceEndTime());
+			line.append('\n');
+		}
+	}
+	
+	private void appendCsvProcessInstance(HistoryRecord record) {
+		appendCsvValue(record.getUniqueProcessId());
+		line.append(',');
+		appendCsvValue(record.getProcessInstanceId());
+		line.append(',');
+		appendCsvDate(record.getProcessInstanceStartTime());
+		line.append(',');
+		appendCsvDate(record.getProcessInstanceEndTime());
+		line.append(',');
+		
+		// meta data are written as 'key=value;key=value' into a single column
+		StringBuilder metaData = new StringBuilder();
+		for (Map.Entry<String, String> entry : record.getMetaData().entrySet()) {
+			if (metaData.length() > 0) {
+				metaData.append(';');
+			}
+			metaData.append(entry.getKey()).append('=').append(entry.getValue());
+		}
+		appendCsvValue(metaData.toString());
+	}
+	
+	private void appendCsvDate(Date date) {
+		if (date != null) {
+			line.append(dateFormat.format(date));
+		}
+	}
+	
+	private void appendCsvValue(String value) {
+		if (value == null) {
+			return;
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			line.append(value);
+		} else {
+			line.append('"').append(value.replace("\"", "\"\"")).append('"');
+		}
+	}
+	
+	/**
+	 * Encodes the given characters into the buffer, draining it to the channel whenever it is full.
+	 *
+	 * @param chars the characters to write
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void write(CharSequence chars) throws IOException {
+		CharBuffer in = CharBuffer.wrap(chars);
+		while (true) {
+			CoderResult result = encoder.encode(in, buffer, true);
+			if (result.isOverflow()) {
+				this.drainBuffer();
+			} else {
+				break;
+			}
+		}
+		encoder.reset();
+	}
+	
+	private void drainBuffer() throws IOException {
+		buffer.flip();
+		byteCount += buffer.remaining();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+	
+	private void logProgress() {
+		long duration = Math.max(1, System.currentTimeMillis() - startTime);
+		LOG.info(String.format("Exported %s process instances (%s bytes) in %s ms, %s instances/s", 
+				recordCount, getByteCount(), duration, recordCount * 1000 / duration));
+	}
+}
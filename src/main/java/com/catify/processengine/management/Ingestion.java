@@ -0,0 +1,465 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import scala.concurrent.ExecutionContext;
+import scala.concurrent.Future;
+import scala.concurrent.duration.Duration;
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.dispatch.Futures;
+import akka.dispatch.OnComplete;
+import akka.pattern.Patterns;
+import akka.util.Timeout;
+
+import com.catify.processengine.core.messages.FlushMessage;
+import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.ExecutionTracer;
+import com.catify.processengine.core.services.ActorReferenceService;
+import com.catify.processengine.core.services.Admission;
+import com.catify.processengine.core.services.AdmissionControlService;
+
+/**
+ * An Ingestion feeds the {@link IngestionCommand}s of a {@link Publisher} into the engine as fast 
+ * as the engine can absorb them, and publishes an {@link IngestionResult} per command. <p>
+ * Commands are requested in batches, and only as many as the subscriber of the results has 
+ * requested. A batch is done when all its commands have passed the admission control (see 
+ * {@link AdmissionControlService}) and every target node has answered a {@link FlushMessage}, 
+ * i.e. has handled and persisted the commands. At most a given number of batches are in flight, 
+ * so the mailboxes of the target nodes never hold more than that many batches of commands. <p>
+ * The flush only covers the target nodes, not the nodes the instances move on to. The load 
+ * further down the processes is bounded by the admission control: starts that exceed its limit 
+ * of running instances are queued, and their batch stays in flight until they are sent, so 
+ * ingesting starts slows down to the rate at which instances end. Commands to waiting instances 
+ * are not subject to the admission control, for them only the target nodes are considered. <p>
+ * The results of a batch are published when it is done, rejected commands at once (also queued 
+ * commands that are rejected later, e.g. when the admission control stops), so a publisher that 
+ * delivers slowly should be ingested with small batches. <p>
+ * The ingestion subscribes to the commands when its results are subscribed, only one subscriber 
+ * is supported.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class Ingestion implements Publisher<IngestionResult> {
+
+	static final Logger LOG = LoggerFactory.getLogger(Ingestion.class);
+	
+	private final Publisher<IngestionCommand> commands;
+	
+	private final ActorSystem actorSystem;
+	
+	private final AdmissionControlService admissionControlService;
+	
+	/** The number of commands requested at once. */
+	private final int batchSize;
+	
+	/** The maximum number of batches sent but not yet handled by their nodes. */
+	private final int maxBatchesInFlight;
+	
+	/** The time in millis to wait for the nodes to handle a batch. */
+	private final long flushTimeout;
+	
+	private Subscriber<? super IngestionResult> subscriber;
+	
+	private Subscription commandSubscription;
+	
+	/** The results requested by the subscriber that have not been reserved for a batch yet. */
+	private long demand;
+	
+	/** The commands requested for the open batch that have not been received yet. */
+	private long requested;
+	
+	/** The batch receiving commands. */
+	private Batch openBatch;
+	
+	private int batchesInFlight;
+	
+	private boolean commandsDone;
+	
+	private Throwable commandsError;
+	
+	private boolean terminated;
+	
+	/**
+	 * Instantiates a new ingestion.
+	 *
+	 * @param commands the publisher of the commands
+	 * @param actorSystem the actor system
+	 * @param admissionControlService the admission control service
+	 * @param batchSize the number of commands requested at once
+	 * @param maxBatchesInFlight the maximum number of batches sent but not yet handled by their nodes
+	 * @param flushTimeout the time in millis to wait for the nodes to handle a batch
+	 */
+	public Ingestion(Publisher<IngestionCommand> commands, ActorSystem actorSystem, AdmissionControlService admissionControlService, 
+			int batchSize, int maxBatchesInFlight, long flushTimeout) {
+		this.commands = commands;
+		this.actorSystem = actorSystem;
+		this.admissionControlService = admissionControlService;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxBatchesInFlight = Math.max(1, maxBatchesInFlight);
+		this.flushTimeout = flushTimeout;
+	}
+	
+	@Override
+	public synchronized void subscribe(Subscriber<? super IngestionResult> resultSubscriber) {
+		if (subscriber != null) {
+			resultSubscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+				}
+				@Override
+				public void cancel() {
+				}
+			});
+			resultSubscriber.onError(new IllegalStateException("An ingestion can only be subscribed once."));
+			return;
+		}
+		subscriber = resultSubscriber;
+		subscriber.onSubscribe(new ResultSubscription());
+		commands.subscribe(new CommandSubscriber());
+	}
+	
+	/**
+	 * Requests the next batch of commands, if the subscriber wants more results and the 
+	 * engine has capacity.
+	 */
+	private synchronized void pump() {
+		if (terminated || commandsDone || commandSubscription == null || openBatch != null 
+				|| batchesInFlight >= maxBatchesInFlight || demand == 0) {
+			return;
+		}
+		requested = Math.min(batchSize, demand);
+		demand -= requested;
+		openBatch = new Batch();
+		batchesInFlight++;
+		commandSubscription.request(requested);
+	}
+	
+	/**
+	 * Admits and sends a command, its result is published when its batch is done.
+	 *
+	 * @param command the command
+	 */
+	private synchronized void ingest(final IngestionCommand command) {
+		if (terminated) {
+			return;
+		}
+		final Batch batch = openBatch;
+		final ActorRef target = this.getTarget(command.getUniqueFlowNodeId());
+		
+		batch.unsent++;
+		Admission admission = this.admit(command, new Runnable() {
+			@Override
+			public void run() {
+				send(target, command.getTriggerMessage());
+				sent(batch, target);
+			}
+		}, new Runnable() {
+			@Override
+			public void run() {
+				rejected(batch, command);
+			}
+		});
+		
+		if (admission == Admission.REJECTED) {
+			batch.unsent--;
+			this.publish(new IngestionResult(command, admission));
+		} else {
+			batch.results.add(new IngestionResult(command, admission));
+		}
+		
+		if (--requested == 0) {
+			this.close(batch);
+		}
+	}
+	
+	/**
+	 * Counts a command that has been sent to its node.
+	 */
+	private synchronized void sent(Batch batch, ActorRef target) {
+		batch.unsent--;
+		batch.targets.add(target);
+		this.flushIfComplete(batch);
+	}
+	
+	/**
+	 * Publishes a queued command that has been rejected later, so its batch does not wait for it.
+	 */
+	private synchronized void rejected(Batch batch, IngestionCommand command) {
+		for (Iterator<IngestionResult> it = batch.results.iterator(); it.hasNext();) {
+			if (it.next().getCommand() == command) {
+				it.remove();
+				batch.unsent--;
+				this.publish(new IngestionResult(command, Admission.REJECTED));
+				this.flushIfComplete(batch);
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * Closes a batch, no more commands will be added to it.
+	 */
+	private synchronized void close(Batch batch) {
+		batch.closed = true;
+		openBatch = null;
+		this.flushIfComplete(batch);
+		this.pump();
+	}
+	
+	/**
+	 * Asks the target nodes of a batch to answer once they have handled it, if all its commands 
+	 * have been sent.
+	 */
+	private synchronized void flushIfComplete(final Batch batch) {
+		if (!batch.closed || batch.unsent > 0 || batch.flushing) {
+			return;
+		}
+		batch.flushing = true;
+		if (batch.targets.isEmpty()) {
+			this.done(batch);
+		} else {
+			this.flush(batch.targets, new Runnable() {
+				@Override
+				public void run() {
+					done(batch);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Publishes the results of a handled batch and requests the next one.
+	 */
+	private synchronized void done(Batch batch) {
+		batchesInFlight--;
+		for (IngestionResult result : batch.results) {
+			this.publish(result);
+		}
+		
+		if (commandsDone && batchesInFlight == 0) {
+			this.terminate();
+		} else {
+			this.pump();
+		}
+	}
+	
+	/**
+	 * Ends the ingestion after the last command, finishing the open batch.
+	 */
+	private synchronized void complete(Throwable error) {
+		if (commandsDone) {
+			return;
+		}
+		commandsDone = true;
+		commandsError = error;
+		if (openBatch != null) {
+			this.close(openBatch);
+		} else if (batchesInFlight == 0) {
+			this.terminate();
+		}
+	}
+	
+	private synchronized void publish(IngestionResult result) {
+		if (!terminated) {
+			subscriber.onNext(result);
+		}
+	}
+	
+	private synchronized void terminate() {
+		if (terminated) {
+			return;
+		}
+		terminated = true;
+		if (commandsError != null) {
+			subscriber.onError(commandsError);
+		} else {
+			subscriber.onComplete();
+		}
+	}
+	
+	/**
+	 * Cancels the ingestion, commands already sent are handled by the engine.
+	 */
+	private synchronized void cancel() {
+		terminated = true;
+		if (commandSubscription != null) {
+			commandSubscription.cancel();
+		}
+	}
+	
+	/**
+	 * Gets the actor of a node.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id
+	 * @return the actor reference
+	 */
+	ActorRef getTarget(String uniqueFlowNodeId) {
+		return new ActorReferenceService().getActorReference(uniqueFlowNodeId);
+	}
+	
+	/**
+	 * Passes a command through the admission control.
+	 *
+	 * @param command the command
+	 * @param send sends the command, now or when it is admitted
+	 * @param reject called if a queued command is rejected later
+	 * @return the admission
+	 */
+	Admission admit(IngestionCommand command, Runnable send, Runnable reject) {
+		return admissionControlService.admit(command.getUniqueFlowNodeId(), command.getTriggerMessage(), send, reject);
+	}
+	
+	/**
+	 * Sends a trigger message to a node.
+	 *
+	 * @param target the target node
+	 * @param triggerMessage the trigger message
+	 */
+	void send(ActorRef target, TriggerMessage triggerMessage) {
+		ExecutionTracer.stamp(triggerMessage);
+		target.tell(triggerMessage, null);
+	}
+	
+	/**
+	 * Sends a {@link FlushMessage} to the nodes and runs the callback when all have answered. 
+	 * Nodes that do not answer in time are logged and considered done.
+	 *
+	 * @param targets the target nodes
+	 * @param flushed the callback
+	 */
+	void flush(Set<ActorRef> targets, final Runnable flushed) {
+		final ExecutionContext ec = actorSystem.dispatcher();
+		Timeout timeout = new Timeout(Duration.create(flushTimeout, TimeUnit.MILLISECONDS));
+		
+		List<Future<Object>> answers = new ArrayList<Future<Object>>();
+		for (ActorRef target : targets) {
+			answers.add(Patterns.ask(target, new FlushMessage(), timeout));
+		}
+		Futures.sequence(answers, ec).onComplete(new OnComplete<Iterable<Object>>() {
+			@Override
+			public void onComplete(Throwable failure, Iterable<Object> result) {
+				if (failure != null) {
+					LOG.warn(String.format("Nodes did not handle an ingestion batch within %s ms.", flushTimeout), failure);
+				}
+				flushed.run();
+			}
+		}, ec);
+	}
+	
+	/**
+	 * The commands requested at once and their results.
+	 */
+	private static class Batch {
+		
+		private final List<IngestionResult> results = new ArrayList<IngestionResult>();
+		
+		private final Set<ActorRef> targets = new HashSet<ActorRef>();
+		
+		/** The admitted commands that have not been sent yet (queued by the admission control). */
+		private int unsent;
+		
+		private boolean closed;
+		
+		private boolean flushing;
+	}
+	
+	/**
+	 * The subscription of the commands.
+	 */
+	private class CommandSubscriber implements Subscriber<IngestionCommand> {
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			synchronized (Ingestion.this) {
+				if (commandSubscription != null || terminated) {
+					subscription.cancel();
+					return;
+				}
+				commandSubscription = subscription;
+				pump();
+			}
+		}
+
+		@Override
+		public void onNext(IngestionCommand command) {
+			if (command == null) {
+				throw new NullPointerException("command");
+			}
+			ingest(command);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			if (error == null) {
+				throw new NullPointerException("error");
+			}
+			complete(error);
+		}
+
+		@Override
+		public void onComplete() {
+			complete(null);
+		}
+	}
+	
+	/**
+	 * The subscription of the results.
+	 */
+	private class ResultSubscription implements Subscription {
+
+		@Override
+		public void request(long n) {
+			synchronized (Ingestion.this) {
+				if (terminated) {
+					return;
+				}
+				if (n <= 0) {
+					// rule 3.9 of the reactive streams specification
+					if (commandSubscription != null) {
+						commandSubscription.cancel();
+					}
+					commandsError = new IllegalArgumentException("Non-positive request " + n);
+					terminate();
+					return;
+				}
+				demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+				pump();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			Ingestion.this.cancel();
+		}
+	}
+}
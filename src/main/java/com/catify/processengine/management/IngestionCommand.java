@@ -0,0 +1,79 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+import com.catify.processengine.core.data.services.IdService;
+import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+
+/**
+ * A command of an {@link Ingestion}: a trigger message for a node. Commands for top level 
+ * start events start new process instances, all other commands trigger running instances.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class IngestionCommand {
+
+	/** The unique flow node id of the target node. */
+	private final String uniqueFlowNodeId;
+	
+	/** The trigger message. */
+	private final TriggerMessage triggerMessage;
+	
+	/**
+	 * Instantiates a new ingestion command.
+	 *
+	 * @param uniqueFlowNodeId the unique flow node id of the target node
+	 * @param triggerMessage the trigger message
+	 */
+	public IngestionCommand(String uniqueFlowNodeId, TriggerMessage triggerMessage) {
+		this.uniqueFlowNodeId = uniqueFlowNodeId;
+		this.triggerMessage = triggerMessage;
+	}
+	
+	/**
+	 * Instantiates a new ingestion command for a top level node.
+	 *
+	 * @param clientId the client id
+	 * @param processJaxb the jaxb process
+	 * @param nodeId the node id in the bpmn process xml
+	 * @param triggerMessage the trigger message
+	 */
+	public IngestionCommand(String clientId, TProcess processJaxb, String nodeId, TriggerMessage triggerMessage) {
+		this(IdService.getUniqueFlowNodeId(clientId, processJaxb, null, nodeId), triggerMessage);
+	}
+
+	/**
+	 * Gets the unique flow node id of the target node.
+	 *
+	 * @return the unique flow node id
+	 */
+	public String getUniqueFlowNodeId() {
+		return uniqueFlowNodeId;
+	}
+
+	/**
+	 * Gets the trigger message.
+	 *
+	 * @return the trigger message
+	 */
+	public TriggerMessage getTriggerMessage() {
+		return triggerMessage;
+	}
+}
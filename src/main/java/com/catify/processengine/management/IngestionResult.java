@@ -0,0 +1,80 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.management;
+
+import com.catify.processengine.core.services.Admission;
+
+/**
+ * The outcome of an {@link IngestionCommand}. Accepted and queued commands are reported 
+ * after their target node has handled them, rejected commands at once.
+ * 
+ * @author christopher köster
+ * 
+ */
+public class IngestionResult {
+
+	/** The command. */
+	private final IngestionCommand command;
+	
+	/** The admission of the command. */
+	private final Admission admission;
+	
+	/**
+	 * Instantiates a new ingestion result.
+	 *
+	 * @param command the command
+	 * @param admission the admission of the command
+	 */
+	public IngestionResult(IngestionCommand command, Admission admission) {
+		this.command = command;
+		this.admission = admission;
+	}
+
+	/**
+	 * Gets the command.
+	 *
+	 * @return the command
+	 */
+	public IngestionCommand getCommand() {
+		return command;
+	}
+
+	/**
+	 * Gets the admission of the command.
+	 *
+	 * @return the admission
+	 */
+	public Admission getAdmission() {
+		return admission;
+	}
+	
+	/**
+	 * Gets the process instance id of the command. Starts get their id on admission, 
+	 * if admission control is on.
+	 *
+	 * @return the process instance id (null for starts without id)
+	 */
+	public String getProcessInstanceId() {
+		return command.getTriggerMessage().getProcessInstanceId();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s %s (%s)", admission, command.getUniqueFlowNodeId(), this.getProcessInstanceId());
+	}
+}
@@ -19,13 +19,17 @@ package com.catify.processengine.management;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.util.ArrayList;
 
 import javax.xml.bind.JAXBException;
 
+import org.reactivestreams.Publisher;
+
 import com.catify.processengine.core.messages.TriggerMessage;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
 import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
+import com.catify.processengine.core.services.Admission;
 
 /**
  * The Interface ProcessManagementService defines the api to manage processes.
@@ -69,12 +73,15 @@ public interface ProcessManagementService {
 			File processDefinition) throws FileNotFoundException, JAXBException;
 
 	/**
-	 * Creates a process instance.
+	 * Creates a process instance. The start is subject to the admission control (see 
+	 * {@link com.catify.processengine.core.services.AdmissionControlService}), a trigger message 
+	 * without process instance id gets its id assigned when admission control is on.
 	 *
 	 * @param uniqueFlowNodeId the unique flow node id of the start event
 	 * @param triggerMessage the trigger message
+	 * @return the admission of the start
 	 */
-	void createProcessInstance(String uniqueFlowNodeId,
+	Admission createProcessInstance(String uniqueFlowNodeId,
 			TriggerMessage triggerMessage);
 
 	/**
@@ -84,19 +91,22 @@ public interface ProcessManagementService {
 	 * @param processJaxb the jaxb process
 	 * @param startEventId the start event id in the bpmn process xml
 	 * @param triggerMessage the trigger message
+	 * @return the admission of the start
 	 */
-	void createProcessInstance(String clientId, TProcess processJaxb,
+	Admission createProcessInstance(String clientId, TProcess processJaxb,
 			String startEventId, TriggerMessage triggerMessage);
 
 	/**
-	 * Send trigger message to a given node. 
+	 * Send trigger message to a given node. Triggers of top level start events are subject 
+	 * to the admission control, all others are always accepted.
 	 *
 	 * @param clientId the client id
 	 * @param processJaxb the jaxb process 
 	 * @param nodeId the node id in the bpmn process xml
 	 * @param triggerMessage the trigger message
+	 * @return the admission of the trigger
 	 */
-	void sendTriggerMessage(String clientId, TProcess processJaxb,
+	Admission sendTriggerMessage(String clientId, TProcess processJaxb,
 			String nodeId, TriggerMessage triggerMessage);
 
 	/**
@@ -104,8 +114,9 @@ public interface ProcessManagementService {
 	 *
 	 * @param uniqueFlowNodeId the unique flow node id
 	 * @param triggerMessage the trigger message
+	 * @return the admission of the trigger
 	 */
-	void sendTriggerMessage(String uniqueFlowNodeId,
+	Admission sendTriggerMessage(String uniqueFlowNodeId,
 			TriggerMessage triggerMessage);
 
 	/**
@@ -116,10 +127,35 @@ public interface ProcessManagementService {
 	 * @param subProcessesJaxb the sub processes jaxb
 	 * @param nodeId the node id
 	 * @param triggerMessage the trigger message
+	 * @return the admission of the trigger
 	 */
-	void sendTriggerMessage(String clientId, TProcess processJaxb,
+	Admission sendTriggerMessage(String clientId, TProcess processJaxb,
 			ArrayList<TSubProcess> subProcessesJaxb, String nodeId,
 			TriggerMessage triggerMessage);
-
 	
+	/**
+	 * Export all archived process instances of a process to a file. The instances are 
+	 * streamed from the archive to the file, so the export needs constant memory regardless 
+	 * of the number of archived instances.
+	 *
+	 * @param uniqueProcessId the unique process id
+	 * @param target the file to export to (will be overwritten)
+	 * @param format the export format
+	 * @param gzip true if the file should be gzip compressed
+	 * @return the number of exported process instances
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	long exportArchivedProcessInstances(String uniqueProcessId, File target, 
+			HistoryExportFormat format, boolean gzip) throws IOException;
+	
+	/**
+	 * Ingest a stream of process starts and triggers. The engine requests commands from the 
+	 * publisher only as fast as the subscriber of the results requests them and the nodes 
+	 * handle them (see {@link Ingestion}). Each command is subject to the admission control 
+	 * and its {@link IngestionResult} is published once the node has handled it.
+	 *
+	 * @param commands the publisher of the commands
+	 * @return the publisher of the results (can be subscribed once)
+	 */
+	Publisher<IngestionResult> ingest(Publisher<IngestionCommand> commands);
 }
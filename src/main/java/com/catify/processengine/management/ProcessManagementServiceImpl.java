@@ -19,23 +19,41 @@ package com.catify.processengine.management;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.xml.bind.JAXBException;
 
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Configurable;
+import org.springframework.beans.factory.annotation.Value;
 
 import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
 
+import com.catify.processengine.core.EntityInitialization;
 import com.catify.processengine.core.ProcessInitializer;
 import com.catify.processengine.core.data.services.IdService;
 import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.metrics.ExecutionTracer;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
 import com.catify.processengine.core.processdefinition.jaxb.TSubProcess;
 import com.catify.processengine.core.services.ActorReferenceService;
+import com.catify.processengine.core.services.Admission;
+import com.catify.processengine.core.services.AdmissionControlService;
+import com.catify.processengine.core.services.DeploymentCacheService;
+import com.catify.processengine.core.services.ProcessInstanceMediatorService;
 
 /**
  * Implementation of the ProcessManagementService.
@@ -48,6 +66,27 @@ public class ProcessManagementServiceImpl implements ProcessManagementService {
 
 	static final Logger LOG = LoggerFactory.getLogger(ProcessManagementServiceImpl.class);
 	
+	@Autowired
+	private ProcessInstanceMediatorService processInstanceMediatorService;
+	
+	@Autowired
+	private AdmissionControlService admissionControlService;
+	
+	@Autowired
+	private ActorSystem actorSystem;
+	
+	/** The number of commands an ingestion requests at once. */
+	@Value("${ingestion.batchSize}")
+	private int ingestionBatchSize;
+	
+	/** The maximum number of batches an ingestion has sent but not yet handled by the nodes. */
+	@Value("${ingestion.maxBatchesInFlight}")
+	private int ingestionMaxBatchesInFlight;
+	
+	/** The time in millis an ingestion waits for the nodes to handle a batch. */
+	@Value("${ingestion.flushTimeout}")
+	private long ingestionFlushTimeout;
+	
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.management.ProcessManagementSer#startAllDeployedProcesses(java.lang.String)
 	 */
@@ -65,16 +104,81 @@ public class ProcessManagementServiceImpl implements ProcessManagementService {
 			    }
 			});
 			
-			// transform the xml's to jaxb and init them
-			XmlJaxbTransformer xmlJaxbTransformer = new XmlJaxbTransformer();
-			ProcessInitializer processInitializer = new ProcessInitializer();
-			
+			// transform the xml's to jaxb and init them (in parallel, see deployProcessDefinitions)
+			List<File> processDefinitions = new ArrayList<File>();
 			for (String processDefinition : fileList) {
-					this.logProcessDefinitionStart(processDefinition);
+				processDefinitions.add(new File(deployDir, processDefinition));
+			}
+			this.deployProcessDefinitions(clientId, processDefinitions);
+		}
+	}
 	
-					String processDefinitionPath = deployDir + File.separator + processDefinition;
-					processInitializer.initializeProcessDefinition(clientId, xmlJaxbTransformer.getTDefinitionsFromBpmnXml(processDefinitionPath));
+	/**
+	 * Parses and initializes process definitions on a pool with one thread per processor. 
+	 * Independent process definitions are initialized concurrently (see {@link EntityInitialization}), 
+	 * unchanged definitions only get their service nodes created (see {@link DeploymentCacheService}).
+	 *
+	 * @param clientId the client id
+	 * @param processDefinitions the process definition files
+	 * @throws FileNotFoundException the file not found exception
+	 * @throws JAXBException the jAXB exception
+	 */
+	private void deployProcessDefinitions(final String clientId, List<File> processDefinitions) 
+			throws FileNotFoundException, JAXBException {
+		final XmlJaxbTransformer xmlJaxbTransformer = new XmlJaxbTransformer();
+		final ProcessInitializer processInitializer = new ProcessInitializer();
+		
+		int threads = Math.max(1, Math.min(processDefinitions.size(), Runtime.getRuntime().availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Void>> results = new ArrayList<Future<Void>>();
+			for (final File processDefinition : processDefinitions) {
+				results.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						logProcessDefinitionStart(processDefinition.getName());
+						// unchanged definitions reuse their database representation
+						String contentHash = DeploymentCacheService.getContentHash(processDefinition);
+						processInitializer.initializeProcessDefinition(clientId, 
+								xmlJaxbTransformer.getTDefinitionsFromBpmnXml(processDefinition), contentHash);
+						return null;
+					}
+				}));
 			}
+			
+			for (Future<Void> result : results) {
+				this.awaitDeployment(result);
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	/**
+	 * Waits for the deployment of a process definition and rethrows its failure.
+	 *
+	 * @param result the deployment result
+	 * @throws FileNotFoundException the file not found exception
+	 * @throws JAXBException the jAXB exception
+	 */
+	private void awaitDeployment(Future<Void> result) throws FileNotFoundException, JAXBException {
+		try {
+			result.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while deploying process definitions", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof FileNotFoundException) {
+				throw (FileNotFoundException) cause;
+			} else if (cause instanceof JAXBException) {
+				throw (JAXBException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IllegalStateException(cause);
 		}
 	}
 	
@@ -95,10 +199,12 @@ public class ProcessManagementServiceImpl implements ProcessManagementService {
 		
 		this.logProcessDefinitionStart(processDefinitionFileName);
 		
-		processInitializer.initializeProcessDefinition(clientId, xmlJaxbTransformer.getTDefinitionsFromBpmnXml(
-				ProcessImportServiceImpl.DEPLOYDIR 
+		File processDefinition = new File(ProcessImportServiceImpl.DEPLOYDIR 
 				+ File.separator
-				+ processDefinitionFileName));
+				+ processDefinitionFileName);
+		
+		processInitializer.initializeProcessDefinition(clientId, xmlJaxbTransformer.getTDefinitionsFromBpmnXml(processDefinition), 
+				this.getContentHash(processDefinition));
 		}
 	}
 	
@@ -113,7 +219,28 @@ public class ProcessManagementServiceImpl implements ProcessManagementService {
 		
 		this.logProcessDefinitionStart(processDefinition.getName());
 		
-		processInitializer.initializeProcessDefinition(clientId, xmlJaxbTransformer.getTDefinitionsFromBpmnXml(processDefinition));
+		processInitializer.initializeProcessDefinition(clientId, xmlJaxbTransformer.getTDefinitionsFromBpmnXml(processDefinition), 
+				this.getContentHash(processDefinition));
+	}
+	
+	/**
+	 * Calculates the content hash of a process definition file, so that an unchanged definition 
+	 * reuses its database representation (see {@link DeploymentCacheService}).
+	 *
+	 * @param processDefinition the process definition file
+	 * @return the content hash or null, if the file could not be read (the process is then fully initialized)
+	 * @throws FileNotFoundException the file not found exception
+	 */
+	private String getContentHash(File processDefinition) throws FileNotFoundException {
+		try {
+			return DeploymentCacheService.getContentHash(processDefinition);
+		} catch (FileNotFoundException e) {
+			throw e;
+		} catch (IOException e) {
+			LOG.warn(String.format("Could not calculate the content hash of %s, the process will be fully initialized", 
+					processDefinition), e);
+			return null;
+		}
 	}
 	
 	/**
@@ -129,54 +256,87 @@ public class ProcessManagementServiceImpl implements ProcessManagementService {
 	 * @see com.catify.processengine.management.ProcessManagementSer#createProcessInstance(java.lang.String)
 	 */
 	@Override
-	public void createProcessInstance(String uniqueFlowNodeId, TriggerMessage triggerMessage) {
+	public Admission createProcessInstance(String uniqueFlowNodeId, TriggerMessage triggerMessage) {
 
-		sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
+		return sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
 	}
 	
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.management.ProcessManagementService#createProcessInstance(java.lang.String, com.catify.processengine.core.processdefinition.jaxb.TProcess, java.lang.String, com.catify.processengine.core.messages.TriggerMessage)
 	 */
 	@Override
-	public void createProcessInstance(String clientId, TProcess processJaxb,
+	public Admission createProcessInstance(String clientId, TProcess processJaxb,
 			String startEventId, TriggerMessage triggerMessage) {
-		this.sendTriggerMessage(clientId, processJaxb, startEventId, triggerMessage);
+		return this.sendTriggerMessage(clientId, processJaxb, startEventId, triggerMessage);
 	}
 
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.management.ProcessManagementService#sendTriggerMessage(java.lang.String, com.catify.processengine.core.processdefinition.jaxb.TProcess, java.lang.String, com.catify.processengine.core.messages.TriggerMessage)
 	 */
 	@Override
-	public void sendTriggerMessage(String clientId, TProcess processJaxb,
+	public Admission sendTriggerMessage(String clientId, TProcess processJaxb,
 			String nodeId, TriggerMessage triggerMessage) {
 		
 		String uniqueFlowNodeId = IdService.getUniqueFlowNodeId(clientId, processJaxb, null, nodeId);
 		
-		sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
+		return sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
 	}
 	
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.management.ProcessManagementService#sendTriggerMessage(java.lang.String, com.catify.processengine.core.processdefinition.jaxb.TProcess, java.lang.String, com.catify.processengine.core.messages.TriggerMessage)
 	 */
 	@Override
-	public void sendTriggerMessage(String clientId, TProcess processJaxb, ArrayList<TSubProcess> subProcessesJaxb, 
+	public Admission sendTriggerMessage(String clientId, TProcess processJaxb, ArrayList<TSubProcess> subProcessesJaxb, 
 			String nodeId, TriggerMessage triggerMessage) {
 		
 		String uniqueFlowNodeId = IdService.getUniqueFlowNodeId(clientId, processJaxb, subProcessesJaxb, nodeId);
 		
-		sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
+		return sendTriggerMessage(uniqueFlowNodeId, triggerMessage);
 	}
 	
 	/* (non-Javadoc)
 	 * @see com.catify.processengine.management.ProcessManagementService#sendTriggerMessage(java.lang.String, com.catify.processengine.core.messages.TriggerMessage)
 	 */
 	@Override
-	public void sendTriggerMessage(String uniqueFlowNodeId, TriggerMessage triggerMessage) {
+	public Admission sendTriggerMessage(String uniqueFlowNodeId, final TriggerMessage triggerMessage) {
 
-		ActorRef actorRef = new ActorReferenceService().getActorReference(uniqueFlowNodeId);
+		final ActorRef actorRef = new ActorReferenceService().getActorReference(uniqueFlowNodeId);
 		
-		LOG.debug("Sending TriggerMessage to " + actorRef);
+		// starts of process instances might be queued or rejected by the admission control
+		return admissionControlService.admit(uniqueFlowNodeId, triggerMessage, new Runnable() {
+			@Override
+			public void run() {
+				LOG.debug("Sending TriggerMessage to " + actorRef);
+				
+				ExecutionTracer.stamp(triggerMessage);
+				actorRef.tell(triggerMessage, null);
+			}
+		});
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.management.ProcessManagementService#exportArchivedProcessInstances(java.lang.String, java.io.File, com.catify.processengine.management.HistoryExportFormat, boolean)
+	 */
+	@Override
+	public long exportArchivedProcessInstances(String uniqueProcessId, File target, 
+			HistoryExportFormat format, boolean gzip) throws IOException {
+		LOG.info(String.format("Exporting archived instances of process %s to %s", uniqueProcessId, target));
 		
-		actorRef.tell(triggerMessage, null);
-	}	
+		HistoryExporter exporter = new HistoryExporter(new FileOutputStream(target).getChannel(), format, gzip);
+		try {
+			processInstanceMediatorService.scanArchivedProcessInstances(uniqueProcessId, exporter);
+		} finally {
+			exporter.close();
+		}
+		return exporter.getRecordCount();
+	}
+	
+	/* (non-Javadoc)
+	 * @see com.catify.processengine.management.ProcessManagementService#ingest(org.reactivestreams.Publisher)
+	 */
+	@Override
+	public Publisher<IngestionResult> ingest(Publisher<IngestionCommand> commands) {
+		return new Ingestion(commands, actorSystem, admissionControlService, 
+				ingestionBatchSize, ingestionMaxBatchesInFlight, ingestionFlushTimeout);
+	}
 }
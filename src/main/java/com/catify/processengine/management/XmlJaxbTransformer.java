@@ -17,30 +17,52 @@
  */
 package com.catify.processengine.management;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
-import javax.xml.transform.stream.StreamSource;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import com.catify.processengine.core.processdefinition.jaxb.TDefinitions;
 import com.catify.processengine.core.processdefinition.jaxb.TProcess;
 import com.catify.processengine.core.processdefinition.jaxb.TRootElement;
 
 /**
- * Utility class to work with bpmn process files and jaxb.
+ * Utility class to work with bpmn process files and jaxb. The class is thread-safe: 
+ * all instances share one {@link JAXBContext} and a pool of {@link Unmarshaller}s. 
+ * Diagram interchange elements are not unmarshalled.
  * 
  * @author christopher köster
  * 
  */
 public class XmlJaxbTransformer {
 
+	/** The jaxb context is thread-safe and expensive to create, so it is created only once. */
+	private static JAXBContext jaxbContext;
+	
+	/** Unmarshallers are not thread-safe, so they are pooled and used by one thread at a time. */
+	private static final Queue<Unmarshaller> unmarshallerPool = new ConcurrentLinkedQueue<Unmarshaller>();
+	
+	/** The factory is only configured once and can then be used concurrently. */
+	private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+	static {
+		xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+	}
+
 	/**
 	 * Gets the jaxb TDefinitions from a bpmn xml file path.
 	 *
@@ -52,9 +74,7 @@ public class XmlJaxbTransformer {
 	public TDefinitions getTDefinitionsFromBpmnXml(String processDefinitionPath)
 			throws JAXBException, FileNotFoundException {
 
-		Unmarshaller unmarshaller = this.getUnmarshaller();
-
-		return this.getTDefinitions(unmarshaller, new File(processDefinitionPath));
+		return this.getTDefinitions(new File(processDefinitionPath));
 	}
 	
 	/**
@@ -68,9 +88,7 @@ public class XmlJaxbTransformer {
 	public TDefinitions getTDefinitionsFromBpmnXml(File processDefinition)
 			throws JAXBException, FileNotFoundException {
 
-		Unmarshaller unmarshaller = this.getUnmarshaller();
-
-		return this.getTDefinitions(unmarshaller, processDefinition);
+		return this.getTDefinitions(processDefinition);
 	}
 	
 	/**
@@ -84,9 +102,7 @@ public class XmlJaxbTransformer {
 	public List<TProcess> getTProcessesFromBpmnXml(String processDefinitionPath)
 			throws JAXBException, FileNotFoundException {
 
-		Unmarshaller unmarshaller = this.getUnmarshaller();
-
-		TDefinitions definition = this.getTDefinitions(unmarshaller, new File(processDefinitionPath));
+		TDefinitions definition = this.getTDefinitions(new File(processDefinitionPath));
 
 		return getTProcesses(definition);
 	}
@@ -102,41 +118,73 @@ public class XmlJaxbTransformer {
 	public List<TProcess> getTProcessesFromBpmnXml(File processDefinition)
 			throws JAXBException, FileNotFoundException {
 
-		Unmarshaller unmarshaller = this.getUnmarshaller();
-
-		TDefinitions definition = this.getTDefinitions(unmarshaller, processDefinition);
+		TDefinitions definition = this.getTDefinitions(processDefinition);
 
 		return getTProcesses(definition);
 	}
 	
 	/**
-	 * Gets the jaxb unmarshaller.
+	 * Gets the shared jaxb context.
+	 *
+	 * @return the jaxb context
+	 * @throws JAXBException the jAXB exception
+	 */
+	static synchronized JAXBContext getJaxbContext() throws JAXBException {
+		if (jaxbContext == null) {
+			jaxbContext = JAXBContext
+					.newInstance("com.catify.processengine.core.processdefinition.jaxb");
+		}
+		return jaxbContext;
+	}
+	
+	/**
+	 * Takes an unmarshaller from the pool or creates a new one if the pool is empty.
 	 *
 	 * @return the unmarshaller
 	 * @throws JAXBException the jAXB exception
 	 */
-	private Unmarshaller getUnmarshaller() throws JAXBException {
-		JAXBContext jaxbContext = JAXBContext
-				.newInstance("com.catify.processengine.core.processdefinition.jaxb");
-		
-		return jaxbContext.createUnmarshaller();
+	private Unmarshaller borrowUnmarshaller() throws JAXBException {
+		Unmarshaller unmarshaller = unmarshallerPool.poll();
+		if (unmarshaller == null) {
+			unmarshaller = getJaxbContext().createUnmarshaller();
+		}
+		return unmarshaller;
 	}
 
 	/**
-	 * Gets the jaxb TDefinitions from a bpmn xml file.
+	 * Gets the jaxb TDefinitions from a bpmn xml file. The file is streamed with StAX and 
+	 * its diagram interchange elements are skipped (see {@link DiagramInterchangeFilter}), 
+	 * so only the semantic elements are unmarshalled.
 	 *
-	 * @param unmarshaller the unmarshaller
 	 * @param processDefinition the process definition
 	 * @return the t definitions
 	 * @throws JAXBException the jAXB exception
+	 * @throws FileNotFoundException the file not found exception
 	 */
-	private TDefinitions getTDefinitions(Unmarshaller unmarshaller, File processDefinition) throws JAXBException {
-		// extract the TDefinitions root element (without
-		// @RootElement-Annotation)
-		JAXBElement<TDefinitions> root = unmarshaller
-				.unmarshal(new StreamSource(processDefinition),
-						TDefinitions.class);
-		return root.getValue();
+	private TDefinitions getTDefinitions(File processDefinition) throws JAXBException, FileNotFoundException {
+		InputStream in = new BufferedInputStream(new FileInputStream(processDefinition));
+		Unmarshaller unmarshaller = this.borrowUnmarshaller();
+		try {
+			XMLStreamReader reader = new DiagramInterchangeFilter(
+					xmlInputFactory.createXMLStreamReader(processDefinition.toURI().toString(), in));
+			try {
+				// extract the TDefinitions root element (without
+				// @RootElement-Annotation)
+				JAXBElement<TDefinitions> root = unmarshaller.unmarshal(reader, TDefinitions.class);
+				return root.getValue();
+			} finally {
+				reader.close();
+			}
+		} catch (XMLStreamException e) {
+			throw new JAXBException("Could not read " + processDefinition, e);
+		} finally {
+			unmarshallerPool.offer(unmarshaller);
+			try {
+				in.close();
+			} catch (IOException e) {
+				// nothing left to read
+			}
+		}
 	}
 	
 	/**
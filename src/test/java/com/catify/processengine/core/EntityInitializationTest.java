@@ -0,0 +1,156 @@
+package com.catify.processengine.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.neo4j.support.Neo4jTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.catify.processengine.core.data.services.ArchivedNodeRepositoryService;
+import com.catify.processengine.core.data.services.IdService;
+import com.catify.processengine.core.data.services.RunningNodeRepositoryService;
+import com.catify.processengine.core.processdefinition.jaxb.TProcess;
+import com.catify.processengine.management.XmlJaxbTransformer;
+
+/**
+ * Tests the {@link EntityInitialization}.
+ * 
+ * @author christopher köster
+ *
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(locations = { "classpath:META-INF/spring/spring-context.xml" })
+public class EntityInitializationTest {
+
+	private static final String CLIENT = "EntityInitializationTest";
+	
+	@Autowired
+	private Neo4jTemplate neo4jTemplate;
+	
+	@Autowired
+	private RunningNodeRepositoryService runningNodeRepositoryService;
+	
+	@Autowired
+	private ArchivedNodeRepositoryService archivedNodeRepositoryService;
+	
+	private XmlJaxbTransformer xmlJaxbTransformer = new XmlJaxbTransformer();
+	
+	@Test
+	public void testConcurrentInitializationOfProcessesOfOneClient() throws Exception {
+		List<TProcess> processes = new ArrayList<TProcess>();
+		processes.add(this.loadProcess("testprocess_throw.bpmn"));
+		processes.add(this.loadProcess("testprocess_catch.bpmn"));
+		
+		// initialize both processes at the same time
+		this.initializeConcurrently(CLIENT, processes);
+		
+		// both processes must be connected to the shared running and archive node
+		List<String> runningProcessIds = this.getConnectedProcessIds(
+				runningNodeRepositoryService.findByUniqueClientId(CLIENT), EntityInitialization.RUNNING_PROCESS);
+		List<String> archivedProcessIds = this.getConnectedProcessIds(
+				archivedNodeRepositoryService.findByUniqueClientId(CLIENT), EntityInitialization.ARCHIVED_PROCESS);
+		
+		assertEquals(2, runningProcessIds.size());
+		assertEquals(2, archivedProcessIds.size());
+		for (TProcess process : processes) {
+			String uniqueProcessId = IdService.getUniqueProcessId(CLIENT, process);
+			assertTrue(runningProcessIds.contains(uniqueProcessId));
+			assertTrue(archivedProcessIds.contains(IdService.ARCHIVEPREFIX + uniqueProcessId));
+		}
+	}
+	
+	@Test
+	public void testConcurrentInitializationOfSeveralClients() throws Exception {
+		List<String> clientIds = Arrays.asList(CLIENT + "1", CLIENT + "2");
+		List<TProcess> processes = new ArrayList<TProcess>();
+		processes.add(this.loadProcess("testprocess_throw.bpmn"));
+		processes.add(this.loadProcess("testprocess_catch.bpmn"));
+		
+		// all processes of all clients at the same time, the client entities are created once per client
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(clientIds.size() * processes.size());
+		List<Future<Void>> initializations = new ArrayList<Future<Void>>();
+		for (final String clientId : clientIds) {
+			for (final TProcess process : processes) {
+				initializations.add(executor.submit(this.createInitialization(start, clientId, process)));
+			}
+		}
+		this.awaitInitializations(start, executor, initializations);
+		
+		for (String clientId : clientIds) {
+			List<String> runningProcessIds = this.getConnectedProcessIds(
+					runningNodeRepositoryService.findByUniqueClientId(clientId), EntityInitialization.RUNNING_PROCESS);
+			assertEquals(2, runningProcessIds.size());
+			for (TProcess process : processes) {
+				assertTrue(runningProcessIds.contains(IdService.getUniqueProcessId(clientId, process)));
+			}
+			assertEquals(2, this.getConnectedProcessIds(
+					archivedNodeRepositoryService.findByUniqueClientId(clientId), EntityInitialization.ARCHIVED_PROCESS).size());
+		}
+	}
+	
+	/**
+	 * Initializes the given processes of a client at the same time, each in its own thread.
+	 */
+	private void initializeConcurrently(String clientId, List<TProcess> processes) throws Exception {
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(processes.size());
+		List<Future<Void>> initializations = new ArrayList<Future<Void>>();
+		for (TProcess process : processes) {
+			initializations.add(executor.submit(this.createInitialization(start, clientId, process)));
+		}
+		this.awaitInitializations(start, executor, initializations);
+	}
+	
+	private Callable<Void> createInitialization(final CountDownLatch start, final String clientId, final TProcess process) {
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				start.await();
+				new EntityInitialization().initializeProcess(clientId, process);
+				return null;
+			}
+		};
+	}
+	
+	private void awaitInitializations(CountDownLatch start, ExecutorService executor, 
+			List<Future<Void>> initializations) throws Exception {
+		start.countDown();
+		for (Future<Void> initialization : initializations) {
+			initialization.get();
+		}
+		executor.shutdown();
+	}
+	
+	private TProcess loadProcess(String fileName) throws Exception {
+		File processDefinition = new File(getClass().getResource("/data/" + fileName).getFile());
+		return xmlJaxbTransformer.getTProcessesFromBpmnXml(processDefinition).get(0);
+	}
+	
+	private List<String> getConnectedProcessIds(Object entity, RelationshipType relationshipType) {
+		List<String> uniqueProcessIds = new ArrayList<String>();
+		Node node = neo4jTemplate.getPersistentState(entity);
+		for (Relationship relationship : node.getRelationships(relationshipType, Direction.OUTGOING)) {
+			uniqueProcessIds.add((String) relationship.getEndNode().getProperty("uniqueProcessId"));
+		}
+		return uniqueProcessIds;
+	}
+}
@@ -0,0 +1,149 @@
+package com.catify.processengine.core.data.history;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+
+/**
+ * Tests the {@link ColumnarHistoryStore}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class ColumnarHistoryStoreTest {
+
+	private static final long DAY = 24 * 60 * 60 * 1000L;
+	
+	private static final Date DAY_1 = new Date(100 * DAY + 1000);
+	private static final Date DAY_2 = new Date(101 * DAY + 1000);
+	private static final Date DAY_3 = new Date(102 * DAY + 1000);
+	
+	private File directory;
+	
+	private ColumnarHistoryStore store;
+	
+	@Before
+	public void before() {
+		directory = new File(System.getProperty("java.io.tmpdir"), "history-" + System.nanoTime());
+		store = new ColumnarHistoryStore(directory.getPath());
+	}
+	
+	@After
+	public void after() {
+		store.dropPartitionsBefore(new Date(DAY_3.getTime() + DAY));
+		directory.delete();
+	}
+	
+	@Test
+	public void testWriteAndQuery() throws Exception {
+		HistoryRecord record = createRecord("process1", "1", DAY_1);
+		record.getMetaData().put("orderId", "4711");
+		record.addFlowNodeInstance(new FlowNodeHistoryRecord("start", NodeInstaceStates.PASSED_STATE, 0, DAY_1, DAY_1));
+		record.addFlowNodeInstance(new FlowNodeHistoryRecord("task", NodeInstaceStates.PASSED_STATE, 2, DAY_1, null));
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		records.add(record);
+		records.add(createRecord("process1", "2", DAY_1));
+		store.write(records);
+		
+		HistoryQuery query = new HistoryQuery();
+		query.setProcessInstanceId("1");
+		List<HistoryRecord> result = store.query(query);
+		
+		assertEquals(1, result.size());
+		HistoryRecord loaded = result.get(0);
+		assertEquals("process1", loaded.getUniqueProcessId());
+		assertEquals(DAY_1, loaded.getProcessInstanceEndTime());
+		assertEquals("4711", loaded.getMetaData().get("orderId"));
+		assertEquals(2, loaded.getFlowNodeInstances().size());
+		assertEquals("task", loaded.getFlowNodeInstances().get(1).getUniqueFlowNodeId());
+		assertEquals(2, loaded.getFlowNodeInstances().get(1).getLoopCount());
+		assertNull(loaded.getFlowNodeInstances().get(1).getNodeInstanceEndTime());
+	}
+	
+	@Test
+	public void testQueryPredicates() throws Exception {
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		records.add(createRecord("process1", "1", DAY_1));
+		records.add(createRecord("process2", "2", DAY_1));
+		records.add(createRecord("process1", "3", DAY_2));
+		records.add(createRecord("process1", "4", DAY_3));
+		store.write(records);
+		
+		assertEquals(4, store.query(new HistoryQuery()).size());
+		assertEquals(3, store.query(new HistoryQuery("process1", null, null)).size());
+		assertEquals(0, store.query(new HistoryQuery("process3", null, null)).size());
+		assertEquals(2, store.query(new HistoryQuery(null, DAY_1, DAY_2)).size());
+		assertEquals(1, store.query(new HistoryQuery("process1", DAY_2, DAY_3)).size());
+	}
+	
+	@Test
+	public void testDropPartitions() throws Exception {
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		records.add(createRecord("process1", "1", DAY_1));
+		records.add(createRecord("process1", "2", DAY_2));
+		records.add(createRecord("process1", "3", DAY_3));
+		store.write(records);
+		assertEquals(3, store.getPartitions().size());
+		
+		assertEquals(2, store.dropPartitionsBefore(DAY_3));
+		
+		assertEquals(1, store.getPartitions().size());
+		List<HistoryRecord> result = store.query(new HistoryQuery());
+		assertEquals(1, result.size());
+		assertEquals("3", result.get(0).getProcessInstanceId());
+		assertTrue(new File(directory, ColumnarHistoryStore.getPartition(DAY_3)).isDirectory());
+	}
+	
+	@Test
+	public void testLongValues() throws Exception {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 70000; i++) {
+			value.append(i % 2 == 0 ? 'a' : '\u00e4');
+		}
+		HistoryRecord record = createRecord("process1", "1", DAY_1);
+		record.getMetaData().put("document", value.toString());
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		records.add(record);
+		store.write(records);
+		
+		List<HistoryRecord> result = store.query(new HistoryQuery());
+		assertEquals(1, result.size());
+		assertEquals(value.toString(), result.get(0).getMetaData().get("document"));
+	}
+	
+	@Test
+	public void testPreparedSegments() throws Exception {
+		List<HistoryRecord> records = new ArrayList<HistoryRecord>();
+		records.add(createRecord("process1", "1", DAY_1));
+		records.add(createRecord("process1", "2", DAY_2));
+		
+		// prepared segments are not visible until they are completed
+		List<File> segments = store.prepare(records);
+		assertEquals(2, segments.size());
+		assertEquals(0, store.query(new HistoryQuery()).size());
+		store.complete(segments);
+		assertEquals(2, store.query(new HistoryQuery()).size());
+		
+		// discarded segments are deleted
+		segments = store.prepare(records);
+		store.discard(segments);
+		assertFalse(segments.get(0).exists());
+		assertEquals(2, store.query(new HistoryQuery()).size());
+	}
+	
+	private HistoryRecord createRecord(String uniqueProcessId, String processInstanceId, Date endTime) {
+		return new HistoryRecord(uniqueProcessId, processInstanceId, new Date(endTime.getTime() - 1000), endTime);
+	}
+}
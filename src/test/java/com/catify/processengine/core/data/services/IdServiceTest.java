@@ -104,6 +104,15 @@ public class IdServiceTest {
 		assertEquals(IdService.ARCHIVEPREFIX + UNID, IdService.getArchivedUniqueFlowNodeId(CLIENT, this.createProcessWithFlowNode(), this.createSubProcesses(), NID));
 	}
 	
+	@Test
+	public void testGetCompactId() {
+		String compactId = IdService.getCompactId(UNID);
+		assertEquals(compactId, IdService.getCompactId(UNID));
+		assertTrue(compactId.matches("n[0-9a-z]{1,13}"));
+		assertFalse(compactId.equals(IdService.getCompactId(IdService.ARCHIVEPREFIX + UNID)));
+		assertEquals(UNID, IdService.getUniqueId(compactId));
+	}
+	
 	private TProcess createProcess(){
 		return this.createProcess(PID, PNAME, PVERSION);
 	}
@@ -22,6 +22,7 @@ import static org.junit.Assert.assertNotNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,6 +44,7 @@ import com.catify.processengine.core.data.model.NodeInstaceStates;
 import com.catify.processengine.core.data.model.entities.FlowNodeInstance;
 import com.catify.processengine.core.data.model.entities.ProcessInstanceNode;
 import com.catify.processengine.core.data.model.entities.ProcessNode;
+import com.catify.processengine.core.messages.MetaDataMessage;
 import com.catify.processengine.core.services.ProcessInstanceMediatorService;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -193,5 +195,19 @@ public class ProcessInstanceMediatorServiceTest {
 		
 		assertEquals("testValue", processInstanceNodeSpy.getMetaDataProperties().getProperty("testKey"));
 	}
+	
+	@Test
+	public void testSetMetaDataPropertiesSkipsMissingInstances() {
+		Map<String, Object> metaData = new HashMap<String, Object>();
+		metaData.put("testKey", "testValue");
+		
+		// the first instance is neither running nor archived in the graph (e.g. deleted)
+		processInstanceMediatorServiceMockInjected.setMetaDataProperties(Arrays.asList(
+				new MetaDataMessage("uniqueProcessId", "deletedInstanceId", metaData),
+				new MetaDataMessage("uniqueProcessId", "testInstanceId", metaData)));
+		
+		verify(processInstanceNodeRepositoryService).save(processInstanceNodeSpy);
+		assertEquals("testValue", processInstanceNodeSpy.getMetaDataProperties().getProperty("testKey"));
+	}
 
 }
@@ -0,0 +1,45 @@
+package com.catify.processengine.core.data.services.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link SpringDataProcessInstanceNodeRepositoryService}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class SpringDataProcessInstanceNodeRepositoryServiceTest {
+
+	@Test
+	public void testCreateMetaDataQuery() {
+		Map<String, Object> metaData = new LinkedHashMap<String, Object>();
+		metaData.put("orderId", "4711");
+		metaData.put("customer", 42);
+		
+		assertEquals("metaDataProperties-orderId:\"4711\" AND metaDataProperties-customer:\"42\"", 
+				SpringDataProcessInstanceNodeRepositoryService.createMetaDataQuery(metaData));
+	}
+	
+	@Test
+	public void testCreateMetaDataQueryEscaping() {
+		Map<String, Object> metaData = new LinkedHashMap<String, Object>();
+		metaData.put("name", "a \"quoted\" \\ value");
+		
+		assertEquals("metaDataProperties-name:\"a \\\"quoted\\\" \\\\ value\"", 
+				SpringDataProcessInstanceNodeRepositoryService.createMetaDataQuery(metaData));
+	}
+	
+	@Test
+	public void testCreateMetaDataQueryEscapesSyntax() {
+		Map<String, Object> metaData = new LinkedHashMap<String, Object>();
+		metaData.put("order:id", "47*) OR (x:y");
+		
+		assertEquals("metaDataProperties-order\\:id:\"47\\*\\) OR \\(x\\:y\"", 
+				SpringDataProcessInstanceNodeRepositoryService.createMetaDataQuery(metaData));
+	}
+}
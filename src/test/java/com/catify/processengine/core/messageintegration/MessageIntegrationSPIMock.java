@@ -24,6 +24,7 @@ import java.util.Map;
 import com.catify.processengine.core.integration.IntegrationMessage;
 import com.catify.processengine.core.integration.MessageIntegrationSPI;
 import com.catify.processengine.core.processdefinition.jaxb.TMetaData;
+import com.catify.processengine.core.services.Admission;
 import com.catify.processengine.core.services.MessageDispatcherService;
 
 /**
@@ -44,6 +45,7 @@ public class MessageIntegrationSPIMock extends MessageIntegrationSPI {
 	public List<IntegrationMessage> sends = new ArrayList<IntegrationMessage>();
 	public List<IntegrationMessage> receives = new ArrayList<IntegrationMessage>();
 	public List<IntegrationMessage> requestReplys = new ArrayList<IntegrationMessage>();
+	public List<IntegrationMessage> rejects = new ArrayList<IntegrationMessage>();
 	private MessageDispatcherService messageDispatcherService;
 	
 	public static final String MOCK_PREFIX = "integration_mock";
@@ -87,11 +89,21 @@ public class MessageIntegrationSPIMock extends MessageIntegrationSPI {
 	}
 
 	@Override
-	public void receive(IntegrationMessage integrationMessage,
+	public Admission receive(IntegrationMessage integrationMessage,
 			Map<String, Object> metaData) {
 		this.receives.add(integrationMessage);
 		LOG.debug(String.format("Receiving message."));
-		this.messageDispatcherService.dispatchToEngine(integrationMessage, metaData);
+		Admission admission = this.messageDispatcherService.dispatchToEngine(integrationMessage, metaData);
+		if (admission == Admission.REJECTED) {
+			this.rejects.add(integrationMessage);
+		}
+		return admission;
+	}
+	
+	@Override
+	public void rejected(IntegrationMessage integrationMessage) {
+		this.rejects.add(integrationMessage);
+		LOG.debug(String.format("Rejected queued message."));
 	}
 
 	@Override
@@ -0,0 +1,136 @@
+package com.catify.processengine.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.catify.processengine.core.metrics.BlockingCallDetectorService.BlockingCall;
+
+public class BlockingCallDetectorServiceTest {
+
+	@After
+	public void disable() {
+		BlockingCallDetector.setEnabled(false);
+	}
+	
+	@Test
+	public void testWaitingHandlingIsReportedWithElementAndStack() throws Exception {
+		BlockingCallDetector.setEnabled(true);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		Thread engineThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BlockingCallDetector.enter("akka://test/user/node1", "ServiceTaskNode", "node1", "47", "ActivationMessage");
+				try {
+					entered.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					BlockingCallDetector.exit();
+				}
+			}
+		});
+		engineThread.start();
+		entered.await();
+		Thread.sleep(50);
+		
+		BlockingCallDetectorService service = new BlockingCallDetectorService(10);
+		List<BlockingCall> blocking = service.sample();
+		
+		assertEquals(1, blocking.size());
+		String call = blocking.get(0).toString();
+		assertTrue(call, call.contains("ServiceTaskNode 'node1', process instance '47'"));
+		assertTrue(call, call.contains("CountDownLatch.await"));
+		assertTrue(service.getReport(), service.getReport().startsWith("ServiceTaskNode node1 at " 
+				+ BlockingCallDetectorServiceTest.class.getName()));
+		
+		release.countDown();
+		engineThread.join();
+		assertEquals(1, MetricsRegistry.getHistogram("blocking.ServiceTaskNode.node1").getCount());
+		assertEquals(0, service.sample().size());
+	}
+	
+	@Test
+	public void testShortHandlingIsNotReported() throws Exception {
+		BlockingCallDetector.setEnabled(true);
+		BlockingCallDetector.enter("actor", "EndEventNode", "end", "47", "TriggerMessage");
+		try {
+			assertEquals(0, new BlockingCallDetectorService(60000).sample().size());
+		} finally {
+			BlockingCallDetector.exit();
+		}
+		assertEquals(0, BlockingCallDetector.getHandlings().size());
+	}
+	
+	@Test
+	public void testStarvationIsCheckedPerDispatcher() throws Exception {
+		BlockingCallDetector.setEnabled(true);
+		final CountDownLatch entered = new CountDownLatch(3);
+		final CountDownLatch release = new CountDownLatch(1);
+		List<Thread> engineThreads = new ArrayList<Thread>();
+		engineThreads.add(createEngineThread("test-io-dispatcher-1", true, entered, release));
+		engineThreads.add(createEngineThread("test-io-dispatcher-2", true, entered, release));
+		engineThreads.add(createEngineThread("test-file-mailbox-dispatcher-1", false, entered, release));
+		for (Thread engineThread : engineThreads) {
+			engineThread.start();
+		}
+		entered.await();
+		Thread.sleep(50);
+		
+		BlockingCallDetectorService service = new BlockingCallDetectorService(10);
+		assertEquals(2, service.sample().size());
+		assertTrue(service.isStarving("test-io-dispatcher"));
+		assertFalse(service.isStarving("test-file-mailbox-dispatcher"));
+		
+		release.countDown();
+		for (Thread engineThread : engineThreads) {
+			engineThread.join();
+		}
+		service.sample();
+		assertFalse(service.isStarving("test-io-dispatcher"));
+	}
+	
+	@Test
+	public void testPoolName() {
+		assertEquals("engine-akka.actor.default-dispatcher", 
+				BlockingCallDetectorService.getPoolName("engine-akka.actor.default-dispatcher-12"));
+		assertEquals("metrics-publisher", BlockingCallDetectorService.getPoolName("metrics-publisher"));
+	}
+	
+	/**
+	 * Creates a thread that handles one engine message, either blocking until released or 
+	 * returning at once and waiting for the release outside of the handling.
+	 */
+	private Thread createEngineThread(String name, final boolean blocking, final CountDownLatch entered, 
+			final CountDownLatch release) {
+		return new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BlockingCallDetector.enter("akka://test/user/" + Thread.currentThread().getName(), "ServiceTaskNode", 
+						Thread.currentThread().getName(), "47", "ActivationMessage");
+				try {
+					if (!blocking) {
+						BlockingCallDetector.exit();
+					}
+					entered.countDown();
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				} finally {
+					if (blocking) {
+						BlockingCallDetector.exit();
+					}
+				}
+			}
+		}, name);
+	}
+}
@@ -0,0 +1,71 @@
+package com.catify.processengine.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ExecutionTraceTest {
+
+	private static TraceSpan span(long id, long parentId, String node, long enqueue, long dequeue, long end, long database) {
+		return new TraceSpan(id, parentId, "process", node, "47", "Node", "ActivationMessage", 
+				enqueue, dequeue, end, database);
+	}
+	
+	@Test
+	public void testCriticalPathFollowsTheBranchCompletingTheJoin() {
+		// start -> fork -> (fast, slow) -> join (completed by slow) -> end
+		List<TraceSpan> spans = Arrays.asList(
+				span(6, 5, "end", 95000, 96000, 100000, 0),
+				span(1, 0, "start", 500, 1000, 5000, 2000),
+				span(2, 1, "fork", 4000, 6000, 10000, 0),
+				span(3, 2, "fast", 9000, 11000, 20000, 0),
+				span(4, 2, "slow", 9000, 30000, 80000, 40000),
+				span(7, 3, "join", 19000, 21000, 22000, 0),
+				span(5, 4, "join", 79000, 85000, 90000, 1000));
+		
+		ExecutionTrace trace = new ExecutionTrace("process", "47", spans);
+		
+		assertTrue(trace.isComplete());
+		assertEquals(99500, trace.getDurationNanos());
+		assertEquals(5, trace.getCriticalPath().size());
+		assertEquals("start", trace.getCriticalPath().get(0).getUniqueFlowNodeId());
+		assertEquals("slow", trace.getCriticalPath().get(2).getUniqueFlowNodeId());
+		assertEquals("end", trace.getCriticalPath().get(4).getUniqueFlowNodeId());
+		// waits: 500 + 2000 + 21000 + 6000 + 1000
+		assertEquals(30500, trace.getCriticalWaitNanos());
+		assertEquals(43000, trace.getCriticalDatabaseNanos());
+		// processing: 2000 + 4000 + 10000 + 4000 + 4000
+		assertEquals(24000, trace.getCriticalProcessingNanos());
+	}
+	
+	@Test
+	public void testMissingParentMarksTraceIncomplete() {
+		ExecutionTrace trace = new ExecutionTrace("process", "47", Arrays.asList(
+				span(2, 1, "fork", 4000, 6000, 10000, 0),
+				span(3, 2, "end", 9000, 11000, 20000, 0)));
+		
+		assertFalse(trace.isComplete());
+		assertEquals(2, trace.getCriticalPath().size());
+		assertTrue(trace.toJson().contains("\"criticalPath\":{\"waitMicros\":4,"));
+	}
+	
+	@Test
+	public void testRingBufferKeepsTheLatestSpans() {
+		SpanRingBuffer buffer = new SpanRingBuffer(3);
+		assertEquals(4, buffer.getCapacity());
+		for (int i = 1; i <= 6; i++) {
+			buffer.add(span(i, i - 1, "node" + i, 0, i, i + 1, 0));
+		}
+		
+		List<TraceSpan> spans = buffer.find("47");
+		assertEquals(4, spans.size());
+		assertEquals(6, buffer.getWritten());
+		assertFalse(new ExecutionTrace("process", "47", spans).isComplete());
+		assertEquals(0, buffer.find("48").size());
+	}
+}
@@ -0,0 +1,86 @@
+package com.catify.processengine.core.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void testSmallValuesAreExact() {
+		Histogram histogram = new Histogram("test");
+		for (long i = 0; i < Histogram.SUB_BUCKET_COUNT; i++) {
+			histogram.record(i);
+		}
+		assertEquals(Histogram.SUB_BUCKET_COUNT, histogram.getCount());
+		assertEquals(Histogram.SUB_BUCKET_COUNT - 1, histogram.getMax());
+		assertEquals(0, histogram.getValueAtPercentile(0));
+	}
+	
+	@Test
+	public void testPercentilesStayWithinRelativeError() {
+		Histogram histogram = new Histogram("test");
+		for (long i = 1; i <= 100000; i++) {
+			histogram.record(i * 1000);
+		}
+		assertEquals(100000, histogram.getCount());
+		assertWithinError(50000000L, histogram.getP50());
+		assertWithinError(90000000L, histogram.getP90());
+		assertWithinError(99000000L, histogram.getP99());
+		assertWithinError(100000000L, histogram.getMax());
+	}
+	
+	@Test
+	public void testIndexIsMonotonic() {
+		int previous = -1;
+		for (long value = 0; value < 100000; value++) {
+			int index = Histogram.getIndex(value);
+			assertTrue(index >= previous);
+			assertTrue(Histogram.getHighestValue(index) >= value);
+			previous = index;
+		}
+	}
+	
+	@Test
+	public void testMinusSnapshotGivesIntervalValues() {
+		Histogram histogram = new Histogram("test");
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000000);
+		}
+		Histogram snapshot = histogram.snapshot();
+		assertEquals(histogram.getCount(), snapshot.getCount());
+		assertEquals(histogram.getP99(), snapshot.getP99());
+		
+		for (long i = 1; i <= 100; i++) {
+			histogram.record(i);
+		}
+		Histogram interval = histogram.minus(snapshot);
+		assertEquals(100, interval.getCount());
+		assertEquals(50.5, interval.getMean(), 0.001);
+		assertWithinError(100, interval.getMax());
+		assertWithinError(50, interval.getP50());
+	}
+	
+	@Test
+	public void testAddMergesHistograms() {
+		Histogram first = new Histogram("first");
+		Histogram second = new Histogram("second");
+		for (long i = 1; i <= 100; i++) {
+			first.record(i);
+			second.record(i + 100);
+		}
+		Histogram sum = new Histogram("sum");
+		sum.add(first);
+		sum.add(second);
+		assertEquals(200, sum.getCount());
+		assertEquals(200, sum.getMax());
+		assertWithinError(100, sum.getP50());
+	}
+	
+	private void assertWithinError(long expected, long actual) {
+		double error = Math.abs(actual - expected) / (double) expected;
+		assertTrue("expected " + expected + " but was " + actual, error <= 2.0 / Histogram.SUB_BUCKET_COUNT);
+	}
+	
+}
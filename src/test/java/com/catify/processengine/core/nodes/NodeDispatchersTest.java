@@ -0,0 +1,89 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.nodes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import akka.actor.ActorSystem;
+
+import com.catify.processengine.core.processdefinition.jaxb.TDispatcher;
+import com.catify.processengine.core.processdefinition.jaxb.TExclusiveGateway;
+import com.catify.processengine.core.processdefinition.jaxb.TNodeCategory;
+import com.catify.processengine.core.processdefinition.jaxb.TServiceTask;
+import com.catify.processengine.core.processdefinition.jaxb.TStartEvent;
+import com.typesafe.config.ConfigFactory;
+
+public class NodeDispatchersTest {
+
+	private ActorSystem actorSystem = ActorSystem.create("NodeDispatchersTest", ConfigFactory.parseString(
+			"routing-dispatcher { type = Dispatcher }\n" 
+			+ "catify.dispatchers { gateway = routing-dispatcher, core = routing-dispatcher, activity = unknown-dispatcher }"));
+	
+	@After
+	public void shutdown() {
+		actorSystem.shutdown();
+	}
+	
+	@Test
+	public void testConfiguredDispatchers() {
+		assertEquals("routing-dispatcher", NodeDispatchers.getDispatcher(actorSystem, "process1", TNodeCategory.GATEWAY));
+		assertEquals("routing-dispatcher", NodeDispatchers.getCoreDispatcher(actorSystem));
+		assertEquals(NodeDispatchers.NODE_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process1", TNodeCategory.EVENT));
+		assertEquals(NodeDispatchers.CHILD_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process1", TNodeCategory.SERVICE_TASK));
+		// configured dispatchers that do not exist are ignored
+		assertEquals(NodeDispatchers.NODE_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process1", TNodeCategory.ACTIVITY));
+	}
+	
+	@Test
+	public void testProcessDispatchers() {
+		List<TDispatcher> dispatchersJaxb = new ArrayList<TDispatcher>();
+		dispatchersJaxb.add(createTDispatcher(TNodeCategory.SERVICE_TASK, "routing-dispatcher"));
+		dispatchersJaxb.add(createTDispatcher(TNodeCategory.LOOP, "unknown-dispatcher"));
+		NodeDispatchers.registerProcess(actorSystem, "process2", dispatchersJaxb);
+		
+		assertEquals("routing-dispatcher", NodeDispatchers.getDispatcher(actorSystem, "process2", TNodeCategory.SERVICE_TASK));
+		// unknown dispatchers are ignored
+		assertEquals(NodeDispatchers.NODE_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process2", TNodeCategory.LOOP));
+		// other processes are not affected
+		assertEquals(NodeDispatchers.CHILD_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process1", TNodeCategory.SERVICE_TASK));
+		
+		// a redeployment without dispatchers removes them
+		NodeDispatchers.registerProcess(actorSystem, "process2", new ArrayList<TDispatcher>());
+		assertEquals(NodeDispatchers.CHILD_DISPATCHER, NodeDispatchers.getDispatcher(actorSystem, "process2", TNodeCategory.SERVICE_TASK));
+	}
+	
+	@Test
+	public void testCategories() {
+		assertEquals(TNodeCategory.GATEWAY, NodeDispatchers.getCategory(new TExclusiveGateway()));
+		assertEquals(TNodeCategory.EVENT, NodeDispatchers.getCategory(new TStartEvent()));
+		assertEquals(TNodeCategory.ACTIVITY, NodeDispatchers.getCategory(new TServiceTask()));
+	}
+	
+	private TDispatcher createTDispatcher(TNodeCategory category, String name) {
+		TDispatcher dispatcherJaxb = new TDispatcher();
+		dispatcherJaxb.setCategory(category);
+		dispatcherJaxb.setName(name);
+		return dispatcherJaxb;
+	}
+}
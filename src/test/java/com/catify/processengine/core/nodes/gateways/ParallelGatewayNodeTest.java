@@ -20,10 +20,238 @@
  */
 package com.catify.processengine.core.nodes.gateways;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+import akka.testkit.TestActorRef;
+
+import com.catify.processengine.core.data.model.NodeInstaceStates;
+import com.catify.processengine.core.messages.ActivationMessage;
+import com.catify.processengine.core.messages.DeactivationMessage;
+import com.catify.processengine.core.nodes.ParallelGatewayNode;
+import com.catify.processengine.core.services.NodeInstanceMediatorService;
+import com.catify.processengine.core.util.JoinCounter;
+
 /**
- * @author chris
+ * Tests the {@link ParallelGatewayNode}.
+ * 
+ * @author christopher köster
  *
  */
 public class ParallelGatewayNodeTest {
 
+	private ActorSystem actorSystem = ActorSystem.create("ParallelGatewayNodeTest");
+	
+	/** The messages sent to the outgoing node of the gateway. */
+	private List<Object> outgoingMessages = new ArrayList<Object>();
+	
+	private JoinCounter joinCounter;
+	
+	private int gateways;
+	
+	@After
+	public void shutdown() {
+		actorSystem.shutdown();
+	}
+	
+	@Test
+	public void testJoin() {
+		NodeInstanceStore store = new NodeInstanceStore(3);
+		ActorRef gateway = this.createGateway(store);
+		
+		gateway.tell(new ActivationMessage("47"), null);
+		gateway.tell(new ActivationMessage("47"), null);
+		assertTrue(outgoingMessages.isEmpty());
+		assertEquals(NodeInstaceStates.ACTIVE_STATE, store.getPersistedState("47"));
+		
+		gateway.tell(new ActivationMessage("47"), null);
+		assertEquals(1, outgoingMessages.size());
+		assertTrue(outgoingMessages.get(0) instanceof ActivationMessage);
+		assertEquals(NodeInstaceStates.PASSED_STATE, store.getPersistedState("47"));
+		assertEquals(3, store.getPersistedFlowsFired("47"));
+		assertFalse(joinCounter.isTracked("47"));
+	}
+	
+	@Test
+	public void testJoinAfterRestart() {
+		NodeInstanceStore store = new NodeInstanceStore(3);
+		ActorRef gateway = this.createGateway(store);
+		gateway.tell(new ActivationMessage("47"), null);
+		gateway.tell(new ActivationMessage("47"), null);
+		
+		// the restarted gateway only knows the persisted fired flows
+		ActorRef restartedGateway = this.createGateway(store.restart());
+		restartedGateway.tell(new ActivationMessage("47"), null);
+		
+		assertEquals(1, outgoingMessages.size());
+		assertEquals(3, store.getPersistedFlowsFired("47"));
+	}
+	
+	@Test
+	public void testDeactivation() {
+		NodeInstanceStore store = new NodeInstanceStore(3);
+		ActorRef gateway = this.createGateway(store);
+		gateway.tell(new ActivationMessage("47"), null);
+		assertTrue(joinCounter.isTracked("47"));
+		
+		gateway.tell(new DeactivationMessage("47"), null);
+		assertEquals(NodeInstaceStates.DEACTIVATED_STATE, store.getPersistedState("47"));
+		assertFalse(joinCounter.isTracked("47"));
+		
+		// flows arriving after the deactivation are ignored
+		gateway.tell(new ActivationMessage("47"), null);
+		gateway.tell(new ActivationMessage("47"), null);
+		assertTrue(outgoingMessages.isEmpty());
+	}
+	
+	private ActorRef createGateway(final NodeInstanceStore store) {
+		final ActorRef outgoingNode = TestActorRef.create(actorSystem, new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new UntypedActor() {
+					@Override
+					public void onReceive(Object message) {
+						outgoingMessages.add(message);
+					}
+				};
+			}
+		}), "outgoing" + gateways);
+		
+		joinCounter = new JoinCounter(1);
+		return TestActorRef.create(actorSystem, new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new ParallelGatewayNode("process", "gateway", Collections.singletonList(outgoingNode)) {
+					{
+						this.setNodeInstanceMediatorService(store);
+					}
+					
+					@Override
+					protected JoinCounter getJoinCounter() {
+						return joinCounter;
+					}
+				};
+			}
+		}), "gateway" + gateways++);
+	}
+	
+	/**
+	 * Keeps the flow node instances of the gateway in memory. Changes are only visible 
+	 * to a restarted gateway after they have been persisted.
+	 */
+	private static class NodeInstanceStore extends NodeInstanceMediatorService {
+		
+		private final int flowsNeeded;
+		
+		private final Map<String, String> states = new HashMap<String, String>();
+		
+		private final Map<String, Integer> flowsFired = new HashMap<String, Integer>();
+		
+		private final Map<String, String> persistedStates;
+		
+		private final Map<String, Integer> persistedFlowsFired;
+		
+		NodeInstanceStore(int flowsNeeded) {
+			this(flowsNeeded, new HashMap<String, String>(), new HashMap<String, Integer>());
+		}
+		
+		private NodeInstanceStore(int flowsNeeded, Map<String, String> persistedStates, Map<String, Integer> persistedFlowsFired) {
+			this.flowsNeeded = flowsNeeded;
+			this.persistedStates = persistedStates;
+			this.persistedFlowsFired = persistedFlowsFired;
+			states.putAll(persistedStates);
+			flowsFired.putAll(persistedFlowsFired);
+		}
+		
+		/**
+		 * Creates a store for a restarted gateway, sharing only the persisted changes.
+		 */
+		NodeInstanceStore restart() {
+			return new NodeInstanceStore(flowsNeeded, persistedStates, persistedFlowsFired);
+		}
+		
+		String getPersistedState(String processInstanceId) {
+			return persistedStates.get(processInstanceId);
+		}
+		
+		int getPersistedFlowsFired(String processInstanceId) {
+			return persistedFlowsFired.get(processInstanceId);
+		}
+		
+		@Override
+		public boolean isInitialized() {
+			return true;
+		}
+		
+		@Override
+		public String getNodeInstanceState(String processInstanceId) {
+			String state = states.get(processInstanceId);
+			return state == null ? NodeInstaceStates.INACTIVE_STATE : state;
+		}
+		
+		@Override
+		public int getSequenceFlowsFired(String processInstanceId) {
+			Integer fired = flowsFired.get(processInstanceId);
+			return fired == null ? 0 : fired;
+		}
+		
+		@Override
+		public void setSequenceFlowsFired(String processInstanceId, int fired) {
+			flowsFired.put(processInstanceId, fired);
+		}
+		
+		@Override
+		public int getIncomingFiredFlowsNeeded(String processInstanceId) {
+			return flowsNeeded;
+		}
+		
+		@Override
+		public void setActive(String processInstanceId) {
+			states.put(processInstanceId, NodeInstaceStates.ACTIVE_STATE);
+		}
+		
+		@Override
+		public void setPassed(String processInstanceId) {
+			states.put(processInstanceId, NodeInstaceStates.PASSED_STATE);
+		}
+		
+		@Override
+		public void setDeactivated(String processInstanceId) {
+			states.put(processInstanceId, NodeInstaceStates.DEACTIVATED_STATE);
+		}
+		
+		@Override
+		public void setNodeInstanceStartTime(String processInstanceId, Date nodeInstanceStart) {
+		}
+		
+		@Override
+		public void setNodeInstanceEndTime(String processInstanceId, Date nodeInstanceEnd) {
+		}
+		
+		@Override
+		public void persistChanges() {
+			persistedStates.putAll(states);
+			persistedFlowsFired.putAll(flowsFired);
+		}
+	}
 }
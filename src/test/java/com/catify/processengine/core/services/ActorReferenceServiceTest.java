@@ -0,0 +1,73 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import akka.actor.ActorSystem;
+
+import com.typesafe.config.ConfigFactory;
+
+/**
+ * Tests the {@link ActorReferenceService}.
+ *
+ * @author christopher köster
+ *
+ */
+public class ActorReferenceServiceTest {
+
+	private File directory;
+
+	private ActorSystem actorSystem;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("mailboxes", "");
+		directory.delete();
+		directory.mkdirs();
+		actorSystem = ActorSystem.create("ActorReferenceServiceTest", ConfigFactory.parseString(
+				ActorReferenceService.MAILBOX_DIRECTORY_PATH + " = \"" + directory.getAbsolutePath().replace("\\", "/") + "\""));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		actorSystem.shutdown();
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testMigrateMailbox() throws IOException {
+		String uniqueFlowNodeId = "client1-process1-1.0-flowNode1";
+		String oldActorName = ActorReferenceService.getLegacyActorReferenceString(uniqueFlowNodeId);
+		String newActorName = ActorReferenceService.getActorReferenceString(uniqueFlowNodeId);
+		FileUtils.writeStringToFile(new File(directory, "user_" + oldActorName), "journal");
+		FileUtils.writeStringToFile(new File(directory, "user_" + oldActorName + ".1234"), "rotated journal");
+		FileUtils.writeStringToFile(new File(directory, "user_" + oldActorName + "x"), "other actor");
+
+		ActorReferenceService.migrateMailbox(actorSystem, oldActorName, newActorName);
+
+		assertEquals("journal", FileUtils.readFileToString(new File(directory, "user_" + newActorName)));
+		assertEquals("rotated journal", FileUtils.readFileToString(new File(directory, "user_" + newActorName + ".1234")));
+		assertFalse(new File(directory, "user_" + oldActorName).exists());
+		assertTrue(new File(directory, "user_" + oldActorName + "x").exists());
+	}
+
+	@Test
+	public void testExistingMailboxIsNotOverwritten() throws IOException {
+		FileUtils.writeStringToFile(new File(directory, "user_old"), "old journal");
+		FileUtils.writeStringToFile(new File(directory, "user_new"), "new journal");
+
+		ActorReferenceService.migrateMailbox(actorSystem, "old", "new");
+
+		assertEquals("new journal", FileUtils.readFileToString(new File(directory, "user_new")));
+		assertTrue(new File(directory, "user_old").exists());
+	}
+}
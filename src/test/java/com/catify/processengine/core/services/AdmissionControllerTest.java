@@ -0,0 +1,221 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link AdmissionController}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class AdmissionControllerTest {
+
+	private static final String P1 = "process1";
+	private static final String P2 = "process2";
+	
+	private List<String> sent = new ArrayList<String>();
+	
+	@Test
+	public void testRunningLimitQueuesAndRejects() {
+		AdmissionController controller = new AdmissionController(2, 0, 0, 0, 1);
+		
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "1", this.start("1")));
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "2", this.start("2")));
+		assertEquals(Admission.QUEUED, controller.admit(P1, "3", this.start("3")));
+		assertEquals(Admission.REJECTED, controller.admit(P1, "4", this.start("4")));
+		assertEquals(2, sent.size());
+		
+		// admitted instances are counted once
+		controller.started(P1, "1");
+		controller.started(P1, "2");
+		assertEquals(2, controller.getRunning());
+		
+		controller.ended(P1, "1");
+		assertEquals(3, sent.size());
+		assertEquals("3", sent.get(2));
+		assertEquals(0, controller.getQueueSize());
+		assertEquals(2, controller.getRunning());
+	}
+	
+	@Test
+	public void testProcessLimitDoesNotBlockOtherProcesses() {
+		AdmissionController controller = new AdmissionController(0, 1, 0, 0, 10);
+		
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "1", this.start("1")));
+		assertEquals(Admission.QUEUED, controller.admit(P1, "2", this.start("2")));
+		assertEquals(Admission.ACCEPTED, controller.admit(P2, "3", this.start("3")));
+		
+		controller.ended(P2, "3");
+		assertEquals(1, controller.getQueueSize());
+		controller.ended(P1, "1");
+		assertEquals(0, controller.getQueueSize());
+		assertEquals("2", sent.get(2));
+	}
+	
+	@Test
+	public void testInstancesStartedByTheEngineAreCounted() {
+		AdmissionController controller = new AdmissionController(1, 0, 0, 0, 10);
+		
+		// eg. a timer start event
+		controller.started(P1, "1");
+		assertEquals(Admission.QUEUED, controller.admit(P1, "2", this.start("2")));
+		
+		controller.ended(P1, "1");
+		assertEquals(1, sent.size());
+		
+		// ends of instances that have not been counted are ignored
+		controller.ended(P2, "0");
+		assertEquals(1, controller.getRunning());
+	}
+	
+	@Test
+	public void testStartRate() {
+		final long[] now = new long[] {0};
+		AdmissionController controller = new AdmissionController(0, 0, 10, 2, 10) {
+			@Override
+			long nanoTime() {
+				return now[0];
+			}
+		};
+		
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "1", this.start("1")));
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "2", this.start("2")));
+		assertEquals(Admission.QUEUED, controller.admit(P1, "3", this.start("3")));
+		
+		now[0] += TimeUnit.MILLISECONDS.toNanos(50);
+		controller.drain();
+		assertEquals(2, sent.size());
+		
+		now[0] += TimeUnit.MILLISECONDS.toNanos(50);
+		controller.drain();
+		assertEquals(3, sent.size());
+	}
+	
+	@Test
+	public void testEndIsCountedOnce() {
+		AdmissionController controller = new AdmissionController(2, 0, 0, 0, 10);
+		
+		controller.admit(P1, "1", this.start("1"));
+		controller.admit(P1, "2", this.start("2"));
+		controller.started(P1, "1");
+		controller.started(P1, "2");
+		
+		// eg. two concurrent top level end events
+		controller.ended(P1, "1");
+		controller.ended(P1, "1");
+		assertEquals(1, controller.getRunning());
+	}
+	
+	@Test
+	public void testFailedStartReleasesSlot() {
+		AdmissionController controller = new AdmissionController(1, 0, 0, 0, 10);
+		
+		try {
+			controller.admit(P1, "1", new Runnable() {
+				@Override
+				public void run() {
+					throw new IllegalStateException("start event not available");
+				}
+			});
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		assertEquals(0, controller.getRunning());
+		assertEquals(Admission.ACCEPTED, controller.admit(P1, "2", this.start("2")));
+	}
+	
+	@Test
+	public void testPendingAdmissionsExpire() {
+		final long[] now = new long[] {0};
+		AdmissionController controller = new AdmissionController(1, 0, 0, 0, 10) {
+			@Override
+			long nanoTime() {
+				return now[0];
+			}
+		};
+		
+		// the instance never announces its start
+		controller.admit(P1, "1", this.start("1"));
+		assertEquals(Admission.QUEUED, controller.admit(P1, "2", this.start("2")));
+		
+		now[0] += TimeUnit.SECONDS.toNanos(1);
+		controller.expirePending(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(1, sent.size());
+		
+		now[0] += TimeUnit.SECONDS.toNanos(2);
+		controller.expirePending(TimeUnit.SECONDS.toNanos(2));
+		assertEquals(2, sent.size());
+		assertEquals(1, controller.getRunning());
+	}
+	
+	@Test
+	public void testReconcile() {
+		final long[] now = new long[] {0};
+		AdmissionController controller = new AdmissionController(3, 0, 0, 0, 10) {
+			@Override
+			long nanoTime() {
+				return now[0];
+			}
+		};
+		
+		controller.started(P1, "1");
+		controller.started(P1, "2");
+		controller.started(P2, "3");
+		controller.ended(P1, "2");
+		now[0]++;
+		
+		// instance 1 has been deleted, instance 2 is not archived yet and 4 was running before a restart
+		controller.reconcile(P1, Arrays.asList("2", "4"), now[0]);
+		assertEquals(2, controller.getRunning());
+		
+		// instances counted after reading the database are kept
+		controller.started(P2, "5");
+		controller.reconcile(P2, Collections.<String>emptyList(), now[0]);
+		assertEquals(2, controller.getRunning());
+		
+		// instance 2 has been archived
+		controller.reconcile(P1, Arrays.asList("4"), now[0]);
+		assertEquals(2, controller.getRunning());
+	}
+	
+	@Test
+	public void testQueuedStartsAreRejectedOnShutdown() {
+		AdmissionController controller = new AdmissionController(1, 0, 0, 0, 10);
+		final List<String> rejects = new ArrayList<String>();
+		
+		controller.admit(P1, "1", this.start("1"));
+		assertEquals(Admission.QUEUED, controller.admit(P1, "2", this.start("2"), new Runnable() {
+			@Override
+			public void run() {
+				rejects.add("2");
+			}
+		}));
+		
+		assertEquals(1, controller.rejectQueue());
+		assertEquals(1, rejects.size());
+		assertEquals(0, controller.getQueueSize());
+		
+		// rejected starts are not sent anymore
+		controller.ended(P1, "1");
+		assertEquals(1, sent.size());
+	}
+	
+	private Runnable start(final String processInstanceId) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				sent.add(processInstanceId);
+			}
+		};
+	}
+}
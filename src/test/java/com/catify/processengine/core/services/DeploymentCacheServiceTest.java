@@ -0,0 +1,154 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link DeploymentCacheService}.
+ *
+ * @author christopher köster
+ *
+ */
+public class DeploymentCacheServiceTest {
+
+	private static final String PROCESS = "client1-process1-1.0";
+	
+	private static final Set<String> FLOW_NODES = new HashSet<String>(Arrays.asList(
+			"client1-process1-1.0-start", "client1-process1-1.0-sub-task", "client1-process1-1.0-end"));
+	
+	private File directory;
+	
+	/** The unique process ids of the process nodes in the (simulated) database. */
+	private Set<String> processNodes = new HashSet<String>();
+	
+	/** The unique flow node ids of the flow nodes in the (simulated) database. */
+	private Set<String> flowNodes = new HashSet<String>(FLOW_NODES);
+
+	@Before
+	public void setUp() throws IOException {
+		directory = File.createTempFile("deployments", "");
+		directory.delete();
+		directory.mkdirs();
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		FileUtils.deleteDirectory(directory);
+	}
+
+	@Test
+	public void testDeployed() {
+		DeploymentCacheService cache = this.createCache();
+		assertFalse(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+		
+		processNodes.add(PROCESS);
+		cache.register("hash1", PROCESS);
+		assertTrue(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+		
+		// changed definitions and other versions are not deployed
+		assertFalse(cache.isDeployed("hash2", PROCESS, FLOW_NODES));
+		assertFalse(cache.isDeployed("hash1", "client1-process1-2.0", FLOW_NODES));
+	}
+	
+	@Test
+	public void testBindingsSurviveRestart() {
+		processNodes.add(PROCESS);
+		this.createCache().register("hash1", PROCESS);
+		
+		assertTrue(this.createCache().isDeployed("hash1", PROCESS, FLOW_NODES));
+	}
+	
+	@Test
+	public void testRedeployAfterDeletion() {
+		processNodes.add(PROCESS);
+		this.createCache().register("hash1", PROCESS);
+		
+		// the process has been deleted from the database (its graph ids may be reused by other nodes)
+		processNodes.clear();
+		DeploymentCacheService cache = this.createCache();
+		assertFalse(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+		
+		// the process is initialized again
+		processNodes.add(PROCESS);
+		cache.register("hash1", PROCESS);
+		assertTrue(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+	}
+	
+	@Test
+	public void testRegisterUninitializedProcess() {
+		DeploymentCacheService cache = this.createCache();
+		cache.register("hash1", PROCESS);
+		
+		processNodes.add(PROCESS);
+		assertFalse(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+	}
+	
+	@Test
+	public void testReplaceAndUnregister() {
+		DeploymentCacheService cache = this.createCache();
+		processNodes.add(PROCESS);
+		cache.register("hash1", PROCESS);
+		cache.register("hash2", PROCESS);
+		assertFalse(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+		assertTrue(cache.isDeployed("hash2", PROCESS, FLOW_NODES));
+		
+		cache.unregister(PROCESS);
+		assertFalse(cache.isDeployed("hash2", PROCESS, FLOW_NODES));
+		assertFalse(this.createCache().isDeployed("hash2", PROCESS, FLOW_NODES));
+	}
+	
+	@Test
+	public void testMissingFlowNodes() {
+		DeploymentCacheService cache = this.createCache();
+		processNodes.add(PROCESS);
+		cache.register("hash1", PROCESS);
+		
+		// a flow node of a sub process has been deleted from the database
+		flowNodes.remove("client1-process1-1.0-sub-task");
+		assertFalse(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+		
+		// the initialization creates the missing flow node again
+		flowNodes.add("client1-process1-1.0-sub-task");
+		cache.register("hash1", PROCESS);
+		assertTrue(cache.isDeployed("hash1", PROCESS, FLOW_NODES));
+	}
+	
+	@Test
+	public void testLegacyBindingsAreIgnored() throws IOException {
+		processNodes.add(PROCESS);
+		FileUtils.writeStringToFile(new File(directory, DeploymentCacheService.MANIFEST_FILE), "hash1/" + PROCESS + "=5\n");
+		
+		assertFalse(this.createCache().isDeployed("hash1", PROCESS, FLOW_NODES));
+	}
+	
+	/**
+	 * Creates a deployment cache that loads its manifest like on an engine start.
+	 */
+	private DeploymentCacheService createCache() {
+		DeploymentCacheService cache = new DeploymentCacheService(directory.getAbsolutePath()) {
+			@Override
+			boolean isInitialized(String uniqueProcessId) {
+				return processNodes.contains(uniqueProcessId);
+			}
+			
+			@Override
+			Collection<String> findUniqueFlowNodeIds(String uniqueProcessId) {
+				return processNodes.contains(uniqueProcessId) ? flowNodes : new HashSet<String>();
+			}
+		};
+		cache.load();
+		return cache;
+	}
+}
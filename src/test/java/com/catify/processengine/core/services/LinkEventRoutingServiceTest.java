@@ -0,0 +1,88 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import akka.actor.ActorRef;
+
+/**
+ * Tests the {@link LinkEventRoutingService}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class LinkEventRoutingServiceTest {
+
+	@Test
+	public void testRoutes() {
+		LinkEventRoutingService service = new LinkEventRoutingService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		ActorRef otherCatchEvent = mock(ActorRef.class);
+		
+		assertNull(service.getCatchEvent("process1", "link"));
+		service.registerCatchEvent("process1", "link", catchEvent);
+		service.registerCatchEvent("process1", "otherLink", otherCatchEvent);
+		
+		assertSame(catchEvent, service.getCatchEvent("process1", "link"));
+		assertSame(otherCatchEvent, service.getCatchEvent("process1", "otherLink"));
+		
+		// links are only routed within their process
+		assertNull(service.getCatchEvent("process2", "link"));
+	}
+	
+	@Test
+	public void testRedeploymentReplacesRoute() {
+		LinkEventRoutingService service = new LinkEventRoutingService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		ActorRef newCatchEvent = mock(ActorRef.class);
+		
+		service.registerCatchEvent("process1", "link", catchEvent);
+		service.registerCatchEvent("process1", "link", newCatchEvent);
+		assertSame(newCatchEvent, service.getCatchEvent("process1", "link"));
+	}
+	
+	@Test
+	public void testConcurrentRegistration() throws InterruptedException {
+		final LinkEventRoutingService service = new LinkEventRoutingService();
+		final int threads = 8;
+		final int links = 1000;
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		
+		// the catch events of one process are deployed in parallel
+		for (int t = 0; t < threads; t++) {
+			final int thread = t;
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+						for (int i = thread; i < links; i += threads) {
+							service.registerCatchEvent("process1", "link" + i, mock(ActorRef.class));
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						done.countDown();
+					}
+				}
+			}).start();
+		}
+		start.countDown();
+		done.await();
+		
+		int routed = 0;
+		for (int i = 0; i < links; i++) {
+			if (service.getCatchEvent("process1", "link" + i) != null) {
+				routed++;
+			}
+		}
+		assertEquals(links, routed);
+	}
+}
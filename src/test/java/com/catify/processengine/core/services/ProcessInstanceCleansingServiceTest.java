@@ -0,0 +1,181 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.anyCollectionOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import akka.actor.ActorSystem;
+import akka.actor.Props;
+import akka.actor.UntypedActor;
+import akka.actor.UntypedActorFactory;
+import akka.testkit.TestActorRef;
+
+import com.catify.processengine.core.messages.ArchiveMessage;
+import com.catify.processengine.core.messages.DeletionMessage;
+import com.catify.processengine.core.messages.FlushMessage;
+
+/**
+ * Tests the {@link ProcessInstanceCleansingService}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class ProcessInstanceCleansingServiceTest {
+
+	private ActorSystem actorSystem = ActorSystem.create("ProcessInstanceCleansingServiceTest");
+	
+	private ProcessInstanceMediatorService processInstanceMediatorService = mock(ProcessInstanceMediatorService.class);
+	
+	/** The scheduled flushes and their delays, delivered by the test. */
+	private List<FlushMessage> flushes = new ArrayList<FlushMessage>();
+	
+	private List<Long> delays = new ArrayList<Long>();
+	
+	private int instances;
+	
+	@After
+	public void shutdown() {
+		actorSystem.shutdown();
+	}
+	
+	@Test
+	public void testFullBatches() {
+		TestActorRef<ProcessInstanceCleansingService> cleansing = this.createCleansingService(2, 1000, 0);
+		for (int i = 0; i < 5; i++) {
+			cleansing.tell(this.createArchiveMessage(), null);
+		}
+		
+		// full batches are written at once, the rest waits for the batch timeout
+		assertEquals("[2, 2]", this.getArchivedBatchSizes(2).toString());
+		assertEquals(Long.valueOf(1000), this.getLast(delays));
+		
+		cleansing.tell(this.getLast(flushes), null);
+		assertEquals("[2, 2, 1]", this.getArchivedBatchSizes(3).toString());
+	}
+	
+	@Test
+	public void testArchivesAndDeletionsShareBatch() {
+		TestActorRef<ProcessInstanceCleansingService> cleansing = this.createCleansingService(3, 1000, 0);
+		cleansing.tell(this.createArchiveMessage(), null);
+		cleansing.tell(this.createDeletionMessage(), null);
+		cleansing.tell(this.createDeletionMessage(), null);
+		
+		// the first three instances are cleansed in one batch
+		assertEquals("[1]", this.getArchivedBatchSizes(1).toString());
+		assertEquals("[2]", this.getDeletedBatchSizes(1).toString());
+		
+		cleansing.tell(this.createArchiveMessage(), null);
+		cleansing.tell(this.getLast(flushes), null);
+		assertEquals("[1, 1]", this.getArchivedBatchSizes(2).toString());
+		assertEquals("[2]", this.getDeletedBatchSizes(1).toString());
+	}
+	
+	@Test
+	public void testRateLimit() {
+		TestActorRef<ProcessInstanceCleansingService> cleansing = this.createCleansingService(2, 1000, 1);
+		for (int i = 0; i < 4; i++) {
+			cleansing.tell(this.createArchiveMessage(), null);
+		}
+		
+		// the second full batch waits until the rate limit allows two more instances
+		assertEquals("[2]", this.getArchivedBatchSizes(1).toString());
+		long delay = this.getLast(delays);
+		assertTrue(delay > 1000 && delay <= 2000);
+	}
+	
+	@Test
+	public void testFailedBatchIsRetriedOneByOne() {
+		doThrow(new IllegalStateException("test")).doNothing()
+			.when(processInstanceMediatorService).archiveProcessInstances(anyCollectionOf(ArchiveMessage.class));
+		TestActorRef<ProcessInstanceCleansingService> cleansing = this.createCleansingService(2, 1000, 0);
+		cleansing.tell(this.createArchiveMessage(), null);
+		cleansing.tell(this.createArchiveMessage(), null);
+		
+		// the failed batch is cleansed instance by instance
+		assertEquals("[2, 1, 1]", this.getArchivedBatchSizes(3).toString());
+	}
+	
+	@Test
+	public void testOutdatedFlushIsIgnored() {
+		TestActorRef<ProcessInstanceCleansingService> cleansing = this.createCleansingService(2, 1000, 0);
+		cleansing.tell(this.createArchiveMessage(), null);
+		cleansing.tell(this.createArchiveMessage(), null);
+		assertEquals("[2]", this.getArchivedBatchSizes(1).toString());
+		
+		// the flush scheduled for the first instance arrives after its batch has been written
+		cleansing.tell(flushes.remove(0), null);
+		verify(processInstanceMediatorService, times(1)).archiveProcessInstances(this.<ArchiveMessage>captor().capture());
+		verify(processInstanceMediatorService, never()).deleteProcessInstances(this.<DeletionMessage>captor().capture());
+	}
+	
+	private TestActorRef<ProcessInstanceCleansingService> createCleansingService(final int batchSize, 
+			final long batchTimeout, final int maxInstancesPerSecond) {
+		return TestActorRef.create(actorSystem, new Props(new UntypedActorFactory() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public UntypedActor create() {
+				return new ProcessInstanceCleansingService(processInstanceMediatorService, 
+						batchSize, batchTimeout, maxInstancesPerSecond) {
+					@Override
+					void schedule(long delay, FlushMessage flushMessage) {
+						delays.add(delay);
+						flushes.add(flushMessage);
+					}
+				};
+			}
+		}), "cleansing");
+	}
+	
+	private List<Integer> getArchivedBatchSizes(int batches) {
+		ArgumentCaptor<Collection<ArchiveMessage>> captor = this.captor();
+		verify(processInstanceMediatorService, times(batches)).archiveProcessInstances(captor.capture());
+		return this.getSizes(captor.getAllValues());
+	}
+	
+	private List<Integer> getDeletedBatchSizes(int batches) {
+		ArgumentCaptor<Collection<DeletionMessage>> captor = this.captor();
+		verify(processInstanceMediatorService, times(batches)).deleteProcessInstances(captor.capture());
+		return this.getSizes(captor.getAllValues());
+	}
+	
+	private <T> T getLast(List<T> list) {
+		return list.get(list.size() - 1);
+	}
+	
+	private <T> List<Integer> getSizes(List<Collection<T>> batches) {
+		List<Integer> sizes = new ArrayList<Integer>();
+		for (Collection<T> batch : batches) {
+			sizes.add(batch.size());
+		}
+		return sizes;
+	}
+	
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private <T> ArgumentCaptor<Collection<T>> captor() {
+		return (ArgumentCaptor) ArgumentCaptor.forClass(Collection.class);
+	}
+	
+	private ArchiveMessage createArchiveMessage() {
+		return new ArchiveMessage("process", String.valueOf(instances++), new Date());
+	}
+	
+	private DeletionMessage createDeletionMessage() {
+		return new DeletionMessage("process", String.valueOf(instances++), Collections.<String>emptySet());
+	}
+}
@@ -0,0 +1,70 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the {@link ProcessInstanceIdService}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class ProcessInstanceIdServiceTest {
+
+	private static final String TIME_ORDERED_ID = "7-[0-9A-Z]{13}";
+	
+	private File highWaterMarkFile;
+	
+	private ProcessInstanceIdService service;
+	
+	@Before
+	public void setUp() throws IOException {
+		highWaterMarkFile = File.createTempFile("processinstanceids", ".hwm");
+		highWaterMarkFile.delete();
+		service = new ProcessInstanceIdService(ProcessInstanceIdService.TIME_ORDERED_GENERATOR, "7", highWaterMarkFile.getPath());
+		service.init();
+	}
+	
+	@After
+	public void tearDown() {
+		highWaterMarkFile.delete();
+	}
+	
+	@Test
+	public void testDefaultGenerator() {
+		assertTrue(service.nextProcessInstanceId("process1").matches(TIME_ORDERED_ID));
+	}
+	
+	@Test
+	public void testProcessGenerator() {
+		service.registerProcess("process2", ProcessInstanceIdService.UUID_GENERATOR);
+		
+		String id = service.nextProcessInstanceId("process2");
+		assertEquals(id, UUID.fromString(id).toString());
+		assertTrue(service.nextProcessInstanceId("process1").matches(TIME_ORDERED_ID));
+		
+		// a redeployed process without generator uses the default generator again
+		service.registerProcess("process2", null);
+		assertTrue(service.nextProcessInstanceId("process2").matches(TIME_ORDERED_ID));
+	}
+	
+	@Test
+	public void testGeneratorsAreShared() {
+		// a second time ordered generator would reserve its ids in the same high-water mark file
+		service.registerProcess("process2", ProcessInstanceIdService.TIME_ORDERED_GENERATOR);
+		
+		String first = service.nextProcessInstanceId("process1");
+		String second = service.nextProcessInstanceId("process2");
+		String third = service.nextProcessInstanceId("process1");
+		assertTrue(first.compareTo(second) < 0);
+		assertTrue(second.compareTo(third) < 0);
+	}
+}
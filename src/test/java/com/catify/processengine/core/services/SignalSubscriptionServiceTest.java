@@ -0,0 +1,136 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import akka.actor.ActorRef;
+
+import com.catify.processengine.core.messages.BatchTriggerMessage;
+
+/**
+ * Tests the {@link SignalSubscriptionService}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class SignalSubscriptionServiceTest {
+
+	private static final String SIGNAL = "signal";
+	
+	@Test
+	public void testSubscribe() {
+		SignalSubscriptionService service = new SignalSubscriptionService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		
+		service.subscribe(SIGNAL, catchEvent, "1");
+		service.subscribe(SIGNAL, catchEvent, "2");
+		
+		Map<ActorRef, Set<String>> subscriptions = service.getSubscriptions(SIGNAL);
+		assertEquals(1, subscriptions.size());
+		assertEquals(2, subscriptions.get(catchEvent).size());
+		assertTrue(service.getSubscriptions("otherSignal").isEmpty());
+	}
+	
+	@Test
+	public void testUnsubscribe() {
+		SignalSubscriptionService service = new SignalSubscriptionService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		Set<String> instanceIds = new HashSet<String>();
+		instanceIds.add("1");
+		instanceIds.add("2");
+		
+		service.subscribeAll(SIGNAL, catchEvent, instanceIds);
+		service.unsubscribe(SIGNAL, catchEvent, "1");
+		assertEquals(1, service.getSubscriptions(SIGNAL).get(catchEvent).size());
+		
+		// catch events without waiting instances are omitted
+		service.unsubscribe(SIGNAL, catchEvent, "2");
+		assertTrue(service.getSubscriptions(SIGNAL).isEmpty());
+	}
+	
+	@Test
+	public void testSnapshot() {
+		SignalSubscriptionService service = new SignalSubscriptionService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		
+		service.subscribe(SIGNAL, catchEvent, "1");
+		Map<ActorRef, Set<String>> subscriptions = service.getSubscriptions(SIGNAL);
+		service.unsubscribe(SIGNAL, catchEvent, "1");
+		
+		assertEquals(1, subscriptions.get(catchEvent).size());
+	}
+	
+	@Test
+	public void testRegisterStartEvent() {
+		SignalSubscriptionService service = new SignalSubscriptionService();
+		ActorRef startEvent = mock(ActorRef.class);
+		
+		assertTrue(service.getStartEvents(SIGNAL).isEmpty());
+		service.registerStartEvent(SIGNAL, startEvent);
+		service.registerStartEvent(SIGNAL, startEvent);
+		assertEquals(1, service.getStartEvents(SIGNAL).size());
+	}
+	
+	@Test
+	public void testRecoverWaitingInstances() {
+		final List<String> loads = new ArrayList<String>();
+		SignalSubscriptionService service = new SignalSubscriptionService() {
+			@Override
+			Set<String> loadWaitingInstances(String uniqueProcessId, String uniqueFlowNodeId) {
+				loads.add(uniqueFlowNodeId);
+				return new HashSet<String>(Arrays.asList("1", "2"));
+			}
+		};
+		ActorRef catchEvent = mock(ActorRef.class);
+		
+		// the persisted instances are loaded when the signal is thrown first
+		assertTrue(service.registerCatchEvent(SIGNAL, catchEvent, "process", "catchEvent"));
+		assertTrue(service.getSubscriptions("otherSignal").isEmpty());
+		assertEquals(0, loads.size());
+		
+		// an instance that subscribes before the recovery is kept
+		service.subscribe(SIGNAL, catchEvent, "3");
+		assertEquals(3, service.getSubscriptions(SIGNAL).get(catchEvent).size());
+		assertEquals(1, loads.size());
+		
+		// the persisted instances are loaded only once (e.g. not again after a restart of the node actor)
+		service.unsubscribe(SIGNAL, catchEvent, "1");
+		assertFalse(service.registerCatchEvent(SIGNAL, catchEvent, "process", "catchEvent"));
+		assertEquals(2, service.getSubscriptions(SIGNAL).get(catchEvent).size());
+		assertEquals(1, loads.size());
+	}
+	
+	@Test
+	public void testTriggerBatches() {
+		SignalSubscriptionService service = new SignalSubscriptionService();
+		ActorRef catchEvent = mock(ActorRef.class);
+		ActorRef otherCatchEvent = mock(ActorRef.class);
+		service.subscribeAll(SIGNAL, catchEvent, new HashSet<String>(Arrays.asList("1", "2", "3", "4", "5")));
+		service.subscribe(SIGNAL, otherCatchEvent, "6");
+		
+		Map<ActorRef, List<BatchTriggerMessage>> batches = service.getTriggerBatches(SIGNAL, 2);
+		assertEquals(2, batches.size());
+		assertEquals(3, batches.get(catchEvent).size());
+		assertEquals(1, batches.get(otherCatchEvent).size());
+		
+		Set<String> triggered = new HashSet<String>();
+		for (BatchTriggerMessage batch : batches.get(catchEvent)) {
+			assertTrue(batch.getProcessInstanceIds().size() <= 2);
+			triggered.addAll(batch.getProcessInstanceIds());
+		}
+		assertEquals(5, triggered.size());
+		assertEquals("6", batches.get(otherCatchEvent).get(0).getTriggerMessages().get(0).getProcessInstanceId());
+		assertTrue(service.getTriggerBatches("otherSignal", 2).isEmpty());
+	}
+}
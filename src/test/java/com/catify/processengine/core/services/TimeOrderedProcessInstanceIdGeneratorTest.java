@@ -0,0 +1,100 @@
+package com.catify.processengine.core.services;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class TimeOrderedProcessInstanceIdGeneratorTest {
+
+	private TimeOrderedProcessInstanceIdGenerator generator = new TimeOrderedProcessInstanceIdGenerator("7");
+	
+	@Test
+	public void testIdsAreOrdered() {
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 10000; i++) {
+			ids.add(generator.nextId());
+		}
+		
+		List<String> sortedIds = new ArrayList<String>(ids);
+		Collections.sort(sortedIds);
+		assertEquals(ids, sortedIds);
+		assertTrue(ids.get(0).matches("7-[0-9A-Z]{13}"));
+	}
+	
+	@Test
+	public void testIdsAreUniqueAcrossThreads() throws InterruptedException {
+		final int threads = 4;
+		final int idsPerThread = 20000;
+		final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final CountDownLatch done = new CountDownLatch(threads);
+		
+		for (int t = 0; t < threads; t++) {
+			new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < idsPerThread; i++) {
+						ids.add(generator.nextId());
+					}
+					done.countDown();
+				}
+			}).start();
+		}
+		done.await();
+		
+		assertEquals(threads * idsPerThread, ids.size());
+	}
+	
+	@Test
+	public void testIdsDoNotRepeatAfterRestartWithClockSetBack() throws IOException {
+		File highWaterMarkFile = File.createTempFile("processinstanceids", ".hwm");
+		highWaterMarkFile.delete();
+		try {
+			final long[] now = new long[] {1000000};
+			TimeOrderedProcessInstanceIdGenerator first = this.createGenerator(highWaterMarkFile, now);
+			String lastId = null;
+			for (int i = 0; i < 100; i++) {
+				lastId = first.nextId();
+			}
+			assertTrue(highWaterMarkFile.exists());
+			
+			// restart with the wall clock set back
+			now[0] -= 60000;
+			TimeOrderedProcessInstanceIdGenerator second = this.createGenerator(highWaterMarkFile, now);
+			String nextId = second.nextId();
+			assertTrue(nextId.compareTo(lastId) > 0);
+			
+			// the clock catching up does not reuse the ids of the first generator either
+			now[0] += 60000;
+			assertTrue(second.nextId().compareTo(nextId) > 0);
+		} finally {
+			highWaterMarkFile.delete();
+		}
+	}
+	
+	private TimeOrderedProcessInstanceIdGenerator createGenerator(File highWaterMarkFile, final long[] now) throws IOException {
+		return new TimeOrderedProcessInstanceIdGenerator("7", highWaterMarkFile) {
+			@Override
+			long currentTimeMillis() {
+				return now[0];
+			}
+		};
+	}
+	
+	@Test
+	public void testEncode() {
+		assertEquals("0000000000000", TimeOrderedProcessInstanceIdGenerator.encode(0));
+		assertEquals("000000000000Z", TimeOrderedProcessInstanceIdGenerator.encode(31));
+		assertEquals("0000000000010", TimeOrderedProcessInstanceIdGenerator.encode(32));
+		assertEquals("FZZZZZZZZZZZZ", TimeOrderedProcessInstanceIdGenerator.encode(-1));
+	}
+}
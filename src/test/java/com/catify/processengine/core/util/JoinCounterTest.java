@@ -0,0 +1,94 @@
+/**
+ * *******************************************************
+ * Copyright (C) 2013 catify <info@catify.com>
+ * *******************************************************
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.catify.processengine.core.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class JoinCounterTest {
+
+	@Test
+	public void testIncrement() {
+		JoinCounter joinCounter = new JoinCounter(0);
+		joinCounter.track("47", 0, 3);
+		assertEquals(1, joinCounter.increment("47"));
+		assertEquals(2, joinCounter.increment("47"));
+		assertEquals(2, joinCounter.getFlowsFired("47"));
+		assertEquals(3, joinCounter.getFlowsNeeded("47"));
+	}
+	
+	@Test
+	public void testRebuildFromPersistedFlowsFired() {
+		JoinCounter joinCounter = new JoinCounter(0);
+		assertFalse(joinCounter.isTracked("47"));
+		joinCounter.track("47", 2, 3);
+		assertTrue(joinCounter.isTracked("47"));
+		assertEquals(3, joinCounter.increment("47"));
+	}
+	
+	@Test
+	public void testCheckpoint() {
+		JoinCounter joinCounter = new JoinCounter(2);
+		joinCounter.track("47", 0, 10);
+		joinCounter.increment("47");
+		assertFalse(joinCounter.isCheckpointDue("47"));
+		joinCounter.increment("47");
+		assertTrue(joinCounter.isCheckpointDue("47"));
+		joinCounter.markPersisted("47");
+		assertFalse(joinCounter.isCheckpointDue("47"));
+	}
+	
+	@Test
+	public void testNoCheckpoint() {
+		JoinCounter joinCounter = new JoinCounter(0);
+		joinCounter.track("47", 0, 10);
+		for (int i = 0; i < 9; i++) {
+			joinCounter.increment("47");
+			assertFalse(joinCounter.isCheckpointDue("47"));
+		}
+	}
+	
+	@Test
+	public void testRemove() {
+		JoinCounter joinCounter = new JoinCounter(0);
+		joinCounter.track("47", 0, 2);
+		joinCounter.track("48", 0, 2);
+		joinCounter.remove("47");
+		assertFalse(joinCounter.isTracked("47"));
+		assertEquals(1, joinCounter.size());
+	}
+	
+	@Test
+	public void testEvictPersistedCounters() {
+		JoinCounter joinCounter = new JoinCounter(0, 2);
+		joinCounter.track("47", 0, 2);
+		joinCounter.increment("47");
+		joinCounter.track("48", 1, 2);
+		joinCounter.track("49", 1, 2);
+		
+		// the counter of 47 has not been persisted and is kept
+		assertTrue(joinCounter.isTracked("47"));
+		assertFalse(joinCounter.isTracked("48"));
+		assertTrue(joinCounter.isTracked("49"));
+		assertEquals(2, joinCounter.size());
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.catify.processengine.core.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class VirtualClockTest {
+
+	@After
+	public void resetClock() {
+		Clock.setClock(Clock.SYSTEM);
+	}
+	
+	@Test
+	public void testAdvanceRunsPeriodicTasksAtTheirDueTime() {
+		final VirtualClock clock = new VirtualClock(1000);
+		final List<Long> runs = new ArrayList<Long>();
+		clock.schedule(null, 100, 500, new Runnable() {
+			@Override
+			public void run() {
+				runs.add(clock.currentTimeMillis());
+			}
+		});
+		
+		assertEquals(3, clock.advanceBy(1200, TimeUnit.MILLISECONDS));
+		assertEquals(2200, clock.currentTimeMillis());
+		assertEquals(3, runs.size());
+		assertEquals(1100, (long) runs.get(0));
+		assertEquals(1600, (long) runs.get(1));
+		assertEquals(2100, (long) runs.get(2));
+		assertEquals(2600, clock.getNextDueTime());
+	}
+	
+	@Test
+	public void testTasksWithEqualDueTimeRunInScheduleOrder() {
+		VirtualClock clock = new VirtualClock(0);
+		final StringBuilder order = new StringBuilder();
+		clock.scheduleOnce(10, new Runnable() {
+			@Override
+			public void run() {
+				order.append("a");
+			}
+		});
+		clock.scheduleOnce(5, new Runnable() {
+			@Override
+			public void run() {
+				order.append("b");
+			}
+		});
+		clock.scheduleOnce(10, new Runnable() {
+			@Override
+			public void run() {
+				order.append("c");
+			}
+		});
+		
+		clock.advanceTo(10);
+		assertEquals("bac", order.toString());
+		assertEquals(0, clock.getScheduledTasks());
+		assertEquals(-1, clock.getNextDueTime());
+	}
+	
+	@Test
+	public void testTimerUtilUsesTheEngineClock() {
+		VirtualClock clock = new VirtualClock(0);
+		Clock.setClock(clock);
+		clock.advanceBy(1, TimeUnit.DAYS);
+		
+		assertEquals(TimeUnit.DAYS.toMillis(1) + TimeUnit.MINUTES.toMillis(5), 
+				TimerUtil.calculateTimeToFireForDuration("PT5M"));
+		assertEquals(TimeUnit.DAYS.toMillis(1), Clock.now().getTime());
+	}
+}
@@ -0,0 +1,66 @@
+package com.catify.processengine.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.junit.Test;
+
+public class DiagramInterchangeFilterTest {
+
+	private XMLInputFactory factory = XMLInputFactory.newInstance();
+	
+	@Test
+	public void testSkipDiagramElements() throws XMLStreamException, IOException {
+		InputStream in = new FileInputStream("src/test/resources/data/testprocess_serviceTask.bpmn");
+		try {
+			Set<String> elements = readElements(new DiagramInterchangeFilter(factory.createXMLStreamReader(in)));
+			
+			assertTrue(elements.contains("process"));
+			assertTrue(elements.contains("serviceTask"));
+			assertTrue(elements.contains("sequenceFlow"));
+			assertFalse(elements.contains("BPMNDiagram"));
+			assertFalse(elements.contains("BPMNShape"));
+			assertFalse(elements.contains("Bounds"));
+		} finally {
+			in.close();
+		}
+	}
+	
+	@Test
+	public void testNextTagAfterSkippedElement() throws XMLStreamException {
+		XMLStreamReader reader = new DiagramInterchangeFilter(factory.createXMLStreamReader(new StringReader(
+				"<definitions xmlns:bpmndi=\"http://www.omg.org/spec/BPMN/20100524/DI\">"
+				+ "<bpmndi:BPMNDiagram><bpmndi:BPMNPlane/></bpmndi:BPMNDiagram> <process/></definitions>")));
+		
+		assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+		assertEquals("definitions", reader.getLocalName());
+		assertEquals(XMLStreamConstants.START_ELEMENT, reader.nextTag());
+		assertEquals("process", reader.getLocalName());
+		assertEquals(XMLStreamConstants.END_ELEMENT, reader.nextTag());
+		assertEquals(XMLStreamConstants.END_ELEMENT, reader.nextTag());
+		assertEquals("definitions", reader.getLocalName());
+	}
+	
+	private Set<String> readElements(XMLStreamReader reader) throws XMLStreamException {
+		Set<String> elements = new HashSet<String>();
+		while (reader.hasNext()) {
+			if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+				elements.add(reader.getLocalName());
+			}
+		}
+		return elements;
+	}
+}
@@ -0,0 +1,79 @@
+package com.catify.processengine.management;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Collections;
+import java.util.Date;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+import com.catify.processengine.core.data.history.FlowNodeHistoryRecord;
+import com.catify.processengine.core.data.history.HistoryRecord;
+
+public class HistoryExporterTest {
+
+	private ByteArrayOutputStream out = new ByteArrayOutputStream();
+	
+	@Test
+	public void testNdjson() throws IOException {
+		HistoryExporter exporter = new HistoryExporter(Channels.newChannel(out), HistoryExportFormat.NDJSON, false);
+		exporter.handle(createRecord("1"));
+		exporter.handle(createRecord("2"));
+		exporter.close();
+		
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertEquals(2, lines.length);
+		assertEquals("{\"uniqueProcessId\":\"process\",\"processInstanceId\":\"1\","
+				+ "\"processInstanceStartTime\":\"1970-01-01T00:00:00.000Z\",\"processInstanceEndTime\":null,"
+				+ "\"metaData\":{\"order\":\"a\\\"b\"},"
+				+ "\"flowNodeInstances\":[{\"uniqueFlowNodeId\":\"start\",\"nodeInstanceState\":\"PASSED\",\"loopCount\":0,"
+				+ "\"nodeInstanceStartTime\":\"1970-01-01T00:00:00.000Z\",\"nodeInstanceEndTime\":\"1970-01-01T00:00:01.000Z\"}]}", lines[0]);
+		assertEquals(2, exporter.getRecordCount());
+	}
+	
+	@Test
+	public void testCsv() throws IOException {
+		HistoryExporter exporter = new HistoryExporter(Channels.newChannel(out), HistoryExportFormat.CSV, false);
+		exporter.handle(createRecord("1"));
+		exporter.close();
+		
+		String[] lines = out.toString("UTF-8").split("\n");
+		assertEquals(2, lines.length);
+		assertEquals(HistoryExporter.CSV_HEADER.trim(), lines[0]);
+		assertEquals("process,1,1970-01-01T00:00:00.000Z,,\"order=a\"\"b\",start,PASSED,0,"
+				+ "1970-01-01T00:00:00.000Z,1970-01-01T00:00:01.000Z", lines[1]);
+	}
+	
+	@Test
+	public void testGzipLargeExport() throws IOException {
+		HistoryExporter exporter = new HistoryExporter(Channels.newChannel(out), HistoryExportFormat.NDJSON, true);
+		int count = 5000;
+		for (int i = 0; i < count; i++) {
+			exporter.handle(createRecord(String.valueOf(i)));
+		}
+		exporter.close();
+		
+		GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()));
+		ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) > 0) {
+			unzipped.write(buffer, 0, read);
+		}
+		
+		assertEquals(count, unzipped.toString("UTF-8").split("\n").length);
+		assertEquals(unzipped.size(), exporter.getByteCount());
+	}
+	
+	private HistoryRecord createRecord(String processInstanceId) {
+		HistoryRecord record = new HistoryRecord("process", processInstanceId, new Date(0), null);
+		record.setMetaData(Collections.singletonMap("order", "a\"b"));
+		record.addFlowNodeInstance(new FlowNodeHistoryRecord("start", "PASSED", 0, new Date(0), new Date(1000)));
+		return record;
+	}
+}
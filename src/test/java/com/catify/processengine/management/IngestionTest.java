@@ -0,0 +1,310 @@
+package com.catify.processengine.management;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import akka.actor.ActorRef;
+
+import com.catify.processengine.core.messages.TriggerMessage;
+import com.catify.processengine.core.services.Admission;
+
+/**
+ * Tests the {@link Ingestion}.
+ * 
+ * @author christopher köster
+ *
+ */
+public class IngestionTest {
+
+	private Map<String, ActorRef> nodes = new HashMap<String, ActorRef>();
+	
+	private List<TriggerMessage> sent = new ArrayList<TriggerMessage>();
+	
+	/** Pending flushes, run by the test to simulate nodes that have handled their batch. */
+	private List<Runnable> flushes = new ArrayList<Runnable>();
+	
+	@Test
+	public void testRequestsBoundedByDemand() {
+		CommandPublisher commands = new CommandPublisher(10);
+		ResultSubscriber results = new ResultSubscriber();
+		
+		this.createIngestion(commands, 4, 2).subscribe(results);
+		assertEquals(0, commands.requests.size());
+		
+		results.subscription.request(3);
+		assertEquals("[3]", commands.requests.toString());
+		assertEquals(3, sent.size());
+		
+		// results are published after the nodes have handled the batch
+		assertEquals(0, results.results.size());
+		this.flushAll();
+		assertEquals(3, results.results.size());
+		assertEquals(Admission.ACCEPTED, results.results.get(0).getAdmission());
+		assertEquals(1, commands.requests.size());
+	}
+	
+	@Test
+	public void testBatchesInFlight() {
+		CommandPublisher commands = new CommandPublisher(10);
+		ResultSubscriber results = new ResultSubscriber();
+		
+		this.createIngestion(commands, 2, 2).subscribe(results);
+		results.subscription.request(Long.MAX_VALUE);
+		
+		// two batches are sent, the third waits until a node has handled a batch
+		assertEquals("[2, 2]", commands.requests.toString());
+		assertEquals(4, sent.size());
+		assertEquals(2, flushes.size());
+		
+		flushes.remove(0).run();
+		assertEquals("[2, 2, 2]", commands.requests.toString());
+		assertEquals(2, results.results.size());
+		
+		while (!flushes.isEmpty()) {
+			this.flushAll();
+		}
+		assertEquals(10, results.results.size());
+		assertEquals(10, sent.size());
+		assertTrue(results.completed);
+	}
+	
+	@Test
+	public void testCompleteWithPartialBatch() {
+		CommandPublisher commands = new CommandPublisher(3);
+		ResultSubscriber results = new ResultSubscriber();
+		
+		this.createIngestion(commands, 5, 1).subscribe(results);
+		results.subscription.request(10);
+		
+		assertEquals(3, sent.size());
+		assertEquals(false, results.completed);
+		this.flushAll();
+		assertEquals(3, results.results.size());
+		assertTrue(results.completed);
+	}
+	
+	@Test
+	public void testRejectedReportedAtOnce() {
+		CommandPublisher commands = new CommandPublisher(4);
+		ResultSubscriber results = new ResultSubscriber();
+		
+		Ingestion ingestion = new Ingestion(commands, null, null, 4, 1, 1000) {
+			@Override
+			Admission admit(IngestionCommand command, Runnable send, Runnable reject) {
+				if (command.getTriggerMessage().getProcessInstanceId().equals("instance1")) {
+					return Admission.REJECTED;
+				}
+				return IngestionTest.this.admit(send);
+			}
+			@Override
+			ActorRef getTarget(String uniqueFlowNodeId) {
+				return IngestionTest.this.getTarget(uniqueFlowNodeId);
+			}
+			@Override
+			void send(ActorRef target, TriggerMessage triggerMessage) {
+				sent.add(triggerMessage);
+			}
+			@Override
+			void flush(Set<ActorRef> targets, Runnable flushed) {
+				flushes.add(flushed);
+			}
+		};
+		ingestion.subscribe(results);
+		results.subscription.request(4);
+		
+		assertEquals(1, results.results.size());
+		assertEquals(Admission.REJECTED, results.results.get(0).getAdmission());
+		assertEquals(3, sent.size());
+		
+		this.flushAll();
+		assertEquals(4, results.results.size());
+		assertTrue(results.completed);
+	}
+	
+	@Test
+	public void testQueuedCommandsRejectedLater() {
+		CommandPublisher commands = new CommandPublisher(2);
+		ResultSubscriber results = new ResultSubscriber();
+		final List<Runnable> rejects = new ArrayList<Runnable>();
+		
+		Ingestion ingestion = new Ingestion(commands, null, null, 2, 1, 1000) {
+			@Override
+			Admission admit(IngestionCommand command, Runnable send, Runnable reject) {
+				if (command.getTriggerMessage().getProcessInstanceId().equals("instance1")) {
+					rejects.add(reject);
+					return Admission.QUEUED;
+				}
+				return IngestionTest.this.admit(send);
+			}
+			@Override
+			ActorRef getTarget(String uniqueFlowNodeId) {
+				return IngestionTest.this.getTarget(uniqueFlowNodeId);
+			}
+			@Override
+			void send(ActorRef target, TriggerMessage triggerMessage) {
+				sent.add(triggerMessage);
+			}
+			@Override
+			void flush(Set<ActorRef> targets, Runnable flushed) {
+				flushes.add(flushed);
+			}
+		};
+		ingestion.subscribe(results);
+		results.subscription.request(2);
+		
+		// the batch waits for the queued command
+		assertEquals(1, sent.size());
+		assertEquals(0, flushes.size());
+		
+		// e.g. the admission control stops and drops its queue
+		rejects.get(0).run();
+		assertEquals(1, results.results.size());
+		assertEquals(Admission.REJECTED, results.results.get(0).getAdmission());
+		
+		this.flushAll();
+		assertEquals(2, results.results.size());
+		assertEquals(Admission.ACCEPTED, results.results.get(1).getAdmission());
+		assertTrue(results.completed);
+	}
+	
+	@Test
+	public void testCancel() {
+		CommandPublisher commands = new CommandPublisher(10);
+		ResultSubscriber results = new ResultSubscriber();
+		
+		this.createIngestion(commands, 2, 1).subscribe(results);
+		results.subscription.request(10);
+		results.subscription.cancel();
+		
+		assertTrue(commands.cancelled);
+		this.flushAll();
+		assertEquals(0, results.results.size());
+		assertEquals("[2]", commands.requests.toString());
+	}
+	
+	private Ingestion createIngestion(Publisher<IngestionCommand> commands, int batchSize, int maxBatchesInFlight) {
+		return new Ingestion(commands, null, null, batchSize, maxBatchesInFlight, 1000) {
+			@Override
+			Admission admit(IngestionCommand command, Runnable send, Runnable reject) {
+				return IngestionTest.this.admit(send);
+			}
+			@Override
+			ActorRef getTarget(String uniqueFlowNodeId) {
+				return IngestionTest.this.getTarget(uniqueFlowNodeId);
+			}
+			@Override
+			void send(ActorRef target, TriggerMessage triggerMessage) {
+				sent.add(triggerMessage);
+			}
+			@Override
+			void flush(Set<ActorRef> targets, Runnable flushed) {
+				flushes.add(flushed);
+			}
+		};
+	}
+	
+	private Admission admit(Runnable send) {
+		send.run();
+		return Admission.ACCEPTED;
+	}
+	
+	private ActorRef getTarget(String uniqueFlowNodeId) {
+		if (!nodes.containsKey(uniqueFlowNodeId)) {
+			nodes.put(uniqueFlowNodeId, mock(ActorRef.class));
+		}
+		return nodes.get(uniqueFlowNodeId);
+	}
+	
+	private void flushAll() {
+		List<Runnable> pending = new ArrayList<Runnable>(flushes);
+		flushes.clear();
+		for (Runnable flushed : pending) {
+			flushed.run();
+		}
+	}
+	
+	/**
+	 * Publishes a number of commands to alternating nodes, synchronously on request.
+	 */
+	private static class CommandPublisher implements Publisher<IngestionCommand> {
+		
+		private final int count;
+		
+		private int published;
+		
+		private List<Long> requests = new ArrayList<Long>();
+		
+		private boolean cancelled;
+		
+		CommandPublisher(int count) {
+			this.count = count;
+		}
+
+		@Override
+		public void subscribe(final Subscriber<? super IngestionCommand> subscriber) {
+			subscriber.onSubscribe(new Subscription() {
+				@Override
+				public void request(long n) {
+					requests.add(n);
+					for (long i = 0; i < n && published < count && !cancelled; i++) {
+						subscriber.onNext(new IngestionCommand("node" + (published % 2), 
+								new TriggerMessage("instance" + published, null)));
+						published++;
+					}
+					if (published == count && !cancelled) {
+						cancelled = true;
+						subscriber.onComplete();
+					}
+				}
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Collects the results.
+	 */
+	private static class ResultSubscriber implements Subscriber<IngestionResult> {
+		
+		private Subscription subscription;
+		
+		private List<IngestionResult> results = new ArrayList<IngestionResult>();
+		
+		private boolean completed;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(IngestionResult result) {
+			results.add(result);
+		}
+
+		@Override
+		public void onError(Throwable error) {
+			throw new AssertionError(error);
+		}
+
+		@Override
+		public void onComplete() {
+			completed = true;
+		}
+	}
+}